@@ -17,11 +17,21 @@
 
 package com.amazonaws.config;
 
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.handler.AdjustOrderAmountsHandler;
+import com.amazonaws.handler.BatchCreateOrdersHandler;
+import com.amazonaws.handler.BulkDeleteOrdersHandler;
 import com.amazonaws.handler.CreateOrderHandler;
 import com.amazonaws.handler.DeleteOrderHandler;
+import com.amazonaws.handler.GetCustomerSummaryHandler;
 import com.amazonaws.handler.GetOrderHandler;
+import com.amazonaws.handler.GetOrderTotalsHandler;
 import com.amazonaws.handler.GetOrdersHandler;
+import com.amazonaws.handler.OrderStreamHandler;
+import com.amazonaws.handler.StreamOrdersHandler;
+import com.amazonaws.handler.TransactOrdersHandler;
 import com.amazonaws.handler.UpdateOrderHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dagger.Component;
 
 import javax.inject.Singleton;
@@ -51,4 +61,26 @@ public interface OrderComponent {
     void inject(GetOrdersHandler requestHandler);
 
     void inject(UpdateOrderHandler requestHandler);
+
+    void inject(BatchCreateOrdersHandler requestHandler);
+
+    void inject(OrderStreamHandler requestHandler);
+
+    void inject(GetCustomerSummaryHandler requestHandler);
+
+    void inject(TransactOrdersHandler requestHandler);
+
+    void inject(BulkDeleteOrdersHandler requestHandler);
+
+    void inject(StreamOrdersHandler requestHandler);
+
+    void inject(AdjustOrderAmountsHandler requestHandler);
+
+    void inject(GetOrderTotalsHandler requestHandler);
+
+    // Provision methods for code that runs outside a handler, such as the export job.
+
+    OrderDao orderDao();
+
+    ObjectMapper objectMapper();
 }
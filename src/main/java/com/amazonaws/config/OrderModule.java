@@ -16,24 +16,53 @@
  */
 package com.amazonaws.config;
 
+import com.amazonaws.dao.CoalescingOrderRepository;
+import com.amazonaws.dao.CountingOrderRepository;
+import com.amazonaws.dao.CustomerSummaryDao;
+import com.amazonaws.dao.FileOrderRepository;
+import com.amazonaws.dao.InMemoryOrderRepository;
+import com.amazonaws.dao.MergingOrderRepository;
 import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderMergePolicy;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.dao.OrderTotalsDao;
+import com.amazonaws.dao.OrderTotalsRecorder;
+import com.amazonaws.dao.WriteBehindOrderRepository;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.OrderJsonModule;
+import com.amazonaws.tracing.OtlpFileExporter;
+import com.amazonaws.tracing.Tracer;
+import com.amazonaws.tracing.TracingInterceptor;
+import com.amazonaws.tracing.XRaySegmentExporter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
-import javax.inject.Named;
-import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.inject.Named;
+import javax.inject.Singleton;
 
 @Module // Marks this class as a Dagger module that provides dependencies
 public class OrderModule {
 
+
     // ✅ Provide the DynamoDB table name via environment variable
     // This will be injected using @Named("tableName") wherever needed
     @Singleton
@@ -44,12 +73,29 @@ public class OrderModule {
         return Optional.ofNullable(System.getenv("TABLE_NAME")).orElse("orders_table");
     }
 
+    // ✅ Provide the name of the table holding the per-customer order aggregates
+    @Singleton
+    @Provides
+    @Named("summaryTableName")
+    String summaryTableName() {
+        return Optional.ofNullable(System.getenv("SUMMARY_TABLE_NAME"))
+                .orElse("customer_summaries_table");
+    }
+
+    // ✅ Provide the name of the table holding the sharded order totals counters
+    @Singleton
+    @Provides
+    @Named("totalsTableName")
+    String totalsTableName() {
+        return Optional.ofNullable(System.getenv("TOTALS_TABLE_NAME")).orElse("order_totals_table");
+    }
+
     // ✅ Provide the configured DynamoDbClient
     // This sets up the client with HTTP settings, region, endpoint override, and
     // static credentials
     @Singleton
     @Provides
-    DynamoDbClient dynamoDb() {
+    DynamoDbClient dynamoDb(Tracer tracer) {
         // Fetch credentials and endpoint override from environment
         String accessKeyId = Optional.ofNullable(System.getenv("AWS_ACCESS_KEY_ID"))
                 .orElseThrow(() -> new IllegalStateException("AWS_ACCESS_KEY_ID env var not set"));
@@ -58,29 +104,285 @@ public class OrderModule {
         String endpoint = Optional.ofNullable(System.getenv("ENDPOINT_OVERRIDE"))
                 .orElseThrow(() -> new IllegalStateException("ENDPOINT_OVERRIDE env var not set"));
 
-        // Build and return the DynamoDB client
-        return DynamoDbClient.builder()
-                .httpClient(ApacheHttpClient.builder().build()) // Use Apache HTTP client
-                .endpointOverride(URI.create(endpoint)) // Local or test endpoint
-                .region(Region.US_EAST_1) // Region must be set even if unused in local mode
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsBasicCredentials.create(accessKeyId, secretAccessKey)))
-                .build();
+        ClientOverrideConfiguration.Builder overrides = ClientOverrideConfiguration.builder();
+        if (tracer.isEnabled()) {
+            // Time SDK phases only when tracing is on, so the untraced client pays nothing
+            overrides.addExecutionInterceptor(new TracingInterceptor());
+        }
+
+        // Build and return the DynamoDB client, timed as a cold start phase
+        try (StartupTimer.Phase client = StartupTimer.phase("dynamoDbClient")) {
+            return DynamoDbClient.builder()
+                    .httpClient(ApacheHttpClient.builder().build()) // Use Apache HTTP client
+                    .endpointOverride(URI.create(endpoint)) // Local or test endpoint
+                    .region(Region.US_EAST_1) // Region must be set even if unused in local mode
+                    .credentialsProvider(StaticCredentialsProvider.create(
+                            AwsBasicCredentials.create(accessKeyId, secretAccessKey)))
+                    .overrideConfiguration(overrides.build())
+                    .build();
+        }
+    }
+
+    // ✅ Provide the Tracer the handlers start their request traces with
+    // Kept once per JVM, like the limiter, so all routes share one sampler and one exporter
+    @Provides
+    Tracer tracer() {
+        return SharedTracer.INSTANCE;
+    }
+
+    // Created on first use: TRACING_SAMPLE_RATE (default 0, tracing off) of the requests are traced
+    // and written by TRACING_EXPORTER, "xray" for X-Ray segments on stdout or "otlp" for OTLP/JSON
+    // lines appended to TRACING_OTLP_FILE
+    private static final class SharedTracer {
+        static final Tracer INSTANCE = create();
+
+        private static Tracer create() {
+            double sampleRate = Optional.ofNullable(System.getenv("TRACING_SAMPLE_RATE"))
+                    .map(Double::parseDouble).orElse(0.0);
+            if (sampleRate <= 0) {
+                return Tracer.disabled();
+            }
+            String exporter = Optional.ofNullable(System.getenv("TRACING_EXPORTER")).orElse("xray");
+            switch (exporter) {
+                case "xray":
+                    return new Tracer(sampleRate,
+                            new XRaySegmentExporter(new ObjectMapper(), System.out));
+                case "otlp":
+                    return new Tracer(sampleRate, new OtlpFileExporter(new ObjectMapper(),
+                            Paths.get(Optional.ofNullable(System.getenv("TRACING_OTLP_FILE"))
+                                    .orElse("/tmp/traces.otlp.jsonl")),
+                            "order-service"));
+                default:
+                    throw new IllegalStateException("Unknown TRACING_EXPORTER " + exporter);
+            }
+        }
     }
 
     // ✅ Provide a Jackson ObjectMapper for JSON serialization/deserialization
+    // The order model and gateway responses use hand-written codecs instead of bean introspection
     @Singleton
     @Provides
     ObjectMapper objectMapper() {
-        return new ObjectMapper();
+        try (StartupTimer.Phase jackson = StartupTimer.phase("jackson")) {
+            return new ObjectMapper().registerModule(new OrderJsonModule());
+        }
     }
 
     // ✅ Provide an OrderDao, which depends on the DynamoDB client and table name
     // Dagger will automatically resolve these dependencies from the other providers
     @Singleton
     @Provides
-    public OrderDao orderDao(DynamoDbClient dynamoDb, @Named("tableName") String tableName) {
+    public OrderDao orderDao(DynamoDbClient dynamoDb, @Named("tableName") String tableName,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            @Named("orderPutExecutor") ExecutorService putExecutor) {
         // '10' is a page size or limit parameter for queries (your design decision)
-        return new OrderDao(dynamoDb, tableName, 10);
+        return new OrderDao(dynamoDb, tableName, 10, concurrencyLimiter, putExecutor);
+    }
+
+    // ✅ Provide the concurrency limiter the handlers admit requests through
+    // Each handler builds its own component, so the limiter is kept once per JVM rather than per
+    // component: every route must draw from the same limit for priorities to mean anything.
+    // On Lambda each route runs in its own function with one request at a time, so it never sheds.
+    @Provides
+    AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return SharedLimiter.INSTANCE;
+    }
+
+    // Created on first use, from the CONCURRENCY_LIMIT_* env vars
+    private static final class SharedLimiter {
+        static final AdaptiveConcurrencyLimiter INSTANCE = new AdaptiveConcurrencyLimiter(
+                Optional.ofNullable(System.getenv("CONCURRENCY_LIMIT_INITIAL"))
+                        .map(Integer::parseInt).orElse(50),
+                Optional.ofNullable(System.getenv("CONCURRENCY_LIMIT_MIN"))
+                        .map(Integer::parseInt).orElse(1),
+                Optional.ofNullable(System.getenv("CONCURRENCY_LIMIT_MAX"))
+                        .map(Integer::parseInt).orElse(500),
+                Optional.ofNullable(System.getenv("CONCURRENCY_LIMIT_LATENCY_TARGET_MILLIS"))
+                        .map(Long::parseLong).orElse(100L),
+                new EmbeddedMetrics("OrderService", System.out));
+    }
+
+    // ✅ Provide the OrderRepository the handlers use, chosen by the ORDER_STORE env var:
+    // "dynamodb" (the default), "memory" for an in-process store without DynamoDB, or
+    // "file" for a store on local disk in ORDER_STORE_DIR.
+    // Lazy keeps the DynamoDB client, and its required env vars, out of the in-memory setup.
+    @Singleton
+    @Provides
+    OrderRepository orderRepository(Lazy<OrderDao> orderDao,
+            Lazy<OrderTotalsRecorder> orderTotalsRecorder,
+            @Named("orderTotalsShards") int totalsShards) {
+        String store = Optional.ofNullable(System.getenv("ORDER_STORE")).orElse("dynamodb");
+        OrderRepository repository;
+        switch (store) {
+            case "dynamodb":
+                repository = orderDao.get();
+                break;
+            case "memory":
+                repository = new InMemoryOrderRepository(10);
+                break;
+            case "file":
+                repository = SharedFileStore.INSTANCE;
+                break;
+            default:
+                throw new IllegalStateException("Unknown ORDER_STORE " + store);
+        }
+        // Opt-in: count every written order in ORDER_TOTALS_SHARDS counter shards. Innermost, so
+        // the updates merged and flushed by the decorators below are counted too.
+        if (totalsShards > 0) {
+            repository = new CountingOrderRepository(repository, orderTotalsRecorder.get());
+        }
+        // Opt-in: merge conflicting updates by ORDER_UPDATE_MERGE_POLICY instead of answering 409
+        String mergePolicy = System.getenv("ORDER_UPDATE_MERGE_POLICY");
+        if (mergePolicy != null && !mergePolicy.isEmpty()) {
+            int attempts = Optional.ofNullable(System.getenv("ORDER_UPDATE_MERGE_ATTEMPTS"))
+                    .map(Integer::parseInt).orElse(3);
+            OrderMergePolicy policy = OrderMergePolicy.forName(mergePolicy);
+            repository = new MergingOrderRepository(repository, policy, attempts,
+                    new EmbeddedMetrics("OrderService", System.out));
+        }
+        // Opt-in: buffer updates, flushing the latest states every ORDER_UPDATE_WRITE_BEHIND_MILLIS
+        long writeBehindMillis = Optional.ofNullable(
+                System.getenv("ORDER_UPDATE_WRITE_BEHIND_MILLIS"))
+                .map(Long::parseLong).orElse(0L);
+        if (writeBehindMillis > 0) {
+            repository = writeBehindOrderRepository(repository, writeBehindMillis);
+        }
+        // Opt-in: batch concurrent creates that arrive within ORDER_CREATE_BATCH_WINDOW_MICROS
+        long windowMicros = Optional.ofNullable(System.getenv("ORDER_CREATE_BATCH_WINDOW_MICROS"))
+                .map(Long::parseLong).orElse(0L);
+        if (windowMicros > 0) {
+            int batchSize = Optional.ofNullable(System.getenv("ORDER_CREATE_BATCH_SIZE"))
+                    .map(Integer::parseInt).orElse(25);
+            repository = new CoalescingOrderRepository(repository, windowMicros, batchSize);
+        }
+        return repository;
+    }
+
+    // ✅ Provide the BULK_DELETE_PARALLELISM wide pool that runs the bulk delete BatchWriteItems
+    // Daemon threads, so an idle pool never keeps the JVM alive
+    @Singleton
+    @Provides
+    @Named("bulkDeleteExecutor")
+    ExecutorService bulkDeleteExecutor() {
+        int parallelism = Optional.ofNullable(System.getenv("BULK_DELETE_PARALLELISM"))
+                .map(Integer::parseInt).orElse(8);
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-delete");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // ✅ Provide the ORDER_PUT_PARALLELISM wide pool that runs the conditional creates of a batch,
+    // by default as wide as the largest SQS batch, so its messages are written at the same time.
+    // Daemon threads, so an idle pool never keeps the JVM alive
+    @Singleton
+    @Provides
+    @Named("orderPutExecutor")
+    ExecutorService orderPutExecutor() {
+        int parallelism = Optional.ofNullable(System.getenv("ORDER_PUT_PARALLELISM"))
+                .map(Integer::parseInt).orElse(10);
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "order-put");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // ✅ Provide the pool listing pages are prefetched on; each listing fetches one page at a time
+    // Daemon threads, so an idle pool never keeps the JVM alive
+    @Singleton
+    @Provides
+    @Named("pagePrefetchExecutor")
+    ExecutorService pagePrefetchExecutor() {
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "page-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Flushes on a daemon thread and on shutdown, so buffered updates survive a clean stop
+    private static WriteBehindOrderRepository writeBehindOrderRepository(OrderRepository repository,
+                                                                         long flushIntervalMillis) {
+        int stripes = Optional.ofNullable(System.getenv("ORDER_UPDATE_WRITE_BEHIND_STRIPES"))
+                .map(Integer::parseInt).orElse(16);
+        int maxPending = Optional.ofNullable(System.getenv("ORDER_UPDATE_WRITE_BEHIND_MAX_PENDING"))
+                .map(Integer::parseInt).orElse(64);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        WriteBehindOrderRepository writeBehind = new WriteBehindOrderRepository(repository, stripes,
+                maxPending, flushIntervalMillis, scheduler,
+                new EmbeddedMetrics("OrderService", System.out));
+        Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close));
+        return writeBehind;
+    }
+
+    // Opens the file store on first use and shares it with every component in the JVM, since the
+    // store locks its directory. Closes it cleanly on shutdown, so the next start skips the replay.
+    private static final class SharedFileStore {
+        static final FileOrderRepository INSTANCE = fileOrderRepository();
+    }
+
+    private static FileOrderRepository fileOrderRepository() {
+        String directory =
+                Optional.ofNullable(System.getenv("ORDER_STORE_DIR")).orElse("/tmp/orders");
+        try {
+            FileOrderRepository repository = new FileOrderRepository(Paths.get(directory), 10,
+                    64L << 20);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    repository.close();
+                } catch (IOException e) {
+                    // the next start replays the log instead
+                }
+            }));
+            return repository;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the order store in " + directory, e);
+        }
+    }
+
+    // ✅ Provide the DAO for the per-customer aggregates maintained from the orders stream
+    @Singleton
+    @Provides
+    public CustomerSummaryDao customerSummaryDao(DynamoDbClient dynamoDb,
+            @Named("summaryTableName") String summaryTableName) {
+        return new CustomerSummaryDao(dynamoDb, summaryTableName);
+    }
+
+    // ✅ Provide the number of shards per order totals counter; 0, the default, turns counting off.
+    // Counting adds a consistent read to every update and unbatches bulk deletes, so it is opt-in.
+    @Provides
+    @Named("orderTotalsShards")
+    int orderTotalsShards() {
+        return Optional.ofNullable(System.getenv("ORDER_TOTALS_SHARDS"))
+                .map(Integer::parseInt).orElse(0);
+    }
+
+    // ✅ Provide the DAO for the sharded order totals, with read totals cached for
+    // ORDER_TOTALS_CACHE_MILLIS. With counting off it still reads the totals, from a single shard.
+    @Singleton
+    @Provides
+    OrderTotalsDao orderTotalsDao(DynamoDbClient dynamoDb,
+            @Named("totalsTableName") String totalsTableName,
+            @Named("orderTotalsShards") int shards) {
+        long cacheMillis = Optional.ofNullable(System.getenv("ORDER_TOTALS_CACHE_MILLIS"))
+                .map(Long::parseLong).orElse(1000L);
+        return new OrderTotalsDao(dynamoDb, totalsTableName, Math.max(1, shards),
+                Duration.ofMillis(cacheMillis));
+    }
+
+    // ✅ Provide what adds written orders to the totals, for the repository and the handlers that
+    // write to OrderDao directly. It records nothing while counting is off.
+    @Singleton
+    @Provides
+    OrderTotalsRecorder orderTotalsRecorder(Lazy<OrderTotalsDao> orderTotalsDao,
+            @Named("orderTotalsShards") int shards) {
+        return new OrderTotalsRecorder(shards > 0 ? orderTotalsDao.get() : null,
+                new EmbeddedMetrics("OrderService", System.out));
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects concurrent {@link #createOrder} calls into batches written with one
+ * {@link OrderRepository#createOrders} call, which for {@link OrderDao} is a BatchWriteItem. The
+ * first caller of a batch waits until the batch is full or the window has passed, writes it and
+ * completes every caller with its own order or error. There is no background thread, so batches
+ * are only written by callers, which also works in a Lambda execution environment.
+ *
+ * <p>This only pays off when one JVM handles many creates at once; a lone create just waits out
+ * the window. All other operations go straight to the wrapped repository.
+ */
+public class CoalescingOrderRepository implements OrderRepository {
+    private final OrderRepository delegate;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchSealed = lock.newCondition();
+    private Batch open; // the batch new creates join, or null
+
+    private static final class Batch {
+        private final List<CreateOrderRequest> requests = new ArrayList<>();
+        private final List<CompletableFuture<Order>> results = new ArrayList<>();
+        private boolean sealed;
+    }
+
+    /**
+     * Wraps delegate, holding each create for up to windowMicros so that up to maxBatchSize
+     * creates go to the delegate in one batch.
+     */
+    public CoalescingOrderRepository(final OrderRepository delegate, final long windowMicros,
+                                     final int maxBatchSize) {
+        if (windowMicros < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "window must not be negative and batch size must be positive");
+        }
+        this.delegate = delegate;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+        Batch leading = null;
+        lock.lock();
+        try {
+            if (open == null) {
+                open = new Batch();
+                leading = open;
+            }
+            final Batch batch = open;
+            batch.requests.add(request);
+            batch.results.add(result);
+            if (batch.requests.size() >= maxBatchSize) {
+                seal(batch);
+            }
+            if (leading != null) {
+                long remaining = windowNanos;
+                while (!leading.sealed && remaining > 0) {
+                    remaining = batchSealed.awaitNanos(remaining);
+                }
+                seal(leading);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            seal(leading); // write what there is rather than strand the other callers
+        } finally {
+            lock.unlock();
+        }
+        if (leading != null) {
+            write(leading);
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    // Closes a batch to new creates; the caller holds the lock
+    private void seal(final Batch batch) {
+        batch.sealed = true;
+        if (open == batch) {
+            open = null;
+        }
+        batchSealed.signalAll();
+    }
+
+    private void write(final Batch batch) {
+        final List<OrderWriteResult> results;
+        try {
+            results = delegate.createOrders(batch.requests);
+        } catch (RuntimeException e) {
+            batch.results.forEach(result -> result.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.results.size(); i++) {
+            final OrderWriteResult written = results.get(i);
+            if (written.isSuccess()) {
+                batch.results.get(i).complete(written.getOrder());
+            } else {
+                batch.results.get(i).completeExceptionally(written.getError());
+            }
+        }
+    }
+
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        return delegate.createOrders(requests);
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        return delegate.getOrder(orderId);
+    }
+
+    @Override
+    public Order getLatestOrder(final String orderId) {
+        return delegate.getLatestOrder(orderId);
+    }
+
+    @Override
+    public OrderPage getOrders(final String exclusiveStartOrderId) {
+        return delegate.getOrders(exclusiveStartOrderId);
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        return delegate.updateOrder(order);
+    }
+
+    @Override
+    public boolean isUpdatePending(final String orderId) {
+        return delegate.isUpdatePending(orderId);
+    }
+
+    @Override
+    public Map<String, OrderWriteResult> flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public Order adjustAmounts(final String orderId, final Money preTaxDelta,
+                               final Money postTaxDelta, final boolean allowNegative) {
+        return delegate.adjustAmounts(orderId, preTaxDelta, postTaxDelta, allowNegative);
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        return delegate.deleteOrder(orderId);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds every order created, updated, deleted or adjusted through the wrapped repository to the
+ * sharded counters of {@link OrderTotalsDao}, through an {@link OrderTotalsRecorder}. A batch of
+ * creates adds each counter once, however many of its orders it holds.
+ *
+ * <p>The counters are updated after the order write succeeded, and a counter write that fails
+ * does not fail the order write. An update reads the stored order first, with a consistent read,
+ * so its previous amounts and customer are known; the version check of the update guarantees that
+ * nothing changed in between. Wrapped innermost, this also counts the updates that
+ * {@link MergingOrderRepository} merges and {@link WriteBehindOrderRepository} flushes.
+ */
+public class CountingOrderRepository implements OrderRepository {
+    private final OrderRepository delegate;
+    private final OrderTotalsRecorder recorder;
+
+    public CountingOrderRepository(final OrderRepository delegate, final OrderTotalsDao totals,
+                                   final EmbeddedMetrics metrics) {
+        this(delegate, new OrderTotalsRecorder(totals, metrics));
+    }
+
+    public CountingOrderRepository(final OrderRepository delegate,
+            final OrderTotalsRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        final Order order = delegate.createOrder(request);
+        recorder.created(Collections.singletonList(order));
+        return order;
+    }
+
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        final List<OrderWriteResult> results = delegate.createOrders(requests);
+        final List<Order> created = new ArrayList<>(results.size());
+        for (OrderWriteResult result : results) {
+            if (result.isSuccess() && !result.isAlreadyCreated()) {
+                created.add(result.getOrder());
+            }
+        }
+        recorder.created(created);
+        return results;
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        Order before;
+        try {
+            before = order == null || order.getOrderId() == null
+                    ? null : delegate.getLatestOrder(order.getOrderId());
+        } catch (OrderDoesNotExistException e) {
+            before = null; // the update fails too
+        }
+        final Order updated = delegate.updateOrder(order);
+        if (before != null && before.getVersion().equals(order.getVersion())) {
+            recorder.updated(before, updated);
+        } else {
+            // written at a version other than the one read, the old amounts are unknown
+            recorder.missed();
+        }
+        return updated;
+    }
+
+    @Override
+    public Order adjustAmounts(final String orderId, final Money preTaxDelta,
+                               final Money postTaxDelta, final boolean allowNegative) {
+        final Order adjusted = delegate.adjustAmounts(orderId, preTaxDelta, postTaxDelta,
+                allowNegative);
+        recorder.adjusted(adjusted.getCustomerId(), preTaxDelta, postTaxDelta);
+        return adjusted;
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        final Order deleted = delegate.deleteOrder(orderId);
+        recorder.deleted(Collections.singletonList(deleted));
+        return deleted;
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        return delegate.getOrder(orderId);
+    }
+
+    @Override
+    public Order getLatestOrder(final String orderId) {
+        return delegate.getLatestOrder(orderId);
+    }
+
+    @Override
+    public OrderPage getOrders(final String exclusiveStartOrderId) {
+        return delegate.getOrders(exclusiveStartOrderId);
+    }
+
+    @Override
+    public boolean isUpdatePending(final String orderId) {
+        return delegate.isUpdatePending(orderId);
+    }
+
+    @Override
+    public Map<String, OrderWriteResult> flush() {
+        return delegate.flush();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.model.CustomerSummary;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains one aggregate item per customer (order count, amount totals and last version) from
+ * the stream of order changes, so that customer totals are read with a single GetItem instead of
+ * scanning the orders table.
+ *
+ * <p>Each change is applied in one transaction together with a per order watermark holding the
+ * highest stream sequence number applied for that order. Stream records of one order arrive in
+ * sequence number order, so a record at or below the watermark is a redelivery and is skipped.
+ */
+public class CustomerSummaryDao {
+
+    private static final String ID = "id";
+    private static final String CUSTOMER_KEY_PREFIX = "customer#";
+    private static final String ORDER_KEY_PREFIX = "order#";
+    private static final String SEQUENCE_NUMBER = "sequenceNumber";
+    private static final String WATERMARK_CONDITION =
+            "attribute_not_exists(" + SEQUENCE_NUMBER + ") OR " + SEQUENCE_NUMBER + " < :seq";
+    private static final String ADD_EXPRESSION =
+            " ADD orderCount :n, preTaxAmount :pre, postTaxAmount :post";
+    // Stream sequence numbers have up to 40 digits, more than a DynamoDB number holds, so they are
+    // stored as zero padded strings that compare in numeric order.
+    private static final int SEQUENCE_NUMBER_WIDTH = 40;
+    // Watermarks of removed orders expire once no redelivery of their records is possible anymore;
+    // stream records are retained for 24 hours.
+    private static final Duration REMOVED_ORDER_WATERMARK_TTL = Duration.ofHours(48);
+
+    private final DynamoDbClient dynamoDb;
+    private final String tableName;
+    private final Clock clock;
+
+    public CustomerSummaryDao(final DynamoDbClient dynamoDb, final String tableName) {
+        this(dynamoDb, tableName, Clock.systemUTC());
+    }
+
+    CustomerSummaryDao(final DynamoDbClient dynamoDb, final String tableName, final Clock clock) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.clock = clock;
+    }
+
+    /**
+     * Reads the aggregate of a customer. A customer without orders has an all zero summary.
+     */
+    public CustomerSummary getSummary(final String customerId) {
+        if (customerId == null || customerId.isEmpty()) {
+            throw new IllegalArgumentException("customerId was null or empty");
+        }
+
+        final GetItemResponse result;
+        try {
+            final GetItemRequest.Builder get = GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(key(CUSTOMER_KEY_PREFIX + customerId));
+            result = Deadline.call(get, request -> dynamoDb.getItem(request.build()));
+        } catch (ResourceNotFoundException e) {
+            throw new TableDoesNotExistException("Customer summary table " + tableName
+                    + " does not exist");
+        }
+        final Map<String, AttributeValue> item = result == null ? null : result.item();
+        if (item == null || item.isEmpty()) {
+            return CustomerSummary.builder()
+                    .customerId(customerId)
+                    .orderCount(0L)
+                    .preTaxAmount(Money.ZERO)
+                    .postTaxAmount(Money.ZERO)
+                    .build();
+        }
+        return CustomerSummary.builder()
+                .customerId(customerId)
+                .orderCount(Long.valueOf(number(item, "orderCount")))
+                .preTaxAmount(Money.parse(number(item, "preTaxAmount")))
+                .postTaxAmount(Money.parse(number(item, "postTaxAmount")))
+                .lastVersion(item.containsKey("lastVersion")
+                        ? Long.valueOf(number(item, "lastVersion")) : null)
+                .build();
+    }
+
+    /**
+     * Applies one order change to the aggregates of the customers it affects.
+     * @return false if the change had already been applied
+     */
+    public boolean apply(final OrderChange change) {
+        if (change == null || change.getOrderId() == null || change.getSequenceNumber() == null) {
+            throw new IllegalArgumentException(
+                    "Order change needs an orderId and a sequence number");
+        }
+
+        final Map<String, Delta> deltas = new LinkedHashMap<>(4);
+        if (change.getOldImage() != null) {
+            deltas.computeIfAbsent(change.getOldImage().getCustomerId(), id -> new Delta())
+                    .subtract(change.getOldImage());
+        }
+        if (change.getNewImage() != null) {
+            deltas.computeIfAbsent(change.getNewImage().getCustomerId(), id -> new Delta())
+                    .add(change.getNewImage());
+        }
+
+        final List<TransactWriteItem> items = new ArrayList<>(1 + deltas.size());
+        items.add(TransactWriteItem.builder().put(watermark(change)).build());
+        deltas.forEach((customerId, delta) -> items.add(
+                TransactWriteItem.builder().update(aggregateUpdate(customerId, delta)).build()));
+
+        try {
+            dynamoDb.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(items)
+                    .build());
+            return true;
+        } catch (TransactionCanceledException e) {
+            if (e.hasCancellationReasons()
+                    && "ConditionalCheckFailed".equals(e.cancellationReasons().get(0).code())) {
+                return false; // the watermark is already at or past this record
+            }
+            throw e;
+        } catch (ResourceNotFoundException e) {
+            throw new TableDoesNotExistException("Customer summary table " + tableName
+                    + " does not exist");
+        }
+    }
+
+    private Put watermark(final OrderChange change) {
+        final Map<String, AttributeValue> item = new HashMap<>(4);
+        item.put(ID, AttributeValue.builder().s(ORDER_KEY_PREFIX + change.getOrderId()).build());
+        final AttributeValue sequenceNumber = AttributeValue.builder()
+                .s(padSequenceNumber(change.getSequenceNumber())).build();
+        item.put(SEQUENCE_NUMBER, sequenceNumber);
+        if (change.getNewImage() == null) {
+            item.put("expiresAt", AttributeValue.builder()
+                    .n(Long.toString(
+                            clock.instant().plus(REMOVED_ORDER_WATERMARK_TTL).getEpochSecond()))
+                    .build());
+        }
+        return Put.builder()
+                .tableName(tableName)
+                .item(item)
+                .conditionExpression(WATERMARK_CONDITION)
+                .expressionAttributeValues(Collections.singletonMap(":seq", sequenceNumber))
+                .build();
+    }
+
+    private Update aggregateUpdate(final String customerId, final Delta delta) {
+        final Map<String, AttributeValue> values = new HashMap<>(8);
+        values.put(":cid", AttributeValue.builder().s(customerId).build());
+        values.put(":n", AttributeValue.builder().n(Long.toString(delta.orderCount)).build());
+        values.put(":pre", AttributeValue.builder().n(delta.preTaxAmount.toString()).build());
+        values.put(":post", AttributeValue.builder().n(delta.postTaxAmount.toString()).build());
+        String expression = "SET customerId = :cid";
+        if (delta.lastVersion != null) {
+            values.put(":v", AttributeValue.builder().n(delta.lastVersion.toString()).build());
+            expression += ", lastVersion = :v";
+        }
+        return Update.builder()
+                .tableName(tableName)
+                .key(key(CUSTOMER_KEY_PREFIX + customerId))
+                .updateExpression(expression + ADD_EXPRESSION)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    static String padSequenceNumber(final String sequenceNumber) {
+        if (sequenceNumber.isEmpty() || sequenceNumber.length() > SEQUENCE_NUMBER_WIDTH
+                || !sequenceNumber.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Invalid stream sequence number " + sequenceNumber);
+        }
+        final StringBuilder padded = new StringBuilder(SEQUENCE_NUMBER_WIDTH);
+        for (int i = sequenceNumber.length(); i < SEQUENCE_NUMBER_WIDTH; i++) {
+            padded.append('0');
+        }
+        return padded.append(sequenceNumber).toString();
+    }
+
+    private static Map<String, AttributeValue> key(final String id) {
+        return Collections.singletonMap(ID, AttributeValue.builder().s(id).build());
+    }
+
+    private static String number(final Map<String, AttributeValue> item, final String name) {
+        final AttributeValue value = item.get(name);
+        if (value == null || value.n() == null) {
+            throw new IllegalStateException(name + " was missing from the customer summary");
+        }
+        return value.n();
+    }
+
+    // Net effect of a change on one customer's aggregate
+    private static final class Delta {
+        private long orderCount;
+        private Money preTaxAmount = Money.ZERO;
+        private Money postTaxAmount = Money.ZERO;
+        private Long lastVersion;
+
+        void add(final Order order) {
+            orderCount++;
+            preTaxAmount = preTaxAmount.add(order.getPreTaxAmount());
+            postTaxAmount = postTaxAmount.add(order.getPostTaxAmount());
+            lastVersion = order.getVersion();
+        }
+
+        void subtract(final Order order) {
+            orderCount--;
+            preTaxAmount = preTaxAmount.subtract(order.getPreTaxAmount());
+            postTaxAmount = postTaxAmount.subtract(order.getPostTaxAmount());
+        }
+    }
+}
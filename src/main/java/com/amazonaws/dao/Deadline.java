@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.DeadlineExceededException;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * The time the current invocation has left, held per thread. A handler starts it from the
+ * Lambda context and the DAOs bound each DynamoDB call by what remains, so a slow table
+ * makes the invocation fail fast instead of running into the function timeout.
+ */
+public final class Deadline {
+    // Kept back from the invocation's remaining time to write the response
+    private static final long RESPONSE_RESERVE_MILLIS = 500;
+    // the SDK's standard retry mode makes up to 3 attempts
+    private static final int MAX_ATTEMPTS_PER_CALL = 3;
+    private static final Duration MIN_ATTEMPT_TIMEOUT = Duration.ofMillis(250);
+    private static final ThreadLocal<Long> EXPIRES_AT_NANOS = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Starts a deadline for this thread from the invocation's remaining time. Without a positive
+     * remaining time, as when a handler runs outside Lambda, calls stay unbounded.
+     */
+    public static void start(final long remainingMillis) {
+        if (remainingMillis <= 0) {
+            EXPIRES_AT_NANOS.remove();
+            return;
+        }
+        EXPIRES_AT_NANOS.set(System.nanoTime() + Duration.ofMillis(
+                Math.max(remainingMillis - RESPONSE_RESERVE_MILLIS, 0)).toNanos());
+    }
+
+    public static void clear() {
+        EXPIRES_AT_NANOS.remove();
+    }
+
+    /**
+     * Returns the time left before the deadline, zero or negative once it has passed, or null
+     * when no deadline was started on this thread.
+     */
+    public static Duration remaining() {
+        final Long expiresAtNanos = EXPIRES_AT_NANOS.get();
+        return expiresAtNanos == null ? null : Duration.ofNanos(expiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Runs one DynamoDB call bounded by this thread's deadline, when a handler has started one.
+     * Throws DeadlineExceededException when no time is left or the call times out.
+     */
+    static <B extends AwsRequest.Builder, R> R call(final B request,
+            final Function<B, R> operation) {
+        bound(request);
+        try {
+            return operation.apply(request);
+        } catch (ApiCallTimeoutException | ApiCallAttemptTimeoutException e) {
+            throw timedOut();
+        }
+    }
+
+    /**
+     * Sets the request's call and attempt timeouts from the time left on this thread's deadline,
+     * and throws DeadlineExceededException when none is left. Without a deadline it does nothing.
+     */
+    static void bound(final AwsRequest.Builder request) {
+        final Duration remaining = remaining();
+        if (remaining == null) {
+            return;
+        }
+        if (remaining.isZero() || remaining.isNegative()) {
+            throw new DeadlineExceededException("No time was left to call DynamoDB");
+        }
+        // leave room for the SDK's retries: each attempt gets a share of the budget
+        Duration attemptTimeout = remaining.dividedBy(MAX_ATTEMPTS_PER_CALL);
+        if (attemptTimeout.compareTo(MIN_ATTEMPT_TIMEOUT) < 0) {
+            attemptTimeout = remaining.compareTo(MIN_ATTEMPT_TIMEOUT) < 0
+                    ? remaining : MIN_ATTEMPT_TIMEOUT;
+        }
+        request.overrideConfiguration(AwsRequestOverrideConfiguration.builder()
+                .apiCallTimeout(remaining)
+                .apiCallAttemptTimeout(attemptTimeout)
+                .build());
+    }
+
+    static DeadlineExceededException timedOut() {
+        return new DeadlineExceededException(
+                "DynamoDB did not answer within the request deadline");
+    }
+
+    /**
+     * Wraps a function to run under the deadline this thread has now, for work handed to
+     * another thread on its behalf.
+     */
+    static <T, R> Function<T, R> carry(final Function<T, R> function) {
+        final Long expiresAtNanos = EXPIRES_AT_NANOS.get();
+        return argument -> {
+            final Long previous = EXPIRES_AT_NANOS.get();
+            set(expiresAtNanos);
+            try {
+                return function.apply(argument);
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    private static void set(final Long expiresAtNanos) {
+        if (expiresAtNanos == null) {
+            EXPIRES_AT_NANOS.remove();
+        } else {
+            EXPIRES_AT_NANOS.set(expiresAtNanos);
+        }
+    }
+}
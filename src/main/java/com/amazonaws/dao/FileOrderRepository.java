@@ -0,0 +1,499 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Keeps orders in files on local disk, for deployments without DynamoDB. Every write is appended
+ * to an {@link OrderLog} and a {@link MappedOrderIndex} maps each orderId to its latest record, so
+ * a get is one hash probe in memory plus one positional read, usually served by the page cache.
+ *
+ * <p>A write returns once its record is on stable storage. The version check, append and index
+ * update happen under a short write lock and the fsync after it, so one fsync covers every writer
+ * that appended in the meantime. A reader can see a record that is appended but not yet durable;
+ * if that fsync fails, its writer gets an UncheckedIOException for a change others have seen.
+ *
+ * <p>On open, an index closed cleanly at the current end of the log is used as is; otherwise the
+ * index is rebuilt by replaying the log, which also cuts off a record torn by a crash. {@link
+ * #compact()} copies the live orders into a snapshot and deletes the files it replaces.
+ *
+ * <p>The store holds an exclusive lock on its directory while open, so a second store on the same
+ * directory fails to open, whether in another process or in this one.
+ */
+public class FileOrderRepository implements OrderRepository, Closeable {
+    private static final String INDEX_FILE = "orders.index";
+    private static final String LOCK_FILE = "store.lock";
+    private static final int MAX_CREATE_ATTEMPTS = 10;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final FileLock directoryLock;
+    private final OrderLog log;
+    private final MappedOrderIndex index;
+    private final int pageSize;
+    private boolean closed;
+
+    /**
+     * Opens or creates the store in a directory, which stays locked until {@link #close()}.
+     *
+     * @throws IOException if the directory is locked by another store, or the files cannot be read
+     */
+    public FileOrderRepository(final Path directory, final int pageSize, final long maxSegmentBytes)
+            throws IOException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        this.directoryLock = lockDirectory(directory);
+        try {
+            this.log = new OrderLog(directory, maxSegmentBytes);
+            log.open();
+            this.index = openIndex(directory.resolve(INDEX_FILE));
+        } catch (IOException | RuntimeException e) {
+            directoryLock.channel().close();
+            throw e;
+        }
+    }
+
+    private static FileLock lockDirectory(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        final FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // held by another store in this JVM
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("The order store in " + directory + " is already open");
+        }
+        return lock;
+    }
+
+    // Uses an index closed cleanly at the current end of the log, or rebuilds it from the log
+    private MappedOrderIndex openIndex(final Path indexFile) throws IOException {
+        final MappedOrderIndex clean = MappedOrderIndex.openClean(indexFile, log.end());
+        if (clean != null) {
+            return clean;
+        }
+        final MappedOrderIndex index = MappedOrderIndex.create(indexFile, INITIAL_INDEX_CAPACITY);
+        log.replay((location, type, order) -> {
+            final LongPredicate isOrder = isOrder(order.getOrderId());
+            if (type == OrderLog.PUT) {
+                index.put(MappedOrderIndex.hash(order.getOrderId()), isOrder, location);
+            } else {
+                index.remove(MappedOrderIndex.hash(order.getOrderId()), isOrder);
+            }
+        });
+        return index;
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        lock.readLock().lock();
+        try {
+            final Order order = orderId == null ? null : find(orderId);
+            if (order == null) {
+                throw new OrderDoesNotExistException("Order " + orderId + " does not exist");
+            }
+            return order;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pages through the index in slot order, which is stable as long as the index is not resized.
+     * A page ends at "slot:orderId" of its last order, so the next page resumes after that slot
+     * even if the order was deleted and its slot reused in between; a bare orderId is also
+     * accepted.
+     */
+    @Override
+    public OrderPage getOrders(final String exclusiveStartKey) {
+        lock.readLock().lock();
+        try {
+            int slot = exclusiveStartKey == null || exclusiveStartKey.isEmpty() ? 0
+                    : resumeSlot(exclusiveStartKey);
+            final List<Order> orders = new ArrayList<>(pageSize);
+            int lastSlot = -1;
+            for (; slot < index.capacity() && orders.size() < pageSize; slot++) {
+                final long location = index.liveLocationAt(slot);
+                if (location != MappedOrderIndex.NOT_FOUND) {
+                    orders.add(log.read(location));
+                    lastSlot = slot;
+                }
+            }
+            final OrderPage.OrderPageBuilder builder = OrderPage.builder().orders(orders);
+            if (orders.size() == pageSize && slot < index.capacity()) {
+                builder.lastEvaluatedKey(lastSlot + ":"
+                        + orders.get(orders.size() - 1).getOrderId());
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The slot a page starting after the key begins at. The recorded slot is trusted unless it now
+    // holds another hash and the order is found elsewhere, which only a resize does.
+    private int resumeSlot(final String exclusiveStartKey) {
+        final int separator = exclusiveStartKey.indexOf(':');
+        final int slot = separator > 0 ? parseSlot(exclusiveStartKey.substring(0, separator)) : -1;
+        final String orderId = slot < 0 ? exclusiveStartKey
+                : exclusiveStartKey.substring(separator + 1);
+        final long hash = MappedOrderIndex.hash(orderId);
+        if (slot >= 0 && slot < index.capacity() && index.hashAt(slot) == hash) {
+            return slot + 1;
+        }
+        final int after = index.slotAfter(hash);
+        if (after >= 0) {
+            return after;
+        }
+        return slot >= 0 ? slot + 1 : index.home(hash);
+    }
+
+    // The slot the orderId's hash is probed from at the index's current capacity
+    int homeSlot(final String orderId) {
+        lock.readLock().lock();
+        try {
+            return index.home(MappedOrderIndex.hash(orderId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int parseSlot(final String slot) {
+        if (slot.isEmpty() || slot.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < slot.length(); i++) {
+            if (!Character.isDigit(slot.charAt(i))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(slot);
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        final Order order = newOrder(request);
+        final long sequence;
+        lock.writeLock().lock();
+        try {
+            sequence = insert(order, request.getOrderId() != null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(sequence);
+        return order;
+    }
+
+    /**
+     * Appends all valid orders under one lock and waits for a single fsync.
+     */
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        if (requests == null) {
+            throw new IllegalArgumentException("CreateOrderRequest list was null");
+        }
+        final List<OrderWriteResult> results = new ArrayList<>(requests.size());
+        long sequence = 0;
+        lock.writeLock().lock();
+        try {
+            for (CreateOrderRequest request : requests) {
+                try {
+                    final Order order = newOrder(request);
+                    final Order existing = request.getOrderId() == null ? null
+                            : find(request.getOrderId());
+                    if (existing != null) {
+                        results.add(OrderWriteResult.alreadyCreated(existing));
+                        continue;
+                    }
+                    sequence = insert(order, request.getOrderId() != null);
+                    results.add(OrderWriteResult.success(order));
+                } catch (IllegalArgumentException | CouldNotCreateOrderException e) {
+                    results.add(OrderWriteResult.failure(e));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(sequence);
+        return results;
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order to update was null");
+        }
+        if (order.getOrderId() == null || order.getOrderId().isEmpty()) {
+            throw new IllegalArgumentException("orderId was null or empty");
+        }
+        final String customerId = validateCustomerId(order.getCustomerId());
+        if (order.getPreTaxAmount() == null || order.getPostTaxAmount() == null
+                || order.getVersion() == null) {
+            throw new IllegalArgumentException("One of the required numeric fields was null");
+        }
+
+        final Order updated;
+        final long sequence;
+        lock.writeLock().lock();
+        try {
+            final Order current = find(order.getOrderId());
+            if (current == null || !current.getVersion().equals(order.getVersion())) {
+                throw new UnableToUpdateException("Order missing or version mismatch");
+            }
+            updated = Order.builder()
+                    .orderId(current.getOrderId())
+                    .customerId(customerId)
+                    .preTaxAmount(order.getPreTaxAmount())
+                    .postTaxAmount(order.getPostTaxAmount())
+                    .version(current.getVersion() + 1)
+                    .build();
+            final long location = log.append(OrderLog.encodePut(updated));
+            index.put(MappedOrderIndex.hash(updated.getOrderId()), isOrder(updated.getOrderId()),
+                    location);
+            sequence = log.lastAppended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(sequence);
+        return updated;
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        final Order current;
+        final long sequence;
+        lock.writeLock().lock();
+        try {
+            current = orderId == null ? null : find(orderId);
+            if (current == null) {
+                throw new UnableToDeleteException("Competing update or order missing");
+            }
+            log.append(OrderLog.encodeDelete(orderId));
+            index.remove(MappedOrderIndex.hash(orderId), isOrder(orderId));
+            sequence = log.lastAppended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(sequence);
+        return current;
+    }
+
+    /**
+     * Copies the live orders of all closed segments into a snapshot and deletes those segments,
+     * reclaiming the space of overwritten and deleted orders. Reads and writes continue meanwhile,
+     * except for two short pauses: to close the active segment and to switch the index over.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            final int snapshotId;
+            final List<long[]> entries = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                snapshotId = log.closeSegment();
+                for (int slot = 0; slot < index.capacity(); slot++) {
+                    final long location = index.liveLocationAt(slot);
+                    if (location != MappedOrderIndex.NOT_FOUND
+                            && OrderLog.fileId(location) < snapshotId) {
+                        entries.add(new long[] {index.hashAt(slot), location, 0});
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Closed files are immutable and only compaction deletes them, so no lock is needed
+            try (OrderLog.SnapshotWriter snapshot = log.snapshot(snapshotId)) {
+                for (long[] entry : entries) {
+                    entry[2] = snapshot.copy(entry[1]);
+                }
+                snapshot.install();
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (long[] entry : entries) {
+                    // A write since the copy has moved the entry on; it then stays where it is
+                    index.replace(entry[0], entry[1], entry[2]);
+                }
+                log.deleteFilesBefore(snapshotId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the files and marks the index as complete, so the next open does not replay the log.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (compactionLock) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                index.closeClean(log.end());
+                log.close();
+                directoryLock.channel().close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Closes the files and unlocks the directory but leaves the index dirty, as a crash would
+    void abandon() throws IOException {
+        synchronized (compactionLock) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                log.close();
+                directoryLock.channel().close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Appends a new order under the write lock and returns its sequence number; only a random id
+    // is replaced on collision
+    private long insert(final Order order, final boolean derivedId) {
+        try {
+            for (int tries = 0; tries < MAX_CREATE_ATTEMPTS; tries++) {
+                if (find(order.getOrderId()) == null) {
+                    final long location = log.append(OrderLog.encodePut(order));
+                    index.put(MappedOrderIndex.hash(order.getOrderId()),
+                            isOrder(order.getOrderId()), location);
+                    return log.lastAppended();
+                }
+                if (derivedId) {
+                    throw new CouldNotCreateOrderException("Order " + order.getOrderId()
+                            + " already exists");
+                }
+                order.setOrderId(UUID.randomUUID().toString()); // retry on ID collision
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new CouldNotCreateOrderException("Too many ID collisions");
+    }
+
+    private static Order newOrder(final CreateOrderRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("CreateOrderRequest was null");
+        }
+        final String customerId = validateCustomerId(request.getCustomerId());
+        if (request.getPreTaxAmount() == null) {
+            throw new IllegalArgumentException("preTaxAmount was null");
+        }
+        if (request.getPostTaxAmount() == null) {
+            throw new IllegalArgumentException("postTaxAmount was null");
+        }
+        return Order.builder()
+                .orderId(request.getOrderId() != null ? request.getOrderId()
+                        : UUID.randomUUID().toString())
+                .customerId(customerId)
+                .preTaxAmount(Money.valueOf(request.getPreTaxAmount()))
+                .postTaxAmount(Money.valueOf(request.getPostTaxAmount()))
+                .version(1L)
+                .build();
+    }
+
+    // Looks an order up; the caller holds the read or write lock
+    private Order find(final String orderId) {
+        final Order[] found = {null};
+        index.find(MappedOrderIndex.hash(orderId), location -> {
+            final Order order = read(location);
+            if (!orderId.equals(order.getOrderId())) {
+                return false; // another orderId with the same hash
+            }
+            found[0] = order;
+            return true;
+        });
+        return found[0];
+    }
+
+    // Accepts the index entry of one orderId, telling it apart from others with the same hash
+    private LongPredicate isOrder(final String orderId) {
+        return location -> orderId.equals(read(location).getOrderId());
+    }
+
+    private Order read(final long location) {
+        try {
+            return log.read(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitDurable(final long sequence) {
+        try {
+            log.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String validateCustomerId(final String customerId) {
+        if (customerId == null || customerId.isEmpty()) {
+            throw new IllegalArgumentException("customerId was null or empty");
+        }
+        return customerId;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps orders on the heap, for load tests, edge caches and as a baseline for the cost of
+ * persistence. Behaves like {@link OrderDao}, including its exceptions, but nothing survives the
+ * JVM.
+ *
+ * <p>Orders are held in a ConcurrentHashMap keyed by orderId. Stored orders are never modified;
+ * an update swaps in a new order with {@link ConcurrentMap#replace(Object, Object, Object)}, which
+ * compares by identity here, so a version check and the write form one atomic step without
+ * locking. A sorted set of ids gives getOrders a stable page order and a per-customer index of
+ * ids serves {@link #getOrdersByCustomer}. Both are brought in line with the map after each
+ * write, so a reader can briefly see an id whose order is gone or has moved; such ids are skipped.
+ */
+public class InMemoryOrderRepository implements OrderRepository {
+    private static final int MAX_CREATE_ATTEMPTS = 10;
+
+    private final ConcurrentMap<String, Order> orders = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> orderIds = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, Set<String>> orderIdsByCustomer = new ConcurrentHashMap<>();
+    private final int pageSize;
+
+    /**
+     * Creates an empty store that hands out pages of up to pageSize orders.
+     */
+    public InMemoryOrderRepository(final int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        final Order order = orderId == null ? null : orders.get(orderId);
+        if (order == null) {
+            throw new OrderDoesNotExistException("Order " + orderId + " does not exist");
+        }
+        return copy(order);
+    }
+
+    @Override
+    public OrderPage getOrders(final String exclusiveStartOrderId) {
+        final Iterator<String> ids = isNullOrEmpty(exclusiveStartOrderId)
+                ? orderIds.iterator()
+                : orderIds.tailSet(exclusiveStartOrderId, false).iterator();
+        final List<Order> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && ids.hasNext()) {
+            final Order order = orders.get(ids.next());
+            if (order != null) {
+                page.add(copy(order));
+            }
+        }
+        final OrderPage.OrderPageBuilder builder = OrderPage.builder().orders(page);
+        if (ids.hasNext() && !page.isEmpty()) {
+            builder.lastEvaluatedKey(page.get(page.size() - 1).getOrderId());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the orders of one customer in orderId order, empty if there are none.
+     */
+    public List<Order> getOrdersByCustomer(final String customerId) {
+        final Set<String> ids = orderIdsByCustomer.getOrDefault(
+                validateCustomerId(customerId), Collections.emptySet());
+        final List<Order> result = new ArrayList<>(ids.size());
+        for (String orderId : ids) {
+            final Order order = orders.get(orderId);
+            // The index trails the map, so check the order still belongs to the customer
+            if (order != null && customerId.equals(order.getCustomerId())) {
+                result.add(copy(order));
+            }
+        }
+        result.sort(Comparator.comparing(Order::getOrderId));
+        return result;
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("CreateOrderRequest was null");
+        }
+        final String customerId = validateCustomerId(request.getCustomerId());
+        if (request.getPreTaxAmount() == null) {
+            throw new IllegalArgumentException("preTaxAmount was null");
+        }
+        if (request.getPostTaxAmount() == null) {
+            throw new IllegalArgumentException("postTaxAmount was null");
+        }
+
+        for (int tries = 0; tries < MAX_CREATE_ATTEMPTS; tries++) {
+            final Order order = Order.builder()
+                    .orderId(request.getOrderId() != null ? request.getOrderId()
+                            : UUID.randomUUID().toString())
+                    .customerId(customerId)
+                    .preTaxAmount(Money.valueOf(request.getPreTaxAmount()))
+                    .postTaxAmount(Money.valueOf(request.getPostTaxAmount()))
+                    .version(1L)
+                    .build();
+            if (orders.putIfAbsent(order.getOrderId(), order) == null) {
+                orderIds.add(order.getOrderId());
+                if (!orders.containsKey(order.getOrderId())) {
+                    orderIds.remove(order.getOrderId()); // deleted in the meantime
+                }
+                syncCustomerIndex(customerId, order.getOrderId());
+                return copy(order);
+            }
+            if (request.getOrderId() != null) {
+                throw new CouldNotCreateOrderException("Order " + request.getOrderId()
+                        + " already exists");
+            }
+        }
+        throw new CouldNotCreateOrderException("Too many ID collisions");
+    }
+
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        if (requests == null) {
+            throw new IllegalArgumentException("CreateOrderRequest list was null");
+        }
+        final List<OrderWriteResult> results = new ArrayList<>(requests.size());
+        for (CreateOrderRequest request : requests) {
+            final Order existing = request == null || request.getOrderId() == null
+                    ? null : orders.get(request.getOrderId());
+            if (existing != null) {
+                results.add(OrderWriteResult.alreadyCreated(copy(existing)));
+                continue;
+            }
+            try {
+                results.add(OrderWriteResult.success(createOrder(request)));
+            } catch (IllegalArgumentException | CouldNotCreateOrderException e) {
+                results.add(OrderWriteResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order to update was null");
+        }
+        if (isNullOrEmpty(order.getOrderId())) {
+            throw new IllegalArgumentException("orderId was null or empty");
+        }
+        final String customerId = validateCustomerId(order.getCustomerId());
+        if (order.getPreTaxAmount() == null || order.getPostTaxAmount() == null
+                || order.getVersion() == null) {
+            throw new IllegalArgumentException("One of the required numeric fields was null");
+        }
+
+        final Order current = orders.get(order.getOrderId());
+        if (current == null || !current.getVersion().equals(order.getVersion())) {
+            throw new UnableToUpdateException("Order missing or version mismatch");
+        }
+        final Order updated = Order.builder()
+                .orderId(current.getOrderId())
+                .customerId(customerId)
+                .preTaxAmount(order.getPreTaxAmount())
+                .postTaxAmount(order.getPostTaxAmount())
+                .version(current.getVersion() + 1)
+                .build();
+        // Fails if another writer replaced or removed the order since it was read above
+        if (!orders.replace(current.getOrderId(), current, updated)) {
+            throw new UnableToUpdateException("Order missing or version mismatch");
+        }
+        if (!customerId.equals(current.getCustomerId())) {
+            syncCustomerIndex(customerId, current.getOrderId());
+            syncCustomerIndex(current.getCustomerId(), current.getOrderId());
+        }
+        return copy(updated);
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        final Order current = orderId == null ? null : orders.get(orderId);
+        if (current == null || !orders.remove(orderId, current)) {
+            throw new UnableToDeleteException("Competing update or order missing");
+        }
+        orderIds.remove(orderId);
+        syncCustomerIndex(current.getCustomerId(), orderId);
+        return copy(current);
+    }
+
+    // Adds or removes the order in the customer's index depending on what the map holds right now.
+    // Every write syncs the customers it moved the order between after it changed the map, and the
+    // map is read under the index entry's lock, so the last sync of a customer sees the last write.
+    private void syncCustomerIndex(final String customerId, final String orderId) {
+        orderIdsByCustomer.compute(customerId, (key, ids) -> {
+            final Order order = orders.get(orderId);
+            final Set<String> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            if (order != null && customerId.equals(order.getCustomerId())) {
+                result.add(orderId);
+            } else {
+                result.remove(orderId);
+            }
+            return result.isEmpty() ? null : result;
+        });
+    }
+
+    // Stored orders are shared between threads and must not be changed through a returned reference
+    private static Order copy(final Order order) {
+        return Order.builder()
+                .orderId(order.getOrderId())
+                .customerId(order.getCustomerId())
+                .preTaxAmount(order.getPreTaxAmount())
+                .postTaxAmount(order.getPostTaxAmount())
+                .version(order.getVersion())
+                .build();
+    }
+
+    private static String validateCustomerId(final String customerId) {
+        if (isNullOrEmpty(customerId)) {
+            throw new IllegalArgumentException("customerId was null or empty");
+        }
+        return customerId;
+    }
+
+    private static boolean isNullOrEmpty(final String string) {
+        return string == null || string.isEmpty();
+    }
+}
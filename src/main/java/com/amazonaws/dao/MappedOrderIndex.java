@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * A memory-mapped open addressing hash table from the 64 bit hash of an orderId to the location of
+ * the order's latest record in the {@link OrderLog}. Slots are 16 bytes, hash then location, and
+ * are probed linearly. Two orderIds can share a hash, so every lookup is confirmed by the caller
+ * against the orderId stored in the log. A deleted order leaves a tombstone that keeps its hash,
+ * so probe sequences and scan positions stay intact until the table is next resized.
+ *
+ * <p>The header records whether the table was closed cleanly and up to which log position it is
+ * complete. Any other state means the table may be stale, and it is rebuilt from the log.
+ * The caller serializes writes and keeps reads from overlapping them.
+ */
+final class MappedOrderIndex implements Closeable {
+    static final long NOT_FOUND = -1;
+
+    private static final int MAGIC = 0x4f524458; // "ORDX"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FORMAT_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int CLEAN_OFFSET = 12;
+    private static final int LOG_END_OFFSET = 16;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int MAX_CAPACITY = 1 << 26; // keeps the mapping under 2 GiB
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path file;
+    private MappedByteBuffer table;
+    private int capacity;
+    private int used; // live entries and tombstones
+    private int live;
+
+    private MappedOrderIndex(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps an index that was closed cleanly at the given log end, or returns null if there is
+     * none, in which case the caller replays the log into {@link #create}.
+     */
+    static MappedOrderIndex openClean(final Path file, final long logEnd) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return null;
+        }
+        final MappedOrderIndex index = new MappedOrderIndex(file);
+        index.map(file, -1);
+        final MappedByteBuffer table = index.table;
+        if (table.getInt(MAGIC_OFFSET) != MAGIC || table.getInt(FORMAT_OFFSET) != FORMAT
+                || table.getInt(CLEAN_OFFSET) != 1 || table.getLong(LOG_END_OFFSET) != logEnd
+                || Files.size(file) != HEADER_BYTES
+                        + (long) table.getInt(CAPACITY_OFFSET) * SLOT_BYTES) {
+            return null;
+        }
+        index.capacity = table.getInt(CAPACITY_OFFSET);
+        for (int slot = 0; slot < index.capacity; slot++) {
+            final long hash = index.hashAt(slot);
+            if (hash != EMPTY) {
+                index.used++;
+                if (index.locationAt(slot) != TOMBSTONE) {
+                    index.live++;
+                }
+            }
+        }
+        index.markDirty();
+        return index;
+    }
+
+    /**
+     * Creates an empty index, replacing the file if there is one.
+     */
+    static MappedOrderIndex create(final Path file, final int initialCapacity) throws IOException {
+        final MappedOrderIndex index = new MappedOrderIndex(file);
+        Files.deleteIfExists(file);
+        index.capacity = tableSize(initialCapacity);
+        index.map(file, index.capacity);
+        index.markDirty();
+        return index;
+    }
+
+    private void map(final Path path, final int slots) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = slots < 0 ? channel.size() : HEADER_BYTES + (long) slots * SLOT_BYTES;
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        if (slots >= 0) {
+            table.putInt(MAGIC_OFFSET, MAGIC).putInt(FORMAT_OFFSET, FORMAT)
+                    .putInt(CAPACITY_OFFSET, slots);
+        }
+    }
+
+    // The table is only trusted after a clean close, so mark it dirty before it changes
+    private void markDirty() {
+        table.putInt(CLEAN_OFFSET, 0);
+        table.force();
+    }
+
+    static long hash(final String orderId) {
+        // FNV-1a over the UTF-16 code units, then a murmur3 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < orderId.length(); i++) {
+            hash = (hash ^ orderId.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe1a85ec3L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Returns the first location stored under the hash that the predicate accepts, or NOT_FOUND.
+     */
+    long find(final long hash, final LongPredicate isOrder) {
+        final int slot = findSlot(hash, isOrder);
+        return slot < 0 ? NOT_FOUND : locationAt(slot);
+    }
+
+    /**
+     * Points the entry the predicate accepts at a new location, adding an entry if there is none.
+     */
+    void put(final long hash, final LongPredicate isOrder, final long location) throws IOException {
+        final int existing = findSlot(hash, isOrder);
+        if (existing >= 0) {
+            setLocation(existing, location);
+            return;
+        }
+        if (used + 1 > capacity * MAX_LOAD) {
+            resize();
+        }
+        int slot = home(hash);
+        while (true) {
+            final long slotHash = hashAt(slot);
+            if (slotHash == EMPTY || locationAt(slot) == TOMBSTONE) {
+                if (slotHash == EMPTY) {
+                    used++;
+                }
+                live++;
+                setLocation(slot, location);
+                table.putLong(offset(slot), hash);
+                return;
+            }
+            slot = next(slot);
+        }
+    }
+
+    /**
+     * Removes the entry the predicate accepts. Returns false if there is none.
+     */
+    boolean remove(final long hash, final LongPredicate isOrder) {
+        final int slot = findSlot(hash, isOrder);
+        if (slot < 0) {
+            return false;
+        }
+        setLocation(slot, TOMBSTONE);
+        live--;
+        return true;
+    }
+
+    /**
+     * Moves the entry with the hash from one location to another if it still points at the first.
+     */
+    boolean replace(final long hash, final long expected, final long location) {
+        final int slot = findSlot(hash, candidate -> candidate == expected);
+        if (slot < 0) {
+            return false;
+        }
+        setLocation(slot, location);
+        return true;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return live;
+    }
+
+    /**
+     * The slot just after the first entry with the hash, dead or alive, at or after its home slot,
+     * or -1 if there is no such entry.
+     */
+    int slotAfter(final long hash) {
+        for (int slot = home(hash), probes = 0; probes < capacity; slot = next(slot), probes++) {
+            final long slotHash = hashAt(slot);
+            if (slotHash == EMPTY) {
+                break;
+            }
+            if (slotHash == hash) {
+                return slot + 1;
+            }
+        }
+        return -1;
+    }
+
+    /** The live location in a slot, or NOT_FOUND if the slot is empty or a tombstone. */
+    long liveLocationAt(final int slot) {
+        return hashAt(slot) == EMPTY || locationAt(slot) == TOMBSTONE ? NOT_FOUND
+                : locationAt(slot);
+    }
+
+    long hashAt(final int slot) {
+        return table.getLong(offset(slot));
+    }
+
+    private long locationAt(final int slot) {
+        return table.getLong(offset(slot) + 8);
+    }
+
+    private void setLocation(final int slot, final long location) {
+        table.putLong(offset(slot) + 8, location);
+    }
+
+    private int findSlot(final long hash, final LongPredicate isOrder) {
+        for (int slot = home(hash), probes = 0; probes < capacity; slot = next(slot), probes++) {
+            final long slotHash = hashAt(slot);
+            if (slotHash == EMPTY) {
+                return -1;
+            }
+            if (slotHash == hash) {
+                final long location = locationAt(slot);
+                if (location != TOMBSTONE && isOrder.test(location)) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Doubles the table into a new file, dropping tombstones, and swaps it in with a rename
+    private void resize() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Order index is full");
+        }
+        final Path resized = file.resolveSibling(file.getFileName() + ".resize");
+        Files.deleteIfExists(resized);
+        final MappedOrderIndex larger = new MappedOrderIndex(resized);
+        larger.capacity = capacity * 2;
+        larger.map(resized, larger.capacity);
+        larger.markDirty();
+        for (int slot = 0; slot < capacity; slot++) {
+            final long location = liveLocationAt(slot);
+            if (location != NOT_FOUND) {
+                larger.insertNew(hashAt(slot), location);
+            }
+        }
+        larger.table.force();
+        Files.move(resized, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        table = larger.table;
+        capacity = larger.capacity;
+        used = larger.used;
+        live = larger.live;
+    }
+
+    private void insertNew(final long hash, final long location) {
+        int slot = home(hash);
+        while (hashAt(slot) != EMPTY) {
+            slot = next(slot);
+        }
+        table.putLong(offset(slot), hash);
+        setLocation(slot, location);
+        used++;
+        live++;
+    }
+
+    /**
+     * Writes the table out and marks it complete up to the given log end.
+     */
+    void closeClean(final long logEnd) {
+        table.force();
+        table.putLong(LOG_END_OFFSET, logEnd);
+        table.putInt(CLEAN_OFFSET, 1);
+        table.force();
+    }
+
+    @Override
+    public void close() {
+        table.force();
+    }
+
+    int home(final long hash) {
+        return (int) (hash & (capacity - 1));
+    }
+
+    private int next(final int slot) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    private static int offset(final int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int tableSize(final int entries) {
+        int size = 16;
+        while (size < entries / MAX_LOAD && size < MAX_CAPACITY) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
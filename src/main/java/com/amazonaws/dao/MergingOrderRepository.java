@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves version conflicts of {@link #updateOrder} on the server instead of returning them to
+ * the client. When the wrapped repository rejects an update because the stored version moved on,
+ * the order is read again consistently, merged with the update by an {@link OrderMergePolicy} and
+ * written at the version just read, up to maxAttempts times. The conflict reaches the client only
+ * when the policy declines or every attempt lost to yet another write.
+ *
+ * <p>Each resolved conflict publishes how many attempts it took and whether it succeeded. All
+ * other operations go straight to the wrapped repository.
+ */
+public class MergingOrderRepository implements OrderRepository {
+    private final OrderRepository delegate;
+    private final OrderMergePolicy policy;
+    private final int maxAttempts;
+    private final EmbeddedMetrics metrics; // null to publish nothing
+
+    /**
+     * Merges the conflicts of delegate by policy in at most maxAttempts writes. A null metrics
+     * publishes nothing.
+     */
+    public MergingOrderRepository(final OrderRepository delegate, final OrderMergePolicy policy,
+                                  final int maxAttempts, final EmbeddedMetrics metrics) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.maxAttempts = maxAttempts;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        UnableToUpdateException conflict;
+        try {
+            return delegate.updateOrder(order);
+        } catch (UnableToUpdateException e) {
+            conflict = e;
+        }
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            final Order current;
+            try {
+                current = delegate.getLatestOrder(order.getOrderId());
+            } catch (OrderDoesNotExistException e) {
+                publish(attempt, false); // deleted, nothing to merge with
+                throw conflict;
+            }
+            final Order merged = policy.merge(current, order);
+            if (merged == null) {
+                publish(attempt, false);
+                throw conflict;
+            }
+            try {
+                final Order updated = delegate.updateOrder(merged);
+                publish(attempt, true);
+                return updated;
+            } catch (UnableToUpdateException e) {
+                conflict = e;
+            }
+        }
+        publish(maxAttempts, false);
+        throw conflict;
+    }
+
+    private void publish(final int attempts, final boolean merged) {
+        if (metrics == null) {
+            return;
+        }
+        final Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("UpdateMergeAttempts", attempts);
+        values.put("UpdateMergeSuccesses", merged ? 1 : 0);
+        values.put("UpdateMergeFailures", merged ? 0 : 1);
+        metrics.publish(values);
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        return delegate.getOrder(orderId);
+    }
+
+    @Override
+    public Order getLatestOrder(final String orderId) {
+        return delegate.getLatestOrder(orderId);
+    }
+
+    @Override
+    public OrderPage getOrders(final String exclusiveStartOrderId) {
+        return delegate.getOrders(exclusiveStartOrderId);
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        return delegate.createOrder(request);
+    }
+
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        return delegate.createOrders(requests);
+    }
+
+    @Override
+    public Order adjustAmounts(final String orderId, final Money preTaxDelta,
+                               final Money postTaxDelta, final boolean allowNegative) {
+        return delegate.adjustAmounts(orderId, preTaxDelta, postTaxDelta, allowNegative);
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        return delegate.deleteOrder(orderId);
+    }
+}
@@ -20,72 +20,154 @@ package com.amazonaws.dao;
 import com.amazonaws.exception.CouldNotCreateOrderException;
 import com.amazonaws.exception.OrderDoesNotExistException;
 import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.exception.TransactionConflictException;
 import com.amazonaws.exception.UnableToDeleteException;
 import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.model.Money;
 import com.amazonaws.model.Order;
 import com.amazonaws.model.OrderPage;
 import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.request.OrderMutation;
+import com.amazonaws.model.response.OrderMutationFailure;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracing;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.IdempotentParameterMismatchException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.RequestLimitExceededException;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionInProgressException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-public class OrderDao {
+public class OrderDao implements OrderRepository {
 
     // Constants used across operations
     private static final String UPDATE_EXPRESSION = "SET customerId = :cid, preTaxAmount = :pre, postTaxAmount = :post ADD version :o";
-    private static final String ORDER_ID = "orderId";
+    private static final String UPDATE_CONDITION = "attribute_exists(orderId) AND version = :v";
+    private static final String ADJUST_EXPRESSION =
+            "ADD preTaxAmount :dpre, postTaxAmount :dpost, version :o SET lastAdjustmentId = :aid";
+    // a retried request carries the same id, and must not add the deltas again
+    private static final String ADJUST_CONDITION = "attribute_exists(orderId)"
+            + " AND (attribute_not_exists(lastAdjustmentId) OR lastAdjustmentId <> :aid)";
+    private static final String LAST_ADJUSTMENT_ID = "lastAdjustmentId";
+    private static final String ORDER_ID = OrderItemCodec.ORDER_ID;
     private static final String PRE_TAX_AMOUNT_WAS_NULL = "preTaxAmount was null";
     private static final String POST_TAX_AMOUNT_WAS_NULL = "postTaxAmount was null";
     private static final String VERSION_WAS_NULL = "version was null";
+    private static final int MAX_BATCH_WRITE_ITEMS = 25; // BatchWriteItem limit per call
+    private static final int MAX_BATCH_WRITE_RETRIES = 3;
+    private static final long BATCH_WRITE_BACKOFF_MILLIS = 25;
+    private static final int MAX_TRANSACT_ITEMS = 100; // TransactWriteItems limit per call
+    private static final int MAX_CLIENT_REQUEST_TOKEN_LENGTH = 36; // TransactWriteItems limit
 
     // Fields injected by Dagger via OrderModule
     private final String tableName; // DynamoDB table name (injected from env var)
     private final DynamoDbClient dynamoDb; // Low-level DynamoDB client
     private final int pageSize; // Used for paginated queries
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter; // fed call latencies, may be null
+    private final Executor putExecutor; // runs conditional creates in parallel; inline when null
+
+    public OrderDao(final DynamoDbClient dynamoDb, final String tableName, final int pageSize) {
+        this(dynamoDb, tableName, pageSize, null);
+    }
+
+    public OrderDao(final DynamoDbClient dynamoDb, final String tableName, final int pageSize,
+                    final AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this(dynamoDb, tableName, pageSize, concurrencyLimiter, null);
+    }
 
     /**
      * Constructor used by Dagger to provide an OrderDao.
      * The values come from OrderModule's @Provides method.
      */
-    public OrderDao(final DynamoDbClient dynamoDb, final String tableName, final int pageSize) {
+    public OrderDao(final DynamoDbClient dynamoDb, final String tableName, final int pageSize,
+                    final AdaptiveConcurrencyLimiter concurrencyLimiter,
+                    final Executor putExecutor) {
         this.dynamoDb = dynamoDb;
         this.tableName = tableName;
         this.pageSize = pageSize;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.putExecutor = putExecutor;
     }
 
     /**
      * Fetches a single order by ID, or throws if it doesn't exist.
      */
+    @Override
     public Order getOrder(final String orderId) {
+        try (Span span = Tracing.span("OrderDao.getOrder")) {
+            return getItem(orderId, false);
+        }
+    }
+
+    /**
+     * Fetches a single order by ID with a strongly consistent read, which costs twice as much.
+     */
+    @Override
+    public Order getLatestOrder(final String orderId) {
+        try (Span span = Tracing.span("OrderDao.getLatestOrder")) {
+            return getItem(orderId, true);
+        }
+    }
+
+    private Order getItem(final String orderId, final boolean consistentRead) {
         try {
-            return Optional.ofNullable(
-                    dynamoDb.getItem(GetItemRequest.builder()
-                            .tableName(tableName)
-                            .key(Collections.singletonMap(ORDER_ID, AttributeValue.builder().s(orderId).build()))
-                            .build()))
+            final GetItemRequest.Builder get = GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Collections.singletonMap(ORDER_ID,
+                            AttributeValue.builder().s(orderId).build()))
+                    .consistentRead(consistentRead);
+            return Optional.ofNullable(call(get, request -> dynamoDb.getItem(request.build())))
                     .map(GetItemResponse::item)
-                    .map(this::convert) // Converts raw DynamoDB item map into Order POJO
+                    .map(OrderItemCodec::decode)
                     .orElseThrow(() -> new OrderDoesNotExistException("Order " + orderId + " does not exist"));
         } catch (ResourceNotFoundException e) {
             throw new TableDoesNotExistException("Order table " + tableName + " does not exist");
@@ -95,25 +177,75 @@ public class OrderDao {
     /**
      * Returns a page of orders, optionally starting after a given ID.
      */
+    @Override
     public OrderPage getOrders(final String exclusiveStartOrderId) {
+        try (Span span = Tracing.span("OrderDao.getOrders")) {
+            return scan(ScanRequest.builder().limit(pageSize), exclusiveStartOrderId);
+        }
+    }
+
+    /**
+     * Returns a page of one segment of a parallel scan, optionally starting after a given ID.
+     * Each of the totalSegments segments can be scanned independently by its own worker.
+     */
+    public OrderPage scanSegment(final int segment, final int totalSegments,
+                                 final String exclusiveStartOrderId, final int limit) {
+        try (Span span = Tracing.span("OrderDao.scanSegment")) {
+            if (segment < 0 || segment >= totalSegments) {
+                throw new IllegalArgumentException("segment must be in [0, " + totalSegments + ")");
+            }
+            return scan(ScanRequest.builder()
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .limit(limit), exclusiveStartOrderId);
+        }
+    }
+
+    /**
+     * Returns the pages of one segment of a parallel scan after a given ID, up to the last one,
+     * keeping pagesAhead pages requested on executor ahead of the caller.
+     */
+    public OrderPageIterator scanSegmentPages(final int segment, final int totalSegments,
+            final String exclusiveStartOrderId, final int limit, final int pagesAhead,
+            final Executor executor) {
+        return new OrderPageIterator(key -> scanSegment(segment, totalSegments, key, limit),
+                exclusiveStartOrderId, pagesAhead, executor);
+    }
+
+    /**
+     * Returns a page of the orders of one customer, optionally starting after a given ID. The
+     * filter is applied after limit items have been read, so a page may hold fewer orders, or
+     * none, while a lastEvaluatedKey still points to more.
+     */
+    public OrderPage scanByCustomer(final String customerId, final String exclusiveStartOrderId,
+            final int limit) {
+        try (Span span = Tracing.span("OrderDao.scanByCustomer")) {
+            return scan(ScanRequest.builder()
+                    .filterExpression("customerId = :cid")
+                    .expressionAttributeValues(Collections.singletonMap(":cid",
+                            AttributeValue.builder().s(validateCustomerId(customerId)).build()))
+                    .limit(limit), exclusiveStartOrderId);
+        }
+    }
+
+    private OrderPage scan(final ScanRequest.Builder scanBuilder,
+            final String exclusiveStartOrderId) {
         final ScanResponse result;
 
         try {
-            ScanRequest.Builder scanBuilder = ScanRequest.builder()
-                    .tableName(tableName)
-                    .limit(pageSize);
+            scanBuilder.tableName(tableName);
             if (!isNullOrEmpty(exclusiveStartOrderId)) {
                 scanBuilder.exclusiveStartKey(Collections.singletonMap(ORDER_ID,
                         AttributeValue.builder().s(exclusiveStartOrderId).build()));
             }
-            result = dynamoDb.scan(scanBuilder.build());
+            result = call(scanBuilder, request -> dynamoDb.scan(request.build()));
         } catch (ResourceNotFoundException e) {
             throw new TableDoesNotExistException("Order table " + tableName + " does not exist");
         }
 
         // Convert all raw DynamoDB items into POJOs
         final List<Order> orders = result.items().stream()
-                .map(this::convert)
+                .map(OrderItemCodec::decode)
                 .collect(Collectors.toList());
 
         // Prepare a response object with optional pagination key
@@ -134,61 +266,130 @@ public class OrderDao {
      * Updates an order with new values, performing optimistic locking via
      * `version`.
      */
+    @Override
     public Order updateOrder(final Order order) {
-        if (order == null)
-            throw new IllegalArgumentException("Order to update was null");
+        try (Span span = Tracing.span("OrderDao.updateOrder")) {
+            if (order == null) {
+                throw new IllegalArgumentException("Order to update was null");
+            }
 
-        String orderId = order.getOrderId();
-        if (isNullOrEmpty(orderId))
-            throw new IllegalArgumentException("orderId was null or empty");
+            String orderId = order.getOrderId();
+            if (isNullOrEmpty(orderId)) {
+                throw new IllegalArgumentException("orderId was null or empty");
+            }
 
-        // Expression values for update statement
-        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
-        expressionAttributeValues.put(":cid",
-                AttributeValue.builder().s(validateCustomerId(order.getCustomerId())).build());
-        try {
-            expressionAttributeValues.put(":pre",
-                    AttributeValue.builder().n(order.getPreTaxAmount().toString()).build());
-            expressionAttributeValues.put(":post",
-                    AttributeValue.builder().n(order.getPostTaxAmount().toString()).build());
-            expressionAttributeValues.put(":v", AttributeValue.builder().n(order.getVersion().toString()).build());
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException("One of the required numeric fields was null");
+            final UpdateItemRequest.Builder update = UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Collections.singletonMap(ORDER_ID,
+                            AttributeValue.builder().s(order.getOrderId()).build()))
+                    .returnValues(ReturnValue.ALL_NEW)
+                    .updateExpression(UPDATE_EXPRESSION)
+                    .conditionExpression(UPDATE_CONDITION)
+                    .expressionAttributeValues(updateValues(order));
+            final UpdateItemResponse result;
+            try {
+                result = call(update, request -> dynamoDb.updateItem(request.build()));
+            } catch (ConditionalCheckFailedException e) {
+                throw new UnableToUpdateException("Order missing or version mismatch");
+            } catch (ResourceNotFoundException e) {
+                throw new TableDoesNotExistException("Order table was deleted");
+            }
+            return OrderItemCodec.decode(result.attributes());
         }
-        expressionAttributeValues.put(":o", AttributeValue.builder().n("1").build()); // Increment version by 1
+    }
 
-        final UpdateItemResponse result;
-        try {
-            result = dynamoDb.updateItem(UpdateItemRequest.builder()
+    /**
+     * Adds the deltas to the amounts of an order with one UpdateItem ADD, so adjustments commute
+     * and need no version. A lowered amount is conditioned on staying non-negative unless
+     * allowNegative; the old item returned on a failed condition tells that apart from a missing
+     * order.
+     *
+     * <p>ADD is not idempotent, so each call records a fresh id in the item and is conditioned on
+     * the item not carrying it yet: when the SDK retries a call whose first attempt was applied,
+     * the retry fails that condition and the order it returns is the adjusted one.
+     */
+    @Override
+    public Order adjustAmounts(final String orderId, final Money preTaxDelta,
+                               final Money postTaxDelta, final boolean allowNegative) {
+        try (Span span = Tracing.span("OrderDao.adjustAmounts")) {
+            if (isNullOrEmpty(orderId)) {
+                throw new IllegalArgumentException("orderId was null or empty");
+            }
+            if (delta(preTaxDelta).signum() == 0 && delta(postTaxDelta).signum() == 0) {
+                throw new IllegalArgumentException(
+                        "preTaxAmountDelta and postTaxAmountDelta were both null or zero");
+            }
+
+            final Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":dpre", AttributeValue.builder().n(delta(preTaxDelta).toString()).build());
+            values.put(":dpost",
+                    AttributeValue.builder().n(delta(postTaxDelta).toString()).build());
+            values.put(":o", AttributeValue.builder().n("1").build());
+            final String adjustmentId = UUID.randomUUID().toString();
+            values.put(":aid", AttributeValue.builder().s(adjustmentId).build());
+            final StringBuilder condition = new StringBuilder(ADJUST_CONDITION);
+            if (!allowNegative && delta(preTaxDelta).signum() < 0) {
+                // amount + delta >= 0, written as amount >= -delta
+                condition.append(" AND preTaxAmount >= :minpre");
+                values.put(":minpre",
+                        AttributeValue.builder().n(preTaxDelta.negate().toString()).build());
+            }
+            if (!allowNegative && delta(postTaxDelta).signum() < 0) {
+                condition.append(" AND postTaxAmount >= :minpost");
+                values.put(":minpost",
+                        AttributeValue.builder().n(postTaxDelta.negate().toString()).build());
+            }
+            final UpdateItemRequest.Builder update = UpdateItemRequest.builder()
                     .tableName(tableName)
-                    .key(Collections.singletonMap(ORDER_ID, AttributeValue.builder().s(order.getOrderId()).build()))
+                    .key(Collections.singletonMap(ORDER_ID,
+                            AttributeValue.builder().s(orderId).build()))
                     .returnValues(ReturnValue.ALL_NEW)
-                    .updateExpression(UPDATE_EXPRESSION)
-                    .conditionExpression("attribute_exists(orderId) AND version = :v")
-                    .expressionAttributeValues(expressionAttributeValues)
-                    .build());
-        } catch (ConditionalCheckFailedException e) {
-            throw new UnableToUpdateException("Order missing or version mismatch");
-        } catch (ResourceNotFoundException e) {
-            throw new TableDoesNotExistException("Order table was deleted");
+                    .updateExpression(ADJUST_EXPRESSION)
+                    .conditionExpression(condition.toString())
+                    .expressionAttributeValues(values)
+                    .returnValuesOnConditionCheckFailure(
+                            ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            final UpdateItemResponse result;
+            try {
+                result = call(update, request -> dynamoDb.updateItem(request.build()));
+            } catch (ConditionalCheckFailedException e) {
+                if (!e.hasItem() || e.item().isEmpty()) {
+                    throw new OrderDoesNotExistException("Order " + orderId + " does not exist");
+                }
+                final AttributeValue lastAdjustmentId = e.item().get(LAST_ADJUSTMENT_ID);
+                if (lastAdjustmentId != null && adjustmentId.equals(lastAdjustmentId.s())) {
+                    // an earlier attempt of this call was applied
+                    return OrderItemCodec.decode(e.item());
+                }
+                throw new UnableToUpdateException("Adjustment would make an amount negative");
+            } catch (ResourceNotFoundException e) {
+                throw new TableDoesNotExistException("Order table was deleted");
+            }
+            return OrderItemCodec.decode(result.attributes());
         }
-        return convert(result.attributes());
+    }
+
+    private static Money delta(final Money delta) {
+        return delta == null ? Money.ZERO : delta;
     }
 
     /**
      * Deletes an order by ID. Throws if it doesn’t exist.
      */
+    @Override
     public Order deleteOrder(final String orderId) {
-        try {
-            return Optional.ofNullable(
-                    dynamoDb.deleteItem(DeleteItemRequest.builder()
-                            .tableName(tableName)
-                            .key(Collections.singletonMap(ORDER_ID, AttributeValue.builder().s(orderId).build()))
-                            .conditionExpression("attribute_exists(orderId)")
-                            .returnValues(ReturnValue.ALL_OLD)
-                            .build()))
+        try (Span span = Tracing.span("OrderDao.deleteOrder")) {
+            final DeleteItemRequest.Builder delete = DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Collections.singletonMap(ORDER_ID,
+                            AttributeValue.builder().s(orderId).build()))
+                    .conditionExpression("attribute_exists(orderId)")
+                    .returnValues(ReturnValue.ALL_OLD);
+            final DeleteItemResponse deleted =
+                    call(delete, request -> dynamoDb.deleteItem(request.build()));
+            return Optional.ofNullable(deleted)
                     .map(DeleteItemResponse::attributes)
-                    .map(this::convert)
+                    .map(OrderItemCodec::decode)
                     .orElseThrow(() -> new IllegalStateException("Deleted item was unexpectedly null"));
         } catch (ConditionalCheckFailedException e) {
             throw new UnableToDeleteException("Competing update or order missing");
@@ -200,60 +401,528 @@ public class OrderDao {
     /**
      * Creates a new order, retrying up to 10 times to ensure unique UUID.
      */
+    @Override
     public Order createOrder(final CreateOrderRequest request) {
-        if (request == null)
-            throw new IllegalArgumentException("CreateOrderRequest was null");
+        try (Span span = Tracing.span("OrderDao.createOrder")) {
+            if (request == null) {
+                throw new IllegalArgumentException("CreateOrderRequest was null");
+            }
+
+            int tries = 0;
+            while (tries < 10) {
+                try {
+                    final Order order = newOrder(request);
+                    final PutItemRequest.Builder put = PutItemRequest.builder()
+                            .tableName(tableName)
+                            .item(OrderItemCodec.encode(order))
+                            .conditionExpression("attribute_not_exists(orderId)");
+                    call(put, putRequest -> dynamoDb.putItem(putRequest.build()));
+                    return order;
+                } catch (ConditionalCheckFailedException e) {
+                    if (request.getOrderId() != null) {
+                        throw new CouldNotCreateOrderException("Order " + request.getOrderId()
+                                + " already exists");
+                    }
+                    tries++; // Retry on ID collision
+                } catch (ResourceNotFoundException e) {
+                    throw new TableDoesNotExistException("Order table was deleted");
+                }
+            }
+            throw new CouldNotCreateOrderException("Too many ID collisions");
+        }
+    }
+
+    /**
+     * Creates a batch of orders with BatchWriteItem, 25 items per call. BatchWriteItem takes no
+     * condition expressions, so unlike createOrder the puts are unconditional; the random UUID
+     * order ids make a collision practically impossible. Items DynamoDB leaves unprocessed are
+     * retried with backoff and reported as failed if they are still unprocessed afterwards, and
+     * a call that throws fails only its own items, since earlier calls are already written. Only
+     * a missing table fails the whole batch.
+     *
+     * <p>Requests that carry an orderId are instead written each with its own PutItem on
+     * condition that the id is free, so a retried batch never overwrites an order that was since
+     * updated. An order already stored under the id is returned as alreadyCreated. These puts run
+     * in parallel on the put executor, under the caller's Deadline, alongside the batch writes.
+     * Returns one result per request, in request order.
+     */
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        try (Span span = Tracing.span("OrderDao.createOrders")) {
+            if (requests == null) {
+                throw new IllegalArgumentException("CreateOrderRequest list was null");
+            }
+
+            final OrderWriteResult[] results = new OrderWriteResult[requests.size()];
+            final Map<String, Integer> indexByOrderId = new HashMap<>();
+            final List<WriteRequest> writes = new ArrayList<>(requests.size());
+            final List<CompletableFuture<Void>> puts = new ArrayList<>();
+            final Function<Order, OrderWriteResult> putIfAbsent = Deadline.carry(this::putIfAbsent);
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    if (requests.get(i) == null) {
+                        throw new IllegalArgumentException("CreateOrderRequest was null");
+                    }
+                    final Order order = newOrder(requests.get(i));
+                    if (requests.get(i).getOrderId() != null) {
+                        final int index = i;
+                        final Runnable put = () -> results[index] = putIfAbsent.apply(order);
+                        puts.add(CompletableFuture.runAsync(put,
+                                putExecutor != null ? putExecutor : Runnable::run));
+                        continue;
+                    }
+                    indexByOrderId.put(order.getOrderId(), i);
+                    writes.add(WriteRequest.builder()
+                            .putRequest(PutRequest.builder()
+                                    .item(OrderItemCodec.encode(order)).build())
+                            .build());
+                    results[i] = OrderWriteResult.success(order);
+                } catch (IllegalArgumentException e) {
+                    results[i] = OrderWriteResult.failure(e); // invalid requests are never sent
+                }
+            }
 
-        int tries = 0;
-        while (tries < 10) {
+            for (int start = 0; start < writes.size(); start += MAX_BATCH_WRITE_ITEMS) {
+                final List<WriteRequest> chunk =
+                        writes.subList(start,
+                                Math.min(start + MAX_BATCH_WRITE_ITEMS, writes.size()));
+                RuntimeException error = null;
+                List<WriteRequest> unprocessed;
+                try {
+                    unprocessed = batchWrite(chunk);
+                } catch (TableDoesNotExistException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    error = e;
+                    unprocessed = chunk;
+                }
+                for (WriteRequest write : unprocessed) {
+                    results[indexByOrderId.get(write.putRequest().item().get(ORDER_ID).s())] =
+                            OrderWriteResult.failure(error != null ? error
+                                    : new CouldNotCreateOrderException(
+                                            "Order was left unprocessed by BatchWriteItem"));
+                }
+            }
             try {
-                Map<String, AttributeValue> item = createOrderItem(request);
-                dynamoDb.putItem(PutItemRequest.builder()
-                        .tableName(tableName)
-                        .item(item)
-                        .conditionExpression("attribute_not_exists(orderId)")
-                        .build());
-
-                // Build Order object to return
-                return Order.builder()
-                        .orderId(item.get(ORDER_ID).s())
-                        .customerId(item.get("customerId").s())
-                        .preTaxAmount(new BigDecimal(item.get("preTaxAmount").n()))
-                        .postTaxAmount(new BigDecimal(item.get("postTaxAmount").n()))
-                        .version(Long.valueOf(item.get("version").n()))
-                        .build();
-            } catch (ConditionalCheckFailedException e) {
-                tries++; // Retry on ID collision
+                CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            return Arrays.asList(results);
+        }
+    }
+
+    // Writes an order under a caller derived id unless the id is taken, returning what is stored
+    private OrderWriteResult putIfAbsent(final Order order) {
+        try {
+            final PutItemRequest.Builder put = PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(OrderItemCodec.encode(order))
+                    .conditionExpression("attribute_not_exists(orderId)")
+                    .returnValuesOnConditionCheckFailure(
+                            ReturnValuesOnConditionCheckFailure.ALL_OLD);
+            call(put, request -> dynamoDb.putItem(request.build()));
+            return OrderWriteResult.success(order);
+        } catch (ConditionalCheckFailedException e) {
+            return OrderWriteResult.alreadyCreated(
+                    e.hasItem() && !e.item().isEmpty() ? OrderItemCodec.decode(e.item()) : order);
+        } catch (ResourceNotFoundException e) {
+            throw new TableDoesNotExistException("Order table " + tableName + " does not exist");
+        } catch (RuntimeException e) {
+            return OrderWriteResult.failure(e);
+        }
+    }
+
+    /**
+     * Deletes orders with BatchWriteItem, 25 ids per call, running the calls on executor in
+     * parallel. BatchWriteItem takes no condition expressions and returns no old items, so ids of
+     * orders that do not exist are deleted without complaint and the results carry only the
+     * orderId. With returnDeletedOrders each order is instead removed by deleteOrder, one
+     * DeleteItem with ALL_OLD per id, which costs a call per order but returns what was removed.
+     * Returns one result per id, in request order.
+     */
+    public List<OrderWriteResult> deleteOrders(final List<String> orderIds,
+            final boolean returnDeletedOrders, final Executor executor) {
+        try (Span span = Tracing.span("OrderDao.deleteOrders")) {
+            if (orderIds == null) {
+                throw new IllegalArgumentException("orderId list was null");
+            }
+
+            final OrderWriteResult[] results = new OrderWriteResult[orderIds.size()];
+            final List<CompletableFuture<Void>> calls = new ArrayList<>();
+            if (returnDeletedOrders) {
+                for (int i = 0; i < orderIds.size(); i++) {
+                    final int index = i;
+                    final Runnable delete = () -> results[index] = deleteOne(orderIds.get(index));
+                    calls.add(CompletableFuture.runAsync(delete, executor));
+                }
+            } else {
+                for (int start = 0; start < orderIds.size(); start += MAX_BATCH_WRITE_ITEMS) {
+                    final int from = start;
+                    final int to = Math.min(start + MAX_BATCH_WRITE_ITEMS, orderIds.size());
+                    final Runnable delete = () -> batchDelete(orderIds, from, to, results);
+                    calls.add(CompletableFuture.runAsync(delete, executor));
+                }
+            }
+            try {
+                CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            return Arrays.asList(results);
+        }
+    }
+
+    private OrderWriteResult deleteOne(final String orderId) {
+        if (isNullOrEmpty(orderId)) {
+            return OrderWriteResult.failure(
+                    new IllegalArgumentException("orderId was null or empty"));
+        }
+        try {
+            return OrderWriteResult.success(deleteOrder(orderId));
+        } catch (UnableToDeleteException e) {
+            return OrderWriteResult.failure(e);
+        }
+    }
+
+    // Deletes orderIds[from, to) in one BatchWriteItem call and fills in their results
+    private void batchDelete(final List<String> orderIds, final int from, final int to,
+                             final OrderWriteResult[] results) {
+        // BatchWriteItem rejects a request naming the same key twice
+        final Map<String, List<Integer>> indexesByOrderId = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            final String orderId = orderIds.get(i);
+            if (isNullOrEmpty(orderId)) {
+                results[i] = OrderWriteResult.failure(
+                        new IllegalArgumentException("orderId was null or empty"));
+            } else {
+                indexesByOrderId.computeIfAbsent(orderId, id -> new ArrayList<>()).add(i);
+                results[i] = OrderWriteResult.success(Order.builder().orderId(orderId).build());
+            }
+        }
+        if (indexesByOrderId.isEmpty()) {
+            return;
+        }
+
+        final List<WriteRequest> writes = new ArrayList<>(indexesByOrderId.size());
+        for (String orderId : indexesByOrderId.keySet()) {
+            writes.add(WriteRequest.builder().deleteRequest(DeleteRequest.builder()
+                    .key(Collections.singletonMap(ORDER_ID,
+                            AttributeValue.builder().s(orderId).build()))
+                    .build()).build());
+        }
+        for (WriteRequest write : batchWrite(writes)) {
+            for (int index : indexesByOrderId.get(write.deleteRequest().key().get(ORDER_ID).s())) {
+                results[index] = OrderWriteResult.failure(new UnableToDeleteException(
+                        "Order was left unprocessed by BatchWriteItem"));
+            }
+        }
+    }
+
+    /**
+     * Applies up to 100 mutations atomically with TransactWriteItems: either every create,
+     * update and delete lands or none of them does. Updates keep the optimistic-locking check on
+     * `version` and deletes check it when one is given. When DynamoDB cancels the transaction its
+     * cancellation reasons are mapped back to the mutations that caused them.
+     * Returns one order per mutation, in request order; deleted orders carry only their orderId.
+     */
+    public List<Order> transact(final List<OrderMutation> mutations) {
+        return transact(mutations, null);
+    }
+
+    /**
+     * As {@link #transact(List)}, passing clientRequestToken to DynamoDB so a retried call is not
+     * applied twice. Created orders get ids derived from the token, which keeps the retried
+     * request identical to the first one. Mutations DynamoDB rejects as invalid, and a token
+     * longer than 36 characters, throw IllegalArgumentException.
+     */
+    public List<Order> transact(final List<OrderMutation> mutations,
+            final String clientRequestToken) {
+        try (Span span = Tracing.span("OrderDao.transact")) {
+            if (mutations == null || mutations.isEmpty()) {
+                throw new IllegalArgumentException("mutations was null or empty");
+            }
+            if (mutations.size() > MAX_TRANSACT_ITEMS) {
+                throw new IllegalArgumentException("A transaction takes at most "
+                        + MAX_TRANSACT_ITEMS + " mutations");
+            }
+            if (clientRequestToken != null && (clientRequestToken.isEmpty()
+                    || clientRequestToken.length() > MAX_CLIENT_REQUEST_TOKEN_LENGTH)) {
+                throw new IllegalArgumentException("clientRequestToken must be 1 to "
+                        + MAX_CLIENT_REQUEST_TOKEN_LENGTH + " characters long");
+            }
+
+            final List<TransactWriteItem> items = new ArrayList<>(mutations.size());
+            final List<Order> orders = new ArrayList<>(mutations.size());
+            final Set<String> orderIds = new HashSet<>();
+            for (int i = 0; i < mutations.size(); i++) {
+                final OrderMutation mutation = mutations.get(i);
+                if (mutation == null || mutation.getType() == null) {
+                    throw new IllegalArgumentException("Mutation " + i + " or its type was null");
+                }
+                final String orderId = mutation.getType() == OrderMutation.Type.CREATE
+                        ? newOrderId(clientRequestToken, i) : mutation.getOrderId();
+                if (isNullOrEmpty(orderId)) {
+                    throw new IllegalArgumentException("orderId of mutation " + i
+                            + " was null or empty");
+                }
+                // DynamoDB rejects a transaction that touches the same item twice
+                if (!orderIds.add(orderId)) {
+                    throw new IllegalArgumentException("Order " + orderId
+                            + " appears in more than one mutation");
+                }
+
+                switch (mutation.getType()) {
+                    case CREATE:
+                        final Order created = toOrder(mutation, orderId, 1L);
+                        items.add(TransactWriteItem.builder().put(Put.builder()
+                                .tableName(tableName)
+                                .item(OrderItemCodec.encode(created))
+                                .conditionExpression("attribute_not_exists(orderId)")
+                                .build()).build());
+                        orders.add(created);
+                        break;
+                    case UPDATE:
+                        final Order updated = toOrder(mutation, orderId, mutation.getVersion());
+                        items.add(TransactWriteItem.builder().update(Update.builder()
+                                .tableName(tableName)
+                                .key(Collections.singletonMap(ORDER_ID,
+                                        AttributeValue.builder().s(orderId).build()))
+                                .updateExpression(UPDATE_EXPRESSION)
+                                .conditionExpression(UPDATE_CONDITION)
+                                .expressionAttributeValues(updateValues(updated))
+                                .returnValuesOnConditionCheckFailure(
+                                        ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                                .build()).build());
+                        updated.setVersion(updated.getVersion() + 1);
+                        orders.add(updated);
+                        break;
+                    case DELETE:
+                        final Delete.Builder delete = Delete.builder()
+                                .tableName(tableName)
+                                .key(Collections.singletonMap(ORDER_ID,
+                                        AttributeValue.builder().s(orderId).build()))
+                                .returnValuesOnConditionCheckFailure(
+                                        ReturnValuesOnConditionCheckFailure.ALL_OLD);
+                        if (mutation.getVersion() == null) {
+                            delete.conditionExpression("attribute_exists(orderId)");
+                        } else {
+                            delete.conditionExpression(UPDATE_CONDITION)
+                                    .expressionAttributeValues(Collections.singletonMap(":v",
+                                            AttributeValue.builder()
+                                                    .n(mutation.getVersion().toString())
+                                                    .build()));
+                        }
+                        items.add(TransactWriteItem.builder().delete(delete.build()).build());
+                        orders.add(Order.builder().orderId(orderId).build());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown mutation type "
+                                + mutation.getType());
+                }
+            }
+
+            final TransactWriteItemsRequest.Builder write = TransactWriteItemsRequest.builder()
+                    .transactItems(items)
+                    .clientRequestToken(clientRequestToken);
+            try {
+                call(write, request -> dynamoDb.transactWriteItems(request.build()));
+            } catch (TransactionCanceledException e) {
+                throw new TransactionConflictException("Transaction was cancelled",
+                        cancellationFailures(mutations, orders, e));
+            } catch (TransactionInProgressException e) {
+                throw new TransactionConflictException(
+                        "A transaction with this clientRequestToken is still in progress",
+                        Collections.emptyList());
+            } catch (IdempotentParameterMismatchException e) {
+                throw new IllegalArgumentException(
+                        "clientRequestToken was already used for different mutations");
             } catch (ResourceNotFoundException e) {
                 throw new TableDoesNotExistException("Order table was deleted");
+            } catch (DynamoDbException e) {
+                // e.g. an item over 400 KB: the mutations are at fault, not the service
+                if (e.awsErrorDetails() != null
+                        && "ValidationException".equals(e.awsErrorDetails().errorCode())) {
+                    throw new IllegalArgumentException(e.awsErrorDetails().errorMessage());
+                }
+                throw e;
             }
+            return orders;
         }
-        throw new CouldNotCreateOrderException("Too many ID collisions");
     }
 
-    // Converts a raw DynamoDB item into an Order object
-    private Order convert(final Map<String, AttributeValue> item) {
-        if (item == null || item.isEmpty())
+    // Sends up to 25 writes, retrying unprocessed items; returns what is still unprocessed
+    private List<WriteRequest> batchWrite(final List<WriteRequest> writes) {
+        Map<String, List<WriteRequest>> requestItems = Collections.singletonMap(tableName, writes);
+        for (int attempt = 0; ; attempt++) {
+            final BatchWriteItemResponse result;
+            try {
+                final BatchWriteItemRequest.Builder batch =
+                        BatchWriteItemRequest.builder().requestItems(requestItems);
+                result = call(batch, request -> dynamoDb.batchWriteItem(request.build()));
+            } catch (ResourceNotFoundException e) {
+                throw new TableDoesNotExistException("Order table " + tableName
+                        + " does not exist");
+            }
+            final List<WriteRequest> unprocessed = result.hasUnprocessedItems()
+                    ? result.unprocessedItems().getOrDefault(tableName, Collections.emptyList())
+                    : Collections.emptyList();
+            if (unprocessed.isEmpty() || attempt >= MAX_BATCH_WRITE_RETRIES) {
+                return unprocessed;
+            }
+            try {
+                // unprocessed items mean the partition is throttled, back off before retrying
+                Thread.sleep(BATCH_WRITE_BACKOFF_MILLIS << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return unprocessed;
+            }
+            requestItems = Collections.singletonMap(tableName, unprocessed);
+        }
+    }
+
+    // Bounds one DynamoDB call by the calling thread's Deadline, when a handler has set one, and
+    // reports its latency to the concurrency limiter
+    private <B extends AwsRequest.Builder, R> R call(final B request,
+            final Function<B, R> operation) {
+        Deadline.bound(request);
+        final long start = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            return operation.apply(request);
+        } catch (ApiCallTimeoutException | ApiCallAttemptTimeoutException e) {
+            overloaded = true;
+            throw Deadline.timedOut();
+        } catch (ProvisionedThroughputExceededException | RequestLimitExceededException e) {
+            overloaded = true;
+            throw e;
+        } finally {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.onSample(System.nanoTime() - start, overloaded);
+            }
+        }
+    }
+
+    // A new order at version 1, under the request's orderId or a random one
+    private Order newOrder(final CreateOrderRequest order) {
+        final String customerId = validateCustomerId(order.getCustomerId());
+        if (order.getPreTaxAmount() == null) {
+            throw new IllegalArgumentException(PRE_TAX_AMOUNT_WAS_NULL);
+        }
+        if (order.getPostTaxAmount() == null) {
+            throw new IllegalArgumentException(POST_TAX_AMOUNT_WAS_NULL);
+        }
+        return Order.builder()
+                .orderId(order.getOrderId() != null ? order.getOrderId()
+                        : UUID.randomUUID().toString())
+                .customerId(customerId)
+                .preTaxAmount(Money.valueOf(order.getPreTaxAmount()))
+                .postTaxAmount(Money.valueOf(order.getPostTaxAmount()))
+                .version(1L)
+                .build();
+    }
+
+    // Maps each cancellation reason other than "None" to the mutation at the same position
+    private static List<OrderMutationFailure> cancellationFailures(
+            final List<OrderMutation> mutations, final List<Order> orders,
+            final TransactionCanceledException cancelled) {
+        final List<OrderMutationFailure> failures = new ArrayList<>();
+        if (!cancelled.hasCancellationReasons()) {
+            return failures;
+        }
+        final List<CancellationReason> reasons = cancelled.cancellationReasons();
+        for (int i = 0; i < reasons.size() && i < mutations.size(); i++) {
+            final CancellationReason reason = reasons.get(i);
+            if (reason.code() == null || "None".equals(reason.code())) {
+                continue;
+            }
+            failures.add(new OrderMutationFailure(i, orders.get(i).getOrderId(), reason.code(),
+                    cancellationMessage(mutations.get(i), reason)));
+        }
+        return failures;
+    }
+
+    private static String cancellationMessage(final OrderMutation mutation,
+            final CancellationReason reason) {
+        if (!"ConditionalCheckFailed".equals(reason.code())) {
+            return reason.message();
+        }
+        if (mutation.getType() == OrderMutation.Type.CREATE) {
+            return "Order id collision";
+        }
+        // ALL_OLD hands back the item as it stood, which tells a missing order from a stale version
+        if (!reason.hasItem() || reason.item().isEmpty()) {
+            return "Order does not exist";
+        }
+        final AttributeValue version = reason.item().get(OrderItemCodec.VERSION);
+        return "Version mismatch, order is at version "
+                + (version == null ? "unknown" : version.n());
+    }
+
+    // Ids for created orders are random, or derived from the token so retries write the same items
+    private static String newOrderId(final String clientRequestToken, final int index) {
+        if (clientRequestToken == null) {
+            return UUID.randomUUID().toString();
+        }
+        return createdOrderId(clientRequestToken, index);
+    }
+
+    /**
+     * Returns the id that the CREATE at the given index of a transaction with this
+     * clientRequestToken writes, so a caller can tell a replayed transaction from a new one.
+     * Returns null without a token, when the id is random.
+     */
+    public static String createdOrderId(final String clientRequestToken, final int index) {
+        if (clientRequestToken == null) {
             return null;
+        }
+        return UUID.nameUUIDFromBytes(
+                (clientRequestToken + "/" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
 
+    private Order toOrder(final OrderMutation mutation, final String orderId, final Long version) {
+        if (mutation.getPreTaxAmount() == null) {
+            throw new IllegalArgumentException(PRE_TAX_AMOUNT_WAS_NULL);
+        }
+        if (mutation.getPostTaxAmount() == null) {
+            throw new IllegalArgumentException(POST_TAX_AMOUNT_WAS_NULL);
+        }
+        if (version == null) {
+            throw new IllegalArgumentException(VERSION_WAS_NULL);
+        }
         return Order.builder()
-                .orderId(item.get(ORDER_ID).s())
-                .customerId(item.get("customerId").s())
-                .preTaxAmount(new BigDecimal(item.get("preTaxAmount").n()))
-                .postTaxAmount(new BigDecimal(item.get("postTaxAmount").n()))
-                .version(Long.valueOf(item.get("version").n()))
+                .orderId(orderId)
+                .customerId(validateCustomerId(mutation.getCustomerId()))
+                .preTaxAmount(mutation.getPreTaxAmount())
+                .postTaxAmount(mutation.getPostTaxAmount())
+                .version(version)
                 .build();
     }
 
-    // Creates the item map used to write a new order to DynamoDB
-    private Map<String, AttributeValue> createOrderItem(final CreateOrderRequest order) {
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put(ORDER_ID, AttributeValue.builder().s(UUID.randomUUID().toString()).build());
-        item.put("version", AttributeValue.builder().n("1").build());
-        item.put("customerId", AttributeValue.builder().s(validateCustomerId(order.getCustomerId())).build());
-        item.put("preTaxAmount", AttributeValue.builder().n(order.getPreTaxAmount().toString()).build());
-        item.put("postTaxAmount", AttributeValue.builder().n(order.getPostTaxAmount().toString()).build());
-        return item;
+    // Expression values for UPDATE_EXPRESSION guarded by UPDATE_CONDITION
+    private Map<String, AttributeValue> updateValues(final Order order) {
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":cid",
+                AttributeValue.builder().s(validateCustomerId(order.getCustomerId())).build());
+        try {
+            expressionAttributeValues.put(":pre",
+                    AttributeValue.builder().n(order.getPreTaxAmount().toString()).build());
+            expressionAttributeValues.put(":post",
+                    AttributeValue.builder().n(order.getPostTaxAmount().toString()).build());
+            expressionAttributeValues.put(":v",
+                    AttributeValue.builder().n(order.getVersion().toString()).build());
+        } catch (NullPointerException e) {
+            throw new IllegalArgumentException("One of the required numeric fields was null");
+        }
+        // Increment version by 1
+        expressionAttributeValues.put(":o", AttributeValue.builder().n("1").build());
+        return expressionAttributeValues;
     }
 
     // Simple string validator
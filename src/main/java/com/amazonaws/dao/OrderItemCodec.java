@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts between an {@link Order} and the DynamoDB item it is stored as. The schema below is
+ * the single list of the item's attributes: encoding fills a map presized for exactly those
+ * attributes, and decoding reads each one by its type, failing with an IllegalStateException
+ * that names the attribute when a stored item is missing one or holds the wrong type.
+ */
+public final class OrderItemCodec {
+    public static final String ORDER_ID = "orderId";
+    public static final String CUSTOMER_ID = "customerId";
+    public static final String PRE_TAX_AMOUNT = "preTaxAmount";
+    public static final String POST_TAX_AMOUNT = "postTaxAmount";
+    public static final String VERSION = "version";
+
+    /** The attributes of an order item, and the DynamoDB type each is stored as. */
+    private enum Attribute {
+        ORDER_ID(OrderItemCodec.ORDER_ID, false),
+        CUSTOMER_ID(OrderItemCodec.CUSTOMER_ID, false),
+        PRE_TAX_AMOUNT(OrderItemCodec.PRE_TAX_AMOUNT, true),
+        POST_TAX_AMOUNT(OrderItemCodec.POST_TAX_AMOUNT, true),
+        VERSION(OrderItemCodec.VERSION, true);
+
+        private final String attributeName;
+        private final boolean number; // stored as N, otherwise as S
+
+        Attribute(final String attributeName, final boolean number) {
+            this.attributeName = attributeName;
+            this.number = number;
+        }
+
+        // The value of the attribute's own type, null if the value is of another type or unset
+        String valueOf(final AttributeValue value) {
+            return number ? value.n() : value.s();
+        }
+    }
+
+    private static final int ATTRIBUTE_COUNT = Attribute.values().length;
+
+    private OrderItemCodec() {
+    }
+
+    /**
+     * Returns the item storing the order. Every attribute must be set.
+     */
+    public static Map<String, AttributeValue> encode(final Order order) {
+        final Map<String, AttributeValue> item = HashMap.newHashMap(ATTRIBUTE_COUNT);
+        item.put(ORDER_ID, string(order.getOrderId()));
+        item.put(CUSTOMER_ID, string(order.getCustomerId()));
+        item.put(PRE_TAX_AMOUNT, number(order.getPreTaxAmount().toString()));
+        item.put(POST_TAX_AMOUNT, number(order.getPostTaxAmount().toString()));
+        item.put(VERSION, number(order.getVersion().toString()));
+        return item;
+    }
+
+    /**
+     * Returns the order stored in an item, or null when there is no item.
+     * @throws IllegalStateException if an attribute is missing or is not of its schema type
+     */
+    public static Order decode(final Map<String, AttributeValue> item) {
+        if (item == null || item.isEmpty()) {
+            return null;
+        }
+
+        return Order.builder()
+                .orderId(readString(item, Attribute.ORDER_ID))
+                .customerId(readString(item, Attribute.CUSTOMER_ID))
+                .preTaxAmount(readMoney(item, Attribute.PRE_TAX_AMOUNT))
+                .postTaxAmount(readMoney(item, Attribute.POST_TAX_AMOUNT))
+                .version(readLong(item, Attribute.VERSION))
+                .build();
+    }
+
+    private static AttributeValue string(final String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue number(final String value) {
+        return AttributeValue.builder().n(value).build();
+    }
+
+    private static String readString(final Map<String, AttributeValue> item,
+            final Attribute attribute) {
+        final String value = read(item, attribute);
+        if (value.isEmpty()) {
+            throw invalid(attribute, "is empty");
+        }
+        return value;
+    }
+
+    private static Money readMoney(final Map<String, AttributeValue> item,
+            final Attribute attribute) {
+        final String value = read(item, attribute);
+        try {
+            return Money.parse(value);
+        } catch (NumberFormatException e) {
+            throw invalid(attribute, "is not a valid amount: " + value);
+        }
+    }
+
+    private static long readLong(final Map<String, AttributeValue> item,
+            final Attribute attribute) {
+        final String value = read(item, attribute);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalid(attribute, "is not a whole number: " + value);
+        }
+    }
+
+    private static String read(final Map<String, AttributeValue> item, final Attribute attribute) {
+        final AttributeValue value = item.get(attribute.attributeName);
+        if (value == null) {
+            throw invalid(attribute, "is missing");
+        }
+        final String typed = attribute.valueOf(value);
+        if (typed == null) {
+            throw invalid(attribute, attribute.number ? "is not a number" : "is not a string");
+        }
+        return typed;
+    }
+
+    private static IllegalStateException invalid(final Attribute attribute, final String problem) {
+        return new IllegalStateException(
+                "Order item attribute " + attribute.attributeName + " " + problem);
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The append-only log behind {@link FileOrderRepository}. Records are written to numbered segment
+ * files; a segment is closed for writing once it exceeds the size limit and a new one is started.
+ * Compaction writes the live records of all closed segments to a snapshot file, which replaces
+ * every file with a lower number. A record's location is its file number in the high 24 bits and
+ * its offset in the low 40 bits.
+ *
+ * <p>A record is a 4 byte payload length, a 4 byte CRC32C of the payload and the payload. A torn
+ * record at the end of the last segment, left by a crash during a write, is cut off when the log
+ * is replayed; a bad record anywhere else is corruption and fails the replay.
+ *
+ * <p>Appends must be serialized by the caller. Durability is shared between writers: a writer
+ * waiting for its record becomes the leader and forces the file for every record appended so far,
+ * while writers arriving during that force wait and are covered by the next one.
+ */
+final class OrderLog implements Closeable {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int FRAME_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int READ_AHEAD_BYTES = 256;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final int MAX_FILE_ID = (1 << 23) - 1;
+
+    /** Receives the records of the log in write order. */
+    interface Visitor {
+        void visit(long location, byte type, Order order) throws IOException;
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final ConcurrentMap<Integer, FileChannel> files = new ConcurrentHashMap<>();
+    private volatile FileChannel active;
+    private volatile int activeId;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private volatile long appended;
+    private long durable;
+    private boolean syncing;
+
+    OrderLog(final Path directory, final long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Opens the files in the directory and prepares the last segment for appends. Files left
+     * behind by an interrupted compaction are removed first.
+     */
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        final TreeMap<Integer, Path> logFiles = new TreeMap<>();
+        int snapshotId = -1;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                final String name = path.getFileName().toString();
+                if (name.endsWith(SUFFIX + TEMPORARY_SUFFIX)) {
+                    Files.delete(path);
+                } else if (name.endsWith(SUFFIX) && name.startsWith(SNAPSHOT_PREFIX)) {
+                    final int id = fileId(name, SNAPSHOT_PREFIX);
+                    logFiles.put(id, path);
+                    snapshotId = Math.max(snapshotId, id);
+                } else if (name.endsWith(SUFFIX) && name.startsWith(SEGMENT_PREFIX)) {
+                    logFiles.put(fileId(name, SEGMENT_PREFIX), path);
+                }
+            }
+        }
+        // A snapshot holds everything older than itself, so older files are leftovers
+        final List<Map.Entry<Integer, Path>> obsolete =
+                new ArrayList<>(logFiles.headMap(snapshotId).entrySet());
+        for (Map.Entry<Integer, Path> old : obsolete) {
+            Files.delete(old.getValue());
+            logFiles.remove(old.getKey());
+        }
+
+        for (Map.Entry<Integer, Path> file : logFiles.entrySet()) {
+            final boolean writable = file.getKey().equals(logFiles.lastKey())
+                    && file.getKey() != snapshotId;
+            files.put(file.getKey(), FileChannel.open(file.getValue(), writable
+                    ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+                    : new StandardOpenOption[] {StandardOpenOption.READ}));
+        }
+        if (logFiles.isEmpty() || logFiles.lastKey() == snapshotId) {
+            startSegment(logFiles.isEmpty() ? 0 : logFiles.lastKey() + 1);
+        } else {
+            activeId = logFiles.lastKey();
+            active = files.get(activeId);
+            active.position(active.size());
+        }
+    }
+
+    /**
+     * Passes every record to the visitor in write order. A torn record at the end of the active
+     * segment is cut off.
+     */
+    void replay(final Visitor visitor) throws IOException {
+        for (Map.Entry<Integer, FileChannel> file : new TreeMap<>(files).entrySet()) {
+            replay(file.getKey(), file.getValue(), file.getKey() == activeId, visitor);
+        }
+        active.position(active.size());
+    }
+
+    private void replay(final int fileId, final FileChannel channel, final boolean last,
+                        final Visitor visitor) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        long offset = 0;
+        final long size = channel.size();
+        while (offset < size) {
+            buffer.clear();
+            channel.read(buffer, offset);
+            buffer.flip();
+            int consumed = 0;
+            while (buffer.remaining() >= FRAME_BYTES) {
+                final int start = buffer.position();
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    corrupt(fileId, channel, offset + start, last);
+                    return;
+                }
+                if (buffer.remaining() < length) {
+                    buffer.position(start); // record continues beyond the buffer
+                    break;
+                }
+                final ByteBuffer payload = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                if (checksum(payload) != checksum) {
+                    corrupt(fileId, channel, offset + start, last);
+                    return;
+                }
+                visitor.visit(location(fileId, offset + start), payload.get(0), decode(payload));
+                consumed = buffer.position();
+            }
+            if (consumed == 0) {
+                // Not even one whole record left: a torn tail, or a frame longer than the buffer
+                corrupt(fileId, channel, offset, last);
+                return;
+            }
+            offset += consumed;
+        }
+    }
+
+    private static void corrupt(final int fileId, final FileChannel channel, final long offset,
+                                final boolean last) throws IOException {
+        if (!last) {
+            throw new IllegalStateException("Corrupt record in order log file " + fileId + " at "
+                    + offset);
+        }
+        channel.truncate(offset);
+        channel.force(true);
+    }
+
+    /**
+     * Appends a record and returns its location. Callers must not append concurrently.
+     */
+    long append(final ByteBuffer record) throws IOException {
+        if (active.position() >= maxSegmentBytes) {
+            startSegment(activeId + 1);
+        }
+        final long location = location(activeId, active.position());
+        while (record.hasRemaining()) {
+            active.write(record);
+        }
+        appended++;
+        return location;
+    }
+
+    /**
+     * The sequence number of the last appended record, to be passed to {@link #awaitDurable}.
+     */
+    long lastAppended() {
+        return appended;
+    }
+
+    /**
+     * Blocks until every record up to the given sequence number is on stable storage.
+     */
+    void awaitDurable(final long sequence) throws IOException {
+        syncLock.lock();
+        try {
+            while (durable < sequence) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                // Segments other than the active one were forced when they were closed
+                final long target = appended;
+                final FileChannel channel = active;
+                syncLock.unlock();
+                boolean forced = false;
+                try {
+                    channel.force(false);
+                    forced = true;
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    if (forced) {
+                        durable = Math.max(durable, target);
+                    }
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the active segment and starts a new one, leaving a file number between them free for
+     * a snapshot of everything up to the closed segment. Callers must not append concurrently.
+     * @return the file number reserved for the snapshot
+     */
+    int closeSegment() throws IOException {
+        final int snapshotId = activeId + 1;
+        startSegment(activeId + 2);
+        return snapshotId;
+    }
+
+    /**
+     * Starts writing a snapshot with the number returned by {@link #closeSegment}.
+     */
+    SnapshotWriter snapshot(final int snapshotId) throws IOException {
+        return new SnapshotWriter(snapshotId);
+    }
+
+    /**
+     * Deletes the files older than an installed snapshot. Nothing may read those files anymore.
+     */
+    void deleteFilesBefore(final int snapshotId) throws IOException {
+        for (Integer fileId : new ArrayList<>(files.keySet())) {
+            if (fileId < snapshotId) {
+                files.remove(fileId).close();
+                Files.deleteIfExists(directory.resolve(SEGMENT_PREFIX + fileId + SUFFIX));
+                Files.deleteIfExists(directory.resolve(SNAPSHOT_PREFIX + fileId + SUFFIX));
+            }
+        }
+    }
+
+    final class SnapshotWriter implements Closeable {
+        private final int snapshotId;
+        private final Path temporary;
+        private final FileChannel channel;
+        private boolean installed;
+
+        private SnapshotWriter(final int snapshotId) throws IOException {
+            this.snapshotId = snapshotId;
+            this.temporary = directory.resolve(SNAPSHOT_PREFIX + snapshotId + SUFFIX
+                    + TEMPORARY_SUFFIX);
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Copies the record at a location of an older file, returning its location in the snapshot.
+         */
+        long copy(final long location) throws IOException {
+            final ByteBuffer record = readFrame(location);
+            final long copied = location(snapshotId, channel.position());
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            return copied;
+        }
+
+        /**
+         * Makes the snapshot durable and part of the log. Until then a crash discards it.
+         */
+        void install() throws IOException {
+            channel.force(true);
+            Files.move(temporary, directory.resolve(SNAPSHOT_PREFIX + snapshotId + SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            files.put(snapshotId, channel);
+            installed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!installed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Reads the order of the record at a location. Safe to call concurrently with appends.
+     */
+    Order read(final long location) throws IOException {
+        final ByteBuffer frame = readFrame(location);
+        frame.position(FRAME_BYTES);
+        return decode(frame.slice());
+    }
+
+    private ByteBuffer readFrame(final long location) throws IOException {
+        final FileChannel channel = files.get((int) (location >>> OFFSET_BITS));
+        if (channel == null) {
+            throw new IllegalStateException("Order log file " + (location >>> OFFSET_BITS)
+                    + " is gone");
+        }
+        final long offset = location & OFFSET_MASK;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD_BYTES);
+        readFully(channel, buffer, offset, FRAME_BYTES);
+        final int length = buffer.getInt(0);
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+            throw new IllegalStateException("Corrupt record in order log at " + location);
+        }
+        if (FRAME_BYTES + length > buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate(FRAME_BYTES + length);
+            larger.put(buffer.flip());
+            buffer = larger;
+        }
+        readFully(channel, buffer, offset, FRAME_BYTES + length);
+        buffer.flip().limit(FRAME_BYTES + length);
+        return buffer;
+    }
+
+    // Reads from the file until at least minimum bytes from offset are in the buffer
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+                                  final long offset, final int minimum) throws IOException {
+        while (buffer.position() < minimum) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IllegalStateException("Order log record at " + offset + " is truncated");
+            }
+        }
+    }
+
+    private void startSegment(final int fileId) throws IOException {
+        if (fileId > MAX_FILE_ID) {
+            throw new IllegalStateException("Order log has run out of file numbers");
+        }
+        if (active != null) {
+            active.force(false);
+        }
+        final FileChannel channel = FileChannel.open(
+                directory.resolve(SEGMENT_PREFIX + fileId + SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        files.put(fileId, channel);
+        forceDirectory();
+        active = channel;
+        activeId = fileId;
+    }
+
+    // Makes a created or renamed file survive a crash, where the platform supports it
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened or forced on every platform
+        }
+    }
+
+    /** The location just past the last record, which changes with every append. */
+    long end() throws IOException {
+        return location(activeId, active.position());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : files.values()) {
+            channel.close();
+        }
+        files.clear();
+    }
+
+    static int fileId(final long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    private static int fileId(final String name, final String prefix) {
+        return Integer.parseInt(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static long location(final int fileId, final long offset) {
+        if (offset > OFFSET_MASK) {
+            throw new IllegalStateException("Order log file " + fileId + " is too large");
+        }
+        return ((long) fileId << OFFSET_BITS) | offset;
+    }
+
+    static ByteBuffer encodePut(final Order order) {
+        final byte[] orderId = order.getOrderId().getBytes(StandardCharsets.UTF_8);
+        final byte[] customerId = order.getCustomerId().getBytes(StandardCharsets.UTF_8);
+        final int length = 1 + 2 + orderId.length + 2 + customerId.length + 2 * (8 + 1) + 8;
+        final ByteBuffer record = frame(length)
+                .put(PUT)
+                .putShort((short) orderId.length).put(orderId)
+                .putShort((short) customerId.length).put(customerId);
+        putMoney(record, order.getPreTaxAmount());
+        putMoney(record, order.getPostTaxAmount());
+        record.putLong(order.getVersion());
+        return seal(record);
+    }
+
+    static ByteBuffer encodeDelete(final String orderId) {
+        final byte[] id = orderId.getBytes(StandardCharsets.UTF_8);
+        return seal(frame(1 + 2 + id.length).put(DELETE).putShort((short) id.length).put(id));
+    }
+
+    private static ByteBuffer frame(final int payloadLength) {
+        if (payloadLength > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Order is too large to store");
+        }
+        return ByteBuffer.allocate(FRAME_BYTES + payloadLength).putInt(payloadLength).putInt(0);
+    }
+
+    private static ByteBuffer seal(final ByteBuffer record) {
+        record.flip();
+        record.putInt(4, checksum(record.slice(FRAME_BYTES, record.limit() - FRAME_BYTES)));
+        return record;
+    }
+
+    private static void putMoney(final ByteBuffer buffer, final Money money) {
+        buffer.putLong(money.getUnscaledValue()).put((byte) money.getScale());
+    }
+
+    private static int checksum(final ByteBuffer payload) {
+        final CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // Decodes a payload; a delete yields an order with only its orderId
+    private static Order decode(final ByteBuffer payload) {
+        final ByteBuffer buffer = payload.duplicate();
+        final byte type = buffer.get();
+        final Order order = new Order();
+        order.setOrderId(string(buffer));
+        if (type == PUT) {
+            order.setCustomerId(string(buffer));
+            order.setPreTaxAmount(Money.of(buffer.getLong(), buffer.get()));
+            order.setPostTaxAmount(Money.of(buffer.getLong(), buffer.get()));
+            order.setVersion(buffer.getLong());
+        } else if (type != DELETE) {
+            throw new IllegalStateException("Unknown order log record type " + type);
+        }
+        return order;
+    }
+
+    private static String string(final ByteBuffer buffer) {
+        final int length = Short.toUnsignedInt(buffer.getShort());
+        final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Order;
+
+/**
+ * Resolves an update that failed its version check against the order as it is now stored, for
+ * {@link MergingOrderRepository}.
+ */
+@FunctionalInterface
+public interface OrderMergePolicy {
+
+    /**
+     * Writes the update's customer and amounts over whatever was stored in the meantime.
+     */
+    OrderMergePolicy LAST_WRITER_WINS = (current, update) -> Order.builder()
+            .orderId(current.getOrderId())
+            .customerId(update.getCustomerId())
+            .preTaxAmount(update.getPreTaxAmount())
+            .postTaxAmount(update.getPostTaxAmount())
+            .version(current.getVersion())
+            .build();
+
+    /**
+     * Like {@link #LAST_WRITER_WINS}, but leaves the conflict to the client when the order was
+     * moved to another customer since the client read it.
+     */
+    OrderMergePolicy SAME_CUSTOMER_WINS = (current, update) ->
+            current.getCustomerId().equals(update.getCustomerId())
+                    ? LAST_WRITER_WINS.merge(current, update) : null;
+
+    /**
+     * Returns the order to write in place of the update, carrying the current version, or null to
+     * report the conflict to the client.
+     * @param current the order as stored, read consistently after the conflict
+     * @param update the order the client tried to write
+     * @return the merged order or null
+     */
+    Order merge(Order current, Order update);
+
+    /**
+     * Looks up a policy by its configuration name.
+     * @param name last-writer-wins or same-customer-wins
+     * @return the policy
+     */
+    static OrderMergePolicy forName(final String name) {
+        switch (name) {
+            case "last-writer-wins":
+                return LAST_WRITER_WINS;
+            case "same-customer-wins":
+                return SAME_CUSTOMER_WINS;
+            default:
+                throw new IllegalArgumentException("Unknown order merge policy " + name);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.OrderPage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Walks pages of orders from a start key to the end while reading ahead of the consumer. Each
+ * page's start key is the last evaluated key of the page before it, so pages are fetched one
+ * after the other on the executor, but up to pagesAhead of them are requested before the
+ * consumer asks for them, and the wait for DynamoDB overlaps with whatever the consumer does
+ * with the current page.
+ *
+ * <p>No more than pagesAhead pages are ever fetched or in flight beyond the one last returned,
+ * so memory stays bounded by a slow consumer. Closing the iterator cancels the pages not yet
+ * fetched; a page already being fetched completes and is dropped. The fetches run under the
+ * Deadline of the thread that created the iterator. A failed fetch is thrown by hasNext and
+ * next. The iterator is for use by one thread.
+ */
+public final class OrderPageIterator implements Iterator<OrderPage>, AutoCloseable {
+    private final Function<String, OrderPage> fetch;
+    private final Executor executor;
+    private final int pagesAhead;
+    // Pages requested but not yet returned, in order; a page completing with null marks the end
+    private final Deque<CompletableFuture<OrderPage>> pages = new ArrayDeque<>();
+    private CompletableFuture<OrderPage> last;
+    private volatile boolean closed;
+
+    /**
+     * Starts fetching the first pagesAhead pages on executor.
+     *
+     * @param fetch returns the page after a start key, or the first page for a null key
+     * @param exclusiveStartKey the key to start after, null to start at the beginning
+     * @param pagesAhead how many pages to keep requested ahead of the consumer, at least 1
+     * @param executor runs the fetches
+     */
+    public OrderPageIterator(final Function<String, OrderPage> fetch,
+            final String exclusiveStartKey, final int pagesAhead, final Executor executor) {
+        if (pagesAhead < 1) {
+            throw new IllegalArgumentException("pagesAhead must be positive");
+        }
+        this.fetch = Deadline.carry(fetch);
+        this.executor = executor;
+        this.pagesAhead = pagesAhead;
+        final Supplier<OrderPage> first = () -> closed ? null : this.fetch.apply(exclusiveStartKey);
+        last = CompletableFuture.supplyAsync(first, executor);
+        pages.add(last);
+        readAhead();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && join(pages.peekFirst()) != null;
+    }
+
+    @Override
+    public OrderPage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final OrderPage page = join(pages.pollFirst());
+        readAhead();
+        return page;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pages.forEach(page -> page.cancel(false));
+        pages.clear();
+    }
+
+    // Requests pages until pagesAhead are queued, each to be fetched once the page before it is in
+    private void readAhead() {
+        while (pages.size() < pagesAhead) {
+            last = last.thenApplyAsync(this::fetchAfter, executor);
+            pages.add(last);
+        }
+    }
+
+    // The page after previous, or null once closed or past the last page
+    private OrderPage fetchAfter(final OrderPage previous) {
+        if (closed || previous == null || previous.getLastEvaluatedKey() == null
+                || previous.getLastEvaluatedKey().isEmpty()) {
+            return null;
+        }
+        return fetch.apply(previous.getLastEvaluatedKey());
+    }
+
+    private static OrderPage join(final CompletableFuture<OrderPage> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Storage for orders, as used by the handlers. {@link OrderDao} keeps orders in DynamoDB and
+ * {@link InMemoryOrderRepository} keeps them on the heap; OrderModule chooses one with the
+ * ORDER_STORE environment variable.
+ *
+ * <p>Implementations report failures with the same exceptions: IllegalArgumentException for
+ * invalid input and the exceptions of com.amazonaws.exception for missing orders, version
+ * mismatches and a missing table.
+ */
+public interface OrderRepository {
+
+    /**
+     * Fetches a single order by ID, or throws OrderDoesNotExistException if it doesn't exist.
+     */
+    Order getOrder(String orderId);
+
+    /**
+     * Fetches a single order like {@link #getOrder}, reflecting every write that completed before
+     * the call. Only stores with eventually consistent reads need to override this.
+     */
+    default Order getLatestOrder(String orderId) {
+        return getOrder(orderId);
+    }
+
+    /**
+     * Returns a page of orders, optionally starting after a given ID.
+     */
+    OrderPage getOrders(String exclusiveStartOrderId);
+
+    /**
+     * Returns the pages of orders after a given ID, up to the last one, keeping pagesAhead pages
+     * requested on executor ahead of the caller. Close the iterator to stop early.
+     */
+    default OrderPageIterator getOrderPages(String exclusiveStartOrderId, int pagesAhead,
+            Executor executor) {
+        return new OrderPageIterator(this::getOrders, exclusiveStartOrderId, pagesAhead, executor);
+    }
+
+    /**
+     * Creates a new order with a random ID and version 1.
+     */
+    Order createOrder(CreateOrderRequest request);
+
+    /**
+     * Creates a batch of orders. Returns one result per request, in request order.
+     */
+    List<OrderWriteResult> createOrders(List<CreateOrderRequest> requests);
+
+    /**
+     * Replaces the customer and amounts of an order if its stored version equals the version of
+     * the given order, and increments the version. Throws UnableToUpdateException otherwise.
+     */
+    Order updateOrder(Order order);
+
+    /**
+     * Adds deltas to the amounts of an order and increments its version, without the caller
+     * sending the version it read, so concurrent adjustments never conflict. A null delta leaves
+     * its amount unchanged. Unless allowNegative, throws UnableToUpdateException when a lowered
+     * amount would go below zero. Stores without an atomic add run this read-modify-write loop.
+     */
+    default Order adjustAmounts(String orderId, Money preTaxDelta, Money postTaxDelta,
+            boolean allowNegative) {
+        if ((preTaxDelta == null || preTaxDelta.signum() == 0)
+                && (postTaxDelta == null || postTaxDelta.signum() == 0)) {
+            throw new IllegalArgumentException(
+                    "preTaxAmountDelta and postTaxAmountDelta were both null or zero");
+        }
+        while (true) {
+            final Order current = getLatestOrder(orderId);
+            final Order adjusted = Order.builder()
+                    .orderId(current.getOrderId())
+                    .customerId(current.getCustomerId())
+                    .preTaxAmount(adjust(current.getPreTaxAmount(), preTaxDelta, allowNegative))
+                    .postTaxAmount(adjust(current.getPostTaxAmount(), postTaxDelta, allowNegative))
+                    .version(current.getVersion())
+                    .build();
+            try {
+                return updateOrder(adjusted);
+            } catch (UnableToUpdateException e) {
+                // another write came first, adjust what it left
+            }
+        }
+    }
+
+    /** Adds delta to amount, refusing to go below zero on a decrease unless allowNegative. */
+    private static Money adjust(final Money amount, final Money delta,
+            final boolean allowNegative) {
+        if (delta == null) {
+            return amount;
+        }
+        final Money adjusted = amount.add(delta);
+        if (!allowNegative && delta.signum() < 0 && adjusted.signum() < 0) {
+            throw new UnableToUpdateException("Adjustment would make an amount negative");
+        }
+        return adjusted;
+    }
+
+    /**
+     * Returns whether the last accepted update of an order has not been written yet, which only
+     * happens with {@link WriteBehindOrderRepository}.
+     */
+    default boolean isUpdatePending(String orderId) {
+        return false;
+    }
+
+    /**
+     * Writes every accepted update that has not been written yet, and returns by orderId the
+     * outcome of each held back update: the order written, or the reason it was dropped or is still
+     * held back. Only {@link WriteBehindOrderRepository} holds any back.
+     */
+    default Map<String, OrderWriteResult> flush() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Deletes an order by ID and returns it. Throws UnableToDeleteException if it doesn't exist.
+     */
+    Order deleteOrder(String orderId);
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.OrderTotals;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps live order counts and amount totals, for all orders and per customer, in sharded counter
+ * items. Every counter is split into shardCount items: a write adds to one shard chosen at random,
+ * so concurrent creates spread over shardCount items instead of contending for one, and a read
+ * sums all shards with a single BatchGetItem.
+ *
+ * <p>Read totals are cached for cacheTtl, so frequent readers cost one BatchGetItem per counter
+ * and TTL instead of one per request. Writes made through this instance are added to its cached
+ * totals right away; writes from other instances show up once the cache expires. The cache holds
+ * the most recently read counters, up to 10,000 of them, so it does not grow with the customers.
+ *
+ * <p>Raising the shard count is safe, shards that were never written read as zero. Lowering it
+ * drops whatever the removed shards hold from the totals.
+ */
+public class OrderTotalsDao {
+
+    // BatchGetItem reads at most 100 keys, all shards of a counter are read in one call
+    public static final int MAX_SHARDS = 100;
+
+    private static final String ID = "id";
+    private static final String GLOBAL_KEY_PREFIX = "total#";
+    private static final String CUSTOMER_KEY_PREFIX = "customer#";
+    private static final String ADD_EXPRESSION =
+            "ADD orderCount :n, preTaxAmount :pre, postTaxAmount :post";
+    private static final int MAX_BATCH_GET_RETRIES = 5;
+    private static final long BATCH_GET_BACKOFF_MILLIS = 10;
+    private static final int MAX_CACHED_COUNTERS = 10_000;
+
+    private final DynamoDbClient dynamoDb;
+    private final String tableName;
+    private final int shardCount;
+    private final long cacheTtlMillis;
+    private final Clock clock;
+    private final Map<String, CachedTotals> cache; // least recently read first
+
+    public OrderTotalsDao(final DynamoDbClient dynamoDb, final String tableName,
+                          final int shardCount, final Duration cacheTtl) {
+        this(dynamoDb, tableName, shardCount, cacheTtl, Clock.systemUTC(), MAX_CACHED_COUNTERS);
+    }
+
+    OrderTotalsDao(final DynamoDbClient dynamoDb, final String tableName, final int shardCount,
+                   final Duration cacheTtl, final Clock clock, final int maxCachedCounters) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("shardCount must be between 1 and " + MAX_SHARDS);
+        }
+        if (cacheTtl == null || cacheTtl.isNegative()) {
+            throw new IllegalArgumentException("cacheTtl was null or negative");
+        }
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.shardCount = shardCount;
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.clock = clock;
+        // access order, so the least recently used counter is evicted first
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedTotals> eldest) {
+                return size() > maxCachedCounters;
+            }
+        });
+    }
+
+    /**
+     * Adds to the totals of one customer, or to the totals of all orders when customerId is null.
+     * Negative values subtract, as for a deleted order.
+     */
+    public void add(final String customerId, final long orderCount, final Money preTaxAmount,
+                    final Money postTaxAmount) {
+        if (customerId != null && customerId.isEmpty()) {
+            throw new IllegalArgumentException("customerId was empty");
+        }
+        final String counter = counter(customerId);
+        final Map<String, AttributeValue> values = new HashMap<>(4);
+        values.put(":n", AttributeValue.builder().n(Long.toString(orderCount)).build());
+        values.put(":pre", AttributeValue.builder().n(preTaxAmount.toString()).build());
+        values.put(":post", AttributeValue.builder().n(postTaxAmount.toString()).build());
+        try {
+            final UpdateItemRequest.Builder update = UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(key(counter + ThreadLocalRandom.current().nextInt(shardCount)))
+                    .updateExpression(ADD_EXPRESSION)
+                    .expressionAttributeValues(values);
+            Deadline.call(update, request -> dynamoDb.updateItem(request.build()));
+        } catch (ResourceNotFoundException e) {
+            throw new TableDoesNotExistException(
+                    "Order totals table " + tableName + " does not exist");
+        }
+        cache.computeIfPresent(counter, (key, cached) ->
+                cached.plus(orderCount, preTaxAmount, postTaxAmount));
+    }
+
+    /**
+     * Returns the totals of one customer, or of all orders when customerId is null, at most
+     * cacheTtl old. A customer without orders has all zero totals.
+     */
+    public OrderTotals getTotals(final String customerId) {
+        if (customerId != null && customerId.isEmpty()) {
+            throw new IllegalArgumentException("customerId was empty");
+        }
+        final String counter = counter(customerId);
+        final long now = clock.millis();
+        final CachedTotals cached = cache.get(counter);
+        if (cached != null && cached.expiresAtMillis > now) {
+            return cached.toTotals(customerId);
+        }
+        final CachedTotals read = readShards(counter, now + cacheTtlMillis);
+        if (cacheTtlMillis > 0) {
+            cache.put(counter, read);
+        }
+        return read.toTotals(customerId);
+    }
+
+    // Sums all shards of a counter; shards that were never written are absent and count as zero
+    private CachedTotals readShards(final String counter, final long expiresAtMillis) {
+        final List<Map<String, AttributeValue>> keys = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            keys.add(key(counter + shard));
+        }
+        CachedTotals sum = new CachedTotals(0L, Money.ZERO, Money.ZERO, expiresAtMillis);
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName,
+                KeysAndAttributes.builder().keys(keys).build());
+        for (int attempt = 0; ; attempt++) {
+            final BatchGetItemResponse result;
+            try {
+                final BatchGetItemRequest.Builder batch = BatchGetItemRequest.builder()
+                        .requestItems(requestItems);
+                result = Deadline.call(batch, request -> dynamoDb.batchGetItem(request.build()));
+            } catch (ResourceNotFoundException e) {
+                throw new TableDoesNotExistException(
+                        "Order totals table " + tableName + " does not exist");
+            }
+            if (result.hasResponses()) {
+                for (Map<String, AttributeValue> item : result.responses().getOrDefault(tableName,
+                        Collections.emptyList())) {
+                    sum = sum.plus(Long.parseLong(number(item, "orderCount")),
+                            Money.parse(number(item, "preTaxAmount")),
+                            Money.parse(number(item, "postTaxAmount")));
+                }
+            }
+            final KeysAndAttributes unprocessed = result.hasUnprocessedKeys()
+                    ? result.unprocessedKeys().get(tableName) : null;
+            if (unprocessed == null || unprocessed.keys().isEmpty()) {
+                return sum;
+            }
+            if (attempt >= MAX_BATCH_GET_RETRIES) {
+                throw new IllegalStateException(
+                        "Order totals shards were left unprocessed by BatchGetItem");
+            }
+            try {
+                // unprocessed keys mean the partition is throttled, back off before retrying
+                Thread.sleep(BATCH_GET_BACKOFF_MILLIS << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading order totals shards");
+            }
+            requestItems = Collections.singletonMap(tableName, unprocessed);
+        }
+    }
+
+    private static String counter(final String customerId) {
+        return customerId == null ? GLOBAL_KEY_PREFIX : CUSTOMER_KEY_PREFIX + customerId + "#";
+    }
+
+    private static Map<String, AttributeValue> key(final String id) {
+        return Collections.singletonMap(ID, AttributeValue.builder().s(id).build());
+    }
+
+    private static String number(final Map<String, AttributeValue> item, final String name) {
+        final AttributeValue value = item.get(name);
+        if (value == null || value.n() == null) {
+            throw new IllegalStateException(name + " was missing from an order totals shard");
+        }
+        return value.n();
+    }
+
+    // Summed shards of one counter and when they have to be read again
+    private static final class CachedTotals {
+        private final long orderCount;
+        private final Money preTaxAmount;
+        private final Money postTaxAmount;
+        private final long expiresAtMillis;
+
+        CachedTotals(final long orderCount, final Money preTaxAmount, final Money postTaxAmount,
+                     final long expiresAtMillis) {
+            this.orderCount = orderCount;
+            this.preTaxAmount = preTaxAmount;
+            this.postTaxAmount = postTaxAmount;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        CachedTotals plus(final long count, final Money preTax, final Money postTax) {
+            return new CachedTotals(orderCount + count, preTaxAmount.add(preTax),
+                    postTaxAmount.add(postTax), expiresAtMillis);
+        }
+
+        OrderTotals toTotals(final String customerId) {
+            return OrderTotals.builder()
+                    .customerId(customerId)
+                    .orderCount(orderCount)
+                    .preTaxAmount(preTaxAmount)
+                    .postTaxAmount(postTaxAmount)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.OrderMutation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Adds written orders to the sharded counters of {@link OrderTotalsDao}: once to the totals of all
+ * orders and once to the totals of the order's customer. Shared by {@link CountingOrderRepository}
+ * and the handlers that write to {@link OrderDao} directly, so every path that changes an order
+ * changes the totals the same way.
+ *
+ * <p>A counter write that fails is not retried, since ADD is not idempotent; it is published as
+ * OrderTotalsWriteFailures and the totals drift by that change. Without an OrderTotalsDao every
+ * method does nothing.
+ */
+public class OrderTotalsRecorder {
+    private final OrderTotalsDao totals; // null when counting is off
+    private final EmbeddedMetrics metrics; // null to publish nothing
+
+    public OrderTotalsRecorder(final OrderTotalsDao totals, final EmbeddedMetrics metrics) {
+        this.totals = totals;
+        this.metrics = metrics;
+    }
+
+    public boolean isEnabled() {
+        return totals != null;
+    }
+
+    public void created(final List<Order> orders) {
+        count(orders, 1);
+    }
+
+    public void deleted(final List<Order> orders) {
+        count(orders, -1);
+    }
+
+    /**
+     * Moves an updated order's amounts, and the order itself when its customer changed, from what
+     * it was before to what it is after the update.
+     */
+    public void updated(final Order before, final Order after) {
+        if (totals == null) {
+            return;
+        }
+        final Money preTax = after.getPreTaxAmount().subtract(before.getPreTaxAmount());
+        final Money postTax = after.getPostTaxAmount().subtract(before.getPostTaxAmount());
+        int failures = 0;
+        if (preTax.signum() != 0 || postTax.signum() != 0) {
+            failures += add(null, 0, preTax, postTax);
+        }
+        if (!after.getCustomerId().equals(before.getCustomerId())) {
+            failures += add(before.getCustomerId(), -1, before.getPreTaxAmount().negate(),
+                    before.getPostTaxAmount().negate());
+            failures += add(after.getCustomerId(), 1, after.getPreTaxAmount(),
+                    after.getPostTaxAmount());
+        } else if (preTax.signum() != 0 || postTax.signum() != 0) {
+            failures += add(after.getCustomerId(), 0, preTax, postTax);
+        }
+        publish(failures);
+    }
+
+    /**
+     * Adds the deltas of an amount adjustment to the totals of all orders and of the customer.
+     */
+    public void adjusted(final String customerId, final Money preTaxDelta,
+            final Money postTaxDelta) {
+        if (totals == null) {
+            return;
+        }
+        final Money preTax = preTaxDelta == null ? Money.ZERO : preTaxDelta;
+        final Money postTax = postTaxDelta == null ? Money.ZERO : postTaxDelta;
+        int failures = add(null, 0, preTax, postTax);
+        failures += add(customerId, 0, preTax, postTax);
+        publish(failures);
+    }
+
+    /**
+     * Counts a committed transaction. before holds, by mutation index, the orders that updates and
+     * deletes found before the transaction, and any order a create found already written by an
+     * earlier run of the same transaction, which is then not counted twice.
+     */
+    public void transacted(final List<OrderMutation> mutations, final Map<Integer, Order> before,
+                           final List<Order> orders) {
+        if (totals == null) {
+            return;
+        }
+        int unknown = 0;
+        for (int i = 0; i < mutations.size(); i++) {
+            final OrderMutation mutation = mutations.get(i);
+            final Order old = before.get(i);
+            switch (mutation.getType()) {
+                case CREATE:
+                    if (old == null) {
+                        created(Collections.singletonList(orders.get(i)));
+                    }
+                    break;
+                case UPDATE:
+                    if (old != null && Objects.equals(old.getVersion(), mutation.getVersion())) {
+                        updated(old, orders.get(i));
+                    } else {
+                        unknown++;
+                    }
+                    break;
+                case DELETE:
+                    if (old != null && Objects.equals(old.getVersion(), mutation.getVersion())) {
+                        deleted(Collections.singletonList(old));
+                    } else {
+                        unknown++;
+                    }
+                    break;
+                default:
+                    unknown++;
+            }
+        }
+        publish(unknown); // the order changed between the read and the transaction
+    }
+
+    /** Publishes a change the totals missed. */
+    public void missed() {
+        publish(1);
+    }
+
+    // Adds the orders, or subtracts them when sign is -1, to the global and per customer counters
+    private void count(final List<Order> orders, final int sign) {
+        if (totals == null || orders.isEmpty()) {
+            return;
+        }
+        final Map<String, Delta> byCustomer = new LinkedHashMap<>();
+        final Delta all = new Delta();
+        for (Order order : orders) {
+            all.add(order, sign);
+            byCustomer.computeIfAbsent(order.getCustomerId(), id -> new Delta()).add(order, sign);
+        }
+        int failures = add(null, all.orderCount, all.preTaxAmount, all.postTaxAmount);
+        for (Map.Entry<String, Delta> customer : byCustomer.entrySet()) {
+            final Delta delta = customer.getValue();
+            failures += add(customer.getKey(), delta.orderCount, delta.preTaxAmount,
+                    delta.postTaxAmount);
+        }
+        publish(failures);
+    }
+
+    // Returns 1 if the counter write failed
+    private int add(final String customerId, final long orderCount, final Money preTaxAmount,
+                    final Money postTaxAmount) {
+        try {
+            totals.add(customerId, orderCount, preTaxAmount, postTaxAmount);
+            return 0;
+        } catch (RuntimeException e) {
+            return 1; // the order is written, the totals miss it
+        }
+    }
+
+    private void publish(final int failures) {
+        if (metrics == null || failures == 0) {
+            return;
+        }
+        metrics.publish(Collections.singletonMap("OrderTotalsWriteFailures", failures));
+    }
+
+    // Net effect of a set of orders on one counter
+    private static final class Delta {
+        private long orderCount;
+        private Money preTaxAmount = Money.ZERO;
+        private Money postTaxAmount = Money.ZERO;
+
+        void add(final Order order, final int sign) {
+            orderCount += sign;
+            preTaxAmount = sign > 0 ? preTaxAmount.add(order.getPreTaxAmount())
+                    : preTaxAmount.subtract(order.getPreTaxAmount());
+            postTaxAmount = sign > 0 ? postTaxAmount.add(order.getPostTaxAmount())
+                    : postTaxAmount.subtract(order.getPostTaxAmount());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Order;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of one write in a batch: either the persisted order or the reason it was not written.
+ * A create under a caller derived id that finds the order already stored succeeds with
+ * alreadyCreated set, so a retried batch does not count or create it twice.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class OrderWriteResult {
+    private final Order order;
+    private final RuntimeException error;
+    private final boolean alreadyCreated;
+
+    public static OrderWriteResult success(final Order order) {
+        return new OrderWriteResult(order, null, false);
+    }
+
+    public static OrderWriteResult alreadyCreated(final Order order) {
+        return new OrderWriteResult(order, null, true);
+    }
+
+    public static OrderWriteResult failure(final RuntimeException error) {
+        return new OrderWriteResult(null, error, false);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
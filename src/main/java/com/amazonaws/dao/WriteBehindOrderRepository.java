@@ -0,0 +1,384 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers {@link #updateOrder} calls and writes each order's latest state with one conditional
+ * update of the wrapped repository, so a storm of updates to one order costs one write instead
+ * of one write, and most likely a version conflict, per call. Buffered orders are kept in
+ * stripes by orderId, and a stripe is flushed when it holds maxPending orders, when its oldest
+ * update is older than the flush interval, or by the scheduler every interval.
+ *
+ * <p>The first update of an order is checked against the stored order, and one for a missing order
+ * or another version is passed straight to the wrapped repository, which rejects or merges it as
+ * it would without buffering. Later updates are accepted when they carry the stored version or the
+ * provisional one, one more than the stored version, which they return; updates merged into one
+ * write are therefore last writer wins. Until the write, {@link #getOrder} and {@link #getOrders}
+ * return buffered orders and {@link #isUpdatePending} is true. If the flush finds a different
+ * stored version, because another instance wrote the order meanwhile, the buffered update is
+ * dropped. {@link #flush()} reports, by orderId, what became of every buffered update since it was
+ * last called, including those written by the scheduler or by a full stripe, so a caller waiting
+ * for its update learns whether it was written, dropped or is still buffered.
+ *
+ * <p>Buffered updates are lost if the JVM stops before they are flushed. In Lambda the scheduler
+ * does not run while the execution environment is frozen, so callers there {@link #flush()} before
+ * each invocation returns. All other operations go straight to the wrapped repository.
+ */
+public class WriteBehindOrderRepository implements OrderRepository, AutoCloseable {
+    private final OrderRepository delegate;
+    private final Stripe[] stripes;
+    private final int maxPending;
+    private final long flushIntervalNanos;
+    private final EmbeddedMetrics metrics; // null to publish nothing
+    private final ScheduledFuture<?> flusher; // null without a scheduler
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Pending> pending = new LinkedHashMap<>();
+        // outcomes of the writes since flush() last collected them, the oldest dropped first so
+        // that nothing grows without a caller of flush()
+        private final Map<String, OrderWriteResult> outcomes;
+        private long oldestNanos; // when the first order still pending was buffered
+
+        private Stripe(final int maxOutcomes) {
+            this.outcomes = new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, OrderWriteResult> eldest) {
+                    return size() > maxOutcomes;
+                }
+            };
+        }
+    }
+
+    private static final class Pending {
+        private final long storedVersion; // the version the write is conditioned on
+        private Order latest; // carries storedVersion + 1
+        private int merged;
+
+        private Pending(final long storedVersion, final Order latest) {
+            this.storedVersion = storedVersion;
+            this.latest = latest;
+        }
+    }
+
+    /**
+     * Buffers updates to delegate in stripeCount stripes, flushed as described above. A null
+     * scheduler runs no interval flushes, and a null metrics publishes nothing.
+     */
+    public WriteBehindOrderRepository(final OrderRepository delegate, final int stripeCount,
+            final int maxPending, final long flushIntervalMillis,
+            final ScheduledExecutorService scheduler, final EmbeddedMetrics metrics) {
+        if (stripeCount < 1 || maxPending < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException(
+                    "stripes, pending orders and flush interval must be positive");
+        }
+        this.delegate = delegate;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxPending);
+        }
+        this.maxPending = maxPending;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.metrics = metrics;
+        this.flusher = scheduler == null ? null
+                : scheduler.scheduleWithFixedDelay(this::flushStripes, flushIntervalMillis,
+                        flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Order updateOrder(final Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order to update was null");
+        }
+        if (isNullOrEmpty(order.getOrderId())) {
+            throw new IllegalArgumentException("orderId was null or empty");
+        }
+        if (isNullOrEmpty(order.getCustomerId())) {
+            throw new IllegalArgumentException("customerId was null or empty");
+        }
+        if (order.getPreTaxAmount() == null) {
+            throw new IllegalArgumentException("preTaxAmount was null");
+        }
+        if (order.getPostTaxAmount() == null) {
+            throw new IllegalArgumentException("postTaxAmount was null");
+        }
+        if (order.getVersion() == null) {
+            throw new IllegalArgumentException("version was null");
+        }
+
+        final Stripe stripe = stripe(order.getOrderId());
+        stripe.lock.lock();
+        try {
+            final long now = System.nanoTime();
+            if (!stripe.pending.isEmpty() && now - stripe.oldestNanos >= flushIntervalNanos) {
+                flush(stripe); // the scheduler has not run, e.g. while Lambda froze the environment
+            }
+            Pending pending = stripe.pending.get(order.getOrderId());
+            if (pending == null) {
+                if (!isStoredVersion(order)) {
+                    return delegate.updateOrder(order);
+                }
+                pending = new Pending(order.getVersion(),
+                        withVersion(order, order.getVersion() + 1));
+                if (stripe.pending.isEmpty()) {
+                    stripe.oldestNanos = now;
+                }
+                stripe.pending.put(order.getOrderId(), pending);
+            } else if (order.getVersion() == pending.storedVersion
+                    || order.getVersion() == pending.storedVersion + 1) {
+                pending.latest = withVersion(order, pending.storedVersion + 1);
+                pending.merged++;
+            } else {
+                throw new UnableToUpdateException("Order missing or version mismatch");
+            }
+            final Order provisional = copy(pending.latest);
+            if (stripe.pending.size() >= maxPending) {
+                flush(stripe);
+            }
+            return provisional;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isUpdatePending(final String orderId) {
+        final Stripe stripe = stripe(orderId);
+        stripe.lock.lock();
+        try {
+            return stripe.pending.containsKey(orderId);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the scheduled flushes and writes every buffered update.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.cancel(false);
+        }
+        flush();
+    }
+
+    /**
+     * Writes every buffered update now. Returns, by orderId, the written order or the
+     * UnableToUpdateException of every update written or dropped since the last call, and the
+     * failure that keeps each update still buffered.
+     */
+    @Override
+    public Map<String, OrderWriteResult> flush() {
+        final Map<String, OrderWriteResult> results = new LinkedHashMap<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                final RuntimeException failure = flush(stripe);
+                results.putAll(stripe.outcomes);
+                stripe.outcomes.clear();
+                for (String orderId : stripe.pending.keySet()) {
+                    results.put(orderId, OrderWriteResult.failure(failure));
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return results;
+    }
+
+    // Writes the stripe's buffered orders in the order they were first updated, with the lock held
+    // by the caller, and records each outcome. Conflicting updates are dropped, and any other
+    // failure keeps the rest for the next flush and is returned.
+    private RuntimeException flush(final Stripe stripe) {
+        int written = 0;
+        int merged = 0;
+        int conflicts = 0;
+        RuntimeException failure = null;
+        final Iterator<Pending> pending = stripe.pending.values().iterator();
+        try {
+            while (pending.hasNext()) {
+                final Pending next = pending.next();
+                final String orderId = next.latest.getOrderId();
+                try {
+                    final Order stored = delegate.updateOrder(
+                            withVersion(next.latest, next.storedVersion));
+                    stripe.outcomes.put(orderId, OrderWriteResult.success(stored));
+                    written++;
+                    merged += next.merged;
+                } catch (UnableToUpdateException e) {
+                    stripe.outcomes.put(orderId, OrderWriteResult.failure(e));
+                    conflicts++;
+                }
+                pending.remove();
+            }
+        } catch (RuntimeException e) {
+            // the store is unavailable or the deadline has passed, retry with the next flush
+            failure = e;
+        }
+        stripe.oldestNanos = System.nanoTime();
+        if (metrics != null && written + conflicts > 0) {
+            final Map<String, Integer> values = new LinkedHashMap<>();
+            values.put("WriteBehindWrites", written);
+            values.put("WriteBehindMergedUpdates", merged);
+            values.put("WriteBehindConflicts", conflicts);
+            metrics.publish(values);
+        }
+        return failure;
+    }
+
+    // Writes every stripe, leaving the outcomes for the next flush() to collect
+    private void flushStripes() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                flush(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Order getOrder(final String orderId) {
+        final Order buffered = buffered(orderId);
+        return buffered != null ? buffered : delegate.getOrder(orderId);
+    }
+
+    @Override
+    public Order getLatestOrder(final String orderId) {
+        final Order buffered = buffered(orderId);
+        return buffered != null ? buffered : delegate.getLatestOrder(orderId);
+    }
+
+    @Override
+    public OrderPage getOrders(final String exclusiveStartOrderId) {
+        final OrderPage page = delegate.getOrders(exclusiveStartOrderId);
+        final List<Order> orders = new ArrayList<>(page.getOrders().size());
+        for (Order order : page.getOrders()) {
+            final Order buffered = buffered(order.getOrderId());
+            orders.add(buffered != null ? buffered : order);
+        }
+        return OrderPage.builder().orders(orders)
+                .lastEvaluatedKey(page.getLastEvaluatedKey()).build();
+    }
+
+    @Override
+    public Order deleteOrder(final String orderId) {
+        final Stripe stripe = stripe(orderId);
+        stripe.lock.lock();
+        try {
+            stripe.pending.remove(orderId);
+        } finally {
+            stripe.lock.unlock();
+        }
+        return delegate.deleteOrder(orderId);
+    }
+
+    // Writes a buffered update of the order first, which the adjustment's version increment would
+    // otherwise make conflict, and holds the stripe so no new one is buffered against the old
+    // version meanwhile
+    @Override
+    public Order adjustAmounts(final String orderId, final Money preTaxDelta,
+                               final Money postTaxDelta, final boolean allowNegative) {
+        final Stripe stripe = stripe(orderId);
+        stripe.lock.lock();
+        try {
+            if (stripe.pending.containsKey(orderId)) {
+                flush(stripe);
+            }
+            return delegate.adjustAmounts(orderId, preTaxDelta, postTaxDelta, allowNegative);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Order createOrder(final CreateOrderRequest request) {
+        return delegate.createOrder(request);
+    }
+
+    @Override
+    public List<OrderWriteResult> createOrders(final List<CreateOrderRequest> requests) {
+        return delegate.createOrders(requests);
+    }
+
+    // Whether the order is stored at the update's version, so that buffering the update is safe
+    private boolean isStoredVersion(final Order order) {
+        try {
+            final Order stored = delegate.getLatestOrder(order.getOrderId());
+            return stored != null && order.getVersion().equals(stored.getVersion());
+        } catch (OrderDoesNotExistException e) {
+            return false;
+        }
+    }
+
+    private Order buffered(final String orderId) {
+        final Stripe stripe = stripe(orderId);
+        stripe.lock.lock();
+        try {
+            final Pending pending = stripe.pending.get(orderId);
+            return pending == null ? null : copy(pending.latest);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe stripe(final String orderId) {
+        return stripes[Math.floorMod(orderId == null ? 0 : orderId.hashCode(), stripes.length)];
+    }
+
+    private static Order withVersion(final Order order, final long version) {
+        return Order.builder()
+                .orderId(order.getOrderId())
+                .customerId(order.getCustomerId())
+                .preTaxAmount(order.getPreTaxAmount())
+                .postTaxAmount(order.getPostTaxAmount())
+                .version(version)
+                .build();
+    }
+
+    // Orders are mutable, so callers never get the buffered instance itself
+    private static Order copy(final Order order) {
+        return withVersion(order, order.getVersion());
+    }
+
+    private static boolean isNullOrEmpty(final String string) {
+        return string == null || string.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of an export, persisted after every page so that an interrupted export resumes where
+ * it stopped. For each scan segment it records the scan position and the length of the segment's
+ * part file up to which the file holds exactly the orders before that position.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExportCheckpoint {
+    static final String FILE_NAME = "export-checkpoint.json";
+
+    private int totalSegments;
+    private List<Segment> segments;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Segment {
+        private String lastEvaluatedKey;
+        private long bytesWritten;
+        private long ordersWritten;
+        private boolean done;
+    }
+
+    static ExportCheckpoint load(final ObjectMapper objectMapper, final Path directory,
+                                 final int totalSegments) throws IOException {
+        final Path file = directory.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            final ExportCheckpoint checkpoint = objectMapper.readValue(file.toFile(),
+                    ExportCheckpoint.class);
+            if (checkpoint.totalSegments != totalSegments) {
+                throw new IllegalStateException("Checkpoint in " + directory + " was written for "
+                        + checkpoint.totalSegments + " segments, not " + totalSegments);
+            }
+            return checkpoint;
+        }
+        final ExportCheckpoint checkpoint = new ExportCheckpoint();
+        checkpoint.totalSegments = totalSegments;
+        checkpoint.segments = new ArrayList<>(totalSegments);
+        for (int i = 0; i < totalSegments; i++) {
+            checkpoint.segments.add(new Segment());
+        }
+        return checkpoint;
+    }
+
+    // Writes to a temporary file first so a crash never leaves a torn checkpoint behind
+    synchronized void save(final ObjectMapper objectMapper, final Path directory)
+            throws IOException {
+        final Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        objectMapper.writeValue(temporary.toFile(), this);
+        Files.move(temporary, directory.resolve(FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
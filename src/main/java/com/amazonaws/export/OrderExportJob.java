@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.export;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line entry point for {@link OrderExporter}. Uses the same TABLE_NAME and
+ * ENDPOINT_OVERRIDE environment variables as the Lambda functions.
+ *
+ * <pre>
+ * java -cp &lt;runtime classpath&gt; com.amazonaws.export.OrderExportJob \
+ *     &lt;output directory&gt; [segments] [workers] [page size]
+ * </pre>
+ *
+ * <p>Running the same command again after a failure resumes the export from its checkpoint.
+ */
+public final class OrderExportJob {
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private OrderExportJob() {
+    }
+
+    /**
+     * Exports the order table to the directory in args[0], exiting with 2 on bad arguments.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println(
+                    "Usage: OrderExportJob <output directory> [segments] [workers] [page size]");
+            System.exit(2);
+        }
+        final Path directory = Paths.get(args[0]);
+        final int segments = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEGMENTS;
+        final int workers = args.length > 2 ? Integer.parseInt(args[2])
+                : Math.min(segments, Runtime.getRuntime().availableProcessors() * 2);
+        final int pageSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PAGE_SIZE;
+
+        final OrderComponent component = DaggerOrderComponent.builder().build();
+        final OrderExporter exporter = new OrderExporter(component.orderDao(),
+                component.objectMapper(), directory, segments, workers, pageSize);
+        final long orders = exporter.run();
+        System.out.println("Exported " + orders + " orders to " + directory.toAbsolutePath());
+    }
+}
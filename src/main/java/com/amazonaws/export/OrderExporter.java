@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.export;
+
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderPageIterator;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the orders table to gzip compressed newline delimited JSON with a parallel scan. Every
+ * scan segment is read by its own worker and written to its own part file, one page at a time, so
+ * memory use is bounded by the number of workers times the page size whatever the table size.
+ * Each worker has its next page fetched while it writes the current one.
+ *
+ * <p>Each page is appended to the part file as a separate gzip member; concatenated members form
+ * a valid gzip file. After a page is on disk the checkpoint records the file length and the scan
+ * position, and a resumed export truncates the file to that length before continuing, which drops
+ * any page that was written but not checkpointed.
+ */
+public class OrderExporter {
+    private static final int GZIP_BUFFER_BYTES = 64 * 1024;
+    // read while the page before is compressed and forced to disk
+    private static final int PAGES_AHEAD = 1;
+
+    private final OrderDao orderDao;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int totalSegments;
+    private final int workers;
+    private final int pageSize;
+
+    /**
+     * Creates an exporter of totalSegments parallel scan segments, run by workers threads, that
+     * writes pageSize orders per gzip member into directory.
+     */
+    public OrderExporter(final OrderDao orderDao, final ObjectMapper objectMapper,
+                         final Path directory, final int totalSegments, final int workers,
+                         final int pageSize) {
+        if (totalSegments < 1 || workers < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("segments, workers and page size must be positive");
+        }
+        this.orderDao = orderDao;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.totalSegments = totalSegments;
+        this.workers = Math.min(workers, totalSegments);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Runs the export, resuming from the checkpoint in the output directory if there is one.
+     * @return the number of orders in the export
+     */
+    public long run() throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        final ExportCheckpoint checkpoint = ExportCheckpoint.load(objectMapper, directory,
+                totalSegments);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final ExecutorService prefetch = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<?>> segments = new ArrayList<>(totalSegments);
+            for (int segment = 0; segment < totalSegments; segment++) {
+                final int current = segment;
+                segments.add(executor.submit(() -> {
+                    exportSegment(current, checkpoint, prefetch);
+                    return null;
+                }));
+            }
+            for (Future<?> segment : segments) {
+                segment.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            prefetch.shutdownNow();
+        }
+        return checkpoint.getSegments().stream()
+                .mapToLong(ExportCheckpoint.Segment::getOrdersWritten).sum();
+    }
+
+    static String partFileName(final int segment) {
+        return String.format("orders-%05d.ndjson.gz", segment);
+    }
+
+    private void exportSegment(final int segment, final ExportCheckpoint checkpoint,
+            final ExecutorService prefetch) throws IOException {
+        final ExportCheckpoint.Segment state = checkpoint.getSegments().get(segment);
+        if (state.isDone()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(partFileName(segment)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             OrderPageIterator pages = orderDao.scanSegmentPages(segment, totalSegments,
+                     state.getLastEvaluatedKey(), pageSize, PAGES_AHEAD, prefetch)) {
+            channel.truncate(state.getBytesWritten());
+            channel.position(state.getBytesWritten());
+            while (pages.hasNext()) {
+                final OrderPage page = pages.next();
+                if (!page.getOrders().isEmpty()) {
+                    writeMember(channel, page.getOrders());
+                    // the data has to be durable before the checkpoint says so
+                    channel.force(false);
+                }
+                final String exclusiveStartKey = page.getLastEvaluatedKey();
+                synchronized (checkpoint) {
+                    state.setLastEvaluatedKey(exclusiveStartKey);
+                    state.setBytesWritten(channel.position());
+                    state.setOrdersWritten(state.getOrdersWritten() + page.getOrders().size());
+                    state.setDone(exclusiveStartKey == null);
+                    checkpoint.save(objectMapper, directory);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Appends one page as a complete gzip member of newline terminated JSON documents
+    void writeMember(final WritableByteChannel channel, final List<Order> orders)
+            throws IOException {
+        final OutputStream file = new FilterOutputStream(Channels.newOutputStream(channel)) {
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length)
+                    throws IOException {
+                out.write(bytes, offset, length); // FilterOutputStream would write byte by byte
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush(); // the channel stays open for the next page
+            }
+        };
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                new GZIPOutputStream(file, GZIP_BUFFER_BYTES))) {
+            for (Order order : orders) {
+                objectMapper.writeValue(generator, order);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.AdjustOrderAmountsRequest;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import javax.inject.Inject;
+
+/**
+ * POST /orders/{order_id}/adjustments. Adds deltas to the amounts of an order without the
+ * version check of an update, so clients change an amount in one round trip and concurrent
+ * adjustments all apply. Answers 200 with the adjusted order, 404 if it does not exist and 409
+ * if a lowered amount would go below zero without allowNegative.
+ */
+public class AdjustOrderAmountsHandler implements OrderRequestStreamHandler {
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
+    private final OrderComponent orderComponent;
+
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
+    public AdjustOrderAmountsHandler() {
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.NORMAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("AdjustOrderAmountsHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("AdjustOrderAmountsHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
+        final JsonNode event;
+        try {
+            event = readEvent(objectMapper, input);
+        } catch (JsonMappingException e) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
+            return;
+        }
+        if (event == null) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, "event was null");
+            return;
+        }
+        final JsonNode pathParameterMap = event.findValue("pathParameters");
+        final String orderId = Optional.ofNullable(pathParameterMap)
+                .map(mapNode -> mapNode.get("order_id"))
+                .map(JsonNode::asText)
+                .orElse(null);
+        if (isNullOrEmpty(orderId)) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(ORDER_ID_WAS_NOT_SET),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        final JsonNode adjustRequestBody = event.findValue("body");
+        if (adjustRequestBody == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage("Body was null", SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        final AdjustOrderAmountsRequest request;
+        try {
+            request = ContentNegotiation.readBody(objectMapper, event, adjustRequestBody,
+                    AdjustOrderAmountsRequest.class);
+        } catch (JsonParseException | JsonMappingException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage("Invalid JSON in body: "
+                                            + e.getMessage(), SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        if (request == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(REQUEST_WAS_NULL_ERROR),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        try {
+            final Order adjustedOrder = orderRepository.adjustAmounts(orderId,
+                    request.getPreTaxAmountDelta(), request.getPostTaxAmountDelta(),
+                    request.isAllowNegative());
+            final String accept = ContentNegotiation.header(event, "Accept");
+            objectMapper.writeValue(output, ContentNegotiation.encode(objectMapper, adjustedOrder,
+                    ContentNegotiation.preferredMediaType(accept),
+                    APPLICATION_JSON, SC_OK, null));
+        } catch (OrderDoesNotExistException e) {
+            objectMapper.writeValue(output, new GatewayResponse<>(
+                    objectMapper.writeValueAsString(
+                            new ErrorMessage(e.getMessage(), SC_NOT_FOUND)),
+                    APPLICATION_JSON, SC_NOT_FOUND));
+        } catch (UnableToUpdateException e) {
+            objectMapper.writeValue(output, new GatewayResponse<>(
+                    objectMapper.writeValueAsString(
+                            new ErrorMessage(e.getMessage(), SC_CONFLICT)),
+                    APPLICATION_JSON, SC_CONFLICT));
+        } catch (IllegalArgumentException | TableDoesNotExistException e) {
+            objectMapper.writeValue(output, new GatewayResponse<>(
+                    objectMapper.writeValueAsString(
+                            new ErrorMessage(e.getMessage(), SC_BAD_REQUEST)),
+                    APPLICATION_JSON, SC_BAD_REQUEST));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.inject.Inject;
+
+/**
+ * Creates orders from batches of SQS messages whose bodies are CreateOrderRequest JSON. Only the
+ * messages that could not be parsed or written are reported back as batchItemFailures, so SQS
+ * redelivers just those.
+ *
+ * <p>Each order id is derived from the SQS message id, so a redelivered message finds the order
+ * its earlier delivery wrote and succeeds without creating a second one.
+ */
+public class BatchCreateOrdersHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    OrderRepository orderRepository;
+    private final OrderComponent orderComponent;
+
+    public BatchCreateOrdersHandler() {
+        orderComponent = DaggerOrderComponent.builder().build();
+        orderComponent.inject(this);
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        final List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        if (event == null || event.getRecords() == null) {
+            return new SQSBatchResponse(failures);
+        }
+
+        final List<String> messageIds = new ArrayList<>(event.getRecords().size());
+        final List<CreateOrderRequest> requests = new ArrayList<>(event.getRecords().size());
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            final CreateOrderRequest request = parse(message.getBody());
+            if (request == null) {
+                // malformed messages fail on their own and end up in the dead letter queue
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            } else {
+                request.setOrderId(orderId(message.getMessageId()));
+                messageIds.add(message.getMessageId());
+                requests.add(request);
+            }
+        }
+
+        // a write still running at the deadline fails its message, which SQS then redelivers
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            final List<OrderWriteResult> results = orderRepository.createOrders(requests);
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isSuccess()) {
+                    failures.add(new SQSBatchResponse.BatchItemFailure(messageIds.get(i)));
+                }
+            }
+        } catch (RuntimeException e) {
+            // the order ids are derived, so redelivering messages that were written is harmless
+            messageIds.forEach(id -> failures.add(new SQSBatchResponse.BatchItemFailure(id)));
+        } finally {
+            Deadline.clear();
+        }
+        return new SQSBatchResponse(failures);
+    }
+
+    // The same message id always names the same order
+    static String orderId(final String messageId) {
+        return UUID.nameUUIDFromBytes(messageId.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private CreateOrderRequest parse(final String body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, CreateOrderRequest.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+}
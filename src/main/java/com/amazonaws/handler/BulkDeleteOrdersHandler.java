@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderTotalsRecorder;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.BulkDeleteOrdersRequest;
+import com.amazonaws.model.response.BulkDeleteOrdersResponse;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * POST /orders:batchDelete. Deletes the listed orders, or every order of a customer, with
+ * parallel BatchWriteItem calls until the function is close to its timeout, then answers with
+ * the progress so far and a resumeToken to continue from.
+ */
+public class BulkDeleteOrdersHandler implements OrderRequestStreamHandler {
+
+    // Ids deleted, or orders scanned, between two checks of the remaining time
+    private static final int STEP_SIZE = 1000;
+    // Stop starting new steps once the function has less than this left to run
+    private static final long STOP_MARGIN_MILLIS = 5000;
+    private static final ErrorMessage REQUIRE_IDS_OR_CUSTOMER_ERROR = new ErrorMessage(
+            "Require either orderIds or customerId to delete orders", SC_BAD_REQUEST);
+    private static final ErrorMessage INVALID_RESUME_TOKEN_ERROR = new ErrorMessage(
+            "resumeToken was invalid", SC_BAD_REQUEST);
+
+    @Inject
+    ObjectMapper objectMapper; // Jackson JSON parser (injected by Dagger)
+    @Inject
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderDao orderDao; // bulk deletes are only available on the DynamoDB store
+    @Inject
+    @Named("bulkDeleteExecutor")
+    ExecutorService executor; // runs the BatchWriteItem calls in parallel
+    @Inject
+    OrderTotalsRecorder orderTotalsRecorder; // counts the deleted orders out of the order totals
+    private final OrderComponent orderComponent; // Dagger DI component
+
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
+    public BulkDeleteOrdersHandler() {
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.BULK);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("BulkDeleteOrdersHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("BulkDeleteOrdersHandler");
+        try {
+            handle(input, output, context);
+        } finally {
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final JsonNode event;
+        try {
+            event = readEvent(objectMapper, input);
+        } catch (JsonMappingException e) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
+            return;
+        }
+
+        if (event == null) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, "event was null");
+            return;
+        }
+
+        JsonNode bulkDeleteRequestBody = event.findValue("body");
+        if (bulkDeleteRequestBody == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(new ErrorMessage(
+                                    "Body was null", SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        final BulkDeleteOrdersRequest request;
+        try {
+            request = objectMapper.treeToValue(
+                    objectMapper.readTree(ContentNegotiation.bodyText(
+                            event, bulkDeleteRequestBody)),
+                    BulkDeleteOrdersRequest.class);
+        } catch (JsonParseException | JsonMappingException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage(
+                                            "Invalid JSON in body: " + e
+                                                    .getMessage(),
+                                            SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        if (request == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(objectMapper.writeValueAsString(REQUEST_WAS_NULL_ERROR),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        if ((request.getOrderIds() == null) == isNullOrEmpty(request.getCustomerId())) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(REQUIRE_IDS_OR_CUSTOMER_ERROR),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        final Checkpoint checkpoint = Checkpoint.decode(request.getResumeToken());
+        if (checkpoint == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(INVALID_RESUME_TOKEN_ERROR),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        try {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    deleteUntilTimeout(request, checkpoint, context)),
+                            APPLICATION_JSON, SC_OK));
+        } catch (IllegalArgumentException | TableDoesNotExistException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage(e.getMessage(), SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+        }
+    }
+
+    // Runs steps from the checkpoint until the work is done or the time is nearly up
+    private BulkDeleteOrdersResponse deleteUntilTimeout(final BulkDeleteOrdersRequest request,
+            final Checkpoint checkpoint, final Context context) {
+        final List<String> failedOrderIds = new ArrayList<>();
+        final List<Order> deletedOrders =
+                request.isReturnDeletedOrders() ? new ArrayList<>() : null;
+        long deleted = checkpoint.deleted;
+        String position = checkpoint.position;
+        do {
+            final List<String> orderIds;
+            if (request.getOrderIds() != null) {
+                final int offset = position == null ? 0 : Integer.parseInt(position);
+                final int end = Math.min(offset + STEP_SIZE, request.getOrderIds().size());
+                orderIds = request.getOrderIds().subList(Math.min(offset, end), end);
+                position = end < request.getOrderIds().size() ? String.valueOf(end) : null;
+            } else {
+                final OrderPage page = orderDao.scanByCustomer(request.getCustomerId(), position,
+                        STEP_SIZE);
+                orderIds = page.getOrders().stream().map(Order::getOrderId)
+                        .collect(Collectors.toList());
+                position = page.getLastEvaluatedKey();
+            }
+
+            // The totals need each deleted order's amounts, so counting deletes one order per call
+            // instead of 25 per BatchWriteItem; counting is off unless ORDER_TOTALS_SHARDS is set
+            final boolean returnOrders = request.isReturnDeletedOrders()
+                    || orderTotalsRecorder.isEnabled();
+            final List<OrderWriteResult> results = orderDao.deleteOrders(orderIds, returnOrders,
+                    executor);
+            final List<Order> stepOrders = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    deleted++;
+                    if (returnOrders) {
+                        stepOrders.add(results.get(i).getOrder());
+                    }
+                } else {
+                    failedOrderIds.add(orderIds.get(i));
+                }
+            }
+            orderTotalsRecorder.deleted(stepOrders);
+            if (deletedOrders != null) {
+                deletedOrders.addAll(stepOrders);
+            }
+        } while (position != null && hasTimeLeft(context));
+
+        final String resumeToken =
+                position == null ? null : new Checkpoint(position, deleted).encode();
+        return new BulkDeleteOrdersResponse(deleted, failedOrderIds, deletedOrders, resumeToken);
+    }
+
+    // Always runs at least one step, so every call makes progress
+    private static boolean hasTimeLeft(final Context context) {
+        return context != null && context.getRemainingTimeInMillis() > STOP_MARGIN_MILLIS;
+    }
+
+    /**
+     * Where a bulk delete stopped: the next offset into orderIds, or the last orderId scanned
+     * for a customer, plus the running count of deleted orders. Travels as an opaque token.
+     */
+    private static final class Checkpoint {
+        private final String position;
+        private final long deleted;
+
+        private Checkpoint(final String position, final long deleted) {
+            this.position = position;
+            this.deleted = deleted;
+        }
+
+        private String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (deleted + ":" + position).getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Returns null when the token is not one encode() produced
+        private static Checkpoint decode(final String token) {
+            if (token == null || token.isEmpty()) {
+                return new Checkpoint(null, 0);
+            }
+            try {
+                final String text = new String(Base64.getUrlDecoder().decode(token),
+                        StandardCharsets.UTF_8);
+                final int separator = text.indexOf(':');
+                if (separator < 1 || separator == text.length() - 1) {
+                    return null;
+                }
+                return new Checkpoint(text.substring(separator + 1),
+                        Long.parseLong(text.substring(0, separator)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
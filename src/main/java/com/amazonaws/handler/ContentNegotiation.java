@@ -0,0 +1,356 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.model.OrderJsonModule;
+import com.amazonaws.model.response.GatewayResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP content negotiation helpers for API Gateway proxy events: the body format driven by Accept
+ * and Content-Type, response compression driven by Accept-Encoding and version derived entity
+ * tags for conditional GETs.
+ *
+ * <p>Besides JSON, bodies can be CBOR or Smile, binary encodings of the same documents that
+ * service-to-service callers read and write faster. Binary bodies travel base64 encoded through
+ * API Gateway, which decodes them because the API declares every media type binary.
+ */
+public final class ContentNegotiation {
+    public static final String GZIP = "gzip";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final int SC_NOT_MODIFIED = 304;
+
+    // Below this size the gzip header and base64 inflation outweigh the savings.
+    static final int MIN_COMPRESSIBLE_BYTES = 1024;
+
+    private static final String GZIP_ETAG_SUFFIX = "-" + GZIP;
+
+    private ContentNegotiation() {
+    }
+
+    /**
+     * Looks up a request header on an API Gateway proxy event. Header names are case insensitive.
+     * @param event the proxy event
+     * @param name the header name
+     * @return the header value or null if the header was not sent
+     */
+    public static String header(final JsonNode event, final String name) {
+        final JsonNode headers = event == null ? null : event.get("headers");
+        if (headers == null || !headers.isObject()) {
+            return null;
+        }
+        final Iterator<Map.Entry<String, JsonNode>> fields = headers.fields();
+        while (fields.hasNext()) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().equalsIgnoreCase(name) && !field.getValue().isNull()) {
+                return field.getValue().asText();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the request body as text, decoding it first if API Gateway passed it base64 encoded
+     * because it matched one of the binary media types.
+     * @param event the proxy event
+     * @param body the body node of the event
+     * @return the body text
+     */
+    public static String bodyText(final JsonNode event, final JsonNode body) {
+        if (event != null && event.path("isBase64Encoded").asBoolean(false) && body.isTextual()) {
+            return new String(Base64.getMimeDecoder().decode(body.asText()),
+                    StandardCharsets.UTF_8);
+        }
+        return body.asText();
+    }
+
+    /**
+     * Returns the request body as bytes, decoding it first if API Gateway passed it base64 encoded.
+     * @param event the proxy event
+     * @param body the body node of the event
+     * @return the body bytes
+     */
+    public static byte[] bodyBytes(final JsonNode event, final JsonNode body) {
+        if (event != null && event.path("isBase64Encoded").asBoolean(false) && body.isTextual()) {
+            return Base64.getMimeDecoder().decode(body.asText());
+        }
+        return body.asText().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the request body in the format its Content-Type names, CBOR, Smile or else JSON.
+     * @param objectMapper the mapper for JSON bodies
+     * @param event the proxy event
+     * @param body the body node of the event
+     * @param type the type to read
+     * @return the body, or null for a JSON null
+     * @throws IOException if the body is not a valid document of its format or of the type
+     */
+    public static <T> T readBody(final ObjectMapper objectMapper, final JsonNode event,
+                                 final JsonNode body, final Class<T> type) throws IOException {
+        final String mediaType = binaryMediaType(header(event, "Content-Type"));
+        if (mediaType == null) {
+            // not via a tree, which reads decimals as doubles
+            return objectMapper.readValue(bodyText(event, body), type);
+        }
+        return binaryMapper(mediaType).readValue(bodyBytes(event, body), type);
+    }
+
+    /**
+     * Picks the response format from an Accept header. CBOR or Smile is chosen when the client
+     * accepts it at least as much as JSON, so listing a binary type ahead of a wildcard selects it.
+     * @param accept the Accept header, may be null
+     * @return {@link #APPLICATION_CBOR}, {@link #APPLICATION_SMILE} or null for JSON
+     */
+    public static String preferredMediaType(final String accept) {
+        if (accept == null) {
+            return null;
+        }
+        double cborQuality = -1;
+        double smileQuality = -1;
+        double jsonQuality = -1;
+        double wildcardQuality = -1;
+        for (String range : accept.split(",")) {
+            final String[] parts = range.split(";");
+            final String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            final double quality = quality(parts);
+            if (APPLICATION_CBOR.equals(name)) {
+                cborQuality = quality;
+            } else if (APPLICATION_SMILE.equals(name)) {
+                smileQuality = quality;
+            } else if ("application/json".equals(name)) {
+                jsonQuality = quality;
+            } else if ("*/*".equals(name) || "application/*".equals(name)) {
+                wildcardQuality = Math.max(wildcardQuality, quality);
+            }
+        }
+        final double json = jsonQuality >= 0 ? jsonQuality : wildcardQuality;
+        if (cborQuality > 0 && cborQuality >= json && cborQuality >= smileQuality) {
+            return APPLICATION_CBOR;
+        }
+        if (smileQuality > 0 && smileQuality >= json) {
+            return APPLICATION_SMILE;
+        }
+        return null;
+    }
+
+    /**
+     * Picks the response content coding from an Accept-Encoding header. Only gzip is offered; a
+     * client that also lists br gets gzip, as the JDK ships no Brotli encoder.
+     * @param acceptEncoding the Accept-Encoding header, may be null
+     * @return {@link #GZIP} or null for the identity coding
+     */
+    public static String preferredEncoding(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzipQuality = -1;
+        double wildcardQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parts = coding.split(";");
+            final String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            final double quality = quality(parts);
+            if (GZIP.equals(name) || "x-gzip".equals(name)) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if ("*".equals(name)) {
+                wildcardQuality = quality;
+            }
+        }
+        final double effective = gzipQuality >= 0 ? gzipQuality : wildcardQuality;
+        return effective > 0 ? GZIP : null;
+    }
+
+    /**
+     * Builds a response, gzip compressing the body when a coding was negotiated and the body is
+     * large enough to benefit. Compressed bodies are base64 encoded for API Gateway, which turns
+     * them back into binary because the API declares binary media types.
+     * @param body the uncompressed response body
+     * @param headers the response headers
+     * @param statusCode the response status code
+     * @param encoding the negotiated coding, null for identity
+     * @return the response to serialize to the Lambda output stream
+     */
+    public static GatewayResponse<String> encode(final String body,
+                                                 final Map<String, String> headers,
+                                                 final int statusCode, final String encoding) {
+        final Map<String, String> responseHeaders = new HashMap<>(headers);
+        responseHeaders.put("Vary", "Accept-Encoding");
+        return compress(body, body.getBytes(StandardCharsets.UTF_8), responseHeaders, statusCode,
+                encoding);
+    }
+
+    /**
+     * Builds a response with the body serialized in the negotiated format, then compressed like
+     * {@link #encode(String, Map, int, String)} does. CBOR and Smile bodies are base64 encoded.
+     * @param objectMapper the mapper for JSON bodies
+     * @param body the response document
+     * @param mediaType the format from {@link #preferredMediaType(String)}, null for JSON
+     * @param headers the response headers
+     * @param statusCode the response status code
+     * @param encoding the negotiated coding, null for identity
+     * @return the response to serialize to the Lambda output stream
+     * @throws JsonProcessingException if the body could not be serialized
+     */
+    public static GatewayResponse<String> encode(final ObjectMapper objectMapper, final Object body,
+                                                 final String mediaType,
+                                                 final Map<String, String> headers,
+                                                 final int statusCode, final String encoding)
+            throws JsonProcessingException {
+        final Map<String, String> responseHeaders = new HashMap<>(headers);
+        responseHeaders.put("Vary", "Accept, Accept-Encoding");
+        if (mediaType == null) {
+            final String json = objectMapper.writeValueAsString(body);
+            return compress(json, json.getBytes(StandardCharsets.UTF_8), responseHeaders,
+                    statusCode, encoding);
+        }
+        responseHeaders.put("Content-Type", mediaType);
+        return compress(null, binaryMapper(mediaType).writeValueAsBytes(body), responseHeaders,
+                statusCode, encoding);
+    }
+
+    // Gzips raw if negotiated and worth it; text is the uncompressed body, null for binary
+    private static GatewayResponse<String> compress(final String text, final byte[] raw,
+                                                    final Map<String, String> responseHeaders,
+                                                    final int statusCode, final String encoding) {
+        if (!GZIP.equals(encoding) || raw.length < MIN_COMPRESSIBLE_BYTES) {
+            return text != null
+                    ? new GatewayResponse<>(text, responseHeaders, statusCode)
+                    : new GatewayResponse<>(Base64.getEncoder().encodeToString(raw),
+                            responseHeaders, statusCode, true);
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        responseHeaders.put("Content-Encoding", GZIP);
+        final String etag = responseHeaders.get("ETag");
+        if (etag != null) {
+            // a strong validator has to differ between codings of the same representation
+            responseHeaders.put("ETag",
+                    etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + "\"");
+        }
+        return new GatewayResponse<>(Base64.getEncoder().encodeToString(compressed.toByteArray()),
+                responseHeaders, statusCode, true);
+    }
+
+    /**
+     * Formats the strong entity tag of an order representation from its version.
+     * @param version the order version
+     * @return the quoted entity tag
+     */
+    public static String etag(final Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Formats the strong entity tag of an order representation in a negotiated format, which has
+     * to differ between the formats of the same version.
+     * @param version the order version
+     * @param mediaType the format from {@link #preferredMediaType(String)}, null for JSON
+     * @return the quoted entity tag
+     */
+    public static String etag(final Long version, final String mediaType) {
+        if (mediaType == null) {
+            return etag(version);
+        }
+        return "\"" + version + "-" + mediaType.substring(mediaType.lastIndexOf('/') + 1) + "\"";
+    }
+
+    /**
+     * Evaluates an If-None-Match header against the current entity tag with the weak comparison
+     * RFC 7232 prescribes for this header. Tags that only differ by content coding match.
+     * @param ifNoneMatch the If-None-Match header, may be null
+     * @param etag the current entity tag as produced by {@link #etag(Long)}
+     * @return true if the client's copy is current and a 304 should be sent
+     */
+    public static boolean notModified(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.endsWith(GZIP_ETAG_SUFFIX + "\"")) {
+                tag = tag.substring(0, tag.length() - GZIP_ETAG_SUFFIX.length() - 1) + "\"";
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The binary format a Content-Type header names, null for anything else
+    private static String binaryMediaType(final String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        final String name = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return APPLICATION_CBOR.equals(name) || APPLICATION_SMILE.equals(name) ? name : null;
+    }
+
+    private static ObjectMapper binaryMapper(final String mediaType) {
+        return APPLICATION_CBOR.equals(mediaType) ? CborHolder.MAPPER : SmileHolder.MAPPER;
+    }
+
+    // Created on first use, so JSON-only functions never load the binary formats
+    private static final class CborHolder {
+        static final ObjectMapper MAPPER = new CBORMapper().registerModule(new OrderJsonModule());
+    }
+
+    private static final class SmileHolder {
+        static final ObjectMapper MAPPER = new SmileMapper().registerModule(new OrderJsonModule());
+    }
+
+    private static double quality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
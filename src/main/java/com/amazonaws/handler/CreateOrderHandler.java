@@ -19,13 +19,20 @@ package com.amazonaws.handler;
 
 import com.amazonaws.config.DaggerOrderComponent;
 import com.amazonaws.config.OrderComponent;
-import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
 import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
 import com.amazonaws.model.Order;
 import com.amazonaws.model.request.CreateOrderRequest;
 import com.amazonaws.model.response.ErrorMessage;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -49,23 +56,52 @@ public class CreateOrderHandler implements OrderRequestStreamHandler {
         @Inject
         ObjectMapper objectMapper; // Jackson JSON parser (injected by Dagger)
         @Inject
-        OrderDao orderDao; // DAO to create and persist orders (injected)
+        AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+        @Inject
+        Tracer tracer; // starts a trace for sampled requests
+        @Inject
+        OrderRepository orderRepository; // Repository to create and persist orders (injected)
         private final OrderComponent orderComponent; // Dagger DI component
 
         // This class is invoked when lambda starts because of it's definition in the
         // template.yml file
         public CreateOrderHandler() {
                 // Initialize Dagger dependency injection
-                orderComponent = DaggerOrderComponent.builder().build();
-                orderComponent.inject(this); // injects objectMapper and orderDao
+                try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+                        orderComponent = DaggerOrderComponent.builder().build();
+                        orderComponent.inject(this); // injects objectMapper and orderRepository
+                }
         }
 
         @Override
         public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+                final AdaptiveConcurrencyLimiter.Permit permit =
+                                concurrencyLimiter.tryAcquire(Priority.NORMAL);
+                if (permit == null) {
+                        writeOverloadedResponse(objectMapper, output);
+                        return;
+                }
+                final Span trace = tracer.startTrace("CreateOrderHandler");
+                final StartupTimer.Phase firstInvocation =
+                                StartupTimer.firstInvocation("CreateOrderHandler");
+                Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+                try {
+                        handle(input, output);
+                } catch (DeadlineExceededException e) {
+                        writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+                } finally {
+                        Deadline.clear();
+                        permit.release();
+                        trace.close();
+                        firstInvocation.close();
+                }
+        }
+
+        private void handle(InputStream input, OutputStream output) throws IOException {
                 final JsonNode event;
                 try {
                         // Read raw JSON from input stream
-                        event = objectMapper.readTree(input);
+                        event = readEvent(objectMapper, input);
                 } catch (JsonMappingException e) {
                         // Malformed input JSON
                         writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
@@ -90,10 +126,9 @@ public class CreateOrderHandler implements OrderRequestStreamHandler {
 
                 final CreateOrderRequest request;
                 try {
-                        // Parse the raw JSON string into a CreateOrderRequest object
-                        request = objectMapper.treeToValue(
-                                        objectMapper.readTree(createOrderRequestBody.asText()),
-                                        CreateOrderRequest.class);
+                        // Parse the JSON, CBOR or Smile body into a CreateOrderRequest object
+                        request = ContentNegotiation.readBody(objectMapper, event,
+                                        createOrderRequestBody, CreateOrderRequest.class);
                 } catch (JsonParseException | JsonMappingException e) {
                         objectMapper.writeValue(output,
                                         new GatewayResponse<>(
@@ -138,13 +173,14 @@ public class CreateOrderHandler implements OrderRequestStreamHandler {
 
                 try {
                         // Pass the validated request object to DAO to create the order
-                        final Order order = orderDao.createOrder(request);
+                        final Order order = orderRepository.createOrder(request);
 
-                        // Return 201 response with the created order as JSON
+                        // Return 201 response with the created order in the format the caller wants
+                        final String accept = ContentNegotiation.header(event, "Accept");
+                        final String mediaType = ContentNegotiation.preferredMediaType(accept);
                         objectMapper.writeValue(output,
-                                        new GatewayResponse<>(
-                                                        objectMapper.writeValueAsString(order), APPLICATION_JSON,
-                                                        SC_CREATED));
+                                        ContentNegotiation.encode(objectMapper, order, mediaType,
+                                                        APPLICATION_JSON, SC_CREATED, null));
                 } catch (CouldNotCreateOrderException e) {
                         // Failed to persist the order
                         objectMapper.writeValue(output,
@@ -19,12 +19,19 @@ package com.amazonaws.handler;
 
 import com.amazonaws.config.DaggerOrderComponent;
 import com.amazonaws.config.OrderComponent;
-import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
 import com.amazonaws.exception.OrderDoesNotExistException;
 import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
 import com.amazonaws.model.response.ErrorMessage;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -39,20 +46,52 @@ public class DeleteOrderHandler implements OrderRequestStreamHandler {
     @Inject
     ObjectMapper objectMapper;
     @Inject
-    OrderDao orderDao;
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
     private final OrderComponent orderComponent;
 
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
     public DeleteOrderHandler() {
-        orderComponent = DaggerOrderComponent.builder().build();
-        orderComponent.inject(this);
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
     }
 
     @Override
-    public void handleRequest(InputStream input, OutputStream output,
-                              Context context) throws IOException {
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.NORMAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("DeleteOrderHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("DeleteOrderHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
         final JsonNode event;
         try {
-            event = objectMapper.readTree(input);
+            event = readEvent(objectMapper, input);
         } catch (JsonMappingException e) {
             writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
             return;
@@ -77,7 +116,7 @@ public class DeleteOrderHandler implements OrderRequestStreamHandler {
         }
         try {
             objectMapper.writeValue(output, new GatewayResponse<>(
-                    objectMapper.writeValueAsString(orderDao.deleteOrder(orderId)),
+                    objectMapper.writeValueAsString(orderRepository.deleteOrder(orderId)),
                     APPLICATION_JSON, SC_OK));
         } catch (OrderDoesNotExistException e) {
             objectMapper.writeValue(output, new GatewayResponse<>(
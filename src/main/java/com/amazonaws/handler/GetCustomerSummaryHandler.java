@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.CustomerSummaryDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import javax.inject.Inject;
+
+public class GetCustomerSummaryHandler implements OrderRequestStreamHandler {
+    private static final ErrorMessage CUSTOMER_ID_WAS_NOT_SET
+            = new ErrorMessage("customer_id was not set", SC_BAD_REQUEST);
+
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    CustomerSummaryDao customerSummaryDao;
+    private final OrderComponent orderComponent;
+
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
+    public GetCustomerSummaryHandler() {
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.CRITICAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("GetCustomerSummaryHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("GetCustomerSummaryHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
+        final JsonNode event;
+        try {
+            event = readEvent(objectMapper, input);
+        } catch (JsonMappingException e) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
+            return;
+        }
+        if (event == null) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, "event was null");
+            return;
+        }
+        final JsonNode pathParameterMap = event.findValue("pathParameters");
+        final String customerId = Optional.ofNullable(pathParameterMap)
+                .map(mapNode -> mapNode.get("customer_id"))
+                .map(JsonNode::asText)
+                .orElse(null);
+        if (isNullOrEmpty(customerId)) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(CUSTOMER_ID_WAS_NOT_SET),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+        objectMapper.writeValue(output,
+                new GatewayResponse<>(
+                        objectMapper.writeValueAsString(customerSummaryDao.getSummary(customerId)),
+                        APPLICATION_JSON, SC_OK));
+    }
+}
@@ -19,12 +19,19 @@ package com.amazonaws.handler;
 
 import com.amazonaws.config.DaggerOrderComponent;
 import com.amazonaws.config.OrderComponent;
-import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
 import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
 import com.amazonaws.model.Order;
 import com.amazonaws.model.response.ErrorMessage;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -32,6 +39,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import javax.inject.Inject;
 
@@ -39,20 +48,51 @@ public class GetOrderHandler implements OrderRequestStreamHandler {
     @Inject
     ObjectMapper objectMapper;
     @Inject
-    OrderDao orderDao;
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
     private final OrderComponent orderComponent;
 
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
     public GetOrderHandler() {
-        orderComponent = DaggerOrderComponent.builder().build();
-        orderComponent.inject(this);
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
     }
 
     @Override
-    public void handleRequest(InputStream input, OutputStream output,
-                              Context context) throws IOException {
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.CRITICAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("GetOrderHandler");
+        final StartupTimer.Phase firstInvocation = StartupTimer.firstInvocation("GetOrderHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
         final JsonNode event;
         try {
-            event = objectMapper.readTree(input);
+            event = readEvent(objectMapper, input);
         } catch (JsonMappingException e) {
             writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
             return;
@@ -74,11 +114,26 @@ public class GetOrderHandler implements OrderRequestStreamHandler {
             return;
         }
         try {
-            Order order = orderDao.getOrder(orderId);
+            Order order = orderRepository.getOrder(orderId);
+            final String mediaType = ContentNegotiation.preferredMediaType(
+                    ContentNegotiation.header(event, "Accept"));
+            final String etag = ContentNegotiation.etag(order.getVersion(), mediaType);
+            final Map<String, String> headers = new HashMap<>(APPLICATION_JSON);
+            headers.put("ETag", etag);
+            if (orderRepository.isUpdatePending(orderId)) {
+                headers.put("X-Update-Pending", "true"); // not yet durable, read again to confirm
+            }
+            if (ContentNegotiation.notModified(
+                    ContentNegotiation.header(event, "If-None-Match"), etag)) {
+                // the poller already has this version, skip serializing the order altogether
+                objectMapper.writeValue(output,
+                        new GatewayResponse<>(null, headers, ContentNegotiation.SC_NOT_MODIFIED));
+                return;
+            }
             objectMapper.writeValue(output,
-                    new GatewayResponse<>(
-                            objectMapper.writeValueAsString(order),
-                            APPLICATION_JSON, SC_OK));
+                    ContentNegotiation.encode(objectMapper, order, mediaType,
+                            headers, SC_OK, ContentNegotiation.preferredEncoding(
+                                    ContentNegotiation.header(event, "Accept-Encoding"))));
         } catch (OrderDoesNotExistException e) {
             objectMapper.writeValue(output,
                     new GatewayResponse<>(
@@ -19,11 +19,17 @@ package com.amazonaws.handler;
 
 import com.amazonaws.config.DaggerOrderComponent;
 import com.amazonaws.config.OrderComponent;
-import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
 import com.amazonaws.model.OrderPage;
-import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.model.response.GetOrdersResponse;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,21 +44,52 @@ public class GetOrdersHandler implements OrderRequestStreamHandler {
     @Inject
     ObjectMapper objectMapper;
     @Inject
-    OrderDao orderDao;
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
     private final OrderComponent orderComponent;
 
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
     public GetOrdersHandler() {
-        orderComponent = DaggerOrderComponent.builder().build();
-        orderComponent.inject(this);
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
     }
 
     @Override
-    public void handleRequest(InputStream input, OutputStream output,
-            Context context) throws IOException {
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.BULK);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("GetOrdersHandler");
+        final StartupTimer.Phase firstInvocation = StartupTimer.firstInvocation("GetOrdersHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
         System.out.println("==== Entered handleRequest ====");
         final JsonNode event;
         try {
-            event = objectMapper.readTree(input);
+            event = readEvent(objectMapper, input);
         } catch (JsonMappingException e) {
             writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
             return;
@@ -62,11 +99,12 @@ public class GetOrdersHandler implements OrderRequestStreamHandler {
                 .map(mapNode -> mapNode.get("exclusive_start_key").asText())
                 .orElse(null);
 
-        OrderPage page = orderDao.getOrders(exclusiveStartKeyQueryParameter);
+        OrderPage page = orderRepository.getOrders(exclusiveStartKeyQueryParameter);
         // TODO handle exceptions
-        objectMapper.writeValue(output, new GatewayResponse<>(
-                objectMapper.writeValueAsString(
-                        new GetOrdersResponse(page.getLastEvaluatedKey(), page.getOrders())),
-                APPLICATION_JSON, SC_OK));
+        objectMapper.writeValue(output, ContentNegotiation.encode(objectMapper,
+                new GetOrdersResponse(page.getLastEvaluatedKey(), page.getOrders()),
+                ContentNegotiation.preferredMediaType(ContentNegotiation.header(event, "Accept")),
+                APPLICATION_JSON, SC_OK, ContentNegotiation.preferredEncoding(
+                        ContentNegotiation.header(event, "Accept-Encoding"))));
     }
 }
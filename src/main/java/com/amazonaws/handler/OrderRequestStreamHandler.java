@@ -18,21 +18,31 @@ package com.amazonaws.handler;
 import com.amazonaws.model.response.ErrorMessage;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracing;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 public interface OrderRequestStreamHandler extends RequestStreamHandler {
     int SC_OK = 200;
     int SC_CREATED = 201;
+    int SC_ACCEPTED = 202;
     int SC_BAD_REQUEST = 400;
     int SC_NOT_FOUND = 404;
     int SC_CONFLICT = 409;
+    int SC_TOO_MANY_REQUESTS = 429;
     int SC_INTERNAL_SERVER_ERROR = 500;
+    int SC_SERVICE_UNAVAILABLE = 503;
+    // Seconds a client should wait before retrying a request that was shed or ran out of time
+    String RETRY_AFTER_SECONDS = "1";
     Map<String, String> APPLICATION_JSON = Collections.singletonMap("Content-Type",
             "application/json");
     ErrorMessage REQUEST_WAS_NULL_ERROR
@@ -40,6 +50,22 @@ public interface OrderRequestStreamHandler extends RequestStreamHandler {
     ErrorMessage ORDER_ID_WAS_NOT_SET
             = new ErrorMessage("order_id was not set", SC_NOT_FOUND);
 
+    /**
+     * This method reads the API Gateway event, timing it as the parse step of a sampled trace and
+     * joining the caller's trace when the event carries a traceparent header.
+     * @param objectMapper the mapper to read the event with.
+     * @param input the stream the Lambda runtime passed the event in.
+     * @return the event, or null if the stream was empty.
+     * @throws IOException if the event could not be read.
+     */
+    default JsonNode readEvent(ObjectMapper objectMapper, InputStream input) throws IOException {
+        try (Span span = Tracing.span("parse")) {
+            final JsonNode event = objectMapper.readTree(input);
+            Tracing.adoptTraceparent(event);
+            return event;
+        }
+    }
+
     /**
      * This method writes a body has invalid JSON response.
      * @param objectMapper the mappeter to use for converting the error response to JSON.
@@ -56,6 +82,55 @@ public interface OrderRequestStreamHandler extends RequestStreamHandler {
                 APPLICATION_JSON, SC_BAD_REQUEST));
     }
 
+    /**
+     * This method writes a service unavailable response for a request whose deadline passed
+     * before DynamoDB answered, asking the client to retry after a moment.
+     * @param objectMapper the mapper to use for converting the error response to JSON.
+     * @param output the output stream to write with the mapper.
+     * @param details a detailed message describing which call ran out of time.
+     * @throws IOException if there was an issue converting the ErrorMessage object to JSON.
+     */
+    default void writeDeadlineExceededResponse(ObjectMapper objectMapper,
+                                               OutputStream output,
+                                               String details) throws IOException {
+        writeUnavailableResponse(objectMapper, output, details);
+    }
+
+    /**
+     * This method writes a service unavailable response for a request that could not be completed
+     * now, asking the client to retry after a moment.
+     * @param objectMapper the mapper to use for converting the error response to JSON.
+     * @param output the output stream to write with the mapper.
+     * @param details a detailed message describing what could not be done.
+     * @throws IOException if there was an issue converting the ErrorMessage object to JSON.
+     */
+    default void writeUnavailableResponse(ObjectMapper objectMapper,
+                                          OutputStream output,
+                                          String details) throws IOException {
+        Map<String, String> headers = new HashMap<>(APPLICATION_JSON);
+        headers.put("Retry-After", RETRY_AFTER_SECONDS);
+        objectMapper.writeValue(output, new GatewayResponse<>(
+                objectMapper.writeValueAsString(new ErrorMessage(details, SC_SERVICE_UNAVAILABLE)),
+                headers, SC_SERVICE_UNAVAILABLE));
+    }
+
+    /**
+     * This method writes a too many requests response for a request the concurrency limiter
+     * turned away, asking the client to retry after a moment.
+     * @param objectMapper the mapper to use for converting the error response to JSON.
+     * @param output the output stream to write with the mapper.
+     * @throws IOException if there was an issue converting the ErrorMessage object to JSON.
+     */
+    default void writeOverloadedResponse(ObjectMapper objectMapper,
+                                         OutputStream output) throws IOException {
+        Map<String, String> headers = new HashMap<>(APPLICATION_JSON);
+        headers.put("Retry-After", RETRY_AFTER_SECONDS);
+        objectMapper.writeValue(output, new GatewayResponse<>(
+                objectMapper.writeValueAsString(new ErrorMessage(
+                        "Too many requests in flight, retry later", SC_TOO_MANY_REQUESTS)),
+                headers, SC_TOO_MANY_REQUESTS));
+    }
+
     default boolean isNullOrEmpty(final String string) {
         return string == null || string.isEmpty();
     }
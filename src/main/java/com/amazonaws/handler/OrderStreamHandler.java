@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.CustomerSummaryDao;
+import com.amazonaws.dao.OrderChange;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * Consumes the orders table stream and folds every INSERT, MODIFY and REMOVE into the per
+ * customer aggregates kept by CustomerSummaryDao.
+ */
+public class OrderStreamHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+    @Inject
+    CustomerSummaryDao customerSummaryDao;
+    private final OrderComponent orderComponent;
+
+    public OrderStreamHandler() {
+        orderComponent = DaggerOrderComponent.builder().build();
+        orderComponent.inject(this);
+    }
+
+    @Override
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        if (event == null || event.getRecords() == null) {
+            return new StreamsEventResponse(Collections.emptyList());
+        }
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            final StreamRecord streamRecord = record.getDynamodb();
+            if (streamRecord == null) {
+                continue;
+            }
+            try {
+                customerSummaryDao.apply(toChange(streamRecord));
+            } catch (RuntimeException e) {
+                // Report only the first failure: Lambda retries from that record, so the changes
+                // of an order are never applied out of order. Applied records are deduplicated.
+                return new StreamsEventResponse(Collections.singletonList(
+                        new StreamsEventResponse.BatchItemFailure(
+                                streamRecord.getSequenceNumber())));
+            }
+        }
+        return new StreamsEventResponse(Collections.emptyList());
+    }
+
+    static OrderChange toChange(final StreamRecord streamRecord) {
+        return OrderChange.builder()
+                .orderId(string(streamRecord.getKeys(), "orderId"))
+                .sequenceNumber(streamRecord.getSequenceNumber())
+                .oldImage(toOrder(streamRecord.getOldImage()))
+                .newImage(toOrder(streamRecord.getNewImage()))
+                .build();
+    }
+
+    private static Order toOrder(final Map<String, AttributeValue> image) {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        return Order.builder()
+                .orderId(string(image, "orderId"))
+                .customerId(string(image, "customerId"))
+                .preTaxAmount(Money.parse(number(image, "preTaxAmount")))
+                .postTaxAmount(Money.parse(number(image, "postTaxAmount")))
+                .version(Long.valueOf(number(image, "version")))
+                .build();
+    }
+
+    private static String string(final Map<String, AttributeValue> image, final String name) {
+        final AttributeValue value = image == null ? null : image.get(name);
+        if (value == null || value.getS() == null || value.getS().isEmpty()) {
+            throw new IllegalStateException(name + " was missing from the stream record");
+        }
+        return value.getS();
+    }
+
+    private static String number(final Map<String, AttributeValue> image, final String name) {
+        final AttributeValue value = image.get(name);
+        if (value == null || value.getN() == null) {
+            throw new IllegalStateException(name + " was missing from the stream record");
+        }
+        return value.getN();
+    }
+}
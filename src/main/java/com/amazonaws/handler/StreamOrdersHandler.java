@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderPageIterator;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Lists the orders as NDJSON, one order per line, from the exclusive_start_key query parameter,
+ * if given, to the end of the table. Each page is written and flushed as soon as it is read, so
+ * the first orders reach the client while later pages are still being fetched. The next
+ * PAGES_AHEAD pages are fetched while the current one is written, and no more than those are held
+ * in memory however many orders there are. Errors found before the first page was read
+ * get a status code; a failure after that cuts the stream short, which the client sees as an
+ * incomplete chunked response.
+ */
+public class StreamOrdersHandler implements StreamingResponseHandler {
+    private static final int PAGES_AHEAD = 2;
+
+    @Inject
+    ObjectMapper objectMapper;
+    @Inject
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
+    @Inject
+    @Named("pagePrefetchExecutor")
+    ExecutorService executor; // fetches the next pages while the current one is written
+    private final OrderComponent orderComponent;
+
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
+    public StreamOrdersHandler() {
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.BULK);
+        if (permit == null) {
+            writeStreamingError(objectMapper, output, new ErrorMessage(
+                    "Too many requests in flight, retry later", SC_TOO_MANY_REQUESTS),
+                    retryAfter());
+            return;
+        }
+        final Span trace = tracer.startTrace("StreamOrdersHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("StreamOrdersHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
+        final JsonNode event;
+        try {
+            event = readEvent(objectMapper, input);
+        } catch (JsonMappingException e) {
+            writeStreamingError(objectMapper, output, new ErrorMessage("Invalid JSON in body: "
+                    + e.getMessage(), SC_BAD_REQUEST), APPLICATION_JSON);
+            return;
+        }
+        // function URLs pass query parameters as queryStringParameters
+        final JsonNode startKey = event == null ? null
+                : event.path("queryStringParameters").get("exclusive_start_key");
+
+        try (OrderPageIterator pages = orderRepository.getOrderPages(
+                startKey == null ? null : startKey.asText(), PAGES_AHEAD, executor)) {
+            try {
+                pages.hasNext(); // waits for the first page, whose errors can still get a status
+            } catch (DeadlineExceededException e) {
+                writeStreamingError(objectMapper, output,
+                        new ErrorMessage(e.getMessage(), SC_SERVICE_UNAVAILABLE), retryAfter());
+                return;
+            }
+
+            writePrelude(objectMapper, output, SC_OK, APPLICATION_NDJSON);
+            // flushed once per page rather than once per order, so a page goes out as one chunk
+            final ObjectWriter orderWriter = objectMapper.writerFor(Order.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.setRootValueSeparator(null);
+                while (pages.hasNext()) {
+                    for (Order order : pages.next().getOrders()) {
+                        orderWriter.writeValue(generator, order);
+                        generator.writeRaw('\n');
+                    }
+                    generator.flush();
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> retryAfter() {
+        final Map<String, String> headers = new HashMap<>(APPLICATION_JSON);
+        headers.put("Retry-After", RETRY_AFTER_SECONDS);
+        return headers;
+    }
+}
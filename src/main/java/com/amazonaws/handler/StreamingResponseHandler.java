@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.model.response.ErrorMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A handler whose response is streamed to the client while it is being written, through a
+ * function URL in RESPONSE_STREAM invoke mode. The response starts with a prelude carrying the
+ * status code and headers, a JSON object followed by eight NUL bytes, and the body follows it
+ * as is. LambdaRuntime posts the output of these handlers in streaming mode, chunk by chunk as
+ * the handler flushes, instead of buffering the whole response.
+ */
+public interface StreamingResponseHandler extends OrderRequestStreamHandler {
+    /** The content type of a streamed response that starts with a prelude. */
+    String HTTP_INTEGRATION_RESPONSE = "application/vnd.awslambda.http-integration-response";
+    Map<String, String> APPLICATION_NDJSON = Collections.singletonMap("Content-Type",
+            "application/x-ndjson");
+    byte[] PRELUDE_DELIMITER = new byte[8];
+
+    /**
+     * This method writes the prelude of a streamed response. Everything written after it is the
+     * response body.
+     * @param objectMapper the mapper to use for converting the prelude to JSON.
+     * @param output the output stream to write to.
+     * @param statusCode the response status code.
+     * @param headers the response headers.
+     * @throws IOException if the prelude could not be written.
+     */
+    default void writePrelude(ObjectMapper objectMapper,
+                              OutputStream output,
+                              int statusCode,
+                              Map<String, String> headers) throws IOException {
+        final Map<String, Object> prelude = new LinkedHashMap<>();
+        prelude.put("statusCode", statusCode);
+        prelude.put("headers", headers);
+        output.write(objectMapper.writeValueAsBytes(prelude));
+        output.write(PRELUDE_DELIMITER);
+    }
+
+    /**
+     * This method writes a complete streamed response for an error that happened before any of
+     * the body was written.
+     * @param objectMapper the mapper to use for converting the error to JSON.
+     * @param output the output stream to write to.
+     * @param error the error to send, its status code becomes the response status.
+     * @param headers the response headers.
+     * @throws IOException if the response could not be written.
+     */
+    default void writeStreamingError(ObjectMapper objectMapper,
+                                     OutputStream output,
+                                     ErrorMessage error,
+                                     Map<String, String> headers) throws IOException {
+        writePrelude(objectMapper, output, error.getStatusCode(), headers);
+        output.write(objectMapper.writeValueAsBytes(error));
+        output.flush();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.config.DaggerOrderComponent;
+import com.amazonaws.config.OrderComponent;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderTotalsRecorder;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.exception.TransactionConflictException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.OrderMutation;
+import com.amazonaws.model.request.TransactOrdersRequest;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.model.response.TransactOrdersResponse;
+import com.amazonaws.model.response.TransactionConflictMessage;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * POST /orders:transact. Applies a list of order creates, updates and deletes as one
+ * DynamoDB transaction. Answers 200 with the resulting orders, or 409 with the reason each
+ * offending mutation was rejected when the transaction is cancelled.
+ */
+public class TransactOrdersHandler implements OrderRequestStreamHandler {
+
+    @Inject
+    ObjectMapper objectMapper; // Jackson JSON parser (injected by Dagger)
+    @Inject
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderDao orderDao; // transactions are only available on the DynamoDB store
+    @Inject
+    OrderTotalsRecorder orderTotalsRecorder; // counts committed mutations in the order totals
+    private final OrderComponent orderComponent; // Dagger DI component
+
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
+    public TransactOrdersHandler() {
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.NORMAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("TransactOrdersHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("TransactOrdersHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
+        final JsonNode event;
+        try {
+            event = readEvent(objectMapper, input);
+        } catch (JsonMappingException e) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
+            return;
+        }
+
+        if (event == null) {
+            writeInvalidJsonInStreamResponse(objectMapper, output, "event was null");
+            return;
+        }
+
+        JsonNode transactRequestBody = event.findValue("body");
+        if (transactRequestBody == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(new ErrorMessage(
+                                    "Body was null", SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        final TransactOrdersRequest request;
+        try {
+            request = ContentNegotiation.readBody(objectMapper, event, transactRequestBody,
+                    TransactOrdersRequest.class);
+        } catch (JsonParseException | JsonMappingException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage(
+                                            "Invalid JSON in body: " + e
+                                                    .getMessage(),
+                                            SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        if (request == null) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(objectMapper.writeValueAsString(REQUEST_WAS_NULL_ERROR),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+            return;
+        }
+
+        try {
+            final Map<Integer, Order> before = orderTotalsRecorder.isEnabled()
+                    ? readBefore(request.getMutations(), request.getClientRequestToken())
+                    : null;
+            final List<Order> orders = orderDao.transact(request.getMutations(),
+                    request.getClientRequestToken());
+            if (before != null) {
+                orderTotalsRecorder.transacted(request.getMutations(), before, orders);
+            }
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new TransactOrdersResponse(orders)),
+                            APPLICATION_JSON, SC_OK));
+        } catch (TransactionConflictException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new TransactionConflictMessage(e.getMessage(),
+                                            SC_CONFLICT, e.getFailures())),
+                            APPLICATION_JSON, SC_CONFLICT));
+        } catch (IllegalArgumentException | TableDoesNotExistException e) {
+            objectMapper.writeValue(output,
+                    new GatewayResponse<>(
+                            objectMapper.writeValueAsString(
+                                    new ErrorMessage(e.getMessage(), SC_BAD_REQUEST)),
+                            APPLICATION_JSON, SC_BAD_REQUEST));
+        }
+    }
+
+    // Reads the orders the mutations will change, so the totals can move by the difference.
+    // Unversioned deletes are pinned to the version read, so the order counted out is the one
+    // deleted. Creates are read only when a replay of the same transaction may have written them.
+    private Map<Integer, Order> readBefore(final List<OrderMutation> mutations,
+            final String clientRequestToken) {
+        final Map<Integer, Order> before = new HashMap<>();
+        if (mutations == null) {
+            return before;
+        }
+        for (int i = 0; i < mutations.size(); i++) {
+            final OrderMutation mutation = mutations.get(i);
+            if (mutation == null || mutation.getType() == null) {
+                continue; // transact rejects it
+            }
+            final String orderId = mutation.getType() == OrderMutation.Type.CREATE
+                    ? OrderDao.createdOrderId(clientRequestToken, i) : mutation.getOrderId();
+            if (isNullOrEmpty(orderId)) {
+                continue;
+            }
+            try {
+                final Order order = orderDao.getLatestOrder(orderId);
+                before.put(i, order);
+                if (mutation.getType() == OrderMutation.Type.DELETE
+                        && mutation.getVersion() == null) {
+                    mutation.setVersion(order.getVersion());
+                }
+            } catch (OrderDoesNotExistException e) {
+                // nothing to subtract; an update or delete of it fails the transaction
+            }
+        }
+        return before;
+    }
+}
@@ -19,14 +19,22 @@ package com.amazonaws.handler;
 
 import com.amazonaws.config.DaggerOrderComponent;
 import com.amazonaws.config.OrderComponent;
-import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.exception.DeadlineExceededException;
 import com.amazonaws.exception.TableDoesNotExistException;
 import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.StartupTimer;
 import com.amazonaws.model.Order;
 import com.amazonaws.model.request.UpdateOrderRequest;
 import com.amazonaws.model.response.ErrorMessage;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.tracing.Span;
+import com.amazonaws.tracing.Tracer;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -42,20 +50,52 @@ public class UpdateOrderHandler implements OrderRequestStreamHandler {
     @Inject
     ObjectMapper objectMapper;
     @Inject
-    OrderDao orderDao;
+    AdaptiveConcurrencyLimiter concurrencyLimiter; // shared by all routes in this JVM
+    @Inject
+    Tracer tracer; // starts a trace for sampled requests
+    @Inject
+    OrderRepository orderRepository;
     private final OrderComponent orderComponent;
 
+    /**
+     * Builds the Dagger component and injects the fields above, timing it as the dagger phase.
+     */
     public UpdateOrderHandler() {
-        orderComponent = DaggerOrderComponent.builder().build();
-        orderComponent.inject(this);
+        try (StartupTimer.Phase dagger = StartupTimer.phase("dagger")) {
+            orderComponent = DaggerOrderComponent.builder().build();
+            orderComponent.inject(this);
+        }
     }
 
     @Override
-    public void handleRequest(InputStream input, OutputStream output,
-                              Context context) throws IOException {
+    public void handleRequest(InputStream input, OutputStream output, Context context)
+            throws IOException {
+        final AdaptiveConcurrencyLimiter.Permit permit =
+                concurrencyLimiter.tryAcquire(Priority.NORMAL);
+        if (permit == null) {
+            writeOverloadedResponse(objectMapper, output);
+            return;
+        }
+        final Span trace = tracer.startTrace("UpdateOrderHandler");
+        final StartupTimer.Phase firstInvocation =
+                StartupTimer.firstInvocation("UpdateOrderHandler");
+        Deadline.start(context == null ? 0 : context.getRemainingTimeInMillis());
+        try {
+            handle(input, output);
+        } catch (DeadlineExceededException e) {
+            writeDeadlineExceededResponse(objectMapper, output, e.getMessage());
+        } finally {
+            Deadline.clear();
+            permit.release();
+            trace.close();
+            firstInvocation.close();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
         final JsonNode event;
         try {
-            event = objectMapper.readTree(input);
+            event = readEvent(objectMapper, input);
         } catch (JsonMappingException e) {
             writeInvalidJsonInStreamResponse(objectMapper, output, e.getMessage());
             return;
@@ -90,8 +130,8 @@ public class UpdateOrderHandler implements OrderRequestStreamHandler {
 
         final UpdateOrderRequest request;
         try {
-            request = objectMapper.readValue(
-                    updateOrderRequestBody.asText(), UpdateOrderRequest.class);
+            request = ContentNegotiation.readBody(objectMapper, event, updateOrderRequestBody,
+                    UpdateOrderRequest.class);
         } catch (JsonParseException | JsonMappingException e) {
             objectMapper.writeValue(output,
                     new GatewayResponse<>(
@@ -111,16 +151,31 @@ public class UpdateOrderHandler implements OrderRequestStreamHandler {
         }
 
         try {
-            Order updatedOrder = orderDao.updateOrder(
+            Order updatedOrder = orderRepository.updateOrder(
                     Order.builder().orderId(orderId)
                             .customerId(request.getCustomerId())
                             .version(request.getVersion())
                             .preTaxAmount(request.getPreTaxAmount())
                             .postTaxAmount(request.getPostTaxAmount())
                             .build());
-            objectMapper.writeValue(output, new GatewayResponse<>(
-                    objectMapper.writeValueAsString(updatedOrder),
-                    APPLICATION_JSON, SC_OK));
+            // 202 when a write-behind store buffered the update under a provisional version.
+            // Lambda may freeze or drop this environment once the invocation returns, so the
+            // buffer is written first, and an update it dropped or could not write is not 202.
+            final boolean pending = orderRepository.isUpdatePending(orderId);
+            final OrderWriteResult flushed = orderRepository.flush().get(orderId);
+            if (flushed != null && !flushed.isSuccess()) {
+                if (flushed.getError() instanceof UnableToUpdateException
+                        || flushed.getError() instanceof DeadlineExceededException) {
+                    throw flushed.getError();
+                }
+                writeUnavailableResponse(objectMapper, output, "The update could not be written"
+                        + " yet, retry later: " + flushed.getError().getMessage());
+                return;
+            }
+            final String accept = ContentNegotiation.header(event, "Accept");
+            objectMapper.writeValue(output, ContentNegotiation.encode(objectMapper, updatedOrder,
+                    ContentNegotiation.preferredMediaType(accept),
+                    APPLICATION_JSON, pending || flushed != null ? SC_ACCEPTED : SC_OK, null));
         } catch (UnableToUpdateException e) {
             objectMapper.writeValue(output, new GatewayResponse<>(
                     objectMapper.writeValueAsString(
@@ -136,6 +191,8 @@ public class UpdateOrderHandler implements OrderRequestStreamHandler {
                     objectMapper.writeValueAsString(
                             new ErrorMessage(e.getMessage(), SC_BAD_REQUEST)),
                     APPLICATION_JSON, SC_BAD_REQUEST));
+        } catch (DeadlineExceededException e) {
+            throw e; // answered with 503 by handleRequest
         } catch (IllegalStateException e) {
             objectMapper.writeValue(output, new GatewayResponse<>(
                     objectMapper.writeValueAsString(
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.limit;
+
+import com.amazonaws.metrics.EmbeddedMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of requests a JVM works on at once and turns the excess away immediately
+ * instead of queueing it. The limit follows AIMD on the latency of DynamoDB calls: while the
+ * limit is in use, every limit calls that come back within the latency target raise it by one,
+ * and a slow or throttled call cuts it by a tenth, at most once per target interval so a burst
+ * of slow calls counts as one signal. Lower priorities may only use part of the limit, so they
+ * are shed first as it shrinks.
+ *
+ * <p>This only sheds load where requests run concurrently in one JVM. Every priority may use at
+ * least one permit, so a Lambda execution environment, which serves one request at a time, is
+ * never turned away; and since each route is deployed as its own function, priorities never
+ * compete across routes there.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Share of the limit a route may fill. Single-order reads are kept up the longest and bulk
+     * listings are shed first.
+     */
+    public enum Priority {
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        BULK(0.5);
+
+        private final double share;
+
+        Priority(final double share) {
+            this.share = share;
+        }
+    }
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final long METRICS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final EmbeddedMetrics metrics; // null to publish nothing
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong rejectedAtLastPublish = new AtomicLong();
+    private final AtomicLong lastPublishNanos = new AtomicLong(System.nanoTime());
+    private volatile double limit;
+    // guarded by this
+    private int samplesWithinTarget;
+    private long lastDecreaseNanos;
+
+    /**
+     * Starts at initialLimit and keeps the limit between minLimit and maxLimit. Publishes the
+     * limit, in-flight and rejected counts to metrics at most every 10 seconds, unless it is null.
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit,
+            final int maxLimit, final long latencyTargetMillis, final EmbeddedMetrics metrics) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Require 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (latencyTargetMillis <= 0) {
+            throw new IllegalArgumentException("latencyTargetMillis must be positive");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.metrics = metrics;
+        this.lastDecreaseNanos = System.nanoTime() - latencyTargetNanos;
+    }
+
+    /**
+     * Admits a request of the given priority, or returns null when that priority's share of the
+     * limit is in use and the request should be rejected. Admitted requests must release their
+     * permit when done.
+     */
+    public Permit tryAcquire(final Priority priority) {
+        final int allowed = Math.max(1, (int) (limit * priority.share));
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= allowed) {
+                rejected.increment();
+                maybePublish();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit();
+            }
+        }
+    }
+
+    /**
+     * Records how long one DynamoDB call took and whether DynamoDB pushed back with throttling or
+     * a timeout.
+     */
+    public synchronized void onSample(final long latencyNanos, final boolean overloaded) {
+        final long now = System.nanoTime();
+        if (overloaded || latencyNanos > latencyTargetNanos) {
+            if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = now;
+                samplesWithinTarget = 0;
+            }
+        } else if (inFlight.get() * 2 >= limit && ++samplesWithinTarget >= (int) limit) {
+            // only grow a limit that is actually being used, or idle periods would inflate it
+            limit = Math.min(maxLimit, limit + 1);
+            samplesWithinTarget = 0;
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** Returns the number of requests rejected since the limiter was created. */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // Publishes the limit, the requests in flight and the rejections since the last publish
+    private void maybePublish() {
+        if (metrics == null) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long last = lastPublishNanos.get();
+        if (now - last < METRICS_INTERVAL_NANOS || !lastPublishNanos.compareAndSet(last, now)) {
+            return;
+        }
+        final long rejectedTotal = rejected.sum();
+        final Map<String, Number> values = new LinkedHashMap<>();
+        values.put("ConcurrencyLimit", getLimit());
+        values.put("InFlight", getInFlight());
+        values.put("Rejected", rejectedTotal - rejectedAtLastPublish.getAndSet(rejectedTotal));
+        metrics.publish(values);
+    }
+
+    /**
+     * One admitted request. Releasing it more than once has no further effect.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * Frees the slot this permit holds; only the first call counts.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                maybePublish();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Writes metrics as CloudWatch Embedded Metric Format log lines. Lambda sends stdout to
+ * CloudWatch Logs, which extracts the metrics from these lines without any API calls.
+ */
+public class EmbeddedMetrics {
+    private final String namespace;
+    private final PrintStream out;
+
+    public EmbeddedMetrics(final String namespace, final PrintStream out) {
+        this.namespace = namespace;
+        this.out = out;
+    }
+
+    /**
+     * Publishes the given values, without dimensions, as one log line. Metric names are plain
+     * identifiers, so they are written without escaping.
+     */
+    public void publish(final Map<String, ? extends Number> values) {
+        out.println(format(namespace, values, System.currentTimeMillis()));
+    }
+
+    static String format(final String namespace, final Map<String, ? extends Number> values,
+            final long timestamp) {
+        final StringBuilder metrics = new StringBuilder();
+        final StringBuilder fields = new StringBuilder();
+        for (Map.Entry<String, ? extends Number> value : values.entrySet()) {
+            if (metrics.length() > 0) {
+                metrics.append(',');
+            }
+            metrics.append("{\"Name\":\"").append(value.getKey()).append("\"}");
+            fields.append(",\"").append(value.getKey()).append("\":").append(value.getValue());
+        }
+        return "{\"_aws\":{\"Timestamp\":" + timestamp
+                + ",\"CloudWatchMetrics\":[{\"Namespace\":\"" + namespace
+                + "\",\"Dimensions\":[[]],\"Metrics\":[" + metrics + "]}]}"
+                + fields + "}";
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.metrics;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plays the Lambda runtime for one cold start: constructs the named stream handler, sends it
+ * the event read from stdin and prints its response on a line starting with
+ * {@value #RESPONSE_PREFIX}. The {@link StartupTimer} breakdown comes on the line before it.
+ *
+ * <pre>
+ * java -cp &lt;shaded jar&gt; com.amazonaws.metrics.StartupProbe \
+ *     com.amazonaws.handler.GetOrderHandler &lt; event.json
+ * </pre>
+ */
+public final class StartupProbe {
+    public static final String RESPONSE_PREFIX = "RESPONSE ";
+
+    private StartupProbe() {
+    }
+
+    /**
+     * Runs the cold start of the handler class named by the only argument, as described above.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: StartupProbe <handler class> < event.json");
+            System.exit(2);
+        }
+        final RequestStreamHandler handler = (RequestStreamHandler) Class.forName(args[0])
+                .getDeclaredConstructor().newInstance();
+        final ByteArrayOutputStream response = new ByteArrayOutputStream();
+        handler.handleRequest(System.in, response, null);
+        System.out.println(RESPONSE_PREFIX + response.toString(StandardCharsets.UTF_8.name()));
+        System.out.flush();
+        // the handler's pools and clients are left to die with the JVM, as on Lambda
+        System.exit(0);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times the phases of a cold start and logs them as one JSON line once the first invocation has
+ * answered, so startup work can be measured instead of guessed:
+ * <pre>
+ * {"coldStart":{"handler":"GetOrderHandler","jacksonMillis":61,"dynamoDbClientMillis":254,
+ *   "daggerMillis":388,"firstInvocationMillis":203}}
+ * </pre>
+ * Phases nest, so {@code daggerMillis} includes the providers timed inside it. Booting the JVM
+ * and loading the handler class come before the first phase; Lambda reports the whole init in
+ * its REPORT line, and the cold start harness measures it from outside. Loading classes is spread
+ * across all phases. With {@code COLD_START_CLASS_COUNTS} set to true each phase also reports how
+ * many classes it loaded, and {@code jvmMillis} gives the JVM uptime at the first phase, at the
+ * price of initializing JMX, some 50ms, during the cold start.
+ */
+public class StartupTimer {
+    private static final StartupTimer INSTANCE = new StartupTimer(System.out,
+            Boolean.parseBoolean(System.getenv("COLD_START_CLASS_COUNTS")));
+
+    private final PrintStream out;
+    private final long jvmMillis;
+    private final boolean classCounts;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final AtomicBoolean firstInvocation = new AtomicBoolean(true);
+
+    StartupTimer(final PrintStream out, final boolean classCounts) {
+        this.out = out;
+        this.jvmMillis = classCounts ? ManagementFactory.getRuntimeMXBean().getUptime() : -1;
+        this.classCounts = classCounts;
+    }
+
+    /** Starts timing a startup phase of this JVM; the first run of each phase name is kept. */
+    public static Phase phase(final String name) {
+        return INSTANCE.start(name);
+    }
+
+    /**
+     * Starts timing an invocation of the given handler. Closing the first one in this JVM logs
+     * the breakdown; later invocations get a phase that records nothing.
+     */
+    public static Phase firstInvocation(final String handler) {
+        return INSTANCE.startFirstInvocation(handler);
+    }
+
+    Phase start(final String name) {
+        if (!firstInvocation.get()) {
+            return Phase.NOOP;
+        }
+        return new Phase(this, name, null, loadedClasses());
+    }
+
+    Phase startFirstInvocation(final String handler) {
+        if (!firstInvocation.compareAndSet(true, false)) {
+            return Phase.NOOP;
+        }
+        return new Phase(this, "firstInvocation", handler, loadedClasses());
+    }
+
+    private void record(final Phase phase, final long endNanos) {
+        final long classes = classCounts ? loadedClasses() - phase.startClasses : -1;
+        final String report;
+        synchronized (phases) {
+            phases.putIfAbsent(phase.name + "Millis",
+                    TimeUnit.NANOSECONDS.toMillis(endNanos - phase.startNanos));
+            if (classes >= 0) {
+                phases.putIfAbsent(phase.name + "Classes", classes);
+            }
+            if (phase.handler == null) {
+                return;
+            }
+            report = report(phase.handler);
+        }
+        out.println(report);
+    }
+
+    private String report(final String handler) {
+        final StringBuilder line =
+                new StringBuilder("{\"coldStart\":{\"handler\":\"").append(handler).append('"');
+        if (jvmMillis >= 0) {
+            line.append(",\"jvmMillis\":").append(jvmMillis);
+        }
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            line.append(",\"").append(phase.getKey()).append("\":").append(phase.getValue());
+        }
+        return line.append("}}").toString();
+    }
+
+    private long loadedClasses() {
+        return classCounts
+                ? ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() : 0;
+    }
+
+    /** A running phase; closing it records the time since it started. */
+    public static final class Phase implements AutoCloseable {
+        static final Phase NOOP = new Phase(null, null, null, 0);
+
+        private final StartupTimer timer;
+        private final String name;
+        private final String handler;
+        private final long startNanos = System.nanoTime();
+        private final long startClasses;
+        private boolean closed;
+
+        private Phase(final StartupTimer timer, final String name, final String handler,
+                final long startClasses) {
+            this.timer = timer;
+            this.name = name;
+            this.handler = handler;
+            this.startClasses = startClasses;
+        }
+
+        @Override
+        public void close() {
+            if (timer == null || closed) {
+                return;
+            }
+            closed = true;
+            timer.record(this, System.nanoTime());
+        }
+    }
+}
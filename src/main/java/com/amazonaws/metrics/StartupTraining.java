@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.metrics;
+
+import com.amazonaws.handler.AdjustOrderAmountsHandler;
+import com.amazonaws.handler.BatchCreateOrdersHandler;
+import com.amazonaws.handler.BulkDeleteOrdersHandler;
+import com.amazonaws.handler.CreateOrderHandler;
+import com.amazonaws.handler.DeleteOrderHandler;
+import com.amazonaws.handler.GetCustomerSummaryHandler;
+import com.amazonaws.handler.GetOrderHandler;
+import com.amazonaws.handler.GetOrderTotalsHandler;
+import com.amazonaws.handler.GetOrdersHandler;
+import com.amazonaws.handler.TransactOrdersHandler;
+import com.amazonaws.handler.UpdateOrderHandler;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Training workload for the AppCDS archive built by the appcds profile: sends every handler the
+ * kinds of requests it serves, so the classes a cold start needs are loaded before the JVM exits
+ * and dumps them. Run it with ORDER_STORE=memory and an ENDPOINT_OVERRIDE nothing listens on;
+ * handlers that go to DynamoDB then still marshal, sign and send their requests, and fail.
+ */
+public final class StartupTraining {
+    private static final String ORDER = "{\\\"customerId\\\":\\\"training\\\","
+            + "\\\"preTaxAmount\\\":10,\\\"postTaxAmount\\\":11}";
+
+    private StartupTraining() {
+    }
+
+    /**
+     * Sends the training requests to every handler in turn; the arguments are ignored.
+     */
+    public static void main(final String[] args) {
+        final Map<Supplier<RequestStreamHandler>, String[]> workload = new LinkedHashMap<>();
+        workload.put(CreateOrderHandler::new, new String[] {"{\"body\":\"" + ORDER + "\"}", "{}"});
+        workload.put(GetOrderHandler::new, new String[] {
+            "{\"pathParameters\":{\"order_id\":\"training\"},"
+                    + "\"headers\":{\"Accept-Encoding\":\"gzip\"}}", "{}"});
+        workload.put(GetOrdersHandler::new, new String[] {
+            "{\"queryParameters\":{\"exclusive_start_key\":\"training\"}}", "{}"});
+        workload.put(UpdateOrderHandler::new, new String[] {
+            "{\"pathParameters\":{\"order_id\":\"training\"},\"body\":\"" + ORDER + "\"}", "{}"});
+        workload.put(AdjustOrderAmountsHandler::new, new String[] {
+            "{\"pathParameters\":{\"order_id\":\"training\"},"
+                    + "\"body\":\"{\\\"preTaxAmountDelta\\\":-1}\"}"});
+        workload.put(DeleteOrderHandler::new, new String[] {
+            "{\"pathParameters\":{\"order_id\":\"training\"}}"});
+        workload.put(GetCustomerSummaryHandler::new, new String[] {
+            "{\"pathParameters\":{\"customer_id\":\"training\"}}"});
+        workload.put(GetOrderTotalsHandler::new, new String[] {
+            "{}", "{\"pathParameters\":{\"customer_id\":\"training\"}}"});
+        workload.put(TransactOrdersHandler::new, new String[] {
+            "{\"body\":\"{\\\"mutations\\\":[{\\\"type\\\":\\\"DELETE\\\","
+                    + "\\\"orderId\\\":\\\"training\\\"}]}\"}"});
+        workload.put(BulkDeleteOrdersHandler::new, new String[] {
+            "{\"body\":\"{\\\"orderIds\\\":[\\\"training\\\"]}\"}"});
+
+        for (Map.Entry<Supplier<RequestStreamHandler>, String[]> handler : workload.entrySet()) {
+            final RequestStreamHandler instance = handler.getKey().get();
+            for (String event : handler.getValue()) {
+                invoke(instance, event);
+            }
+        }
+
+        final SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId("training");
+        message.setBody(ORDER.replace("\\", ""));
+        final SQSEvent batch = new SQSEvent();
+        batch.setRecords(Collections.singletonList(message));
+        new BatchCreateOrdersHandler().handleRequest(batch, null);
+    }
+
+    private static void invoke(final RequestStreamHandler handler, final String event) {
+        try {
+            handler.handleRequest(new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)),
+                    new ByteArrayOutputStream(), null);
+        } catch (Exception e) {
+            // expected where a handler reaches DynamoDB; the classes on the way are loaded anyway
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadCapability;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * An exact decimal amount held as a long count of minor units and a scale, so 12.50 is 1250 with
+ * scale 2. The scale is kept as written, like {@link BigDecimal}, so amounts read from DynamoDB or
+ * JSON are written back unchanged. It is parsed from and formatted to characters directly, without
+ * going through BigDecimal or an intermediate String, and serializes to a JSON number.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+    public static final int MAX_SCALE = 18;
+    public static final Money ZERO = new Money(0, 0);
+
+    /** The longest plain form: a sign, 19 digits and a point. */
+    public static final int MAX_CHARS = 21;
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    // Formatting scratch space, so that only the result is allocated
+    private static final ThreadLocal<char[]> BUFFER =
+            ThreadLocal.withInitial(() -> new char[MAX_CHARS]);
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long unscaledValue;
+    private final int scale;
+
+    private Money(final long unscaledValue, final int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+    }
+
+    /**
+     * Returns unscaledValue divided by ten to the power of scale.
+     * @throws IllegalArgumentException if scale is not between 0 and MAX_SCALE
+     */
+    public static Money of(final long unscaledValue, final int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale must be between 0 and " + MAX_SCALE);
+        }
+        return unscaledValue == 0 && scale == 0 ? ZERO : new Money(unscaledValue, scale);
+    }
+
+    public static Money valueOf(final long units) {
+        return of(units, 0);
+    }
+
+    /**
+     * Converts a BigDecimal, dropping trailing zeros beyond MAX_SCALE decimal places.
+     * @throws NumberFormatException if the value has more decimal places or does not fit
+     */
+    public static Money valueOf(final BigDecimal value) {
+        BigDecimal decimal = value.scale() < 0 ? value.setScale(0) : value;
+        if (decimal.scale() > MAX_SCALE) {
+            decimal = decimal.stripTrailingZeros();
+        }
+        if (decimal.scale() > MAX_SCALE) {
+            throw new NumberFormatException("Amount has more than " + MAX_SCALE
+                    + " decimal places: " + value);
+        }
+        try {
+            return of(decimal.unscaledValue().longValueExact(), Math.max(decimal.scale(), 0));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount is out of range: " + value);
+        }
+    }
+
+    /**
+     * Parses a decimal number such as {@code 12}, {@code -0.50} or {@code 1.2E+3}, the forms
+     * DynamoDB and JSON use for numbers.
+     * @throws NumberFormatException if the text is not a number or does not fit
+     */
+    public static Money parse(final CharSequence text) {
+        return parse(text, null, 0, text.length());
+    }
+
+    public static Money parse(final char[] chars, final int offset, final int length) {
+        return parse(null, chars, offset, offset + length);
+    }
+
+    // Reads from whichever of text and chars is set, so neither form has to be copied
+    private static Money parse(final CharSequence text, final char[] chars, final int start,
+            final int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (charAt(text, chars, pos) == '-' || charAt(text, chars, pos) == '+')) {
+            negative = charAt(text, chars, pos) == '-';
+            pos++;
+        }
+        // Accumulated as a negative value, which has room for Long.MIN_VALUE
+        long unscaled = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        try {
+            for (; pos < end; pos++) {
+                final char c = charAt(text, chars, pos);
+                if (c >= '0' && c <= '9') {
+                    unscaled = Math.subtractExact(Math.multiplyExact(unscaled, 10), c - '0');
+                    digits++;
+                    if (point) {
+                        fractionDigits++;
+                    }
+                } else if (c == '.' && !point) {
+                    point = true;
+                } else {
+                    break;
+                }
+            }
+            if (digits == 0) {
+                throw invalid(text, chars, start, end);
+            }
+
+            int exponent = 0;
+            if (pos < end) {
+                final char e = charAt(text, chars, pos++);
+                if ((e != 'e' && e != 'E') || pos == end) {
+                    throw invalid(text, chars, start, end);
+                }
+                boolean negativeExponent = false;
+                if (charAt(text, chars, pos) == '-' || charAt(text, chars, pos) == '+') {
+                    negativeExponent = charAt(text, chars, pos) == '-';
+                    pos++;
+                }
+                if (pos == end) {
+                    throw invalid(text, chars, start, end);
+                }
+                for (; pos < end; pos++) {
+                    final char c = charAt(text, chars, pos);
+                    if (c < '0' || c > '9' || exponent > MAX_SCALE + MAX_CHARS) {
+                        throw invalid(text, chars, start, end);
+                    }
+                    exponent = exponent * 10 + (c - '0');
+                }
+                if (negativeExponent) {
+                    exponent = -exponent;
+                }
+            }
+
+            int scale = fractionDigits - exponent;
+            if (scale < 0) {
+                if (-scale > MAX_SCALE) {
+                    throw new ArithmeticException();
+                }
+                unscaled = Math.multiplyExact(unscaled, POWERS_OF_TEN[-scale]);
+                scale = 0;
+            }
+            while (scale > MAX_SCALE && unscaled % 10 == 0) {
+                unscaled /= 10;
+                scale--;
+            }
+            if (scale > MAX_SCALE) {
+                throw new ArithmeticException();
+            }
+            return of(negative ? unscaled : Math.negateExact(unscaled), scale);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount is out of range: "
+                    + text(text, chars, start, end));
+        }
+    }
+
+    private static char charAt(final CharSequence text, final char[] chars, final int index) {
+        return chars != null ? chars[index] : text.charAt(index);
+    }
+
+    private static NumberFormatException invalid(final CharSequence text, final char[] chars,
+                                                 final int start, final int end) {
+        return new NumberFormatException("Amount is not a number: "
+                + text(text, chars, start, end));
+    }
+
+    private static String text(final CharSequence text, final char[] chars, final int start,
+            final int end) {
+        return chars != null ? new String(chars, start, end - start) : text.toString();
+    }
+
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int signum() {
+        return Long.signum(unscaledValue);
+    }
+
+    public Money negate() {
+        return of(Math.negateExact(unscaledValue), scale);
+    }
+
+    /**
+     * Returns the sum, at the larger of the two scales.
+     * @throws ArithmeticException if the result does not fit in a long at the larger scale
+     */
+    public Money add(final Money other) {
+        final int resultScale = Math.max(scale, other.scale);
+        return of(Math.addExact(rescale(resultScale), other.rescale(resultScale)), resultScale);
+    }
+
+    public Money subtract(final Money other) {
+        return add(other.negate());
+    }
+
+    private long rescale(final int newScale) {
+        return Math.multiplyExact(unscaledValue, POWERS_OF_TEN[newScale - scale]);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    /**
+     * Writes the plain decimal form, never with an exponent, to the start of {@code buffer}, which
+     * must hold at least {@link #MAX_CHARS} characters.
+     * @return the number of characters written
+     */
+    public int getChars(final char[] buffer) {
+        // Work with the negative value so Long.MIN_VALUE needs no special case
+        long remaining = unscaledValue < 0 ? unscaledValue : -unscaledValue;
+        int digits = 1;
+        for (long n = remaining / 10; n != 0; n /= 10) {
+            digits++;
+        }
+        final int length = (unscaledValue < 0 ? 1 : 0) + Math.max(digits, scale + 1)
+                + (scale > 0 ? 1 : 0);
+        int position = length;
+        int written = 0;
+        do {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+            if (++written == scale) {
+                buffer[--position] = '.';
+            }
+        } while (remaining != 0 || written <= scale);
+        if (unscaledValue < 0) {
+            buffer[0] = '-';
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        final char[] buffer = BUFFER.get();
+        return new String(buffer, 0, getChars(buffer));
+    }
+
+    /**
+     * Compares numerically, so 1.5 and 1.50 compare as equal though they are not {@link #equals}.
+     */
+    @Override
+    public int compareTo(final Money other) {
+        if (scale == other.scale) {
+            return Long.compare(unscaledValue, other.unscaledValue);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof Money)) {
+            return false;
+        }
+        final Money other = (Money) object;
+        return unscaledValue == other.unscaledValue && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(unscaledValue) + scale;
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(final Money value, final JsonGenerator generator,
+                              final SerializerProvider serializers) throws IOException {
+            if (value.scale == 0) {
+                generator.writeNumber(value.unscaledValue);
+                return;
+            }
+            if (generator.canWriteBinaryNatively()) {
+                // CBOR and Smile encode decimals natively; given text they would write a string
+                generator.writeNumber(BigDecimal.valueOf(value.unscaledValue, value.scale));
+                return;
+            }
+            final char[] buffer = BUFFER.get();
+            generator.writeNumber(buffer, 0, value.getChars(buffer));
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(final JsonParser parser, final DeserializationContext context)
+                throws IOException {
+            final JsonToken token = parser.currentToken();
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT
+                        && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    return valueOf(parser.getLongValue());
+                }
+                if (token == JsonToken.VALUE_NUMBER_FLOAT
+                        && parser.getReadCapabilities().isEnabled(
+                                StreamReadCapability.EXACT_FLOATS)) {
+                    return valueOf(parser.getDecimalValue()); // a binary format's native decimal
+                }
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                        || token == JsonToken.VALUE_STRING) {
+                    // Textual parsers expose the token in their own buffer, numbers included
+                    final char[] chars = parser.getTextCharacters();
+                    return chars != null
+                            ? parse(chars, parser.getTextOffset(), parser.getTextLength())
+                            : parse(parser.getText());
+                }
+            } catch (NumberFormatException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(),
+                        e.getMessage());
+            }
+            return (Money) context.handleUnexpectedToken(Money.class, parser);
+        }
+    }
+}
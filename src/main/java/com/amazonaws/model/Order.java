@@ -23,8 +23,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,7 +31,7 @@ import java.math.BigDecimal;
 public class Order {
     private String orderId;
     private String customerId;
-    private BigDecimal preTaxAmount;
-    private BigDecimal postTaxAmount;
+    private Money preTaxAmount;
+    private Money postTaxAmount;
     private Long version;
 }
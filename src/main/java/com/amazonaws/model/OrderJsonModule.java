@@ -0,0 +1,329 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.model;
+
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.request.UpdateOrderRequest;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.model.response.GetOrdersResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Hand-written Jackson codecs for the order model and the API Gateway responses, so the
+ * ObjectMapper neither introspects these classes on first use nor reads and writes their
+ * properties reflectively. Output is identical to Jackson's bean serializers: properties in
+ * declaration order, nulls included. Reading keeps Jackson's rules for unknown properties,
+ * unexpected tokens and scalar coercion by handing anything unusual back to the
+ * DeserializationContext.
+ */
+public class OrderJsonModule extends SimpleModule {
+    private static final SerializableString ORDER_ID = new SerializedString("orderId");
+    private static final SerializableString CUSTOMER_ID = new SerializedString("customerId");
+    private static final SerializableString PRE_TAX_AMOUNT = new SerializedString("preTaxAmount");
+    private static final SerializableString POST_TAX_AMOUNT = new SerializedString("postTaxAmount");
+    private static final SerializableString VERSION = new SerializedString("version");
+    private static final SerializableString LAST_EVALUATED_KEY =
+            new SerializedString("lastEvaluatedKey");
+    private static final SerializableString ORDERS = new SerializedString("orders");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString STATUS_CODE = new SerializedString("statusCode");
+    private static final SerializableString BODY = new SerializedString("body");
+    private static final SerializableString HEADERS = new SerializedString("headers");
+    private static final SerializableString IS_BASE64_ENCODED =
+            new SerializedString("isBase64Encoded");
+
+    private static final Money.Serializer MONEY_SERIALIZER = new Money.Serializer();
+    private static final Money.Deserializer MONEY_DESERIALIZER = new Money.Deserializer();
+
+    /**
+     * Registers the codecs for Order, the order requests and the responses the handlers write.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public OrderJsonModule() {
+        super("OrderJsonModule");
+        addSerializer(Order.class, new OrderSerializer());
+        addDeserializer(Order.class, new OrderDeserializer());
+        addDeserializer(CreateOrderRequest.class, new CreateOrderRequestDeserializer());
+        addDeserializer(UpdateOrderRequest.class, new UpdateOrderRequestDeserializer());
+        addSerializer(GetOrdersResponse.class, new GetOrdersResponseSerializer());
+        addSerializer(ErrorMessage.class, new ErrorMessageSerializer());
+        addSerializer((Class) GatewayResponse.class, new GatewayResponseSerializer());
+    }
+
+    static class OrderSerializer extends JsonSerializer<Order> {
+        @Override
+        public void serialize(final Order order, final JsonGenerator generator,
+                              final SerializerProvider serializers) throws IOException {
+            generator.writeStartObject(order);
+            writeOrderFields(order, generator, serializers);
+            generator.writeEndObject();
+        }
+    }
+
+    static void writeOrderFields(final Order order, final JsonGenerator generator,
+                                 final SerializerProvider serializers) throws IOException {
+        generator.writeFieldName(ORDER_ID);
+        generator.writeString(order.getOrderId());
+        generator.writeFieldName(CUSTOMER_ID);
+        generator.writeString(order.getCustomerId());
+        generator.writeFieldName(PRE_TAX_AMOUNT);
+        writeMoney(order.getPreTaxAmount(), generator, serializers);
+        generator.writeFieldName(POST_TAX_AMOUNT);
+        writeMoney(order.getPostTaxAmount(), generator, serializers);
+        generator.writeFieldName(VERSION);
+        writeLong(order.getVersion(), generator);
+    }
+
+    static class OrderDeserializer extends JsonDeserializer<Order> {
+        @Override
+        public Order deserialize(final JsonParser parser, final DeserializationContext context)
+                throws IOException {
+            final Order order = new Order();
+            for (JsonToken token = startObject(parser, context, Order.class);
+                 token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                final String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "orderId":
+                        order.setOrderId(readString(parser, context));
+                        break;
+                    case "customerId":
+                        order.setCustomerId(readString(parser, context));
+                        break;
+                    case "preTaxAmount":
+                        order.setPreTaxAmount(readMoney(parser, context));
+                        break;
+                    case "postTaxAmount":
+                        order.setPostTaxAmount(readMoney(parser, context));
+                        break;
+                    case "version":
+                        order.setVersion(readLong(parser, context));
+                        break;
+                    default:
+                        context.handleUnknownProperty(parser, this, order, name);
+                }
+            }
+            return order;
+        }
+    }
+
+    static class CreateOrderRequestDeserializer extends JsonDeserializer<CreateOrderRequest> {
+        @Override
+        public CreateOrderRequest deserialize(final JsonParser parser,
+                final DeserializationContext context)
+                throws IOException {
+            final CreateOrderRequest request = new CreateOrderRequest();
+            for (JsonToken token = startObject(parser, context, CreateOrderRequest.class);
+                 token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                final String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "customerId":
+                        request.setCustomerId(readString(parser, context));
+                        break;
+                    case "preTaxAmount":
+                        request.setPreTaxAmount(readLong(parser, context));
+                        break;
+                    case "postTaxAmount":
+                        request.setPostTaxAmount(readLong(parser, context));
+                        break;
+                    default:
+                        context.handleUnknownProperty(parser, this, request, name);
+                }
+            }
+            return request;
+        }
+    }
+
+    static class UpdateOrderRequestDeserializer extends JsonDeserializer<UpdateOrderRequest> {
+        @Override
+        public UpdateOrderRequest deserialize(final JsonParser parser,
+                final DeserializationContext context)
+                throws IOException {
+            final UpdateOrderRequest request = new UpdateOrderRequest();
+            for (JsonToken token = startObject(parser, context, UpdateOrderRequest.class);
+                 token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                final String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "orderId":
+                        request.setOrderId(readString(parser, context));
+                        break;
+                    case "customerId":
+                        request.setCustomerId(readString(parser, context));
+                        break;
+                    case "preTaxAmount":
+                        request.setPreTaxAmount(readMoney(parser, context));
+                        break;
+                    case "postTaxAmount":
+                        request.setPostTaxAmount(readMoney(parser, context));
+                        break;
+                    case "version":
+                        request.setVersion(readLong(parser, context));
+                        break;
+                    default:
+                        context.handleUnknownProperty(parser, this, request, name);
+                }
+            }
+            return request;
+        }
+    }
+
+    static class GetOrdersResponseSerializer extends JsonSerializer<GetOrdersResponse> {
+        @Override
+        public void serialize(final GetOrdersResponse response, final JsonGenerator generator,
+                              final SerializerProvider serializers) throws IOException {
+            generator.writeStartObject(response);
+            generator.writeFieldName(LAST_EVALUATED_KEY);
+            generator.writeString(response.getLastEvaluatedKey());
+            generator.writeFieldName(ORDERS);
+            if (response.getOrders() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeStartArray(response.getOrders(), response.getOrders().size());
+                for (Order order : response.getOrders()) {
+                    if (order == null) {
+                        generator.writeNull();
+                        continue;
+                    }
+                    generator.writeStartObject(order);
+                    writeOrderFields(order, generator, serializers);
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    static class ErrorMessageSerializer extends JsonSerializer<ErrorMessage> {
+        @Override
+        public void serialize(final ErrorMessage message, final JsonGenerator generator,
+                              final SerializerProvider serializers) throws IOException {
+            generator.writeStartObject(message);
+            generator.writeFieldName(MESSAGE);
+            generator.writeString(message.getMessage());
+            generator.writeFieldName(STATUS_CODE);
+            generator.writeNumber(message.getStatusCode());
+            generator.writeEndObject();
+        }
+    }
+
+    static class GatewayResponseSerializer extends JsonSerializer<GatewayResponse<?>> {
+        @Override
+        public void serialize(final GatewayResponse<?> response, final JsonGenerator generator,
+                              final SerializerProvider serializers) throws IOException {
+            generator.writeStartObject(response);
+            generator.writeFieldName(BODY);
+            final Object body = response.getBody();
+            if (body == null || body instanceof String) {
+                // the handlers pass bodies already serialized
+                generator.writeString((String) body);
+            } else {
+                serializers.defaultSerializeValue(body, generator);
+            }
+            generator.writeFieldName(HEADERS);
+            generator.writeStartObject(response.getHeaders());
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                generator.writeStringField(header.getKey(), header.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeFieldName(STATUS_CODE);
+            generator.writeNumber(response.getStatusCode());
+            generator.writeFieldName(IS_BASE64_ENCODED);
+            generator.writeBoolean(response.isBase64Encoded());
+            generator.writeEndObject();
+        }
+    }
+
+    /** Moves to the first property of an object, or lets the context fail on anything else. */
+    private static JsonToken startObject(final JsonParser parser,
+            final DeserializationContext context, final Class<?> type) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parser.nextToken();
+        }
+        if (token == JsonToken.FIELD_NAME || token == JsonToken.END_OBJECT) {
+            return token;
+        }
+        context.handleUnexpectedToken(type, parser);
+        // a problem handler may have consumed the value and asked to go on with defaults
+        return JsonToken.END_OBJECT;
+    }
+
+    private static String readString(final JsonParser parser, final DeserializationContext context)
+            throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return context.readValue(parser, String.class);
+    }
+
+    private static Long readLong(final JsonParser parser, final DeserializationContext context)
+            throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return context.readValue(parser, Long.class);
+    }
+
+    private static Money readMoney(final JsonParser parser, final DeserializationContext context)
+            throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL
+                ? null : MONEY_DESERIALIZER.deserialize(parser, context);
+    }
+
+    private static void writeMoney(final Money money, final JsonGenerator generator,
+                                   final SerializerProvider serializers) throws IOException {
+        if (money == null) {
+            generator.writeNull();
+        } else {
+            MONEY_SERIALIZER.serialize(money, generator, serializers);
+        }
+    }
+
+    private static void writeLong(final Long value, final JsonGenerator generator)
+            throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.amazonaws.model.request;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -34,4 +35,13 @@ public class CreateOrderRequest {
     private String customerId;
     private Long preTaxAmount;
     private Long postTaxAmount;
+    // Set by callers that derive the id, such as from an SQS message id, so that a retried create
+    // finds the order it wrote before; never read from a request body
+    @JsonIgnore
+    private String orderId;
+
+    public CreateOrderRequest(final String customerId, final Long preTaxAmount,
+            final Long postTaxAmount) {
+        this(customerId, preTaxAmount, postTaxAmount, null);
+    }
 }
@@ -17,13 +17,12 @@
 
 package com.amazonaws.model.request;
 
+import com.amazonaws.model.Money;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,7 +30,7 @@ import java.math.BigDecimal;
 public class UpdateOrderRequest {
     private String orderId;
     private String customerId;
-    private BigDecimal preTaxAmount;
-    private BigDecimal postTaxAmount;
+    private Money preTaxAmount;
+    private Money postTaxAmount;
     private Long version;
 }
@@ -18,6 +18,7 @@
 package com.amazonaws.model.response;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 
 import java.util.Collections;
@@ -34,6 +35,8 @@ public class GatewayResponse<T> {
     private final T body;
     private final Map<String, String> headers;
     private final int statusCode;
+    @JsonProperty("isBase64Encoded")
+    private final boolean base64Encoded;
 
     /**
      * Creates a GatewayResponse object.
@@ -42,8 +45,21 @@ public class GatewayResponse<T> {
      * @param statusCode status code of the response
      */
     public GatewayResponse(final T body, final Map<String, String> headers, final int statusCode) {
+        this(body, headers, statusCode, false);
+    }
+
+    /**
+     * Creates a GatewayResponse object whose body may be base64 encoded binary.
+     * @param body body of the response
+     * @param headers headers of the response
+     * @param statusCode status code of the response
+     * @param base64Encoded whether API Gateway has to base64 decode the body before sending it
+     */
+    public GatewayResponse(final T body, final Map<String, String> headers, final int statusCode,
+                           final boolean base64Encoded) {
         this.statusCode = statusCode;
         this.body = body;
         this.headers = Collections.unmodifiableMap(new HashMap<>(headers));
+        this.base64Encoded = base64Encoded;
     }
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.runtime;
+
+import com.amazonaws.handler.AdjustOrderAmountsHandler;
+import com.amazonaws.handler.BulkDeleteOrdersHandler;
+import com.amazonaws.handler.CreateOrderHandler;
+import com.amazonaws.handler.DeleteOrderHandler;
+import com.amazonaws.handler.GetCustomerSummaryHandler;
+import com.amazonaws.handler.GetOrderHandler;
+import com.amazonaws.handler.GetOrderTotalsHandler;
+import com.amazonaws.handler.GetOrdersHandler;
+import com.amazonaws.handler.StreamOrdersHandler;
+import com.amazonaws.handler.StreamingResponseHandler;
+import com.amazonaws.handler.TransactOrdersHandler;
+import com.amazonaws.handler.UpdateOrderHandler;
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for running the API handlers on a custom Lambda runtime such as provided.al2023,
+ * where the function is a native executable rather than a JVM started by Lambda. Implements the
+ * Lambda Runtime API loop: fetch the next event, hand it to the handler named by the function's
+ * Handler setting, post the response or the error, repeat.
+ *
+ * <p>Handlers are constructed directly rather than by reflection, so the native image needs no
+ * reflection config for them; Dagger's generated component uses none either.
+ *
+ * <p>The output of a {@link StreamingResponseHandler} is posted in streaming response mode with
+ * chunked transfer encoding, each flush of the handler sending what it wrote so far.
+ */
+public final class LambdaRuntime {
+    private static final String API_VERSION = "/2018-06-01/runtime";
+    private static final Map<String, Supplier<RequestStreamHandler>> HANDLERS = new HashMap<>();
+
+    static {
+        HANDLERS.put(AdjustOrderAmountsHandler.class.getName(), AdjustOrderAmountsHandler::new);
+        HANDLERS.put(BulkDeleteOrdersHandler.class.getName(), BulkDeleteOrdersHandler::new);
+        HANDLERS.put(CreateOrderHandler.class.getName(), CreateOrderHandler::new);
+        HANDLERS.put(DeleteOrderHandler.class.getName(), DeleteOrderHandler::new);
+        HANDLERS.put(GetCustomerSummaryHandler.class.getName(), GetCustomerSummaryHandler::new);
+        HANDLERS.put(GetOrderHandler.class.getName(), GetOrderHandler::new);
+        HANDLERS.put(GetOrderTotalsHandler.class.getName(), GetOrderTotalsHandler::new);
+        HANDLERS.put(GetOrdersHandler.class.getName(), GetOrdersHandler::new);
+        HANDLERS.put(StreamOrdersHandler.class.getName(), StreamOrdersHandler::new);
+        HANDLERS.put(TransactOrdersHandler.class.getName(), TransactOrdersHandler::new);
+        HANDLERS.put(UpdateOrderHandler.class.getName(), UpdateOrderHandler::new);
+    }
+
+    private final String runtimeApi;
+    private final Map<String, String> environment;
+
+    LambdaRuntime(final String runtimeApi, final Map<String, String> environment) {
+        this.runtimeApi = "http://" + runtimeApi + API_VERSION;
+        this.environment = environment;
+    }
+
+    /**
+     * Serves invocations until the function is shut down, with the runtime API host taken from
+     * AWS_LAMBDA_RUNTIME_API and the handler from _HANDLER. The arguments are ignored.
+     */
+    public static void main(final String[] args) throws IOException {
+        final String runtimeApi = System.getenv("AWS_LAMBDA_RUNTIME_API");
+        if (runtimeApi == null) {
+            throw new IllegalStateException("AWS_LAMBDA_RUNTIME_API env var not set");
+        }
+        new LambdaRuntime(runtimeApi, System.getenv()).run();
+    }
+
+    void run() throws IOException {
+        final RequestStreamHandler handler;
+        try {
+            handler = createHandler(environment.get("_HANDLER"));
+        } catch (RuntimeException e) {
+            post(runtimeApi + "/init/error", error(e));
+            throw e;
+        }
+        run(handler);
+    }
+
+    void run(final RequestStreamHandler handler) throws IOException {
+        while (true) {
+            final HttpURLConnection next = (HttpURLConnection) URI.create(
+                    runtimeApi + "/invocation/next").toURL().openConnection();
+            // the call blocks until there is an event, which may take arbitrarily long
+            next.setReadTimeout(0);
+            final String requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+            final long deadlineMillis = Optional.ofNullable(
+                    next.getHeaderField("Lambda-Runtime-Deadline-Ms"))
+                    .map(Long::parseLong).orElse(0L);
+            final RuntimeContext context =
+                    new RuntimeContext(requestId, environment, deadlineMillis);
+            if (handler instanceof StreamingResponseHandler) {
+                stream(handler, next, requestId, context);
+                continue;
+            }
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream event = next.getInputStream()) {
+                handler.handleRequest(event, response, context);
+            } catch (Exception e) {
+                post(runtimeApi + "/invocation/" + requestId + "/error", error(e));
+                continue;
+            }
+            post(runtimeApi + "/invocation/" + requestId + "/response", response.toByteArray());
+        }
+    }
+
+    private void stream(final RequestStreamHandler handler, final HttpURLConnection next,
+            final String requestId, final Context context) throws IOException {
+        final StreamingResponse response =
+                new StreamingResponse(runtimeApi + "/invocation/" + requestId + "/response");
+        try (InputStream event = next.getInputStream()) {
+            handler.handleRequest(event, response, context);
+            response.complete();
+        } catch (Exception e) {
+            // once the response has started, cutting it short is the only way to signal the failure
+            if (!response.abort()) {
+                post(runtimeApi + "/invocation/" + requestId + "/error", error(e));
+            }
+        }
+    }
+
+    /**
+     * Looks up the handler by class name, accepting a "::handleRequest" suffix as in template.yaml.
+     */
+    static RequestStreamHandler createHandler(final String handlerSetting) {
+        final String className = Optional.ofNullable(handlerSetting)
+                .map(setting -> setting.split("::")[0])
+                .orElseThrow(() -> new IllegalStateException("_HANDLER env var not set"));
+        final Supplier<RequestStreamHandler> handler = HANDLERS.get(className);
+        if (handler == null) {
+            throw new IllegalStateException("Handler " + className
+                    + " is not available in this runtime");
+        }
+        return handler.get();
+    }
+
+    private static byte[] error(final Exception exception) {
+        final String message = String.valueOf(exception.getMessage())
+                .replace("\\", "\\\\").replace("\"", "\\\"");
+        return ("{\"errorMessage\":\"" + message + "\",\"errorType\":\""
+                + exception.getClass().getName() + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void post(final String url, final byte[] body) throws IOException {
+        final HttpURLConnection connection =
+                (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        // reading the status completes the exchange so the connection can be reused
+        connection.getResponseCode();
+        connection.getInputStream().close();
+    }
+
+    /**
+     * The body of a streamed response. The request to the Runtime API is only opened on the first
+     * write, so a handler that fails before writing anything can still have its error posted.
+     */
+    private static final class StreamingResponse extends OutputStream {
+        private final String url;
+        private HttpURLConnection connection;
+        private OutputStream body;
+
+        StreamingResponse(final String url) {
+            this.url = url;
+        }
+
+        private OutputStream body() throws IOException {
+            if (body == null) {
+                connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Lambda-Runtime-Function-Response-Mode", "streaming");
+                connection.setRequestProperty("Content-Type",
+                        StreamingResponseHandler.HTTP_INTEGRATION_RESPONSE);
+                connection.setChunkedStreamingMode(0);
+                body = connection.getOutputStream();
+            }
+            return body;
+        }
+
+        @Override
+        public void write(final int value) throws IOException {
+            body().write(value);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int off, final int len) throws IOException {
+            body().write(bytes, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            // the handler closing its output does not end the response, complete does
+        }
+
+        void complete() throws IOException {
+            body().close();
+            connection.getResponseCode();
+            connection.getInputStream().close();
+        }
+
+        // Drops a response that was already started, returns false if nothing was sent yet
+        boolean abort() {
+            if (connection == null) {
+                return false;
+            }
+            connection.disconnect();
+            return true;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class RuntimeContext implements Context {
+        private final String awsRequestId;
+        private final String logGroupName;
+        private final String logStreamName;
+        private final String functionName;
+        private final String functionVersion;
+        private final String invokedFunctionArn;
+        private final CognitoIdentity identity;
+        private final ClientContext clientContext;
+        private final int memoryLimitMegabytes;
+        private final long deadlineMillis;
+
+        RuntimeContext(final String requestId, final Map<String, String> environment,
+                final long deadlineMillis) {
+            this(requestId,
+                    environment.get("AWS_LAMBDA_LOG_GROUP_NAME"),
+                    environment.get("AWS_LAMBDA_LOG_STREAM_NAME"),
+                    environment.get("AWS_LAMBDA_FUNCTION_NAME"),
+                    environment.get("AWS_LAMBDA_FUNCTION_VERSION"),
+                    null, null, null,
+                    Optional.ofNullable(environment.get("AWS_LAMBDA_FUNCTION_MEMORY_SIZE"))
+                            .map(Integer::parseInt).orElse(0),
+                    deadlineMillis);
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return memoryLimitMegabytes;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            // 0 without a deadline, which the handlers take as no deadline
+            return deadlineMillis <= 0
+                    ? 0 : (int) Math.max(1, deadlineMillis - System.currentTimeMillis());
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return StdoutLogger.INSTANCE;
+        }
+    }
+
+    private enum StdoutLogger implements LambdaLogger {
+        INSTANCE;
+
+        @Override
+        public void log(final String message) {
+            System.out.print(message);
+        }
+
+        @Override
+        public void log(final byte[] message) {
+            System.out.print(new String(message, StandardCharsets.UTF_8));
+        }
+    }
+}
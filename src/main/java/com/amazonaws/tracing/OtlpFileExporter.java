@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Appends each trace to a file as one line of OTLP/JSON, the format the OpenTelemetry
+ * collector's file receiver reads.
+ */
+public class OtlpFileExporter implements SpanExporter {
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_SERVER = 2;
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final String serviceName;
+
+    /**
+     * Appends traces to file, which is created if missing, with serviceName as the service.name
+     * resource attribute.
+     */
+    public OtlpFileExporter(final ObjectMapper objectMapper, final Path file,
+            final String serviceName) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void export(final Span root) {
+        final ObjectNode resourceSpans = objectMapper.createObjectNode();
+        final ObjectNode resource = resourceSpans.putArray("resourceSpans").addObject();
+        attribute(resource.putObject("resource").putArray("attributes"), "service.name",
+                serviceName);
+        final ObjectNode scopeSpans = resource.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", "com.amazonaws.tracing");
+        addSpans(scopeSpans.putArray("spans"), root);
+
+        final String line = resourceSpans.toString() + "\n";
+        synchronized (this) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append trace to " + file, e);
+            }
+        }
+    }
+
+    // Flattens the tree; OTLP links spans through parentSpanId
+    private void addSpans(final ArrayNode spans, final Span span) {
+        final ObjectNode node = spans.addObject();
+        node.put("traceId", span.getTraceId());
+        node.put("spanId", span.getSpanId());
+        final String parentSpanId = span.getParent() == null
+                ? span.getRemoteParentId() : span.getParent().getSpanId();
+        if (parentSpanId != null) {
+            node.put("parentSpanId", parentSpanId);
+        }
+        node.put("name", span.getName());
+        node.put("kind", span.getParent() == null ? SPAN_KIND_SERVER : SPAN_KIND_INTERNAL);
+        node.put("startTimeUnixNano", String.valueOf(span.getStartEpochNanos()));
+        node.put("endTimeUnixNano", String.valueOf(span.getEndEpochNanos()));
+        if (!span.getAnnotations().isEmpty()) {
+            final ArrayNode attributes = node.putArray("attributes");
+            for (Map.Entry<String, String> annotation : span.getAnnotations().entrySet()) {
+                attribute(attributes, annotation.getKey(), annotation.getValue());
+            }
+        }
+        for (Span child : span.getChildren()) {
+            addSpans(spans, child);
+        }
+    }
+
+    private static void attribute(final ArrayNode attributes, final String key,
+            final String value) {
+        final ObjectNode attribute = attributes.addObject();
+        attribute.put("key", key);
+        attribute.putObject("value").put("stringValue", value);
+    }
+}
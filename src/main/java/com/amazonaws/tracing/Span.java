@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A timed step of a request. Spans form a tree under the root span a handler starts with
+ * Tracer.startTrace; the whole tree is exported when the root is closed. Requests that are not
+ * sampled get NOOP, whose methods do nothing.
+ */
+public class Span implements AutoCloseable {
+    public static final Span NOOP = new Span(null, null, null);
+
+    private final Span root;
+    private final Span parent;
+    private final String name;
+    private final String spanId;
+    private final long startNanos;
+    private long endNanos = -1;
+    private Map<String, String> annotations = Collections.emptyMap();
+    private List<Span> children = Collections.emptyList();
+
+    // root only
+    private Tracer tracer;
+    private long startEpochNanos;
+    private String traceId;
+    private String remoteParentId;
+    private boolean dropped;
+
+    private Span(final Span parent, final String name, final Tracer tracer) {
+        this.parent = parent;
+        this.root = parent == null ? this : parent.root;
+        this.name = name;
+        this.spanId = name == null ? null : randomHex(16);
+        this.startNanos = System.nanoTime();
+        if (parent == null && tracer != null) {
+            this.tracer = tracer;
+            this.startEpochNanos = System.currentTimeMillis() * 1_000_000L;
+            this.traceId = randomHex(32);
+        }
+    }
+
+    static Span root(final Tracer tracer, final String name) {
+        return new Span(null, name, tracer);
+    }
+
+    /**
+     * Starts a child of this span without making it the thread's current span, for steps that
+     * begin and end in different callbacks.
+     */
+    public Span startChild(final String childName) {
+        if (this == NOOP) {
+            return NOOP;
+        }
+        final Span child = new Span(this, childName, null);
+        synchronized (root) {
+            if (children.isEmpty()) {
+                children = new ArrayList<>(4);
+            }
+            children.add(child);
+        }
+        return child;
+    }
+
+    /**
+     * Attaches a key and value to this span, replacing an earlier value for the key.
+     */
+    public Span annotate(final String key, final String value) {
+        if (this == NOOP) {
+            return this;
+        }
+        synchronized (root) {
+            if (annotations.isEmpty()) {
+                annotations = new LinkedHashMap<>(4);
+            }
+            annotations.put(key, value);
+        }
+        return this;
+    }
+
+    /** Records the end time; later calls keep the first one. */
+    public void end() {
+        if (this == NOOP || endNanos >= 0) {
+            return;
+        }
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the span and gives the thread's current span back to its parent. Closing the root
+     * exports the trace.
+     */
+    @Override
+    public void close() {
+        if (this == NOOP) {
+            return;
+        }
+        end();
+        if (Tracing.current() == this) {
+            Tracing.setCurrent(parent);
+        }
+        if (parent == null && tracer != null && !dropped) {
+            tracer.export(this);
+        }
+    }
+
+    /**
+     * Joins the trace a caller started, from a W3C traceparent header value. A caller that did
+     * not sample the request suppresses this trace; malformed values are ignored.
+     */
+    void adoptTraceparent(final String traceparent) {
+        // version "00": 00-<32 hex trace id>-<16 hex parent id>-<2 hex flags>
+        if (traceparent == null || traceparent.length() != 55 || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return;
+        }
+        final String remoteTraceId = traceparent.substring(3, 35);
+        final String parentId = traceparent.substring(36, 52);
+        if (!isHex(remoteTraceId) || !isHex(parentId) || !isHex(traceparent.substring(53))
+                || remoteTraceId.equals("00000000000000000000000000000000")) {
+            return;
+        }
+        final Span top = root;
+        top.traceId = remoteTraceId;
+        top.remoteParentId = parentId;
+        top.dropped = (Character.digit(traceparent.charAt(54), 16) & 1) == 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public Span getParent() {
+        return parent;
+    }
+
+    public String getTraceId() {
+        return root.traceId;
+    }
+
+    /** Returns the id of the caller's span this trace continues, or null. */
+    public String getRemoteParentId() {
+        return root.remoteParentId;
+    }
+
+    public Map<String, String> getAnnotations() {
+        return annotations;
+    }
+
+    public List<Span> getChildren() {
+        return children;
+    }
+
+    public long getStartEpochNanos() {
+        return root.startEpochNanos + (startNanos - root.startNanos);
+    }
+
+    /** Returns the end as epoch nanoseconds, or the current time for a span still open. */
+    public long getEndEpochNanos() {
+        return root.startEpochNanos
+                + ((endNanos < 0 ? System.nanoTime() : endNanos) - root.startNanos);
+    }
+
+    private static String randomHex(final int digits) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final StringBuilder hex = new StringBuilder(digits);
+        while (hex.length() < digits) {
+            final String part = Long.toHexString(random.nextLong());
+            for (int i = part.length(); i < 16; i++) {
+                hex.append('0');
+            }
+            hex.append(part);
+        }
+        return hex.substring(0, digits);
+    }
+
+    private static boolean isHex(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            if (Character.digit(ch, 16) < 0 || Character.isUpperCase(ch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
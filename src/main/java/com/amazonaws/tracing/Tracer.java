@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts the root span of sampled requests and hands finished traces to the exporter. With a
+ * sample rate of zero, or no exporter, every request gets Span.NOOP.
+ */
+public class Tracer {
+    private final double sampleRate;
+    private final SpanExporter exporter;
+
+    /**
+     * Samples the given share of traces, from 0 to 1, and hands them to exporter. A rate of 0 or
+     * a null exporter disables tracing.
+     */
+    public Tracer(final double sampleRate, final SpanExporter exporter) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be in [0, 1]");
+        }
+        this.sampleRate = sampleRate;
+        this.exporter = exporter;
+    }
+
+    public static Tracer disabled() {
+        return new Tracer(0, null);
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0 && exporter != null;
+    }
+
+    /**
+     * Starts a trace for the request this thread is about to handle, if it is sampled, and makes
+     * its root the current span. The caller must close the returned span.
+     */
+    public Span startTrace(final String name) {
+        if (!isEnabled()
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return Span.NOOP;
+        }
+        final Span root = Span.root(this, name);
+        Tracing.setCurrent(root);
+        return root;
+    }
+
+    void export(final Span root) {
+        try {
+            exporter.export(root);
+        } catch (RuntimeException e) {
+            // a trace that cannot be written must not fail the request
+        }
+    }
+}
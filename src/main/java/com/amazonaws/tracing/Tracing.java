@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The span the current thread is working in. Code that wants to be traced opens its spans here,
+ * in try-with-resources; when the thread has no sampled trace they are Span.NOOP and cost one
+ * ThreadLocal read.
+ */
+public final class Tracing {
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private Tracing() {
+    }
+
+    /** Opens a child of the current span and makes it current until it is closed. */
+    public static Span span(final String name) {
+        final Span parent = CURRENT.get();
+        if (parent == null) {
+            return Span.NOOP;
+        }
+        final Span child = parent.startChild(name);
+        CURRENT.set(child);
+        return child;
+    }
+
+    /** Returns the current span, or null when the thread has no sampled trace. */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Joins the trace named by the traceparent header of an API Gateway event, if it has one.
+     * Header names are matched ignoring case, as REST APIs keep the caller's case.
+     */
+    public static void adoptTraceparent(final JsonNode event) {
+        final Span current = CURRENT.get();
+        if (current == null || event == null) {
+            return;
+        }
+        final JsonNode headers = event.get("headers");
+        if (headers == null || !headers.isObject()) {
+            return;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> it = headers.fields(); it.hasNext(); ) {
+            final Map.Entry<String, JsonNode> header = it.next();
+            if ("traceparent".equalsIgnoreCase(header.getKey())) {
+                current.adoptTraceparent(header.getValue().asText());
+                return;
+            }
+        }
+    }
+
+    static void setCurrent(final Span span) {
+        if (span == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(span);
+        }
+    }
+}
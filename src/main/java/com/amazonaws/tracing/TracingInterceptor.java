@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * Splits each SDK call made inside a sampled trace into the time spent marshalling the request,
+ * preparing and signing it, on the wire (one span per attempt) and unmarshalling the response.
+ * Calls made outside a trace only pay for a ThreadLocal read.
+ */
+public class TracingInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Span> CALL = new ExecutionAttribute<>("TracingCall");
+    private static final ExecutionAttribute<Span> PHASE = new ExecutionAttribute<>("TracingPhase");
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context,
+            final ExecutionAttributes attributes) {
+        final Span parent = Tracing.current();
+        if (parent == null) {
+            return;
+        }
+        attributes.putAttribute(CALL, parent.startChild(
+                attributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME) + "."
+                        + attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME)));
+    }
+
+    @Override
+    public void beforeMarshalling(final Context.BeforeMarshalling context,
+            final ExecutionAttributes attributes) {
+        startPhase(attributes, "marshal");
+    }
+
+    @Override
+    public void afterMarshalling(final Context.AfterMarshalling context,
+            final ExecutionAttributes attributes) {
+        // what follows marshalling up to the first transmission is request preparation and signing
+        startPhase(attributes, "sign");
+    }
+
+    @Override
+    public void beforeTransmission(final Context.BeforeTransmission context,
+            final ExecutionAttributes attributes) {
+        startPhase(attributes, "http");
+    }
+
+    @Override
+    public void afterTransmission(final Context.AfterTransmission context,
+            final ExecutionAttributes attributes) {
+        final Span phase = attributes.getAttribute(PHASE);
+        if (phase != null) {
+            phase.annotate("status_code", String.valueOf(context.httpResponse().statusCode()));
+        }
+        endPhase(attributes);
+    }
+
+    @Override
+    public void beforeUnmarshalling(final Context.BeforeUnmarshalling context,
+            final ExecutionAttributes attributes) {
+        startPhase(attributes, "unmarshal");
+    }
+
+    @Override
+    public void afterUnmarshalling(final Context.AfterUnmarshalling context,
+            final ExecutionAttributes attributes) {
+        endPhase(attributes);
+    }
+
+    @Override
+    public void afterExecution(final Context.AfterExecution context,
+            final ExecutionAttributes attributes) {
+        endPhase(attributes);
+        final Span call = attributes.getAttribute(CALL);
+        if (call != null) {
+            call.end();
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(final Context.FailedExecution context,
+            final ExecutionAttributes attributes) {
+        endPhase(attributes);
+        final Span call = attributes.getAttribute(CALL);
+        if (call != null) {
+            call.annotate("error", context.exception().getClass().getSimpleName());
+            call.end();
+        }
+    }
+
+    // Ends the phase in progress, if any, and starts the next one
+    private static void startPhase(final ExecutionAttributes attributes, final String name) {
+        final Span call = attributes.getAttribute(CALL);
+        if (call == null) {
+            return;
+        }
+        endPhase(attributes);
+        attributes.putAttribute(PHASE, call.startChild(name));
+    }
+
+    private static void endPhase(final ExecutionAttributes attributes) {
+        final Span phase = attributes.getAttribute(PHASE);
+        if (phase != null) {
+            phase.end();
+        }
+    }
+}
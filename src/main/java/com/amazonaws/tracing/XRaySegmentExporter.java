@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Writes each trace as one X-Ray segment document per line: the root span is the segment and
+ * the spans under it are nested subsegments. Trace ids are W3C ids written in X-Ray's form.
+ */
+public class XRaySegmentExporter implements SpanExporter {
+    private final ObjectMapper objectMapper;
+    private final PrintStream out;
+
+    public XRaySegmentExporter(final ObjectMapper objectMapper, final PrintStream out) {
+        this.objectMapper = objectMapper;
+        this.out = out;
+    }
+
+    @Override
+    public void export(final Span root) {
+        final ObjectNode segment = document(root);
+        final String traceId = root.getTraceId();
+        segment.put("trace_id", "1-" + traceId.substring(0, 8) + "-" + traceId.substring(8));
+        if (root.getRemoteParentId() != null) {
+            segment.put("parent_id", root.getRemoteParentId());
+        }
+        out.println(segment.toString());
+    }
+
+    private ObjectNode document(final Span span) {
+        final ObjectNode document = objectMapper.createObjectNode();
+        document.put("name", span.getName());
+        document.put("id", span.getSpanId());
+        document.put("start_time", seconds(span.getStartEpochNanos()));
+        document.put("end_time", seconds(span.getEndEpochNanos()));
+        if (!span.getAnnotations().isEmpty()) {
+            final ObjectNode annotations = document.putObject("annotations");
+            for (Map.Entry<String, String> annotation : span.getAnnotations().entrySet()) {
+                annotations.put(annotation.getKey(), annotation.getValue());
+            }
+        }
+        if (!span.getChildren().isEmpty()) {
+            final ArrayNode subsegments = document.putArray("subsegments");
+            for (Span child : span.getChildren()) {
+                subsegments.add(document(child));
+            }
+        }
+        return document;
+    }
+
+    // X-Ray takes epoch seconds with fractions; microseconds are as precise as it records
+    private static double seconds(final long epochNanos) {
+        return (epochNanos / 1000) / 1e6;
+    }
+}
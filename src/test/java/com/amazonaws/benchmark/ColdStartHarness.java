@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.benchmark;
+
+import com.amazonaws.metrics.StartupProbe;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cold starts: launches a fresh JVM on the shaded jar for every run, times how long it
+ * takes from launch to the first response of {@link StartupProbe} and collects the
+ * {@code coldStart} breakdown each run logs. What the breakdown does not cover, from launch to the
+ * handler's first phase, is reported as beforeHandler. Prints min, percentiles and max for all.
+ * Run with the cold-start profile, which builds the shaded jar first:
+ * <pre>
+ * mvn -Pcold-start -DskipTests package -Dcoldstart.runs=30 -Dcoldstart.handler=com.amazonaws.handler.GetOrderHandler
+ * </pre>
+ * Unless ORDER_STORE is set, runs use the in-memory store so DynamoDB latency stays out of the
+ * numbers. The event file to send and JVM options such as -XX:TieredStopAtLevel=1 for the probe
+ * JVMs are read from the coldstart.event and coldstart.jvmArgs system properties.
+ */
+public final class ColdStartHarness {
+    private static final String DEFAULT_EVENT = "{\"pathParameters\":{\"order_id\":\"cold-start\"}}";
+
+    private ColdStartHarness() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: ColdStartHarness <shaded jar> <handler class> <runs>");
+            System.exit(2);
+        }
+        final String jar = args[0];
+        final String handler = args[1];
+        final int runs = Integer.parseInt(args[2]);
+        final String eventFile = System.getProperty("coldstart.event", "");
+        final byte[] event = eventFile.isEmpty()
+                ? DEFAULT_EVENT.getBytes(StandardCharsets.UTF_8) : Files.readAllBytes(Paths.get(eventFile));
+        final String jvmArgLine = System.getProperty("coldstart.jvmArgs", "").trim();
+        final List<String> jvmArgs = jvmArgLine.isEmpty()
+                ? Collections.emptyList() : Arrays.asList(jvmArgLine.split("\\s+"));
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (int run = 0; run < runs; run++) {
+            final Map<String, Long> result = run(jar, handler, event, jvmArgs, objectMapper);
+            for (Map.Entry<String, Long> value : result.entrySet()) {
+                samples.computeIfAbsent(value.getKey(), key -> new ArrayList<>()).add(value.getValue());
+            }
+        }
+
+        System.out.printf("%d cold starts of %s%s%n", runs, handler,
+                jvmArgLine.isEmpty() ? "" : " with " + jvmArgLine);
+        System.out.printf("%-28s %8s %8s %8s %8s %8s%n", "millis", "min", "p50", "p90", "p99", "max");
+        for (Map.Entry<String, List<Long>> series : samples.entrySet()) {
+            final List<Long> values = series.getValue();
+            Collections.sort(values);
+            System.out.printf("%-28s %8d %8d %8d %8d %8d%n", series.getKey(), values.get(0),
+                    percentile(values, 50), percentile(values, 90), percentile(values, 99),
+                    values.get(values.size() - 1));
+        }
+    }
+
+    // Runs one fresh JVM and returns its time to first response and its logged breakdown
+    private static Map<String, Long> run(final String jar, final String handler, final byte[] event,
+            final List<String> jvmArgs, final ObjectMapper objectMapper) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", jar, StartupProbe.class.getName(), handler));
+        final ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.environment().putIfAbsent("ORDER_STORE", "memory");
+
+        final Map<String, Long> result = new LinkedHashMap<>();
+        final long start = System.nanoTime();
+        final Process process = builder.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(event);
+        }
+        try (BufferedReader stdout = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (line.startsWith(StartupProbe.RESPONSE_PREFIX)) {
+                    result.put("timeToFirstResponse", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } else if (line.startsWith("{\"coldStart\"")) {
+                    final JsonNode breakdown = objectMapper.readTree(line).get("coldStart");
+                    for (Iterator<Map.Entry<String, JsonNode>> it = breakdown.fields(); it.hasNext(); ) {
+                        final Map.Entry<String, JsonNode> phase = it.next();
+                        if (phase.getValue().isNumber()) {
+                            result.put(phase.getKey(), phase.getValue().asLong());
+                        }
+                    }
+                }
+            }
+        }
+        if (process.waitFor() != 0 || !result.containsKey("timeToFirstResponse")) {
+            throw new IllegalStateException("Probe JVM exited with " + process.exitValue() + " and no response");
+        }
+        // what the handler did not time: launching the JVM and loading the handler class
+        result.put("beforeHandler", result.get("timeToFirstResponse")
+                - result.getOrDefault("daggerMillis", 0L) - result.getOrDefault("firstInvocationMillis", 0L));
+        return result;
+    }
+
+    static long percentile(final List<Long> sorted, final int percentile) {
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.benchmark;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.Setter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Money} with {@link BigDecimal} for the conversions done for every order: parsing
+ * and formatting DynamoDB number strings, and reading and writing order JSON. Run with the
+ * benchmark profile, which adds the GC profiler so gc.alloc.rate.norm shows bytes per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final String AMOUNT = "1234.56";
+    private static final String ORDER_JSON = "{\"orderId\":\"5f8e1c6a-3b1d-4a45-9c1e-0c2f7d3e6b21\","
+            + "\"customerId\":\"customer\",\"preTaxAmount\":1234.56,\"postTaxAmount\":1357.99,\"version\":3}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BigDecimal bigDecimal = new BigDecimal(AMOUNT);
+    private final Money money = Money.parse(AMOUNT);
+    private Order order;
+    private BigDecimalOrder bigDecimalOrder;
+
+    /** The shape Order had before amounts became Money. */
+    @Getter
+    @Setter
+    public static class BigDecimalOrder {
+        private String orderId;
+        private String customerId;
+        private BigDecimal preTaxAmount;
+        private BigDecimal postTaxAmount;
+        private Long version;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        order = objectMapper.readValue(ORDER_JSON, Order.class);
+        bigDecimalOrder = objectMapper.readValue(ORDER_JSON, BigDecimalOrder.class);
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal(AMOUNT);
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return Money.parse(AMOUNT);
+    }
+
+    @Benchmark
+    public String formatBigDecimal() {
+        // toString caches its result in the instance, toPlainString does not
+        return bigDecimal.toPlainString();
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return money.toString();
+    }
+
+    @Benchmark
+    public BigDecimalOrder readBigDecimalOrder() throws IOException {
+        return objectMapper.readValue(ORDER_JSON, BigDecimalOrder.class);
+    }
+
+    @Benchmark
+    public Order readMoneyOrder() throws IOException {
+        return objectMapper.readValue(ORDER_JSON, Order.class);
+    }
+
+    @Benchmark
+    public byte[] writeBigDecimalOrder() throws IOException {
+        return objectMapper.writeValueAsBytes(bigDecimalOrder);
+    }
+
+    @Benchmark
+    public byte[] writeMoneyOrder() throws IOException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+}
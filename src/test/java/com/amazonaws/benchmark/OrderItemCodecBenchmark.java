@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.benchmark;
+
+import com.amazonaws.dao.OrderItemCodec;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link OrderItemCodec} with the hand-written conversions OrderDao used before it,
+ * for one order item each way. Run with the benchmark profile, which adds the GC profiler so
+ * gc.alloc.rate.norm shows bytes allocated per item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderItemCodecBenchmark {
+    private final Order order = Order.builder()
+            .orderId("5f8e1c6a-3b1d-4a45-9c1e-0c2f7d3e6b21")
+            .customerId("customer")
+            .preTaxAmount(Money.parse("1234.56"))
+            .postTaxAmount(Money.parse("1357.99"))
+            .version(3L)
+            .build();
+    private final Map<String, AttributeValue> item = OrderItemCodec.encode(order);
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeHandWritten() {
+        return orderItem(order);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeCodec() {
+        return OrderItemCodec.encode(order);
+    }
+
+    @Benchmark
+    public Order decodeHandWritten() {
+        return convert(item);
+    }
+
+    @Benchmark
+    public Order decodeCodec() {
+        return OrderItemCodec.decode(item);
+    }
+
+    // OrderDao.orderItem as it was before the codec
+    private static Map<String, AttributeValue> orderItem(final Order order) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("orderId", AttributeValue.builder().s(order.getOrderId()).build());
+        item.put("version", AttributeValue.builder().n(order.getVersion().toString()).build());
+        item.put("customerId", AttributeValue.builder().s(order.getCustomerId()).build());
+        item.put("preTaxAmount", AttributeValue.builder().n(order.getPreTaxAmount().toString()).build());
+        item.put("postTaxAmount", AttributeValue.builder().n(order.getPostTaxAmount().toString()).build());
+        return item;
+    }
+
+    // OrderDao.convert as it was before the codec
+    private static Order convert(final Map<String, AttributeValue> item) {
+        return Order.builder()
+                .orderId(item.get("orderId").s())
+                .customerId(item.get("customerId").s())
+                .preTaxAmount(Money.parse(item.get("preTaxAmount").n()))
+                .postTaxAmount(Money.parse(item.get("postTaxAmount").n()))
+                .version(Long.valueOf(item.get("version").n()))
+                .build();
+    }
+}
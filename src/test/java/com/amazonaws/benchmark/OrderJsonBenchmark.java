@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.benchmark;
+
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderJsonModule;
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.response.GatewayResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Jackson's bean codecs with {@link OrderJsonModule} on what a GetOrder and a CreateOrder
+ * request do: write an order into a gateway response, and read a create request. The steady
+ * state benchmarks reuse one mapper; the firstCall ones time a single call on a new mapper each
+ * iteration, which is what a cold start pays for introspecting the classes. Run with the
+ * benchmark profile, e.g. -Dbenchmark=OrderJsonBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJsonBenchmark {
+    private static final String ORDER_JSON = "{\"orderId\":\"5f8e1c6a-3b1d-4a45-9c1e-0c2f7d3e6b21\","
+            + "\"customerId\":\"customer\",\"preTaxAmount\":1234.56,\"postTaxAmount\":1357.99,\"version\":3}";
+    private static final String CREATE_JSON = "{\"customerId\":\"customer\",\"preTaxAmount\":1234,"
+            + "\"postTaxAmount\":1357}";
+    private static final Map<String, String> HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
+    private final ObjectMapper beans = new ObjectMapper();
+    private final ObjectMapper module = new ObjectMapper().registerModule(new OrderJsonModule());
+    private Order order;
+
+    /** Mappers that have not serialized anything yet, replaced before every iteration. */
+    @State(Scope.Thread)
+    public static class FreshMappers {
+        ObjectMapper beans;
+        ObjectMapper module;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            beans = new ObjectMapper();
+            module = new ObjectMapper().registerModule(new OrderJsonModule());
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        order = beans.readValue(ORDER_JSON, Order.class);
+    }
+
+    @Benchmark
+    public String writeOrderResponseBeans() throws IOException {
+        return writeOrderResponse(beans);
+    }
+
+    @Benchmark
+    public String writeOrderResponseModule() throws IOException {
+        return writeOrderResponse(module);
+    }
+
+    @Benchmark
+    public CreateOrderRequest readCreateRequestBeans() throws IOException {
+        return beans.readValue(CREATE_JSON, CreateOrderRequest.class);
+    }
+
+    @Benchmark
+    public CreateOrderRequest readCreateRequestModule() throws IOException {
+        return module.readValue(CREATE_JSON, CreateOrderRequest.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 200)
+    public Object firstCallBeans(final FreshMappers mappers) throws IOException {
+        writeOrderResponse(mappers.beans);
+        return mappers.beans.readValue(CREATE_JSON, CreateOrderRequest.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 200)
+    public Object firstCallModule(final FreshMappers mappers) throws IOException {
+        writeOrderResponse(mappers.module);
+        return mappers.module.readValue(CREATE_JSON, CreateOrderRequest.class);
+    }
+
+    private String writeOrderResponse(final ObjectMapper objectMapper) throws IOException {
+        return objectMapper.writeValueAsString(
+                new GatewayResponse<>(objectMapper.writeValueAsString(order), HEADERS, 200));
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a custom runtime build of the handlers, such as the native executable of the native
+ * profile, through a local stand-in for the Lambda Runtime API. Each run launches the command,
+ * sends it the sample event {@code invocations} times and then reads its resident set size from
+ * /proc, so it needs Linux. Prints min, percentiles and max of the time to the first response, of
+ * the warm invocations after it and of the RSS:
+ * <pre>
+ * java -cp &lt;test classpath&gt; com.amazonaws.benchmark.RuntimeApiHarness \
+ *     com.amazonaws.handler.GetOrderHandler 20 10 target/bootstrap
+ * </pre>
+ * Anything after the invocation count is the command, so the JVM build of the same runtime,
+ * {@code java -cp <shaded jar> com.amazonaws.runtime.LambdaRuntime}, can be compared directly.
+ * Runs use the in-memory store unless ORDER_STORE is set; the event is read from the file named
+ * by the coldstart.event system property, as for {@link ColdStartHarness}.
+ */
+public final class RuntimeApiHarness {
+    private static final String DEFAULT_EVENT = "{\"pathParameters\":{\"order_id\":\"cold-start\"}}";
+    private static final String RUNTIME = "/2018-06-01/runtime/";
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private RuntimeApiHarness() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: RuntimeApiHarness <handler class> <runs> <invocations per run> <command...>");
+            System.exit(2);
+        }
+        final String handler = args[0];
+        final int runs = Integer.parseInt(args[1]);
+        final int invocations = Integer.parseInt(args[2]);
+        final List<String> command = Arrays.asList(args).subList(3, args.length);
+        final String eventFile = System.getProperty("coldstart.event", "");
+        final byte[] event = eventFile.isEmpty()
+                ? DEFAULT_EVENT.getBytes(StandardCharsets.UTF_8) : Files.readAllBytes(Paths.get(eventFile));
+
+        final List<Long> firstResponse = new ArrayList<>();
+        final List<Long> warmInvocation = new ArrayList<>();
+        final List<Long> rss = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            try (RuntimeApi api = new RuntimeApi()) {
+                final ProcessBuilder builder = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT);
+                builder.environment().put("AWS_LAMBDA_RUNTIME_API", api.address());
+                builder.environment().put("_HANDLER", handler);
+                builder.environment().putIfAbsent("ORDER_STORE", "memory");
+
+                final long start = System.nanoTime();
+                final Process process = builder.start();
+                try {
+                    api.invoke(event);
+                    firstResponse.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    for (int i = 1; i < invocations; i++) {
+                        final long invoked = System.nanoTime();
+                        api.invoke(event);
+                        warmInvocation.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - invoked));
+                    }
+                    rss.add(residentMegabytes(process.pid()));
+                } finally {
+                    process.destroyForcibly().waitFor();
+                }
+            }
+        }
+
+        System.out.printf("%d runs of %s under %s%n", runs, handler, String.join(" ", command));
+        System.out.printf("%-28s %8s %8s %8s %8s %8s%n", "", "min", "p50", "p90", "p99", "max");
+        print("timeToFirstResponse millis", firstResponse);
+        print("warmInvocation micros", warmInvocation);
+        print("rss MB", rss);
+    }
+
+    private static void print(final String name, final List<Long> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Collections.sort(values);
+        System.out.printf("%-28s %8d %8d %8d %8d %8d%n", name, values.get(0),
+                ColdStartHarness.percentile(values, 50), ColdStartHarness.percentile(values, 90),
+                ColdStartHarness.percentile(values, 99), values.get(values.size() - 1));
+    }
+
+    private static long residentMegabytes(final long pid) throws IOException {
+        final Path status = Paths.get("/proc", Long.toString(pid), "status");
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+            }
+        }
+        throw new IllegalStateException("No VmRSS in " + status);
+    }
+
+    /** The part of the Runtime API a function uses: next invocation, response and errors. */
+    private static final class RuntimeApi implements AutoCloseable {
+        private final BlockingQueue<byte[]> events = new LinkedBlockingQueue<>();
+        private final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+        private final AtomicInteger requestIds = new AtomicInteger();
+        private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "runtime-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final HttpServer server;
+
+        RuntimeApi() throws IOException {
+            // without it, Nagle's algorithm and delayed ACKs add 40ms to every warm invocation
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setExecutor(executor);
+            server.createContext(RUNTIME, this::handle);
+            server.start();
+        }
+
+        String address() {
+            return "127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void invoke(final byte[] event) throws InterruptedException {
+            events.add(event);
+            final String result = results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result == null) {
+                throw new IllegalStateException("No response within " + TIMEOUT_SECONDS + "s");
+            }
+            if (!result.isEmpty()) {
+                throw new IllegalStateException("Invocation failed: " + result);
+            }
+        }
+
+        private void handle(final HttpExchange exchange) throws IOException {
+            final String path = exchange.getRequestURI().getPath();
+            try {
+                if (path.endsWith("/invocation/next")) {
+                    final byte[] event = events.take();
+                    exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id",
+                            Integer.toString(requestIds.incrementAndGet()));
+                    exchange.getResponseHeaders().add("Lambda-Runtime-Deadline-Ms",
+                            Long.toString(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS)));
+                    respond(exchange, 200, event);
+                } else {
+                    final String body = read(exchange.getRequestBody());
+                    respond(exchange, 202, new byte[0]);
+                    // an empty result is a success; errors carry the body the runtime posted
+                    results.add(path.endsWith("/response") ? "" : body.isEmpty() ? path : body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void respond(final HttpExchange exchange, final int status, final byte[] body)
+                throws IOException {
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private static String read(final InputStream in) throws IOException {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
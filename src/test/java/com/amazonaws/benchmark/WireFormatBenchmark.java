@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.benchmark;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderJsonModule;
+import com.amazonaws.model.response.GetOrdersResponse;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes an order listing page as JSON, CBOR and Smile, the formats
+ * ContentNegotiation offers. Setup prints the payload size of each format, so one run shows both
+ * the time and the bytes a service-to-service caller would save.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"10", "100", "1000"})
+    int orders;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    private ObjectMapper mapper;
+    private GetOrdersResponse response;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("cbor".equals(format)) {
+            mapper = new CBORMapper();
+        } else if ("smile".equals(format)) {
+            mapper = new SmileMapper();
+        } else {
+            mapper = new ObjectMapper();
+        }
+        mapper.registerModule(new OrderJsonModule());
+        final List<Order> page = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            page.add(Order.builder()
+                    .orderId(UUID.randomUUID().toString())
+                    .customerId("customer-" + (i % 50))
+                    .preTaxAmount(Money.of(1000 + i * 37L, 2))
+                    .postTaxAmount(Money.of(1080 + i * 40L, 2))
+                    .version(1L + i % 5)
+                    .build());
+        }
+        response = new GetOrdersResponse(page.get(page.size() - 1).getOrderId(), page);
+        payload = mapper.writeValueAsBytes(response);
+        System.out.printf("%n%s, %d orders: %d bytes%n", format, orders, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    // GetOrdersResponse is write-only, so read the page the way a client would, order by order
+    @Benchmark
+    public List<Order> decode() throws IOException {
+        final List<Order> page = new ArrayList<>(orders);
+        try (JsonParser parser = mapper.createParser(payload)) {
+            while (parser.nextToken() != JsonToken.START_ARRAY) {
+                // skip lastEvaluatedKey up to the orders array
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                page.add(mapper.readValue(parser, Order.class));
+            }
+        }
+        return page;
+    }
+}
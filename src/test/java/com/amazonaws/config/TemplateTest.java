@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TemplateTest {
+    private static final Pattern RESOURCE = Pattern.compile("^  (\\w+):\\s*$");
+    private static final Pattern CRUD_POLICY =
+            Pattern.compile("- DynamoDBCrudPolicy:[^\\n]*\\n\\s+TableName: !Ref (\\w+)");
+
+    @Test
+    public void everyFunctionWritingOrders_mayWriteTheOrderTotals() throws IOException {
+        Map<String, String> functions = functions();
+        int writers = 0;
+        for (Map.Entry<String, String> function : functions.entrySet()) {
+            Set<String> writable = crudTables(function.getValue());
+            if (writable.contains("OrdersTable")) {
+                writers++;
+                // counter writes are swallowed by OrderTotalsRecorder, so a missing grant only
+                // shows up as totals that drift
+                assertTrue(writable.contains("OrderTotalsTable"),
+                        function.getKey() + " writes orders but may not write OrderTotalsTable");
+            }
+        }
+        assertTrue(writers > 0, "no function writes OrdersTable");
+    }
+
+    // The properties of every AWS::Serverless::Function under Resources, by logical id
+    private static Map<String, String> functions() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("template.yaml"), StandardCharsets.UTF_8);
+        Map<String, String> functions = new LinkedHashMap<>();
+        boolean inResources = false;
+        String name = null;
+        StringBuilder body = new StringBuilder();
+        for (String line : lines) {
+            if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0))) {
+                addFunction(functions, name, body);
+                name = null;
+                inResources = line.startsWith("Resources:");
+                continue;
+            }
+            Matcher resource = RESOURCE.matcher(line);
+            if (inResources && resource.matches()) {
+                addFunction(functions, name, body);
+                name = resource.group(1);
+                body.setLength(0);
+            } else if (name != null) {
+                body.append(line).append('\n');
+            }
+        }
+        addFunction(functions, name, body);
+        return functions;
+    }
+
+    private static void addFunction(Map<String, String> functions, String name,
+                                    StringBuilder body) {
+        if (name != null && body.indexOf("Type: AWS::Serverless::Function") >= 0) {
+            functions.put(name, body.toString());
+        }
+    }
+
+    private static Set<String> crudTables(String function) {
+        Set<String> tables = new HashSet<>();
+        Matcher policy = CRUD_POLICY.matcher(function);
+        while (policy.find()) {
+            tables.add(policy.group(1));
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.CreateOrderRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CoalescingOrderRepositoryTest {
+    private final OrderRepository delegate = mock(OrderRepository.class);
+
+    @Test
+    public void createOrder_whenConcurrent_writesFullBatchesOnce() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<CreateOrderRequest> requests = invocation.getArgument(0);
+            synchronized (batchSizes) {
+                batchSizes.add(requests.size());
+            }
+            List<OrderWriteResult> results = new ArrayList<>();
+            for (CreateOrderRequest request : requests) {
+                results.add(OrderWriteResult.success(
+                        Order.builder().orderId("order-" + request.getCustomerId()).build()));
+            }
+            return results;
+        }).when(delegate).createOrders(anyList());
+        // a window far longer than the test, so only full batches are written
+        CoalescingOrderRepository sut = new CoalescingOrderRepository(delegate, TimeUnit.MINUTES.toMicros(1), 4);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String customerId = "c" + i;
+                futures.add(executor.submit(() -> sut.createOrder(request(customerId)).getOrderId()));
+            }
+            Set<String> orderIds = new HashSet<>();
+            for (int i = 0; i < futures.size(); i++) {
+                orderIds.add(futures.get(i).get(30, TimeUnit.SECONDS));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertTrue(orderIds.contains("order-c" + i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, batchSizes.size());
+        assertEquals(4, batchSizes.get(0).intValue());
+        assertEquals(4, batchSizes.get(1).intValue());
+    }
+
+    @Test
+    public void createOrder_whenWindowPasses_writesPartialBatch() {
+        doAnswer(invocation -> {
+            List<CreateOrderRequest> requests = invocation.getArgument(0);
+            assertEquals(1, requests.size());
+            List<OrderWriteResult> results = new ArrayList<>();
+            results.add(OrderWriteResult.success(Order.builder().orderId("order").build()));
+            return results;
+        }).when(delegate).createOrders(anyList());
+        CoalescingOrderRepository sut = new CoalescingOrderRepository(delegate, 1000, 25);
+
+        assertEquals("order", sut.createOrder(request("c")).getOrderId());
+        verify(delegate, times(1)).createOrders(anyList());
+    }
+
+    @Test
+    public void createOrder_whenItsWriteFailed_throwsItsError() {
+        doAnswer(invocation -> {
+            List<OrderWriteResult> results = new ArrayList<>();
+            results.add(OrderWriteResult.failure(new IllegalArgumentException("customerId was null or empty")));
+            return results;
+        }).when(delegate).createOrders(anyList());
+        CoalescingOrderRepository sut = new CoalescingOrderRepository(delegate, 0, 25);
+
+        assertThrows(IllegalArgumentException.class, () -> sut.createOrder(request("")));
+    }
+
+    @Test
+    public void createOrder_whenBatchFailed_throwsBatchError() {
+        doThrow(new TableDoesNotExistException("gone")).when(delegate).createOrders(anyList());
+        CoalescingOrderRepository sut = new CoalescingOrderRepository(delegate, 0, 25);
+
+        assertThrows(TableDoesNotExistException.class, () -> sut.createOrder(request("c")));
+    }
+
+    private static CreateOrderRequest request(final String customerId) {
+        return new CreateOrderRequest(customerId, 1L, 2L);
+    }
+}
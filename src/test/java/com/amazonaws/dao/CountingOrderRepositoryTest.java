@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.metrics.EmbeddedMetrics;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.CreateOrderRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class CountingOrderRepositoryTest {
+    private final OrderRepository delegate = mock(OrderRepository.class);
+    private final OrderTotalsDao totals = mock(OrderTotalsDao.class);
+    private final EmbeddedMetrics metrics = mock(EmbeddedMetrics.class);
+    private final CountingOrderRepository sut = new CountingOrderRepository(delegate, totals, metrics);
+
+    @Test
+    public void createOrder_addsOrderToGlobalAndCustomerTotals() {
+        Order created = order("o1", "c1", 5);
+        CreateOrderRequest request = new CreateOrderRequest();
+        when(delegate.createOrder(request)).thenReturn(created);
+
+        assertSame(created, sut.createOrder(request));
+
+        verify(totals).add(null, 1, Money.valueOf(5), Money.valueOf(6));
+        verify(totals).add("c1", 1, Money.valueOf(5), Money.valueOf(6));
+        verifyNoInteractions(metrics);
+    }
+
+    @Test
+    public void createOrder_whenCreateFails_countsNothing() {
+        doThrow(new CouldNotCreateOrderException("failed")).when(delegate).createOrder(any());
+        assertThrows(CouldNotCreateOrderException.class, () -> sut.createOrder(new CreateOrderRequest()));
+        verifyNoInteractions(totals);
+    }
+
+    @Test
+    public void createOrders_addsEachCounterOnceForSuccessfulOrders() {
+        when(delegate.createOrders(any())).thenReturn(Arrays.asList(
+                OrderWriteResult.success(order("o1", "c1", 1)),
+                OrderWriteResult.success(order("o2", "c2", 2)),
+                OrderWriteResult.failure(new CouldNotCreateOrderException("failed")),
+                OrderWriteResult.success(order("o3", "c1", 3)),
+                OrderWriteResult.alreadyCreated(order("o4", "c1", 4))));
+
+        sut.createOrders(Collections.emptyList());
+
+        verify(totals).add(null, 3, Money.valueOf(6), Money.valueOf(9));
+        verify(totals).add("c1", 2, Money.valueOf(4), Money.valueOf(6));
+        verify(totals).add("c2", 1, Money.valueOf(2), Money.valueOf(3));
+    }
+
+    @Test
+    public void deleteOrder_subtractsDeletedOrder() {
+        when(delegate.deleteOrder("o1")).thenReturn(order("o1", "c1", 5));
+
+        sut.deleteOrder("o1");
+
+        verify(totals).add(null, -1, Money.valueOf(-5), Money.valueOf(-6));
+        verify(totals).add("c1", -1, Money.valueOf(-5), Money.valueOf(-6));
+    }
+
+    @Test
+    public void deleteOrder_whenOrderMissing_countsNothing() {
+        doThrow(new UnableToDeleteException("missing")).when(delegate).deleteOrder("o1");
+        assertThrows(UnableToDeleteException.class, () -> sut.deleteOrder("o1"));
+        verifyNoInteractions(totals);
+    }
+
+    @Test
+    public void adjustAmounts_addsDeltasWithoutCountingAnOrder() {
+        when(delegate.adjustAmounts("o1", Money.valueOf(-2), null, false)).thenReturn(order("o1", "c1", 3));
+
+        sut.adjustAmounts("o1", Money.valueOf(-2), null, false);
+
+        verify(totals).add(null, 0, Money.valueOf(-2), Money.ZERO);
+        verify(totals).add("c1", 0, Money.valueOf(-2), Money.ZERO);
+    }
+
+    @Test
+    public void updateOrder_addsChangeOfAmounts() {
+        Order update = order("o1", "c1", 8);
+        when(delegate.getLatestOrder("o1")).thenReturn(order("o1", "c1", 5));
+        when(delegate.updateOrder(update)).thenReturn(update);
+
+        sut.updateOrder(update);
+
+        verify(totals).add(null, 0, Money.valueOf(3), Money.valueOf(3));
+        verify(totals).add("c1", 0, Money.valueOf(3), Money.valueOf(3));
+        verifyNoInteractions(metrics);
+    }
+
+    @Test
+    public void updateOrder_whenCustomerChanged_movesOrderBetweenCustomers() {
+        Order update = order("o1", "c2", 8);
+        when(delegate.getLatestOrder("o1")).thenReturn(order("o1", "c1", 5));
+        when(delegate.updateOrder(update)).thenReturn(update);
+
+        sut.updateOrder(update);
+
+        verify(totals).add(null, 0, Money.valueOf(3), Money.valueOf(3));
+        verify(totals).add("c1", -1, Money.valueOf(-5), Money.valueOf(-6));
+        verify(totals).add("c2", 1, Money.valueOf(8), Money.valueOf(9));
+    }
+
+    @Test
+    public void updateOrder_whenAmountsAndCustomerUnchanged_leavesTotalsAlone() {
+        Order update = order("o1", "c1", 5);
+        when(delegate.getLatestOrder("o1")).thenReturn(order("o1", "c1", 5));
+        when(delegate.updateOrder(update)).thenReturn(update);
+        sut.updateOrder(update);
+        verifyNoInteractions(totals);
+    }
+
+    @Test
+    public void updateOrder_whenUpdateFails_countsNothing() {
+        Order update = order("o1", "c1", 8);
+        when(delegate.getLatestOrder("o1")).thenReturn(order("o1", "c1", 5));
+        doThrow(new UnableToUpdateException("Order missing or version mismatch")).when(delegate).updateOrder(update);
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(update));
+        verifyNoInteractions(totals);
+    }
+
+    @Test
+    public void createOrder_whenCounterWriteFails_returnsOrderAndPublishesFailure() {
+        Order created = order("o1", "c1", 5);
+        when(delegate.createOrder(any())).thenReturn(created);
+        doThrow(new IllegalStateException("throttled")).when(totals).add(anyString(), anyLong(), any(), any());
+
+        assertSame(created, sut.createOrder(new CreateOrderRequest()));
+
+        verify(totals).add(null, 1, Money.valueOf(5), Money.valueOf(6));
+        verify(metrics).publish(Collections.singletonMap("OrderTotalsWriteFailures", 1));
+    }
+
+    private static Order order(final String orderId, final String customerId, final long preTaxAmount) {
+        return Order.builder().orderId(orderId).customerId(customerId)
+                .preTaxAmount(Money.valueOf(preTaxAmount)).postTaxAmount(Money.valueOf(preTaxAmount + 1))
+                .version(1L).build();
+    }
+}
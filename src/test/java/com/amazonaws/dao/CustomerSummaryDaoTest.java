@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.model.CustomerSummary;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CustomerSummaryDaoTest {
+    private DynamoDbClient dynamoDb = mock(DynamoDbClient.class);
+    private CustomerSummaryDao sut = new CustomerSummaryDao(dynamoDb, "summaries",
+            Clock.fixed(Instant.ofEpochSecond(1000), ZoneOffset.UTC));
+
+    @Test
+    public void apply_whenInsert_addsOrderToCustomerAggregate() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        assertTrue(sut.apply(OrderChange.builder().orderId("o").sequenceNumber("123")
+                .newImage(order("c", "1.50", "2", 1L)).build()));
+
+        List<TransactWriteItem> items = captureTransaction();
+        assertEquals(2, items.size());
+        Map<String, AttributeValue> watermark = items.get(0).put().item();
+        assertEquals("order#o", watermark.get("id").s());
+        assertEquals(40, watermark.get("sequenceNumber").s().length());
+        assertTrue(watermark.get("sequenceNumber").s().endsWith("000123"));
+        assertFalse(watermark.containsKey("expiresAt"));
+
+        Update update = items.get(1).update();
+        assertEquals("customer#c", update.key().get("id").s());
+        assertEquals("1", update.expressionAttributeValues().get(":n").n());
+        assertEquals("1.50", update.expressionAttributeValues().get(":pre").n());
+        assertEquals("1", update.expressionAttributeValues().get(":v").n());
+    }
+
+    @Test
+    public void apply_whenModifyWithinCustomer_addsAmountDifferenceOnly() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        sut.apply(OrderChange.builder().orderId("o").sequenceNumber("124")
+                .oldImage(order("c", "1", "2", 1L))
+                .newImage(order("c", "4", "2", 2L)).build());
+
+        List<TransactWriteItem> items = captureTransaction();
+        assertEquals(2, items.size());
+        Map<String, AttributeValue> values = items.get(1).update().expressionAttributeValues();
+        assertEquals("0", values.get(":n").n());
+        assertEquals("3", values.get(":pre").n());
+        assertEquals("0", values.get(":post").n());
+        assertEquals("2", values.get(":v").n());
+    }
+
+    @Test
+    public void apply_whenModifyMovesOrderToOtherCustomer_updatesBothAggregates() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        sut.apply(OrderChange.builder().orderId("o").sequenceNumber("125")
+                .oldImage(order("a", "1", "2", 1L))
+                .newImage(order("b", "1", "2", 2L)).build());
+
+        List<TransactWriteItem> items = captureTransaction();
+        assertEquals(3, items.size());
+        assertEquals("-1", items.get(1).update().expressionAttributeValues().get(":n").n());
+        assertEquals("1", items.get(2).update().expressionAttributeValues().get(":n").n());
+    }
+
+    @Test
+    public void apply_whenRemove_subtractsOrderAndExpiresWatermark() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        sut.apply(OrderChange.builder().orderId("o").sequenceNumber("126")
+                .oldImage(order("c", "1", "2", 3L)).build());
+
+        List<TransactWriteItem> items = captureTransaction();
+        assertEquals(String.valueOf(1000 + 48 * 3600), items.get(0).put().item().get("expiresAt").n());
+        Map<String, AttributeValue> values = items.get(1).update().expressionAttributeValues();
+        assertEquals("-1", values.get(":n").n());
+        assertEquals("-2", values.get(":post").n());
+        assertFalse(values.containsKey(":v"));
+    }
+
+    @Test
+    public void apply_whenAlreadyApplied_returnsFalse() {
+        doThrow(TransactionCanceledException.builder()
+                .cancellationReasons(CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                        CancellationReason.builder().code("None").build())
+                .build()).when(dynamoDb).transactWriteItems(any(TransactWriteItemsRequest.class));
+        assertFalse(sut.apply(OrderChange.builder().orderId("o").sequenceNumber("1")
+                .newImage(order("c", "1", "2", 1L)).build()));
+    }
+
+    @Test
+    public void apply_whenTransactionConflicts_throws() {
+        doThrow(TransactionCanceledException.builder()
+                .cancellationReasons(CancellationReason.builder().code("None").build(),
+                        CancellationReason.builder().code("TransactionConflict").build())
+                .build()).when(dynamoDb).transactWriteItems(any(TransactWriteItemsRequest.class));
+        assertThrows(TransactionCanceledException.class, () -> sut.apply(OrderChange.builder()
+                .orderId("o").sequenceNumber("1").newImage(order("c", "1", "2", 1L)).build()));
+    }
+
+    @Test
+    public void padSequenceNumber_rejectsNonNumericInput() {
+        assertThrows(IllegalArgumentException.class, () -> CustomerSummaryDao.padSequenceNumber("12a"));
+    }
+
+    @Test
+    public void getSummary_whenNoAggregate_returnsZeroSummary() {
+        doReturn(GetItemResponse.builder().build()).when(dynamoDb).getItem(any(GetItemRequest.class));
+        CustomerSummary summary = sut.getSummary("c");
+        assertEquals(0L, summary.getOrderCount().longValue());
+        assertEquals(Money.ZERO, summary.getPreTaxAmount());
+        assertNull(summary.getLastVersion());
+    }
+
+    @Test
+    public void getSummary_whenAggregateExists_mapsItem() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", AttributeValue.builder().s("customer#c").build());
+        item.put("orderCount", AttributeValue.builder().n("3").build());
+        item.put("preTaxAmount", AttributeValue.builder().n("10.5").build());
+        item.put("postTaxAmount", AttributeValue.builder().n("12").build());
+        item.put("lastVersion", AttributeValue.builder().n("7").build());
+        doReturn(GetItemResponse.builder().item(item).build()).when(dynamoDb).getItem(any(GetItemRequest.class));
+        CustomerSummary summary = sut.getSummary("c");
+        assertEquals(3L, summary.getOrderCount().longValue());
+        assertEquals(Money.parse("10.5"), summary.getPreTaxAmount());
+        assertEquals(7L, summary.getLastVersion().longValue());
+    }
+
+    @Test
+    public void getSummary_whenDeadlineStarted_boundsTheCallByIt() {
+        doReturn(GetItemResponse.builder().build()).when(dynamoDb).getItem(any(GetItemRequest.class));
+        Deadline.start(10_000);
+        try {
+            sut.getSummary("c");
+        } finally {
+            Deadline.clear();
+        }
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDb).getItem(captor.capture());
+        Duration apiCallTimeout = captor.getValue().overrideConfiguration().get().apiCallTimeout().get();
+        assertTrue(apiCallTimeout.toMillis() > 9000 && apiCallTimeout.toMillis() <= 9500);
+    }
+
+    @Test
+    public void getSummary_whenDeadlinePassed_throwsWithoutCallingDynamoDb() {
+        Deadline.start(100); // less than the time kept back for the response
+        try {
+            assertThrows(DeadlineExceededException.class, () -> sut.getSummary("c"));
+        } finally {
+            Deadline.clear();
+        }
+        verify(dynamoDb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    public void getSummary_whenCallTimesOut_throwsDeadlineExceededException() {
+        doThrow(ApiCallTimeoutException.create(1000)).when(dynamoDb).getItem(any(GetItemRequest.class));
+        assertThrows(DeadlineExceededException.class, () -> sut.getSummary("c"));
+    }
+
+    private List<TransactWriteItem> captureTransaction() {
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDb).transactWriteItems(captor.capture());
+        return captor.getValue().transactItems();
+    }
+
+    private static Order order(String customerId, String preTax, String postTax, long version) {
+        return Order.builder().orderId("o").customerId(customerId)
+                .preTaxAmount(Money.parse(preTax)).postTaxAmount(Money.parse(postTax))
+                .version(version).build();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileOrderRepositoryTest {
+    private static final long SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final List<FileOrderRepository> opened = new ArrayList<>();
+
+    @AfterEach
+    public void teardown() throws IOException {
+        for (FileOrderRepository repository : opened) {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void createOrder_thenGetOrder_returnsOrder() throws IOException {
+        FileOrderRepository sut = open();
+        Order created = sut.createOrder(new CreateOrderRequest("customer", 1L, 10L));
+        Order order = sut.getOrder(created.getOrderId());
+        assertEquals("customer", order.getCustomerId());
+        assertEquals(Money.valueOf(1), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(10), order.getPostTaxAmount());
+        assertEquals(1L, order.getVersion().longValue());
+    }
+
+    @Test
+    public void updateOrder_checksVersion() throws IOException {
+        FileOrderRepository sut = open();
+        Order created = sut.createOrder(new CreateOrderRequest("customer", 1L, 10L));
+        Order updated = sut.updateOrder(new Order(created.getOrderId(), "other", Money.parse("1.50"),
+                Money.parse("1.65"), 1L));
+        assertEquals(2L, updated.getVersion().longValue());
+        assertEquals(Money.parse("1.65"), sut.getOrder(created.getOrderId()).getPostTaxAmount());
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(created));
+    }
+
+    @Test
+    public void deleteOrder_removesOrder() throws IOException {
+        FileOrderRepository sut = open();
+        Order created = sut.createOrder(new CreateOrderRequest("customer", 1L, 10L));
+        assertEquals(created.getOrderId(), sut.deleteOrder(created.getOrderId()).getOrderId());
+        assertThrows(OrderDoesNotExistException.class, () -> sut.getOrder(created.getOrderId()));
+        assertThrows(UnableToDeleteException.class, () -> sut.deleteOrder(created.getOrderId()));
+    }
+
+    @Test
+    public void getOrders_returnsEveryOrderOnce() throws IOException {
+        FileOrderRepository sut = open();
+        Set<String> created = createOrders(sut, 25);
+        assertEquals(created, pageThrough(sut));
+    }
+
+    @Test
+    public void getOrders_whenStartOrderDeletedAndSlotReused_doesNotRepeatOrders() throws IOException {
+        FileOrderRepository sut = open();
+        Set<String> created = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            CreateOrderRequest request = new CreateOrderRequest("customer" + i, (long) i, (long) i);
+            request.setOrderId("order-" + i);
+            created.add(sut.createOrder(request).getOrderId());
+        }
+        OrderPage first = sut.getOrders(null);
+        String cursor = first.getLastEvaluatedKey();
+        int slot = Integer.parseInt(cursor.substring(0, cursor.indexOf(':')));
+        String last = cursor.substring(cursor.indexOf(':') + 1);
+        assertEquals(last, first.getOrders().get(first.getOrders().size() - 1).getOrderId());
+
+        sut.deleteOrder(last);
+        created.remove(last);
+        // an orderId probed from the freed slot, so the insert takes the tombstone the cursor names
+        String reusing = null;
+        for (int i = 0; i < 1_000_000 && reusing == null; i++) {
+            if (sut.homeSlot("reusing-" + i) == slot) {
+                reusing = "reusing-" + i;
+            }
+        }
+        assertNotNull(reusing, "no orderId found with home slot " + slot);
+        CreateOrderRequest request = new CreateOrderRequest("customer", 1L, 1L);
+        request.setOrderId(reusing);
+        sut.createOrder(request);
+
+        Set<String> seen = new HashSet<>();
+        for (Order order : first.getOrders()) {
+            seen.add(order.getOrderId());
+        }
+        String start = cursor;
+        do {
+            OrderPage page = sut.getOrders(start);
+            for (Order order : page.getOrders()) {
+                assertTrue(seen.add(order.getOrderId()), "returned twice: " + order.getOrderId());
+            }
+            start = page.getLastEvaluatedKey();
+        } while (start != null);
+        assertTrue(seen.containsAll(created));
+    }
+
+    @Test
+    public void open_whenDirectoryAlreadyOpen_throwsIOException() throws IOException {
+        FileOrderRepository sut = open();
+        assertThrows(IOException.class, this::open);
+        sut.close();
+        open();
+    }
+
+    @Test
+    public void reopen_afterClose_usesIndexAndKeepsOrders() throws IOException {
+        FileOrderRepository sut = open();
+        Set<String> created = createOrders(sut, 50);
+        sut.close();
+        assertEquals(created, pageThrough(open()));
+    }
+
+    @Test
+    public void reopen_afterCrashWithTornRecord_replaysLogAndDropsTornRecord() throws IOException {
+        FileOrderRepository crashed = open();
+        Set<String> created = createOrders(crashed, 50);
+        String deleted = created.iterator().next();
+        crashed.deleteOrder(deleted);
+        created.remove(deleted);
+        // not closed, so the index is dirty; and a write was cut short
+        crashed.abandon();
+        Path last = logFiles().get(logFiles().size() - 1);
+        Files.write(last, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        FileOrderRepository reopened = open();
+        assertEquals(created, pageThrough(reopened));
+        Order added = reopened.createOrder(new CreateOrderRequest("customer", 2L, 3L));
+        assertEquals(Money.valueOf(3), reopened.getOrder(added.getOrderId()).getPostTaxAmount());
+    }
+
+    @Test
+    public void compact_keepsLiveOrdersAndDeletesOldSegments() throws IOException {
+        FileOrderRepository sut = open();
+        Set<String> created = createOrders(sut, 100);
+        for (String orderId : new ArrayList<>(created).subList(0, 40)) {
+            sut.deleteOrder(orderId);
+            created.remove(orderId);
+        }
+        for (String orderId : created) {
+            Order order = sut.getOrder(orderId);
+            order.setPreTaxAmount(Money.valueOf(7));
+            sut.updateOrder(order);
+        }
+        long before = logBytes();
+        int filesBefore = logFiles().size();
+
+        sut.compact();
+
+        assertTrue(logBytes() < before);
+        assertTrue(logFiles().size() < filesBefore);
+        assertEquals(created, pageThrough(sut));
+        for (String orderId : created) {
+            assertEquals(Money.valueOf(7), sut.getOrder(orderId).getPreTaxAmount());
+            assertEquals(2L, sut.getOrder(orderId).getVersion().longValue());
+        }
+        // and the snapshot replays to the same state
+        sut.close();
+        assertEquals(created, pageThrough(open()));
+    }
+
+    @Test
+    public void createOrder_whenConcurrent_keepsEveryOrder() throws Exception {
+        FileOrderRepository sut = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.submit(
+                        () -> sut.createOrder(new CreateOrderRequest("customer", 1L, 1L)).getOrderId()));
+            }
+            Set<String> created = new HashSet<>();
+            for (Future<String> future : futures) {
+                created.add(future.get());
+            }
+            assertEquals(200, created.size());
+            assertEquals(created, pageThrough(sut));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void createOrders_returnsResultPerRequest() throws IOException {
+        FileOrderRepository sut = open();
+        List<CreateOrderRequest> requests = new ArrayList<>();
+        requests.add(new CreateOrderRequest("customer", 1L, 1L));
+        requests.add(new CreateOrderRequest(null, 1L, 1L));
+        List<OrderWriteResult> results = sut.createOrders(requests);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(!results.get(1).isSuccess());
+    }
+
+    private FileOrderRepository open() throws IOException {
+        FileOrderRepository repository = new FileOrderRepository(directory, 7, SEGMENT_BYTES);
+        opened.add(repository);
+        return repository;
+    }
+
+    private static Set<String> createOrders(final FileOrderRepository sut, final int count) {
+        Set<String> created = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            created.add(sut.createOrder(new CreateOrderRequest("customer" + i, (long) i, (long) i)).getOrderId());
+        }
+        return created;
+    }
+
+    private static Set<String> pageThrough(final FileOrderRepository sut) {
+        Set<String> seen = new HashSet<>();
+        String start = null;
+        do {
+            OrderPage page = sut.getOrders(start);
+            for (Order order : page.getOrders()) {
+                assertTrue(seen.add(order.getOrderId()), "returned twice: " + order.getOrderId());
+            }
+            start = page.getLastEvaluatedKey();
+        } while (start != null);
+        return seen;
+    }
+
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log"))
+                    .sorted((a, b) -> Integer.compare(number(a), number(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private long logBytes() throws IOException {
+        long bytes = 0;
+        for (Path file : logFiles()) {
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+
+    private static int number(final Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.length() - ".log".length()));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToDeleteException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryOrderRepositoryTest {
+    private final InMemoryOrderRepository sut = new InMemoryOrderRepository(2);
+
+    @Test
+    public void createOrder_thenGetOrder_returnsVersionOne() {
+        Order created = sut.createOrder(request("customer"));
+        Order order = sut.getOrder(created.getOrderId());
+        assertEquals("customer", order.getCustomerId());
+        assertEquals(Money.valueOf(1), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(10), order.getPostTaxAmount());
+        assertEquals(1L, order.getVersion().longValue());
+    }
+
+    @Test
+    public void createOrder_whenAmountMissing_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> sut.createOrder(new CreateOrderRequest("customer", null, 10L)));
+        assertThrows(IllegalArgumentException.class,
+                () -> sut.createOrder(new CreateOrderRequest("", 1L, 10L)));
+    }
+
+    @Test
+    public void getOrder_whenMissing_throwsOrderDoesNotExistException() {
+        assertThrows(OrderDoesNotExistException.class, () -> sut.getOrder("missing"));
+    }
+
+    @Test
+    public void getOrder_returnsCopy() {
+        Order created = sut.createOrder(request("customer"));
+        created.setVersion(7L);
+        sut.getOrder(created.getOrderId()).setCustomerId("other");
+        assertEquals(1L, sut.getOrder(created.getOrderId()).getVersion().longValue());
+        assertEquals("customer", sut.getOrder(created.getOrderId()).getCustomerId());
+    }
+
+    @Test
+    public void getOrders_pagesInOrderIdOrder() {
+        for (int i = 0; i < 5; i++) {
+            sut.createOrder(request("customer"));
+        }
+        List<String> seen = new ArrayList<>();
+        String start = null;
+        do {
+            OrderPage page = sut.getOrders(start);
+            assertTrue(page.getOrders().size() <= 2);
+            page.getOrders().forEach(order -> seen.add(order.getOrderId()));
+            start = page.getLastEvaluatedKey();
+        } while (start != null);
+        List<String> sorted = new ArrayList<>(seen);
+        sorted.sort(String::compareTo);
+        assertEquals(5, seen.size());
+        assertEquals(sorted, seen);
+    }
+
+    @Test
+    public void getOrders_whenLastPageIsFull_hasNoLastEvaluatedKey() {
+        sut.createOrder(request("customer"));
+        sut.createOrder(request("customer"));
+        assertNull(sut.getOrders(null).getLastEvaluatedKey());
+    }
+
+    @Test
+    public void createOrders_returnsResultPerRequest() {
+        List<OrderWriteResult> results = sut.createOrders(Arrays.asList(request("a"), null, request("b")));
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+    }
+
+    @Test
+    public void createOrders_whenOrderIdAlreadyStored_returnsItAsAlreadyCreated() {
+        CreateOrderRequest request = new CreateOrderRequest("a", 1L, 10L, "derived");
+        assertFalse(sut.createOrders(Collections.singletonList(request)).get(0).isAlreadyCreated());
+        OrderWriteResult retried = sut.createOrders(Collections.singletonList(request)).get(0);
+        assertTrue(retried.isSuccess());
+        assertTrue(retried.isAlreadyCreated());
+        assertEquals("derived", retried.getOrder().getOrderId());
+        assertEquals(1, sut.getOrders(null).getOrders().size());
+    }
+
+    @Test
+    public void updateOrder_whenVersionMatches_incrementsVersionAndMovesIndex() {
+        Order created = sut.createOrder(request("a"));
+        Order updated = sut.updateOrder(new Order(created.getOrderId(), "b", Money.parse("2.50"),
+                Money.parse("3.00"), 1L));
+        assertEquals(2L, updated.getVersion().longValue());
+        assertEquals(Money.parse("2.50"), sut.getOrder(created.getOrderId()).getPreTaxAmount());
+        assertTrue(sut.getOrdersByCustomer("a").isEmpty());
+        assertEquals(created.getOrderId(), sut.getOrdersByCustomer("b").get(0).getOrderId());
+    }
+
+    @Test
+    public void updateOrder_whenVersionDiffers_throwsUnableToUpdateException() {
+        Order created = sut.createOrder(request("a"));
+        created.setVersion(2L);
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(created));
+    }
+
+    @Test
+    public void updateOrder_whenConcurrent_exactlyOneWriterPerVersionWins() throws Exception {
+        Order created = sut.createOrder(request("a"));
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                String customerId = "customer" + i;
+                Callable<Boolean> update = () -> {
+                    start.await();
+                    try {
+                        sut.updateOrder(new Order(created.getOrderId(), customerId, Money.valueOf(1),
+                                Money.valueOf(1), 1L));
+                        return true;
+                    } catch (UnableToUpdateException e) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(update));
+            }
+            start.countDown();
+            int winners = 0;
+            for (Future<Boolean> result : results) {
+                winners += result.get() ? 1 : 0;
+            }
+            assertEquals(1, winners);
+        } finally {
+            executor.shutdownNow();
+        }
+        Order order = sut.getOrder(created.getOrderId());
+        assertEquals(2L, order.getVersion().longValue());
+        assertEquals(1, sut.getOrdersByCustomer(order.getCustomerId()).size());
+        assertTrue(sut.getOrdersByCustomer("a").isEmpty());
+    }
+
+    @Test
+    public void deleteOrder_removesOrderAndIndexEntries() {
+        Order first = sut.createOrder(request("a"));
+        Order second = sut.createOrder(request("a"));
+        assertEquals(first.getOrderId(), sut.deleteOrder(first.getOrderId()).getOrderId());
+        assertThrows(OrderDoesNotExistException.class, () -> sut.getOrder(first.getOrderId()));
+        assertThrows(UnableToDeleteException.class, () -> sut.deleteOrder(first.getOrderId()));
+        Set<String> remaining = new HashSet<>();
+        sut.getOrdersByCustomer("a").forEach(order -> remaining.add(order.getOrderId()));
+        assertEquals(new HashSet<>(Arrays.asList(second.getOrderId())), remaining);
+        assertEquals(1, sut.getOrders(null).getOrders().size());
+    }
+
+    @Test
+    public void adjustAmounts_whenConcurrent_appliesEveryDelta() throws Exception {
+        Order created = sut.createOrder(request("a"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Order>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(
+                        () -> sut.adjustAmounts(created.getOrderId(), Money.valueOf(1), Money.valueOf(2), false)));
+            }
+            for (Future<Order> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Order order = sut.getOrder(created.getOrderId());
+        assertEquals(Money.valueOf(101), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(210), order.getPostTaxAmount());
+        assertEquals(101L, order.getVersion().longValue());
+    }
+
+    @Test
+    public void adjustAmounts_whenAmountWouldGoNegative_throwsAndLeavesOrder() {
+        Order created = sut.createOrder(request("a"));
+        assertThrows(UnableToUpdateException.class,
+                () -> sut.adjustAmounts(created.getOrderId(), Money.valueOf(-2), null, false));
+        assertEquals(Money.valueOf(-1), sut.adjustAmounts(created.getOrderId(), Money.valueOf(-2), null, true)
+                .getPreTaxAmount());
+    }
+
+    private static CreateOrderRequest request(final String customerId) {
+        return new CreateOrderRequest(customerId, 1L, 10L);
+    }
+}
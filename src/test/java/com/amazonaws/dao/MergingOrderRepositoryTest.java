@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MergingOrderRepositoryTest {
+    private static final UnableToUpdateException CONFLICT =
+            new UnableToUpdateException("Order missing or version mismatch");
+
+    private final OrderRepository delegate = mock(OrderRepository.class);
+    private final MergingOrderRepository sut =
+            new MergingOrderRepository(delegate, OrderMergePolicy.LAST_WRITER_WINS, 2, null);
+
+    @Test
+    public void updateOrder_whenNoConflict_writesOnce() {
+        Order written = order("c1", 5, 4);
+        when(delegate.updateOrder(any())).thenReturn(written);
+        assertSame(written, sut.updateOrder(order("c1", 5, 3)));
+        verify(delegate, never()).getLatestOrder(any());
+    }
+
+    @Test
+    public void updateOrder_whenVersionMovedOn_writesMergedOrderAtCurrentVersion() {
+        Order written = order("c1", 5, 8);
+        when(delegate.updateOrder(any())).thenThrow(CONFLICT).thenReturn(written);
+        when(delegate.getLatestOrder("o1")).thenReturn(order("c1", 9, 7));
+
+        assertSame(written, sut.updateOrder(order("c1", 5, 3)));
+
+        ArgumentCaptor<Order> captor = ArgumentCaptor.forClass(Order.class);
+        verify(delegate, times(2)).updateOrder(captor.capture());
+        assertEquals(7L, captor.getValue().getVersion().longValue());
+        assertEquals(Money.valueOf(5), captor.getValue().getPreTaxAmount());
+    }
+
+    @Test
+    public void updateOrder_whenEveryAttemptConflicts_throwsAfterBudget() {
+        doThrow(CONFLICT).when(delegate).updateOrder(any());
+        when(delegate.getLatestOrder("o1")).thenReturn(order("c1", 9, 7));
+
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(order("c1", 5, 3)));
+        verify(delegate, times(3)).updateOrder(any());
+        verify(delegate, times(2)).getLatestOrder("o1");
+    }
+
+    @Test
+    public void updateOrder_whenOrderDeleted_throwsConflict() {
+        doThrow(CONFLICT).when(delegate).updateOrder(any());
+        doThrow(new OrderDoesNotExistException("gone")).when(delegate).getLatestOrder("o1");
+
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(order("c1", 5, 3)));
+        verify(delegate, times(1)).updateOrder(any());
+    }
+
+    @Test
+    public void updateOrder_whenPolicyDeclines_throwsConflict() {
+        MergingOrderRepository sameCustomer =
+                new MergingOrderRepository(delegate, OrderMergePolicy.SAME_CUSTOMER_WINS, 2, null);
+        doThrow(CONFLICT).when(delegate).updateOrder(any());
+        doReturn(order("c2", 9, 7)).when(delegate).getLatestOrder("o1");
+
+        assertThrows(UnableToUpdateException.class, () -> sameCustomer.updateOrder(order("c1", 5, 3)));
+        verify(delegate, times(1)).updateOrder(any());
+    }
+
+    @Test
+    public void sameCustomerWins_mergesOnlyForSameCustomer() {
+        assertEquals(7L, OrderMergePolicy.SAME_CUSTOMER_WINS.merge(order("c1", 9, 7), order("c1", 5, 3))
+                .getVersion().longValue());
+        assertNull(OrderMergePolicy.SAME_CUSTOMER_WINS.merge(order("c2", 9, 7), order("c1", 5, 3)));
+    }
+
+    private static Order order(final String customerId, final long preTaxAmount, final long version) {
+        return Order.builder().orderId("o1").customerId(customerId)
+                .preTaxAmount(Money.valueOf(preTaxAmount)).postTaxAmount(Money.valueOf(preTaxAmount + 1))
+                .version(version).build();
+    }
+}
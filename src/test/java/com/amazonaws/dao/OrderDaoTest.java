@@ -18,38 +18,63 @@
 package com.amazonaws.dao;
 
 import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.DeadlineExceededException;
 import com.amazonaws.exception.OrderDoesNotExistException;
 import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.exception.TransactionConflictException;
 import com.amazonaws.exception.UnableToDeleteException;
 import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.model.Money;
 import com.amazonaws.model.Order;
 import com.amazonaws.model.OrderPage;
 import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.request.OrderMutation;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -168,8 +193,8 @@ public class OrderDaoTest {
             sut.updateOrder(Order.builder()
                     .orderId(ORDER_ID)
                     .customerId("customer")
-                    .preTaxAmount(BigDecimal.ONE)
-                    .postTaxAmount(BigDecimal.TEN)
+                    .preTaxAmount(Money.valueOf(1))
+                    .postTaxAmount(Money.valueOf(10))
                     .version(0L)
                     .build());
         });
@@ -183,8 +208,8 @@ public class OrderDaoTest {
             sut.updateOrder(Order.builder()
                     .orderId(ORDER_ID)
                     .customerId("customer")
-                    .preTaxAmount(BigDecimal.ONE)
-                    .postTaxAmount(BigDecimal.TEN)
+                    .preTaxAmount(Money.valueOf(1))
+                    .postTaxAmount(Money.valueOf(10))
                     .version(1L)
                     .build());
         });
@@ -276,8 +301,8 @@ public class OrderDaoTest {
         postOrder.setOrderId(ORDER_ID);
         postOrder.setVersion(0L);
         postOrder.setCustomerId("customer");
-        postOrder.setPreTaxAmount(BigDecimal.ONE);
-        postOrder.setPostTaxAmount(BigDecimal.TEN);
+        postOrder.setPreTaxAmount(Money.valueOf(1));
+        postOrder.setPostTaxAmount(Money.valueOf(10));
         doThrow(ConditionalCheckFailedException.builder().build())
                 .when(dynamoDb).updateItem(any(UpdateItemRequest.class));
         assertThrows(UnableToUpdateException.class, () -> {
@@ -327,7 +352,7 @@ public class OrderDaoTest {
         postOrder.setOrderId("s");
         postOrder.setCustomerId("c");
         postOrder.setPreTaxAmount(null);
-        postOrder.setPostTaxAmount(BigDecimal.TEN);
+        postOrder.setPostTaxAmount(Money.valueOf(10));
         postOrder.setVersion(1L);
         assertThrows(IllegalArgumentException.class, () -> {
             sut.updateOrder(postOrder);
@@ -340,7 +365,7 @@ public class OrderDaoTest {
         Order postOrder = new Order();
         postOrder.setOrderId("s");
         postOrder.setCustomerId("c");
-        postOrder.setPreTaxAmount(BigDecimal.ONE);
+        postOrder.setPreTaxAmount(Money.valueOf(1));
         postOrder.setPostTaxAmount(null);
         postOrder.setVersion(1L);
         assertThrows(IllegalArgumentException.class, () -> {
@@ -354,8 +379,8 @@ public class OrderDaoTest {
         Order postOrder = new Order();
         postOrder.setOrderId("s");
         postOrder.setCustomerId("c");
-        postOrder.setPreTaxAmount(BigDecimal.ONE);
-        postOrder.setPostTaxAmount(BigDecimal.TEN);
+        postOrder.setPreTaxAmount(Money.valueOf(1));
+        postOrder.setPostTaxAmount(Money.valueOf(10));
         postOrder.setVersion(null);
         assertThrows(IllegalArgumentException.class, () -> {
             sut.updateOrder(postOrder);
@@ -377,13 +402,98 @@ public class OrderDaoTest {
         Order postOrder = new Order();
         postOrder.setOrderId(createdItem.get("orderId").s());
         postOrder.setCustomerId("customer");
-        postOrder.setPreTaxAmount(BigDecimal.ONE);
-        postOrder.setPostTaxAmount(BigDecimal.TEN);
+        postOrder.setPreTaxAmount(Money.valueOf(1));
+        postOrder.setPostTaxAmount(Money.valueOf(10));
         postOrder.setVersion(1L);
         Order order = sut.updateOrder(postOrder);
         assertEquals(createdItem.get("orderId").s(), order.getOrderId());
     }
 
+    @Test
+    public void adjustAmounts_whenLowering_addsDeltasGuardedByNonNegativeAmounts() {
+        Map<String, AttributeValue> adjustedItem = new HashMap<>();
+        adjustedItem.put("orderId", AttributeValue.builder().s(ORDER_ID).build());
+        adjustedItem.put("customerId", AttributeValue.builder().s("customer").build());
+        adjustedItem.put("preTaxAmount", AttributeValue.builder().n("7.5").build());
+        adjustedItem.put("postTaxAmount", AttributeValue.builder().n("10").build());
+        adjustedItem.put("version", AttributeValue.builder().n("4").build());
+        doReturn(UpdateItemResponse.builder().attributes(adjustedItem).build())
+                .when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+
+        Order order = sut.adjustAmounts(ORDER_ID, Money.parse("-2.50"), null, false);
+
+        assertEquals(Money.parse("7.5"), order.getPreTaxAmount());
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDb).updateItem(captor.capture());
+        UpdateItemRequest request = captor.getValue();
+        assertTrue(request.updateExpression().startsWith("ADD preTaxAmount :dpre, postTaxAmount :dpost"));
+        assertTrue(request.conditionExpression().endsWith(" AND preTaxAmount >= :minpre"));
+        assertEquals("-2.50", request.expressionAttributeValues().get(":dpre").n());
+        assertEquals("0", request.expressionAttributeValues().get(":dpost").n());
+        assertEquals("2.50", request.expressionAttributeValues().get(":minpre").n());
+    }
+
+    @Test
+    public void adjustAmounts_whenNegativeAllowed_onlyRequiresOrder() {
+        doReturn(UpdateItemResponse.builder().attributes(orderItem()).build())
+                .when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        sut.adjustAmounts(ORDER_ID, Money.valueOf(-5), Money.valueOf(-6), true);
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDb).updateItem(captor.capture());
+        assertFalse(captor.getValue().conditionExpression().contains("Amount >="));
+    }
+
+    @Test
+    public void adjustAmounts_whenRetriedAttemptWasApplied_returnsAdjustedOrderInsteadOfAddingAgain() {
+        Map<String, AttributeValue> adjusted = orderItem();
+        doAnswer(invocation -> {
+            UpdateItemRequest request = invocation.getArgument(0);
+            // the first attempt landed but its response was lost, so the SDK sent the request again
+            adjusted.put("lastAdjustmentId", request.expressionAttributeValues().get(":aid"));
+            throw ConditionalCheckFailedException.builder().item(adjusted).build();
+        }).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+
+        Order order = sut.adjustAmounts(ORDER_ID, Money.valueOf(-100), null, false);
+
+        assertEquals(Money.valueOf(10), order.getPreTaxAmount());
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDb).updateItem(captor.capture());
+        assertTrue(captor.getValue().updateExpression().endsWith("SET lastAdjustmentId = :aid"));
+        assertTrue(captor.getValue().conditionExpression().contains("lastAdjustmentId <> :aid"));
+    }
+
+    @Test
+    public void adjustAmounts_whenAmountWouldGoNegative_throwsUnableToUpdate() {
+        doThrow(ConditionalCheckFailedException.builder().item(orderItem()).build())
+                .when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        assertThrows(UnableToUpdateException.class,
+                () -> sut.adjustAmounts(ORDER_ID, Money.valueOf(-100), null, false));
+    }
+
+    @Test
+    public void adjustAmounts_whenOrderMissing_throwsOrderDoesNotExist() {
+        doThrow(ConditionalCheckFailedException.builder().build())
+                .when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        assertThrows(OrderDoesNotExistException.class,
+                () -> sut.adjustAmounts(ORDER_ID, Money.valueOf(1), null, false));
+    }
+
+    @Test
+    public void adjustAmounts_whenNoDelta_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> sut.adjustAmounts(ORDER_ID, null, Money.ZERO, false));
+        verify(dynamoDb, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    private static Map<String, AttributeValue> orderItem() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("orderId", AttributeValue.builder().s(ORDER_ID).build());
+        item.put("customerId", AttributeValue.builder().s("customer").build());
+        item.put("preTaxAmount", AttributeValue.builder().n("10").build());
+        item.put("postTaxAmount", AttributeValue.builder().n("11").build());
+        item.put("version", AttributeValue.builder().n("3").build());
+        return item;
+    }
+
     // positive functional tests
     @Test
     public void createOrder_whenOrderDoesNotExist_createsOrderWithPopulatedOrderId() {
@@ -404,12 +514,416 @@ public class OrderDaoTest {
         // for a new item, object mapper sets version to 1
         assertEquals(1L, order.getVersion().longValue());
         assertEquals("customer", order.getCustomerId());
-        assertEquals(BigDecimal.ONE, order.getPreTaxAmount());
-        assertEquals(BigDecimal.TEN, order.getPostTaxAmount());
+        assertEquals(Money.valueOf(1), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(10), order.getPostTaxAmount());
         assertNotNull(order.getOrderId());
         assertNotNull(UUID.fromString(order.getOrderId()));
     }
 
+    @Test
+    public void createOrders_whenAllProcessed_returnsCreatedOrdersInRequestOrder() {
+        doReturn(BatchWriteItemResponse.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Arrays.asList(
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L).build(),
+                CreateOrderRequest.builder().customerId("b").preTaxAmount(3L).postTaxAmount(4L).build()));
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("a", results.get(0).getOrder().getCustomerId());
+        assertEquals(1L, results.get(0).getOrder().getVersion().longValue());
+        assertEquals("b", results.get(1).getOrder().getCustomerId());
+        verify(dynamoDb, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    public void createOrders_whenMoreThan25Requests_splitsIntoSeveralBatches() {
+        doReturn(BatchWriteItemResponse.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Collections.nCopies(60,
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L).build()));
+        assertEquals(60, results.size());
+        verify(dynamoDb, times(3)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    public void createOrders_whenItemsStayUnprocessed_reportsThemAsFailed() {
+        doAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            List<WriteRequest> writes = request.requestItems().get("table_name");
+            return BatchWriteItemResponse.builder()
+                    .unprocessedItems(Collections.singletonMap("table_name",
+                            writes.subList(writes.size() - 1, writes.size())))
+                    .build();
+        }).when(dynamoDb).batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Arrays.asList(
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L).build(),
+                CreateOrderRequest.builder().customerId("b").preTaxAmount(3L).postTaxAmount(4L).build()));
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError() instanceof CouldNotCreateOrderException);
+    }
+
+    @Test
+    public void createOrders_whenRequestInvalid_failsOnlyThatRequest() {
+        doReturn(BatchWriteItemResponse.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Arrays.asList(
+                CreateOrderRequest.builder().customerId("").preTaxAmount(1L).postTaxAmount(2L).build(),
+                CreateOrderRequest.builder().customerId("b").preTaxAmount(null).postTaxAmount(4L).build(),
+                CreateOrderRequest.builder().customerId("c").preTaxAmount(5L).postTaxAmount(6L).build()));
+        assertTrue(results.get(0).getError() instanceof IllegalArgumentException);
+        assertTrue(results.get(1).getError() instanceof IllegalArgumentException);
+        assertTrue(results.get(2).isSuccess());
+    }
+
+    @Test
+    public void createOrders_whenLaterBatchThrows_failsOnlyThatBatch() {
+        doReturn(BatchWriteItemResponse.builder().build())
+                .doThrow(ProvisionedThroughputExceededException.builder().build())
+                .when(dynamoDb).batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Collections.nCopies(30,
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L).build()));
+        assertEquals(25, results.stream().filter(OrderWriteResult::isSuccess).count());
+        assertTrue(results.get(25).getError() instanceof ProvisionedThroughputExceededException);
+    }
+
+    @Test
+    public void createOrders_whenOrderIdGiven_putsOnlyIfAbsent() {
+        doReturn(PutItemResponse.builder().build()).when(dynamoDb).putItem(any(PutItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Collections.singletonList(
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L)
+                        .orderId("derived").build()));
+
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDb).putItem(captor.capture());
+        assertEquals("attribute_not_exists(orderId)", captor.getValue().conditionExpression());
+        assertEquals("derived", captor.getValue().item().get("orderId").s());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(0).isAlreadyCreated());
+        verify(dynamoDb, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    public void createOrders_whenSeveralOrderIdsGiven_putsThemConcurrently() {
+        // each put waits until all three are in flight, so serial puts would time out here
+        CountDownLatch inFlight = new CountDownLatch(3);
+        List<Boolean> overlapped = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            inFlight.countDown();
+            overlapped.add(inFlight.await(5, TimeUnit.SECONDS));
+            return PutItemResponse.builder().build();
+        }).when(dynamoDb).putItem(any(PutItemRequest.class));
+        List<CreateOrderRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(CreateOrderRequest.builder().customerId("a").preTaxAmount(1L)
+                    .postTaxAmount(2L).orderId("derived-" + i).build());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<OrderWriteResult> results =
+                    new OrderDao(dynamoDb, "table_name", 10, null, executor).createOrders(requests);
+            assertEquals(Arrays.asList(true, true, true), overlapped);
+            assertTrue(results.stream().allMatch(OrderWriteResult::isSuccess));
+            assertEquals("derived-2", results.get(2).getOrder().getOrderId());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void createOrders_whenPutsRunOnExecutor_boundsThemByTheCallersDeadline() {
+        doReturn(PutItemResponse.builder().build()).when(dynamoDb).putItem(any(PutItemRequest.class));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Deadline.start(10_000);
+        try {
+            new OrderDao(dynamoDb, "table_name", 10, null, executor).createOrders(
+                    Collections.singletonList(CreateOrderRequest.builder().customerId("a")
+                            .preTaxAmount(1L).postTaxAmount(2L).orderId("derived").build()));
+        } finally {
+            Deadline.clear();
+            executor.shutdown();
+        }
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDb).putItem(captor.capture());
+        assertTrue(captor.getValue().overrideConfiguration().get().apiCallTimeout().isPresent());
+    }
+
+    @Test
+    public void createOrders_whenOrderIdAlreadyStored_returnsStoredOrderAsAlreadyCreated() {
+        Order stored = Order.builder().orderId("derived").customerId("a")
+                .preTaxAmount(Money.valueOf(7)).postTaxAmount(Money.valueOf(8)).version(3L).build();
+        doThrow(ConditionalCheckFailedException.builder().item(OrderItemCodec.encode(stored)).build())
+                .when(dynamoDb).putItem(any(PutItemRequest.class));
+        List<OrderWriteResult> results = sut.createOrders(Collections.singletonList(
+                CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L)
+                        .orderId("derived").build()));
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(0).isAlreadyCreated());
+        assertEquals(3L, results.get(0).getOrder().getVersion().longValue());
+    }
+
+    @Test
+    public void createOrders_whenTableDoesNotExist_throwsTableDoesNotExistException() {
+        doThrow(ResourceNotFoundException.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        assertThrows(TableDoesNotExistException.class, () -> {
+            sut.createOrders(Collections.singletonList(
+                    CreateOrderRequest.builder().customerId("a").preTaxAmount(1L).postTaxAmount(2L).build()));
+        });
+    }
+
+    @Test
+    public void deleteOrders_whenMoreThan25Ids_sendsParallelBatches() {
+        doReturn(BatchWriteItemResponse.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        List<String> orderIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            orderIds.add("order-" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<OrderWriteResult> results = sut.deleteOrders(orderIds, false, executor);
+            assertEquals(60, results.size());
+            assertTrue(results.stream().allMatch(OrderWriteResult::isSuccess));
+            assertEquals("order-59", results.get(59).getOrder().getOrderId());
+        } finally {
+            executor.shutdown();
+        }
+        verify(dynamoDb, times(3)).batchWriteItem(any(BatchWriteItemRequest.class));
+        verify(dynamoDb, never()).deleteItem(any(DeleteItemRequest.class));
+    }
+
+    @Test
+    public void deleteOrders_whenIdRepeated_sendsItOnceAndReportsBoth() {
+        doReturn(BatchWriteItemResponse.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.deleteOrders(Arrays.asList(ORDER_ID, ORDER_ID, ""), false, Runnable::run);
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDb).batchWriteItem(captor.capture());
+        assertEquals(1, captor.getValue().requestItems().get("table_name").size());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(results.get(2).getError() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void deleteOrders_whenItemsStayUnprocessed_reportsThemAsFailed() {
+        doAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            List<WriteRequest> writes = request.requestItems().get("table_name");
+            return BatchWriteItemResponse.builder()
+                    .unprocessedItems(Collections.singletonMap("table_name",
+                            writes.subList(writes.size() - 1, writes.size())))
+                    .build();
+        }).when(dynamoDb).batchWriteItem(any(BatchWriteItemRequest.class));
+        List<OrderWriteResult> results = sut.deleteOrders(Arrays.asList("a", "b"), false, Runnable::run);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError() instanceof UnableToDeleteException);
+    }
+
+    @Test
+    public void deleteOrders_whenDeletedOrdersRequested_returnsOldItems() {
+        Map<String, AttributeValue> orderItem = new HashMap<>();
+        orderItem.put("orderId", AttributeValue.builder().s(ORDER_ID).build());
+        orderItem.put("version", AttributeValue.builder().n("1").build());
+        orderItem.put("preTaxAmount", AttributeValue.builder().n("1").build());
+        orderItem.put("postTaxAmount", AttributeValue.builder().n("10").build());
+        orderItem.put("customerId", AttributeValue.builder().s("customer").build());
+        doReturn(DeleteItemResponse.builder().attributes(orderItem).build()).when(dynamoDb)
+                .deleteItem(any(DeleteItemRequest.class));
+        List<OrderWriteResult> results = sut.deleteOrders(Collections.singletonList(ORDER_ID), true, Runnable::run);
+        assertEquals("customer", results.get(0).getOrder().getCustomerId());
+        verify(dynamoDb, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    public void deleteOrders_whenTableDoesNotExist_throwsTableDoesNotExistException() {
+        doThrow(ResourceNotFoundException.builder().build()).when(dynamoDb)
+                .batchWriteItem(any(BatchWriteItemRequest.class));
+        assertThrows(TableDoesNotExistException.class, () -> {
+            sut.deleteOrders(Collections.singletonList(ORDER_ID), false, Runnable::run);
+        });
+    }
+
+    @Test
+    public void scanByCustomer_filtersOnCustomerId() {
+        doReturn(ScanResponse.builder().items(Collections.emptyList()).build()).when(dynamoDb)
+                .scan(any(ScanRequest.class));
+        OrderPage page = sut.scanByCustomer("customer", null, 100);
+        assertTrue(page.getOrders().isEmpty());
+        ArgumentCaptor<ScanRequest> captor = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(dynamoDb).scan(captor.capture());
+        assertEquals("customerId = :cid", captor.getValue().filterExpression());
+        assertEquals("customer", captor.getValue().expressionAttributeValues().get(":cid").s());
+    }
+
+    @Test
+    public void transact_whenAllMutationsApply_returnsOrdersInRequestOrder() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        List<Order> orders = sut.transact(Arrays.asList(
+                OrderMutation.builder().type(OrderMutation.Type.CREATE).customerId("a")
+                        .preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2)).build(),
+                OrderMutation.builder().type(OrderMutation.Type.UPDATE).orderId(ORDER_ID).customerId("b")
+                        .preTaxAmount(Money.valueOf(3)).postTaxAmount(Money.valueOf(4)).version(7L).build(),
+                OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId("other").build()));
+        assertEquals(3, orders.size());
+        assertEquals(1L, orders.get(0).getVersion().longValue());
+        assertNotNull(UUID.fromString(orders.get(0).getOrderId()));
+        assertEquals(8L, orders.get(1).getVersion().longValue());
+        assertEquals("other", orders.get(2).getOrderId());
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDb, times(1)).transactWriteItems(captor.capture());
+        List<TransactWriteItem> items = captor.getValue().transactItems();
+        assertEquals("attribute_not_exists(orderId)", items.get(0).put().conditionExpression());
+        assertEquals("7", items.get(1).update().expressionAttributeValues().get(":v").n());
+        assertEquals("attribute_exists(orderId)", items.get(2).delete().conditionExpression());
+    }
+
+    @Test
+    public void transact_whenTokenGiven_derivesTheSameOrderIdsOnRetry() {
+        doReturn(TransactWriteItemsResponse.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        List<OrderMutation> mutations = Collections.singletonList(
+                OrderMutation.builder().type(OrderMutation.Type.CREATE).customerId("a")
+                        .preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2)).build());
+        assertEquals(sut.transact(mutations, "token").get(0).getOrderId(),
+                sut.transact(mutations, "token").get(0).getOrderId());
+    }
+
+    @Test
+    public void transact_whenCancelled_mapsReasonsToMutations() {
+        Map<String, AttributeValue> current = new HashMap<>();
+        current.put("orderId", AttributeValue.builder().s(ORDER_ID).build());
+        current.put("version", AttributeValue.builder().n("9").build());
+        doThrow(TransactionCanceledException.builder().cancellationReasons(
+                CancellationReason.builder().code("None").build(),
+                CancellationReason.builder().code("ConditionalCheckFailed").item(current).build(),
+                CancellationReason.builder().code("ConditionalCheckFailed").build()).build())
+                .when(dynamoDb).transactWriteItems(any(TransactWriteItemsRequest.class));
+        TransactionConflictException e = assertThrows(TransactionConflictException.class, () -> {
+            sut.transact(Arrays.asList(
+                    OrderMutation.builder().type(OrderMutation.Type.CREATE).customerId("a")
+                            .preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2)).build(),
+                    OrderMutation.builder().type(OrderMutation.Type.UPDATE).orderId(ORDER_ID).customerId("b")
+                            .preTaxAmount(Money.valueOf(3)).postTaxAmount(Money.valueOf(4)).version(7L).build(),
+                    OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId("other").version(2L).build()));
+        });
+        assertEquals(2, e.getFailures().size());
+        assertEquals(1, e.getFailures().get(0).getIndex());
+        assertEquals(ORDER_ID, e.getFailures().get(0).getOrderId());
+        assertEquals("Version mismatch, order is at version 9", e.getFailures().get(0).getMessage());
+        assertEquals("other", e.getFailures().get(1).getOrderId());
+        assertEquals("Order does not exist", e.getFailures().get(1).getMessage());
+    }
+
+    @Test
+    public void transact_whenOrderAppearsTwice_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.transact(Arrays.asList(
+                    OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId(ORDER_ID).build(),
+                    OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId(ORDER_ID).build()));
+        });
+        verify(dynamoDb, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    public void transact_whenUpdateVersionNull_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.transact(Collections.singletonList(
+                    OrderMutation.builder().type(OrderMutation.Type.UPDATE).orderId(ORDER_ID).customerId("b")
+                            .preTaxAmount(Money.valueOf(3)).postTaxAmount(Money.valueOf(4)).build()));
+        });
+    }
+
+    @Test
+    public void transact_whenClientRequestTokenTooLong_throwsIllegalArgumentException() {
+        List<OrderMutation> mutations = Collections.singletonList(
+                OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId(ORDER_ID).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> sut.transact(mutations, "0123456789012345678901234567890123456"));
+        verify(dynamoDb, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    public void transact_whenDynamoDbRejectsRequest_throwsIllegalArgumentException() {
+        doThrow(DynamoDbException.builder().statusCode(400).awsErrorDetails(AwsErrorDetails.builder()
+                .errorCode("ValidationException").errorMessage("Item size has exceeded the maximum allowed size")
+                .build()).build())
+                .when(dynamoDb).transactWriteItems(any(TransactWriteItemsRequest.class));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> {
+            sut.transact(Collections.singletonList(
+                    OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId(ORDER_ID).build()));
+        });
+        assertEquals("Item size has exceeded the maximum allowed size", e.getMessage());
+    }
+
+    @Test
+    public void transact_whenTableDoesNotExist_throwsTableDoesNotExistException() {
+        doThrow(ResourceNotFoundException.builder().build()).when(dynamoDb)
+                .transactWriteItems(any(TransactWriteItemsRequest.class));
+        assertThrows(TableDoesNotExistException.class, () -> {
+            sut.transact(Collections.singletonList(
+                    OrderMutation.builder().type(OrderMutation.Type.DELETE).orderId(ORDER_ID).build()));
+        });
+    }
+
+    @Test
+    public void getOrder_whenDeadlineStarted_boundsTheCallByIt() {
+        doReturn(GetItemResponse.builder().item(null).build()).when(dynamoDb).getItem(any(GetItemRequest.class));
+        Deadline.start(10_000);
+        try {
+            assertThrows(OrderDoesNotExistException.class, () -> sut.getOrder(ORDER_ID));
+        } finally {
+            Deadline.clear();
+        }
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDb).getItem(captor.capture());
+        Duration apiCallTimeout = captor.getValue().overrideConfiguration().get().apiCallTimeout().get();
+        assertTrue(apiCallTimeout.toMillis() > 9000 && apiCallTimeout.toMillis() <= 9500);
+        assertTrue(captor.getValue().overrideConfiguration().get().apiCallAttemptTimeout().get()
+                .compareTo(apiCallTimeout) < 0);
+    }
+
+    @Test
+    public void getLatestOrder_readsConsistently() {
+        doReturn(GetItemResponse.builder().item(null).build()).when(dynamoDb).getItem(any(GetItemRequest.class));
+        assertThrows(OrderDoesNotExistException.class, () -> sut.getLatestOrder(ORDER_ID));
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDb).getItem(captor.capture());
+        assertTrue(captor.getValue().consistentRead());
+    }
+
+    @Test
+    public void getOrder_whenDeadlinePassed_throwsWithoutCallingDynamoDb() {
+        Deadline.start(100); // less than the time kept back for the response
+        try {
+            assertThrows(DeadlineExceededException.class, () -> sut.getOrder(ORDER_ID));
+        } finally {
+            Deadline.clear();
+        }
+        verify(dynamoDb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    public void updateOrder_whenCallTimesOut_throwsDeadlineExceededException() {
+        doThrow(ApiCallTimeoutException.create(1000)).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        assertThrows(DeadlineExceededException.class, () -> sut.updateOrder(Order.builder().orderId(ORDER_ID)
+                .customerId("customer").preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2))
+                .version(1L).build()));
+    }
+
+    @Test
+    public void getOrder_whenThrottled_cutsTheConcurrencyLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20, 100, null);
+        OrderDao limited = new OrderDao(dynamoDb, "table_name", 10, limiter);
+        doThrow(ProvisionedThroughputExceededException.builder().build()).when(dynamoDb)
+                .getItem(any(GetItemRequest.class));
+        assertThrows(ProvisionedThroughputExceededException.class, () -> limited.getOrder(ORDER_ID));
+        assertEquals(9, limiter.getLimit());
+    }
+
     @Test
     public void getOrder_whenOrderDoesNotExist_throwsOrderDoesNotExist() {
         doReturn(GetItemResponse.builder().item(null).build()).when(dynamoDb).getItem(any(GetItemRequest.class));
@@ -619,8 +1133,8 @@ public class OrderDaoTest {
         Order order = sut.getOrder(ORDER_ID);
         assertEquals(ORDER_ID, order.getOrderId());
         assertEquals(1L, order.getVersion().longValue());
-        assertEquals(1L, order.getPreTaxAmount().longValue());
-        assertEquals(10L, order.getPostTaxAmount().longValue());
+        assertEquals(Money.valueOf(1), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(10), order.getPostTaxAmount());
         assertEquals("customer", order.getCustomerId());
     }
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OrderItemCodecTest {
+    private static final Order ORDER = Order.builder()
+            .orderId("order")
+            .customerId("customer")
+            .preTaxAmount(Money.parse("12.50"))
+            .postTaxAmount(Money.parse("13.75"))
+            .version(4L)
+            .build();
+
+    @Test
+    public void encode_writesEveryAttributeWithItsType() {
+        Map<String, AttributeValue> item = OrderItemCodec.encode(ORDER);
+        assertEquals(5, item.size());
+        assertEquals("order", item.get("orderId").s());
+        assertEquals("customer", item.get("customerId").s());
+        assertEquals("12.50", item.get("preTaxAmount").n());
+        assertEquals("13.75", item.get("postTaxAmount").n());
+        assertEquals("4", item.get("version").n());
+    }
+
+    @Test
+    public void decode_ofEncodedOrder_returnsEqualOrder() {
+        Order decoded = OrderItemCodec.decode(OrderItemCodec.encode(ORDER));
+        assertEquals(ORDER.getOrderId(), decoded.getOrderId());
+        assertEquals(ORDER.getCustomerId(), decoded.getCustomerId());
+        assertEquals(ORDER.getPreTaxAmount(), decoded.getPreTaxAmount());
+        assertEquals(ORDER.getPostTaxAmount(), decoded.getPostTaxAmount());
+        assertEquals(ORDER.getVersion(), decoded.getVersion());
+    }
+
+    @Test
+    public void decode_whenNoItem_returnsNull() {
+        assertNull(OrderItemCodec.decode(null));
+        assertNull(OrderItemCodec.decode(Collections.emptyMap()));
+    }
+
+    @Test
+    public void decode_whenAttributeMissing_namesAttribute() {
+        Map<String, AttributeValue> item = new HashMap<>(OrderItemCodec.encode(ORDER));
+        item.remove("customerId");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> OrderItemCodec.decode(item));
+        assertEquals("Order item attribute customerId is missing", e.getMessage());
+    }
+
+    @Test
+    public void decode_whenAttributeOfWrongType_namesAttributeAndType() {
+        Map<String, AttributeValue> item = new HashMap<>(OrderItemCodec.encode(ORDER));
+        item.put("version", AttributeValue.builder().s("4").build());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> OrderItemCodec.decode(item));
+        assertEquals("Order item attribute version is not a number", e.getMessage());
+    }
+
+    @Test
+    public void decode_whenNumberInvalid_namesAttributeAndValue() {
+        Map<String, AttributeValue> item = new HashMap<>(OrderItemCodec.encode(ORDER));
+        item.put("preTaxAmount", AttributeValue.builder().n("a").build());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> OrderItemCodec.decode(item));
+        assertEquals("Order item attribute preTaxAmount is not a valid amount: a", e.getMessage());
+    }
+}
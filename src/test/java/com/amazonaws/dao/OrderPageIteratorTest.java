@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderPageIteratorTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+        Deadline.clear();
+    }
+
+    @Test
+    public void next_returnsEveryPageInOrder() {
+        List<String> firstIds = new ArrayList<>();
+        try (OrderPageIterator pages = new OrderPageIterator(pages(5), null, 2, executor)) {
+            while (pages.hasNext())
+                firstIds.add(pages.next().getOrders().get(0).getOrderId());
+        }
+        assertEquals(List.of("0", "1", "2", "3", "4"), firstIds);
+        assertEquals(5, fetches.get());
+    }
+
+    @Test
+    public void next_withStartKey_startsAfterIt() {
+        try (OrderPageIterator pages = new OrderPageIterator(pages(5), "2", 1, executor)) {
+            assertEquals("3", pages.next().getOrders().get(0).getOrderId());
+            assertEquals("4", pages.next().getOrders().get(0).getOrderId());
+            assertFalse(pages.hasNext());
+        }
+    }
+
+    @Test
+    public void readsNoMoreThanPagesAheadOfTheConsumer() throws InterruptedException {
+        try (OrderPageIterator pages = new OrderPageIterator(pages(100), null, 2, executor)) {
+            pages.next();
+            awaitFetches(3);
+            Thread.sleep(50); // a fetch beyond the limit would have happened by now
+            assertEquals(3, fetches.get());
+            pages.next();
+            awaitFetches(4);
+        }
+    }
+
+    @Test
+    public void close_stopsFetching() throws InterruptedException {
+        OrderPageIterator pages = new OrderPageIterator(pages(100), null, 2, executor);
+        pages.next();
+        pages.close();
+        Thread.sleep(50);
+        assertTrue(fetches.get() <= 3, "fetched " + fetches.get());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void hasNext_whenFetchFails_throwsItsException() {
+        Function<String, OrderPage> pages = pages(5);
+        try (OrderPageIterator iterator = new OrderPageIterator(startKey -> {
+            if ("1".equals(startKey))
+                throw new IllegalStateException("scan failed");
+            return pages.apply(startKey);
+        }, null, 2, executor)) {
+            iterator.next();
+            iterator.next();
+            assertThrows(IllegalStateException.class, iterator::hasNext);
+        }
+    }
+
+    @Test
+    public void fetchesRunUnderTheDeadlineOfTheCreatingThread() {
+        Deadline.start(60_000);
+        List<Duration> remaining = Collections.synchronizedList(new ArrayList<>());
+        Function<String, OrderPage> pages = pages(2);
+        try (OrderPageIterator iterator = new OrderPageIterator(startKey -> {
+            remaining.add(Deadline.remaining());
+            return pages.apply(startKey);
+        }, null, 1, executor)) {
+            while (iterator.hasNext())
+                iterator.next();
+        }
+        assertEquals(2, remaining.size());
+        for (Duration left : remaining)
+            assertNotNull(left);
+    }
+
+    @Test
+    public void constructor_whenNoPagesAhead_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderPageIterator(pages(1), null, 0, executor));
+        assertNull(Deadline.remaining());
+    }
+
+    // Pages of one order each, with ids "0" to count - 1, keyed by the id of the last order
+    private Function<String, OrderPage> pages(final int count) {
+        return startKey -> {
+            fetches.incrementAndGet();
+            int index = startKey == null ? 0 : Integer.parseInt(startKey) + 1;
+            return OrderPage.builder()
+                    .orders(Collections.singletonList(Order.builder().orderId(Integer.toString(index)).build()))
+                    .lastEvaluatedKey(index == count - 1 ? null : Integer.toString(index))
+                    .build();
+        };
+    }
+
+    private void awaitFetches(final int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fetches.get() < count && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(count, fetches.get());
+    }
+}
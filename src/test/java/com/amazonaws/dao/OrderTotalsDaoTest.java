@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.OrderTotals;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderTotalsDaoTest {
+    private final DynamoDbClient dynamoDb = mock(DynamoDbClient.class);
+    private final Clock clock = mock(Clock.class);
+    private final OrderTotalsDao sut = new OrderTotalsDao(dynamoDb, "totals", 4, Duration.ofSeconds(1), clock, 2);
+
+    @Test
+    public void constructor_whenShardCountOutOfRange_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OrderTotalsDao(dynamoDb, "totals", 0, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OrderTotalsDao(dynamoDb, "totals", OrderTotalsDao.MAX_SHARDS + 1, Duration.ZERO));
+    }
+
+    @Test
+    public void add_spreadsWritesOverShards() {
+        doReturn(UpdateItemResponse.builder().build()).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        for (int i = 0; i < 200; i++) {
+            sut.add("c1", 1, Money.parse("1.50"), Money.valueOf(2));
+        }
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDb, times(200)).updateItem(captor.capture());
+        Set<String> shards = new HashSet<>();
+        for (UpdateItemRequest request : captor.getAllValues()) {
+            shards.add(request.key().get("id").s());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("customer#c1#0", "customer#c1#1", "customer#c1#2",
+                "customer#c1#3")), shards);
+        UpdateItemRequest request = captor.getValue();
+        assertEquals("ADD orderCount :n, preTaxAmount :pre, postTaxAmount :post", request.updateExpression());
+        assertEquals("1", request.expressionAttributeValues().get(":n").n());
+        assertEquals("1.50", request.expressionAttributeValues().get(":pre").n());
+    }
+
+    @Test
+    public void add_whenGlobal_writesTotalShard() {
+        doReturn(UpdateItemResponse.builder().build()).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        sut.add(null, -1, Money.valueOf(-3), Money.valueOf(-4));
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDb).updateItem(captor.capture());
+        assertTrue(captor.getValue().key().get("id").s().startsWith("total#"));
+        assertEquals("-1", captor.getValue().expressionAttributeValues().get(":n").n());
+    }
+
+    @Test
+    public void getTotals_sumsShardsAndTreatsMissingShardsAsZero() {
+        doReturn(response(shard("total#0", 2, "1.50", "2"), shard("total#3", 1, "3", "4.25")))
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+
+        OrderTotals totals = sut.getTotals(null);
+
+        assertNull(totals.getCustomerId());
+        assertEquals(3L, totals.getOrderCount().longValue());
+        assertEquals(Money.parse("4.50"), totals.getPreTaxAmount());
+        assertEquals(Money.parse("6.25"), totals.getPostTaxAmount());
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDb).batchGetItem(captor.capture());
+        assertEquals(4, captor.getValue().requestItems().get("totals").keys().size());
+    }
+
+    @Test
+    public void getTotals_whenDeadlineStarted_boundsTheCallByIt() {
+        doReturn(response(shard("total#0", 1, "1", "1")))
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        Deadline.start(10_000);
+        try {
+            sut.getTotals(null);
+        } finally {
+            Deadline.clear();
+        }
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDb).batchGetItem(captor.capture());
+        Duration apiCallTimeout = captor.getValue().overrideConfiguration().get().apiCallTimeout().get();
+        assertTrue(apiCallTimeout.toMillis() > 9000 && apiCallTimeout.toMillis() <= 9500);
+    }
+
+    @Test
+    public void getTotals_whenDeadlinePassed_throwsWithoutCallingDynamoDb() {
+        Deadline.start(100); // less than the time kept back for the response
+        try {
+            assertThrows(DeadlineExceededException.class, () -> sut.getTotals("c"));
+        } finally {
+            Deadline.clear();
+        }
+        verify(dynamoDb, never()).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    public void add_whenCallTimesOut_throwsDeadlineExceededException() {
+        doThrow(ApiCallTimeoutException.create(1000)).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+        assertThrows(DeadlineExceededException.class,
+                () -> sut.add("c", 1, Money.valueOf(1), Money.valueOf(2)));
+    }
+
+    @Test
+    public void getTotals_retriesUnprocessedShards() {
+        Map<String, AttributeValue> unprocessedKey = Collections.singletonMap("id",
+                AttributeValue.builder().s("customer#c1#2").build());
+        doReturn(BatchGetItemResponse.builder()
+                        .responses(Collections.singletonMap("totals",
+                                Collections.singletonList(shard("customer#c1#0", 1, "1", "1"))))
+                        .unprocessedKeys(Collections.singletonMap("totals",
+                                KeysAndAttributes.builder().keys(unprocessedKey).build()))
+                        .build(),
+                response(shard("customer#c1#2", 2, "2", "2")))
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+
+        OrderTotals totals = sut.getTotals("c1");
+
+        assertEquals("c1", totals.getCustomerId());
+        assertEquals(3L, totals.getOrderCount().longValue());
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDb, times(2)).batchGetItem(captor.capture());
+        assertEquals(Collections.singletonList(unprocessedKey),
+                captor.getValue().requestItems().get("totals").keys());
+    }
+
+    @Test
+    public void getTotals_servesCachedTotalsUntilTtlExpires() {
+        when(clock.millis()).thenReturn(0L);
+        doReturn(response(shard("total#1", 1, "1", "1")))
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        doReturn(UpdateItemResponse.builder().build()).when(dynamoDb).updateItem(any(UpdateItemRequest.class));
+
+        sut.getTotals(null);
+        sut.add(null, 1, Money.valueOf(2), Money.valueOf(2));
+        when(clock.millis()).thenReturn(999L);
+        OrderTotals cached = sut.getTotals(null);
+        verify(dynamoDb, times(1)).batchGetItem(any(BatchGetItemRequest.class));
+        assertEquals(2L, cached.getOrderCount().longValue()); // includes this instance's write
+        assertEquals(Money.valueOf(3), cached.getPreTaxAmount());
+
+        when(clock.millis()).thenReturn(1000L);
+        assertEquals(1L, sut.getTotals(null).getOrderCount().longValue());
+        verify(dynamoDb, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    public void getTotals_keepsOnlyTheMostRecentlyReadCountersCached() {
+        when(clock.millis()).thenReturn(0L);
+        doReturn(response(shard("customer#c1#0", 1, "1", "1")))
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+
+        sut.getTotals("c1");
+        sut.getTotals("c2");
+        sut.getTotals("c1");
+        sut.getTotals("c3"); // evicts c2, the least recently read
+        verify(dynamoDb, times(3)).batchGetItem(any(BatchGetItemRequest.class));
+
+        sut.getTotals("c1");
+        verify(dynamoDb, times(3)).batchGetItem(any(BatchGetItemRequest.class));
+        sut.getTotals("c2");
+        verify(dynamoDb, times(4)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    public void getTotals_whenTableMissing_throwsTableDoesNotExist() {
+        doThrow(ResourceNotFoundException.builder().build())
+                .when(dynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        assertThrows(TableDoesNotExistException.class, () -> sut.getTotals("c1"));
+    }
+
+    private static BatchGetItemResponse response(final Map<String, AttributeValue> item) {
+        return BatchGetItemResponse.builder()
+                .responses(Collections.singletonMap("totals", Collections.singletonList(item)))
+                .build();
+    }
+
+    private static BatchGetItemResponse response(final Map<String, AttributeValue> first,
+                                                 final Map<String, AttributeValue> second) {
+        final List<Map<String, AttributeValue>> items = Arrays.asList(first, second);
+        return BatchGetItemResponse.builder()
+                .responses(Collections.singletonMap("totals", items))
+                .build();
+    }
+
+    private static Map<String, AttributeValue> shard(final String id, final long orderCount,
+                                                     final String preTaxAmount, final String postTaxAmount) {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", AttributeValue.builder().s(id).build());
+        item.put("orderCount", AttributeValue.builder().n(Long.toString(orderCount)).build());
+        item.put("preTaxAmount", AttributeValue.builder().n(preTaxAmount).build());
+        item.put("postTaxAmount", AttributeValue.builder().n(postTaxAmount).build());
+        return item;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.dao;
+
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBehindOrderRepositoryTest {
+    private final OrderRepository delegate = mock(OrderRepository.class);
+    // no scheduler and an interval far longer than the test, so only explicit or full flushes write
+    private final WriteBehindOrderRepository sut = new WriteBehindOrderRepository(delegate, 4, 3, 60_000, null, null);
+
+    @Test
+    public void updateOrder_whenUpdatedRepeatedly_writesLatestStateOnce() {
+        stored("o1", 3);
+        assertEquals(4L, sut.updateOrder(order("o1", 1, 3)).getVersion().longValue());
+        assertEquals(4L, sut.updateOrder(order("o1", 2, 4)).getVersion().longValue());
+        assertEquals(4L, sut.updateOrder(order("o1", 3, 3)).getVersion().longValue());
+        verify(delegate, never()).updateOrder(any());
+        assertTrue(sut.isUpdatePending("o1"));
+        assertEquals(Money.valueOf(3), sut.getOrder("o1").getPreTaxAmount());
+
+        assertTrue(sut.flush().get("o1").isSuccess());
+
+        ArgumentCaptor<Order> written = ArgumentCaptor.forClass(Order.class);
+        verify(delegate, times(1)).updateOrder(written.capture());
+        assertEquals(3L, written.getValue().getVersion().longValue());
+        assertEquals(Money.valueOf(3), written.getValue().getPreTaxAmount());
+        assertFalse(sut.isUpdatePending("o1"));
+    }
+
+    @Test
+    public void updateOrder_whenVersionNeitherStoredNorProvisional_throwsWithoutWriting() {
+        stored("o1", 3);
+        sut.updateOrder(order("o1", 1, 3));
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(order("o1", 2, 5)));
+        verify(delegate, never()).updateOrder(any());
+    }
+
+    @Test
+    public void updateOrder_whenStripeFull_flushesIt() {
+        // a single stripe, so three different orders fill it
+        WriteBehindOrderRepository single = new WriteBehindOrderRepository(delegate, 1, 3, 60_000, null, null);
+        stored("o1", 1);
+        stored("o2", 1);
+        stored("o3", 1);
+        single.updateOrder(order("o1", 1, 1));
+        single.updateOrder(order("o2", 1, 1));
+        verify(delegate, never()).updateOrder(any());
+        single.updateOrder(order("o3", 1, 1));
+        verify(delegate, times(3)).updateOrder(any());
+        assertFalse(single.isUpdatePending("o1"));
+        // written before any caller flushed, and still reported to the next one
+        Map<String, OrderWriteResult> results = single.flush();
+        assertEquals(3, results.size());
+        assertTrue(results.get("o1").isSuccess());
+        assertTrue(single.flush().isEmpty());
+    }
+
+    @Test
+    public void flush_whenStoredVersionChanged_dropsUpdate() {
+        doThrow(new UnableToUpdateException("Order missing or version mismatch")).when(delegate).updateOrder(any());
+        stored("o1", 1);
+        sut.updateOrder(order("o1", 1, 1));
+        OrderWriteResult result = sut.flush().get("o1");
+        assertFalse(sut.isUpdatePending("o1"));
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError() instanceof UnableToUpdateException);
+    }
+
+    @Test
+    public void flush_whenStoreUnavailable_keepsUpdateForNextFlush() {
+        doThrow(new IllegalStateException("throttled")).when(delegate).updateOrder(any());
+        stored("o1", 1);
+        sut.updateOrder(order("o1", 1, 1));
+        OrderWriteResult result = sut.flush().get("o1");
+        assertTrue(sut.isUpdatePending("o1"));
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void getOrders_returnsBufferedOrdersInPlaceOfStoredOnes() {
+        when(delegate.getOrders(null)).thenReturn(OrderPage.builder()
+                .orders(Arrays.asList(order("o1", 1, 1), order("o2", 1, 1))).lastEvaluatedKey("o2").build());
+        stored("o2", 1);
+        sut.updateOrder(order("o2", 7, 1));
+
+        OrderPage page = sut.getOrders(null);
+
+        assertEquals(Money.valueOf(1), page.getOrders().get(0).getPreTaxAmount());
+        assertEquals(Money.valueOf(7), page.getOrders().get(1).getPreTaxAmount());
+        assertEquals(2L, page.getOrders().get(1).getVersion().longValue());
+        assertEquals("o2", page.getLastEvaluatedKey());
+    }
+
+    @Test
+    public void deleteOrder_discardsBufferedUpdate() {
+        stored("o1", 1);
+        sut.updateOrder(order("o1", 1, 1));
+        sut.deleteOrder("o1");
+        sut.flush();
+        verify(delegate).deleteOrder("o1");
+        verify(delegate, never()).updateOrder(any());
+    }
+
+    @Test
+    public void updateOrder_whenOrderMissing_passesItStraightThrough() {
+        when(delegate.getLatestOrder("o1")).thenThrow(new OrderDoesNotExistException("Order o1 does not exist"));
+        when(delegate.updateOrder(any())).thenThrow(new UnableToUpdateException("Order missing or version mismatch"));
+        assertThrows(UnableToUpdateException.class, () -> sut.updateOrder(order("o1", 1, 1)));
+        assertFalse(sut.isUpdatePending("o1"));
+    }
+
+    @Test
+    public void updateOrder_whenVersionNotStored_passesItStraightThrough() {
+        stored("o1", 5);
+        Order written = order("o1", 1, 6);
+        when(delegate.updateOrder(any())).thenReturn(written);
+        assertEquals(written, sut.updateOrder(order("o1", 1, 3)));
+        verify(delegate, times(1)).updateOrder(any());
+        assertFalse(sut.isUpdatePending("o1"));
+    }
+
+    private void stored(final String orderId, final long version) {
+        when(delegate.getLatestOrder(orderId)).thenReturn(order(orderId, 0, version));
+    }
+
+    private static Order order(final String orderId, final long preTaxAmount, final long version) {
+        return Order.builder().orderId(orderId).customerId("c1")
+                .preTaxAmount(Money.valueOf(preTaxAmount)).postTaxAmount(Money.valueOf(preTaxAmount + 1))
+                .version(version).build();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.export;
+
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OrderExporterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OrderDao orderDao = mock(OrderDao.class);
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setup() {
+        // pages are read ahead through scanSegmentPages, which calls the stubbed scanSegment
+        doCallRealMethod().when(orderDao).scanSegmentPages(anyInt(), anyInt(), any(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    public void constructor_whenSegmentsNotPositive_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OrderExporter(orderDao, objectMapper, directory, 0, 1, 10));
+    }
+
+    @Test
+    public void run_whenSegmentsHaveSeveralPages_writesEveryOrderToItsPartFile() throws Exception {
+        doReturn(page("k1", order("a"), order("b"))).when(orderDao).scanSegment(eq(0), eq(2), isNull(), eq(2));
+        doReturn(page(null, order("c"))).when(orderDao).scanSegment(0, 2, "k1", 2);
+        doReturn(page(null)).when(orderDao).scanSegment(eq(1), eq(2), isNull(), eq(2));
+
+        long exported = new OrderExporter(orderDao, objectMapper, directory, 2, 2, 2).run();
+
+        assertEquals(3, exported);
+        assertEquals(Arrays.asList("a", "b", "c"), orderIds(0));
+        assertEquals(Collections.emptyList(), orderIds(1));
+        ExportCheckpoint checkpoint = objectMapper.readValue(
+                directory.resolve(ExportCheckpoint.FILE_NAME).toFile(), ExportCheckpoint.class);
+        assertTrue(checkpoint.getSegments().get(0).isDone());
+        assertTrue(checkpoint.getSegments().get(1).isDone());
+    }
+
+    @Test
+    public void run_afterFailure_resumesFromCheckpointWithoutDuplicates() throws Exception {
+        doReturn(page("k1", order("a"), order("b"))).when(orderDao).scanSegment(eq(0), eq(1), isNull(), eq(2));
+        doThrow(new IllegalStateException("throttled")).when(orderDao).scanSegment(0, 1, "k1", 2);
+
+        OrderExporter exporter = new OrderExporter(orderDao, objectMapper, directory, 1, 1, 2);
+        assertThrows(IllegalStateException.class, exporter::run);
+
+        doReturn(page(null, order("c"))).when(orderDao).scanSegment(0, 1, "k1", 2);
+        assertEquals(3, exporter.run());
+        assertEquals(Arrays.asList("a", "b", "c"), orderIds(0));
+        verify(orderDao, times(1)).scanSegment(eq(0), eq(1), isNull(), eq(2));
+
+        // a finished export is not scanned again
+        assertEquals(3, exporter.run());
+        verify(orderDao, times(1)).scanSegment(eq(0), eq(1), isNull(), eq(2));
+    }
+
+    @Test
+    public void writeMember_passesCompressedBuffersToChannelWhole() throws Exception {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            orders.add(order("o" + i));
+        }
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int[] channelWrites = {0};
+        WritableByteChannel channel = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) {
+                channelWrites[0]++;
+                int length = source.remaining();
+                byte[] bytes = new byte[length];
+                source.get(bytes);
+                written.write(bytes, 0, length);
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                throw new AssertionError("the channel has to stay open for the next page");
+            }
+        };
+
+        new OrderExporter(orderDao, objectMapper, directory, 1, 1, 2).writeMember(channel, orders);
+
+        // one write per deflated buffer, not one per compressed byte
+        assertTrue(written.size() > 1000);
+        assertTrue(channelWrites[0] <= written.size() / 512 + 2, channelWrites[0] + " channel writes");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(written.toByteArray())), StandardCharsets.UTF_8))) {
+            assertEquals(5000, reader.lines().count());
+        }
+    }
+
+    @Test
+    public void run_whenCheckpointHasOtherSegmentCount_throwsIllegalStateException() throws Exception {
+        doReturn(page(null)).when(orderDao).scanSegment(eq(0), eq(1), isNull(), eq(2));
+        new OrderExporter(orderDao, objectMapper, directory, 1, 1, 2).run();
+
+        assertThrows(IllegalStateException.class,
+                () -> new OrderExporter(orderDao, objectMapper, directory, 4, 1, 2).run());
+    }
+
+    private List<String> orderIds(final int segment) throws Exception {
+        List<String> orderIds = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                Files.newInputStream(directory.resolve(OrderExporter.partFileName(segment)))),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                orderIds.add(objectMapper.readValue(line, Order.class).getOrderId());
+            }
+        } catch (EOFException e) {
+            // an empty part file has no gzip header
+        }
+        return orderIds;
+    }
+
+    private static OrderPage page(final String lastEvaluatedKey, final Order... orders) {
+        return OrderPage.builder().orders(Arrays.asList(orders)).lastEvaluatedKey(lastEvaluatedKey).build();
+    }
+
+    private static Order order(final String orderId) {
+        return Order.builder().orderId(orderId).customerId("customer").preTaxAmount(Money.valueOf(1))
+                .postTaxAmount(Money.valueOf(10)).version(1L).build();
+    }
+}
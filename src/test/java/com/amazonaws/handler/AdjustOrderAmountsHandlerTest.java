@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.services.lambda.runtime.TestContext;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+public class AdjustOrderAmountsHandlerTest {
+    private static final String ADJUST_EVENT = "{\"pathParameters\": { \"order_id\" : \"a\" }, "
+            + "\"body\": \"{\\\"preTaxAmountDelta\\\": -2.50}\"}";
+
+    private AdjustOrderAmountsHandler sut = new AdjustOrderAmountsHandler();
+
+    @Test
+    public void handleRequest_whenNoOrderId_puts400InOutputStream() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream("{}".getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("order_id was not set"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    public void handleRequest_whenAdjusted_puts200WithOrderInOutputStream() throws IOException {
+        sut.orderRepository = mock(OrderRepository.class);
+        doReturn(Order.builder().orderId("a").customerId("c").preTaxAmount(Money.parse("7.50"))
+                .postTaxAmount(Money.valueOf(11)).version(4L).build())
+                .when(sut.orderRepository).adjustAmounts(eq("a"), eq(Money.parse("-2.50")), any(), eq(false));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream(ADJUST_EVENT.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("200"));
+        assertTrue(os.toString().contains("7.50"));
+    }
+
+    @Test
+    public void handleRequest_whenAmountWouldGoNegative_puts409InOutputStream() throws IOException {
+        sut.orderRepository = mock(OrderRepository.class);
+        doThrow(new UnableToUpdateException("Adjustment would make an amount negative"))
+                .when(sut.orderRepository).adjustAmounts(any(), any(), any(), eq(false));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream(ADJUST_EVENT.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("409"));
+        assertTrue(os.toString().contains("negative"));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.exception.CouldNotCreateOrderException;
+import com.amazonaws.exception.TableDoesNotExistException;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.services.lambda.runtime.TestContext;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class BatchCreateOrdersHandlerTest {
+    private static final String VALID_BODY = "{\"customerId\": \"c\", \"preTaxAmount\": 1, \"postTaxAmount\": 2}";
+
+    private BatchCreateOrdersHandler sut = new BatchCreateOrdersHandler();
+    private OrderRepository orderRepository = mock(OrderRepository.class);
+
+    @BeforeEach
+    public void setup() {
+        sut.orderRepository = orderRepository;
+    }
+
+    @Test
+    public void handleRequest_whenAllWritten_reportsNoFailures() {
+        doReturn(Arrays.asList(OrderWriteResult.success(new Order()), OrderWriteResult.success(new Order())))
+                .when(orderRepository).createOrders(anyList());
+        SQSBatchResponse response = sut.handleRequest(
+                event(message("1", VALID_BODY), message("2", VALID_BODY)), TestContext.builder().build());
+        assertTrue(response.getBatchItemFailures().isEmpty());
+    }
+
+    @Test
+    public void handleRequest_whenMessageMalformedOrWriteFails_reportsOnlyThoseMessages() {
+        doReturn(Arrays.asList(OrderWriteResult.success(new Order()),
+                OrderWriteResult.failure(new CouldNotCreateOrderException("unprocessed"))))
+                .when(orderRepository).createOrders(anyList());
+        SQSBatchResponse response = sut.handleRequest(event(message("1", VALID_BODY),
+                message("2", "not json"), message("3", VALID_BODY)), TestContext.builder().build());
+        assertEquals(Arrays.asList("2", "3"), failedIds(response));
+    }
+
+    @Test
+    public void handleRequest_whenTableMissing_reportsWholeBatch() {
+        doThrow(new TableDoesNotExistException("gone")).when(orderRepository).createOrders(anyList());
+        SQSBatchResponse response = sut.handleRequest(
+                event(message("1", VALID_BODY), message("2", VALID_BODY)), TestContext.builder().build());
+        assertEquals(Arrays.asList("1", "2"), failedIds(response));
+    }
+
+    @Test
+    public void handleRequest_derivesOrderIdsFromMessageIds() {
+        doReturn(Arrays.asList(OrderWriteResult.success(new Order()), OrderWriteResult.success(new Order())))
+                .when(orderRepository).createOrders(anyList());
+        sut.handleRequest(event(message("1", VALID_BODY), message("2", VALID_BODY)), TestContext.builder().build());
+        sut.handleRequest(event(message("1", VALID_BODY), message("2", VALID_BODY)), TestContext.builder().build());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CreateOrderRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository, times(2)).createOrders(captor.capture());
+        List<CreateOrderRequest> first = captor.getAllValues().get(0);
+        List<CreateOrderRequest> redelivered = captor.getAllValues().get(1);
+        assertEquals(BatchCreateOrdersHandler.orderId("1"), first.get(0).getOrderId());
+        assertEquals(first.get(0).getOrderId(), redelivered.get(0).getOrderId());
+        assertNotEquals(first.get(0).getOrderId(), first.get(1).getOrderId());
+    }
+
+    private static List<String> failedIds(SQSBatchResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static SQSEvent event(SQSEvent.SQSMessage... messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(Arrays.asList(messages));
+        return event;
+    }
+
+    private static SQSEvent.SQSMessage message(String id, String body) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(id);
+        message.setBody(body);
+        return message;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderTotalsDao;
+import com.amazonaws.dao.OrderTotalsRecorder;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.services.lambda.runtime.TestContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class BulkDeleteOrdersHandlerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private BulkDeleteOrdersHandler sut = new BulkDeleteOrdersHandler();
+
+    @Test
+    public void handleRequest_whenNeitherIdsNorCustomerGiven_puts400InOutputStream() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("Require either orderIds or customerId"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    public void handleRequest_whenResumeTokenInvalid_puts400InOutputStream() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"orderIds\\\": [], \\\"resumeToken\\\": \\\"!!\\\"}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("resumeToken was invalid"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    public void handleRequest_whenOutOfTime_returnsTokenThatResumesWhereItStopped() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        List<String> deleted = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<String> orderIds = invocation.getArgument(0);
+            deleted.addAll(orderIds);
+            return orderIds.stream()
+                    .map(id -> OrderWriteResult.success(Order.builder().orderId(id).build()))
+                    .collect(Collectors.toList());
+        }).when(sut.orderDao).deleteOrders(anyList(), anyBoolean(), any());
+        List<String> orderIds = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            orderIds.add("order-" + i);
+        }
+
+        // TestContext has no time left, so each call runs a single step of 1000 ids
+        JsonNode first = call(objectMapper.createObjectNode().putPOJO("orderIds", orderIds));
+        assertEquals(1000, first.get("deleted").asLong());
+        assertTrue(first.hasNonNull("resumeToken"));
+
+        JsonNode second = call(objectMapper.createObjectNode().putPOJO("orderIds", orderIds)
+                .put("resumeToken", first.get("resumeToken").asText()));
+        assertEquals(1500, second.get("deleted").asLong());
+        assertTrue(second.get("resumeToken").isNull());
+        assertEquals(orderIds, deleted);
+    }
+
+    @Test
+    public void handleRequest_whenCounting_subtractsDeletedOrdersWithoutReturningThem() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        OrderTotalsDao totals = mock(OrderTotalsDao.class);
+        sut.orderTotalsRecorder = new OrderTotalsRecorder(totals, null);
+        doAnswer(invocation -> {
+            List<String> orderIds = invocation.getArgument(0);
+            return orderIds.stream()
+                    .map(id -> OrderWriteResult.success(Order.builder().orderId(id).customerId("c")
+                            .preTaxAmount(Money.valueOf(2)).postTaxAmount(Money.valueOf(3)).build()))
+                    .collect(Collectors.toList());
+        }).when(sut.orderDao).deleteOrders(anyList(), eq(true), any());
+
+        JsonNode response = call(objectMapper.createObjectNode().putPOJO("orderIds", List.of("a", "b")));
+
+        assertEquals(2, response.get("deleted").asLong());
+        assertFalse(response.hasNonNull("deletedOrders"));
+        verify(totals).add(null, -2, Money.valueOf(-4), Money.valueOf(-6));
+        verify(totals).add("c", -2, Money.valueOf(-4), Money.valueOf(-6));
+    }
+
+    private JsonNode call(final JsonNode request) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = objectMapper.writeValueAsString(objectMapper.createObjectNode()
+                .put("body", objectMapper.writeValueAsString(request)));
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        JsonNode response = objectMapper.readTree(os.toString());
+        assertEquals(200, response.get("statusCode").asInt());
+        return objectMapper.readTree(response.get("body").asText());
+    }
+}
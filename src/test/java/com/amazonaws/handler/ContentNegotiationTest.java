@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.OrderJsonModule;
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.request.UpdateOrderRequest;
+import com.amazonaws.model.response.GatewayResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class ContentNegotiationTest {
+    private static final String LARGE_BODY = String.join(",", Collections.nCopies(500, "{\"a\":1}"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new OrderJsonModule());
+
+    @Test
+    public void header_whenHeaderSentInOtherCase_returnsValue() throws IOException {
+        JsonNode event = objectMapper.readTree("{\"headers\": {\"accept-encoding\": \"gzip\"}}");
+        assertEquals("gzip", ContentNegotiation.header(event, "Accept-Encoding"));
+    }
+
+    @Test
+    public void header_whenNoHeaders_returnsNull() throws IOException {
+        assertNull(ContentNegotiation.header(objectMapper.readTree("{\"headers\": null}"), "ETag"));
+        assertNull(ContentNegotiation.header(null, "ETag"));
+    }
+
+    @Test
+    public void bodyText_whenBase64Encoded_decodesBody() throws IOException {
+        String encoded = Base64.getEncoder().encodeToString("{\"x\":1}".getBytes(StandardCharsets.UTF_8));
+        JsonNode event = objectMapper.readTree("{\"isBase64Encoded\": true, \"body\": \"" + encoded + "\"}");
+        assertEquals("{\"x\":1}", ContentNegotiation.bodyText(event, event.get("body")));
+    }
+
+    @Test
+    public void preferredEncoding_honorsQualityValues() {
+        assertEquals(ContentNegotiation.GZIP, ContentNegotiation.preferredEncoding("br, gzip;q=0.8"));
+        assertEquals(ContentNegotiation.GZIP, ContentNegotiation.preferredEncoding("*"));
+        assertNull(ContentNegotiation.preferredEncoding("gzip;q=0, *"));
+        assertNull(ContentNegotiation.preferredEncoding("br"));
+        assertNull(ContentNegotiation.preferredEncoding(null));
+    }
+
+    @Test
+    public void encode_whenBodySmall_leavesBodyUncompressed() {
+        GatewayResponse<String> response = ContentNegotiation.encode("{}",
+                OrderRequestStreamHandler.APPLICATION_JSON, 200, ContentNegotiation.GZIP);
+        assertEquals("{}", response.getBody());
+        assertFalse(response.isBase64Encoded());
+        assertFalse(response.getHeaders().containsKey("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeaders().get("Vary"));
+    }
+
+    @Test
+    public void encode_whenGzipNegotiated_returnsBase64GzipBody() throws IOException {
+        GatewayResponse<String> response = ContentNegotiation.encode(LARGE_BODY,
+                Collections.singletonMap("ETag", ContentNegotiation.etag(7L)), 200,
+                ContentNegotiation.GZIP);
+        assertTrue(response.isBase64Encoded());
+        assertEquals("gzip", response.getHeaders().get("Content-Encoding"));
+        assertEquals("\"7-gzip\"", response.getHeaders().get("ETag"));
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(Base64.getDecoder().decode(response.getBody())))) {
+            assertEquals(LARGE_BODY, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void encode_serializesBase64FlagForApiGateway() throws IOException {
+        String json = objectMapper.writeValueAsString(ContentNegotiation.encode(LARGE_BODY,
+                OrderRequestStreamHandler.APPLICATION_JSON, 200, ContentNegotiation.GZIP));
+        assertTrue(objectMapper.readTree(json).get("isBase64Encoded").asBoolean());
+    }
+
+    @Test
+    public void notModified_matchesCurrentVersionOnly() {
+        String etag = ContentNegotiation.etag(3L);
+        assertTrue(ContentNegotiation.notModified("\"3\"", etag));
+        assertTrue(ContentNegotiation.notModified("W/\"3\"", etag));
+        assertTrue(ContentNegotiation.notModified("\"1\", \"3-gzip\"", etag));
+        assertTrue(ContentNegotiation.notModified("*", etag));
+        assertFalse(ContentNegotiation.notModified("\"2\"", etag));
+        assertFalse(ContentNegotiation.notModified(null, etag));
+    }
+
+    @Test
+    public void preferredMediaType_prefersBinaryOnlyWhenAcceptedAsMuchAsJson() {
+        assertEquals(ContentNegotiation.APPLICATION_CBOR, ContentNegotiation.preferredMediaType("application/cbor"));
+        assertEquals(ContentNegotiation.APPLICATION_CBOR,
+                ContentNegotiation.preferredMediaType("application/cbor, application/x-jackson-smile, */*"));
+        assertEquals(ContentNegotiation.APPLICATION_SMILE,
+                ContentNegotiation.preferredMediaType("application/x-jackson-smile, application/cbor;q=0.5"));
+        assertNull(ContentNegotiation.preferredMediaType("application/cbor;q=0.5, application/json"));
+        assertNull(ContentNegotiation.preferredMediaType("*/*"));
+        assertNull(ContentNegotiation.preferredMediaType(null));
+    }
+
+    @Test
+    public void encode_whenCborNegotiated_returnsBase64CborBody() throws IOException {
+        Order order = Order.builder().orderId("o1").customerId("c1").version(3L)
+                .preTaxAmount(Money.of(1999, 2)).postTaxAmount(Money.of(2159, 2)).build();
+        GatewayResponse<String> response = ContentNegotiation.encode(objectMapper, order,
+                ContentNegotiation.APPLICATION_CBOR, OrderRequestStreamHandler.APPLICATION_JSON, 200, null);
+        assertTrue(response.isBase64Encoded());
+        assertEquals(ContentNegotiation.APPLICATION_CBOR, response.getHeaders().get("Content-Type"));
+        assertEquals("Accept, Accept-Encoding", response.getHeaders().get("Vary"));
+        Order decoded = new CBORMapper().registerModule(new OrderJsonModule())
+                .readValue(Base64.getDecoder().decode(response.getBody()), Order.class);
+        assertEquals("o1", decoded.getOrderId());
+        assertEquals(Money.of(1999, 2), decoded.getPreTaxAmount());
+        assertEquals(Money.of(2159, 2), decoded.getPostTaxAmount());
+    }
+
+    @Test
+    public void encode_whenJsonNegotiated_returnsJsonBody() throws IOException {
+        GatewayResponse<String> response = ContentNegotiation.encode(objectMapper,
+                Collections.singletonMap("a", 1), null, OrderRequestStreamHandler.APPLICATION_JSON, 200, null);
+        assertEquals("{\"a\":1}", response.getBody());
+        assertFalse(response.isBase64Encoded());
+        assertEquals("application/json", response.getHeaders().get("Content-Type"));
+    }
+
+    @Test
+    public void readBody_whenContentTypeSmile_decodesBinaryBody() throws IOException {
+        byte[] smile = new SmileMapper().writeValueAsBytes(Collections.singletonMap("preTaxAmount",
+                new BigDecimal("10.50")));
+        ObjectNode event = objectMapper.createObjectNode().put("isBase64Encoded", true)
+                .put("body", Base64.getEncoder().encodeToString(smile));
+        event.putObject("headers").put("content-type", ContentNegotiation.APPLICATION_SMILE);
+        UpdateOrderRequest request = ContentNegotiation.readBody(objectMapper, event, event.get("body"),
+                UpdateOrderRequest.class);
+        assertEquals(Money.of(1050, 2), request.getPreTaxAmount());
+    }
+
+    @Test
+    public void readBody_whenNoContentType_readsJson() throws IOException {
+        JsonNode event = objectMapper.readTree("{\"body\": \"{\\\"customerId\\\": \\\"c1\\\"}\"}");
+        assertEquals("c1", ContentNegotiation.readBody(objectMapper, event, event.get("body"),
+                CreateOrderRequest.class).getCustomerId());
+    }
+
+    @Test
+    public void readBody_whenJson_keepsScaleOfAmounts() throws IOException {
+        JsonNode event = objectMapper.readTree("{\"body\": \"{\\\"preTaxAmount\\\": 2.50}\"}");
+        assertEquals(Money.of(250, 2), ContentNegotiation.readBody(objectMapper, event, event.get("body"),
+                UpdateOrderRequest.class).getPreTaxAmount());
+    }
+
+    @Test
+    public void etag_differsPerMediaType() {
+        assertEquals("\"3\"", ContentNegotiation.etag(3L, null));
+        assertEquals("\"3-cbor\"", ContentNegotiation.etag(3L, ContentNegotiation.APPLICATION_CBOR));
+        assertFalse(ContentNegotiation.notModified("\"3\"",
+                ContentNegotiation.etag(3L, ContentNegotiation.APPLICATION_CBOR)));
+    }
+}
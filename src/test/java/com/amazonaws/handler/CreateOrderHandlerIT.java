@@ -74,9 +74,11 @@ public class CreateOrderHandlerIT extends OrderHandlerTestBase {
         assertTrue(outputWrapper.hasAttribute("headers"));
         headers = outputWrapper.getMap("headers");
         assertNotNull(headers);
-        assertEquals(1, headers.size());
+        assertEquals(3, headers.size());
         assertTrue(headers.containsKey("Content-Type"));
         assertEquals("application/json", headers.get("Content-Type"));
+        assertEquals("\"1\"", headers.get("ETag"));
+        assertEquals("Accept, Accept-Encoding", headers.get("Vary"));
         assertTrue(outputWrapper.hasAttribute("statusCode"));
         assertEquals(200, outputWrapper.getInt("statusCode"));
         assertTrue(outputWrapper.hasAttribute("body"));
@@ -85,6 +87,14 @@ public class CreateOrderHandlerIT extends OrderHandlerTestBase {
         body = Item.fromJSON(bodyString);
         verifyOrderItem(body, 1, "3");
 
+        //a conditional get with the current version is answered without a body
+        os = new ByteArrayOutputStream();
+        getOrder.handleRequest(new ByteArrayInputStream(("{\"pathParameters\": { \"order_id\": \"" + orderId
+                + "\"}, \"headers\": { \"If-None-Match\": \"\\\"1\\\"\"}}").getBytes()), os, ctxt);
+        outputWrapper = Item.fromJSON(os.toString());
+        assertEquals(304, outputWrapper.getInt("statusCode"));
+        assertTrue(outputWrapper.isNull("body"));
+
         //now that we can get the singleton lets see if we can get it in a page
         os = new ByteArrayOutputStream();
         getOrders.handleRequest(new ByteArrayInputStream("{}".getBytes()), os, ctxt);
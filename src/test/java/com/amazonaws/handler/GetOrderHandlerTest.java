@@ -17,12 +17,20 @@
 
 package com.amazonaws.handler;
 
+import com.amazonaws.dao.Deadline;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
 import com.amazonaws.model.response.GatewayResponse;
 import com.amazonaws.services.lambda.runtime.TestContext;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -48,4 +56,29 @@ public class GetOrderHandlerTest {
         assertTrue(os.toString().contains("order_id was not set"));
         assertTrue(os.toString().contains("400"));
     }
+
+    @Test
+    public void handleRequest_whenDeadlineExceeded_puts503WithRetryAfterInOutputStream() throws IOException {
+        sut.orderRepository = mock(OrderRepository.class);
+        doThrow(new DeadlineExceededException("DynamoDB did not answer within the request deadline"))
+                .when(sut.orderRepository).getOrder("a");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"pathParameters\": { \"order_id\" : \"a\" }}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os,
+                TestContext.builder().remainingTimeInMillis(20_000).build());
+        assertTrue(os.toString().contains("\"statusCode\":503"));
+        assertTrue(os.toString().contains("\"Retry-After\":\"1\""));
+        assertNull(Deadline.remaining());
+    }
+
+    @Test
+    public void handleRequest_whenConcurrencyLimitInUse_puts429InOutputStream() throws IOException {
+        sut.concurrencyLimiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 100, null);
+        sut.concurrencyLimiter.tryAcquire(Priority.CRITICAL);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"pathParameters\": { \"order_id\" : \"a\" }}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("\"statusCode\":429"));
+        assertTrue(os.toString().contains("Retry-After"));
+    }
 }
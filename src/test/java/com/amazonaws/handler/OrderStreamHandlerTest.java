@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.CustomerSummaryDao;
+import com.amazonaws.dao.OrderChange;
+import com.amazonaws.services.lambda.runtime.TestContext;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OrderStreamHandlerTest {
+    private OrderStreamHandler sut = new OrderStreamHandler();
+    private CustomerSummaryDao customerSummaryDao = mock(CustomerSummaryDao.class);
+
+    @BeforeEach
+    public void setup() {
+        sut.customerSummaryDao = customerSummaryDao;
+    }
+
+    @Test
+    public void toChange_whenInsert_hasNewImageOnly() {
+        OrderChange change = OrderStreamHandler.toChange(record("1", null, image("c", "5")).getDynamodb());
+        assertEquals("o", change.getOrderId());
+        assertEquals("1", change.getSequenceNumber());
+        assertNull(change.getOldImage());
+        assertEquals("c", change.getNewImage().getCustomerId());
+        assertEquals(5L, change.getNewImage().getVersion().longValue());
+    }
+
+    @Test
+    public void handleRequest_whenAllApplied_reportsNoFailures() {
+        doReturn(true).when(customerSummaryDao).apply(any(OrderChange.class));
+        StreamsEventResponse response = sut.handleRequest(event(
+                record("1", null, image("c", "1")),
+                record("2", image("c", "1"), image("c", "2"))), TestContext.builder().build());
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        verify(customerSummaryDao, times(2)).apply(any(OrderChange.class));
+    }
+
+    @Test
+    public void handleRequest_whenRecordMalformed_stopsAndReportsThatRecord() {
+        doReturn(true).when(customerSummaryDao).apply(any(OrderChange.class));
+        Map<String, AttributeValue> broken = image("c", "1");
+        broken.remove("preTaxAmount");
+        StreamsEventResponse response = sut.handleRequest(event(
+                record("1", null, image("c", "1")),
+                record("2", null, broken),
+                record("3", null, image("c", "1"))), TestContext.builder().build());
+        assertEquals(1, response.getBatchItemFailures().size());
+        assertEquals("2", response.getBatchItemFailures().get(0).getItemIdentifier());
+        verify(customerSummaryDao, times(1)).apply(any(OrderChange.class));
+    }
+
+    private static DynamodbEvent event(DynamodbEvent.DynamodbStreamRecord... records) {
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(Arrays.asList(records));
+        return event;
+    }
+
+    private static DynamodbEvent.DynamodbStreamRecord record(String sequenceNumber,
+            Map<String, AttributeValue> oldImage, Map<String, AttributeValue> newImage) {
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setDynamodb(new StreamRecord()
+                .withKeys(Collections.singletonMap("orderId", new AttributeValue().withS("o")))
+                .withSequenceNumber(sequenceNumber)
+                .withOldImage(oldImage)
+                .withNewImage(newImage));
+        return record;
+    }
+
+    private static Map<String, AttributeValue> image(String customerId, String version) {
+        Map<String, AttributeValue> image = new HashMap<>();
+        image.put("orderId", new AttributeValue().withS("o"));
+        image.put("customerId", new AttributeValue().withS(customerId));
+        image.put("preTaxAmount", new AttributeValue().withN("1"));
+        image.put("postTaxAmount", new AttributeValue().withN("2"));
+        image.put("version", new AttributeValue().withN(version));
+        return image;
+    }
+}
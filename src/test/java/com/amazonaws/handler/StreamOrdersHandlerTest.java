@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.InMemoryOrderRepository;
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.exception.DeadlineExceededException;
+import com.amazonaws.model.OrderPage;
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.services.lambda.runtime.TestContext;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class StreamOrdersHandlerTest {
+    private static final String PRELUDE_END = new String(new byte[8], StandardCharsets.UTF_8);
+
+    private StreamOrdersHandler sut = new StreamOrdersHandler();
+
+    @Test
+    public void handleRequest_writesEveryPageAsNdjsonAfterPrelude() throws IOException {
+        sut.orderRepository = repository(5);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream("{}".getBytes()), os, TestContext.builder().build());
+
+        String[] response = os.toString(StandardCharsets.UTF_8).split(PRELUDE_END);
+        assertEquals("{\"statusCode\":200,\"headers\":{\"Content-Type\":\"application/x-ndjson\"}}", response[0]);
+        String[] lines = response[1].split("\n");
+        assertEquals(5, lines.length);
+        for (String line : lines) {
+            assertTrue(line.startsWith("{\"orderId\":"), line);
+            assertTrue(line.endsWith("\"version\":1}"), line);
+        }
+        assertTrue(response[1].endsWith("\n"));
+    }
+
+    @Test
+    public void handleRequest_withStartKey_writesOrdersAfterIt() throws IOException {
+        sut.orderRepository = repository(3);
+        String first = sut.orderRepository.getOrders(null).getOrders().get(0).getOrderId();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"queryStringParameters\": {\"exclusive_start_key\": \"" + first + "\"}}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+
+        String body = os.toString(StandardCharsets.UTF_8).split(PRELUDE_END)[1];
+        assertEquals(2, body.split("\n").length);
+        assertFalse(body.contains(first));
+    }
+
+    @Test
+    public void handleRequest_whenTableEmpty_writesPreludeOnly() throws IOException {
+        sut.orderRepository = mockRepository();
+        doAnswer(invocation -> OrderPage.builder().orders(Collections.emptyList()).build())
+                .when(sut.orderRepository).getOrders(any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream("{}".getBytes()), os, TestContext.builder().build());
+
+        assertTrue(os.toString(StandardCharsets.UTF_8).endsWith(PRELUDE_END));
+    }
+
+    @Test
+    public void handleRequest_whenDeadlineExceededOnFirstPage_streams503WithRetryAfter() throws IOException {
+        sut.orderRepository = mockRepository();
+        doThrow(new DeadlineExceededException("DynamoDB did not answer within the request deadline"))
+                .when(sut.orderRepository).getOrders(any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream("{}".getBytes()), os,
+                TestContext.builder().remainingTimeInMillis(20_000).build());
+
+        String[] response = os.toString(StandardCharsets.UTF_8).split(PRELUDE_END);
+        assertTrue(response[0].contains("\"statusCode\":503"), response[0]);
+        assertTrue(response[0].contains("\"Retry-After\":\"1\""), response[0]);
+        assertTrue(response[1].contains("DynamoDB did not answer"), response[1]);
+    }
+
+    // Pages are read through getOrderPages, which calls the stubbed getOrders
+    private static OrderRepository mockRepository() {
+        OrderRepository repository = mock(OrderRepository.class);
+        doCallRealMethod().when(repository).getOrderPages(any(), anyInt(), any());
+        return repository;
+    }
+
+    private static OrderRepository repository(final int orders) {
+        OrderRepository repository = new InMemoryOrderRepository(2);
+        for (int i = 0; i < orders; i++)
+            repository.createOrder(new CreateOrderRequest("customer" + i, 1L, 2L));
+        return repository;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.handler;
+
+import com.amazonaws.dao.OrderDao;
+import com.amazonaws.dao.OrderTotalsDao;
+import com.amazonaws.dao.OrderTotalsRecorder;
+import com.amazonaws.exception.OrderDoesNotExistException;
+import com.amazonaws.exception.TransactionConflictException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
+import com.amazonaws.model.request.OrderMutation;
+import com.amazonaws.model.response.OrderMutationFailure;
+import com.amazonaws.services.lambda.runtime.TestContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TransactOrdersHandlerTest {
+    private TransactOrdersHandler sut = new TransactOrdersHandler();
+
+    @Test
+    public void handleRequest_whenInputStreamHasNoBody_puts400InOutputStream() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream("{}".getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("Body was null"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    public void handleRequest_whenMutationsMissing_puts400InOutputStream() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("mutations was null or empty"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    public void handleRequest_whenTransactionCancelled_puts409WithFailuresInOutputStream() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        doThrow(new TransactionConflictException("Transaction was cancelled", Collections.singletonList(
+                new OrderMutationFailure(0, "a", "ConditionalCheckFailed", "Order does not exist"))))
+                .when(sut.orderDao).transact(anyList(), any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"DELETE\\\", \\\"orderId\\\": \\\"a\\\"}]}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("409"));
+        assertTrue(os.toString().contains("Order does not exist"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void handleRequest_keepsPrecisionAndScaleOfAmounts() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        doReturn(Collections.emptyList()).when(sut.orderDao).transact(anyList(), any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"CREATE\\\", "
+                + "\\\"customerId\\\": \\\"c\\\", \\\"preTaxAmount\\\": 1234567890123456.78, "
+                + "\\\"postTaxAmount\\\": 2.50}]}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+
+        ArgumentCaptor<List<OrderMutation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sut.orderDao).transact(captor.capture(), any());
+        OrderMutation mutation = captor.getValue().get(0);
+        assertEquals("1234567890123456.78", mutation.getPreTaxAmount().toString());
+        assertEquals("2.50", mutation.getPostTaxAmount().toString());
+    }
+
+    @Test
+    public void handleRequest_whenClientRequestTokenTooLong_puts400InOutputStream() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        doThrow(new IllegalArgumentException("clientRequestToken must be 1 to 36 characters long"))
+                .when(sut.orderDao).transact(anyList(), eq("0123456789012345678901234567890123456"));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"DELETE\\\", "
+                + "\\\"orderId\\\": \\\"a\\\"}], "
+                + "\\\"clientRequestToken\\\": \\\"0123456789012345678901234567890123456\\\"}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("clientRequestToken must be 1 to 36 characters long"));
+        assertTrue(os.toString().contains("400"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void handleRequest_whenCounting_movesTotalsByTheCommittedMutations() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        OrderTotalsDao totals = mock(OrderTotalsDao.class);
+        sut.orderTotalsRecorder = new OrderTotalsRecorder(totals, null);
+        doReturn(order("u", 3L, 5)).when(sut.orderDao).getLatestOrder("u");
+        doReturn(order("d", 7L, 4)).when(sut.orderDao).getLatestOrder("d");
+        doReturn(Arrays.asList(order("u", 4L, 8), Order.builder().orderId("d").build()))
+                .when(sut.orderDao).transact(anyList(), any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"UPDATE\\\", "
+                + "\\\"orderId\\\": \\\"u\\\", \\\"customerId\\\": \\\"c\\\", "
+                + "\\\"preTaxAmount\\\": 8, \\\"postTaxAmount\\\": 8, \\\"version\\\": 3}, "
+                + "{\\\"type\\\": \\\"DELETE\\\", \\\"orderId\\\": \\\"d\\\"}]}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+
+        assertTrue(os.toString().contains("200"));
+        // The unversioned delete is pinned to the version that was read
+        ArgumentCaptor<List<OrderMutation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sut.orderDao).transact(captor.capture(), any());
+        assertEquals(Long.valueOf(7L), captor.getValue().get(1).getVersion());
+        verify(totals).add(null, 0, Money.valueOf(3), Money.valueOf(3));
+        verify(totals).add("c", 0, Money.valueOf(3), Money.valueOf(3));
+        verify(totals).add(null, -1, Money.valueOf(-4), Money.valueOf(-4));
+        verify(totals).add("c", -1, Money.valueOf(-4), Money.valueOf(-4));
+    }
+
+    @Test
+    public void handleRequest_whenCountingAndTransactionReplayed_doesNotCountCreatesTwice() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        OrderTotalsDao totals = mock(OrderTotalsDao.class);
+        sut.orderTotalsRecorder = new OrderTotalsRecorder(totals, null);
+        String createdId = OrderDao.createdOrderId("token", 0);
+        doReturn(order(createdId, 1L, 5)).when(sut.orderDao).getLatestOrder(createdId);
+        doReturn(Collections.singletonList(order(createdId, 1L, 5))).when(sut.orderDao).transact(anyList(), any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"CREATE\\\", "
+                + "\\\"customerId\\\": \\\"c\\\", \\\"preTaxAmount\\\": 5, "
+                + "\\\"postTaxAmount\\\": 5}], \\\"clientRequestToken\\\": \\\"token\\\"}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+
+        assertTrue(os.toString().contains("200"));
+        verifyNoInteractions(totals);
+    }
+
+    @Test
+    public void handleRequest_whenCountingAndTransactionCancelled_leavesTotalsAlone() throws IOException {
+        sut.orderDao = mock(OrderDao.class);
+        OrderTotalsDao totals = mock(OrderTotalsDao.class);
+        sut.orderTotalsRecorder = new OrderTotalsRecorder(totals, null);
+        doThrow(new OrderDoesNotExistException("Order a does not exist")).when(sut.orderDao).getLatestOrder("a");
+        doThrow(new TransactionConflictException("Transaction was cancelled", Collections.emptyList()))
+                .when(sut.orderDao).transact(anyList(), any());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"body\": \"{\\\"mutations\\\": [{\\\"type\\\": \\\"DELETE\\\", "
+                + "\\\"orderId\\\": \\\"a\\\"}]}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+
+        assertTrue(os.toString().contains("409"));
+        verifyNoInteractions(totals);
+    }
+
+    private static Order order(final String orderId, final long version, final long amount) {
+        return Order.builder().orderId(orderId).customerId("c").version(version)
+                .preTaxAmount(Money.valueOf(amount)).postTaxAmount(Money.valueOf(amount)).build();
+    }
+}
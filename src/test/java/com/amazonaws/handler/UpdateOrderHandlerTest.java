@@ -17,18 +17,32 @@
 
 package com.amazonaws.handler;
 
+import com.amazonaws.dao.OrderRepository;
+import com.amazonaws.dao.OrderWriteResult;
+import com.amazonaws.exception.UnableToUpdateException;
+import com.amazonaws.model.Money;
+import com.amazonaws.model.Order;
 import com.amazonaws.services.lambda.runtime.TestContext;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 
 
 public class UpdateOrderHandlerTest {
+    private static final String BUFFERED_UPDATE = "{\"pathParameters\": { \"order_id\" : \"a\" }, \"body\": "
+            + "\"{\\\"customerId\\\": \\\"customer\\\", \\\"preTaxAmount\\\": 1, "
+            + "\\\"postTaxAmount\\\": 2, \\\"version\\\": 1}\"}";
     private UpdateOrderHandler sut = new UpdateOrderHandler();
 
     @Test
@@ -101,4 +115,46 @@ public class UpdateOrderHandlerTest {
         assertTrue(os.toString().contains("postTaxAmount was null"));
         assertTrue(os.toString().contains("400"));
     }
+
+    @Test
+    public void handleRequest_whenUpdateBuffered_writesItBeforeAnswering202() throws IOException {
+        sut.orderRepository = mock(OrderRepository.class);
+        when(sut.orderRepository.updateOrder(any())).thenReturn(Order.builder().orderId("a").customerId("customer")
+                .preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2)).version(2L).build());
+        when(sut.orderRepository.isUpdatePending("a")).thenReturn(true);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        String input = "{\"pathParameters\": { \"order_id\" : \"a\" }, \"body\": \"{\\\"customerId\\\": "
+                + "\\\"customer\\\", \\\"preTaxAmount\\\": 1, \\\"postTaxAmount\\\": 2, \\\"version\\\": 1}\"}";
+        sut.handleRequest(new ByteArrayInputStream(input.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("202"));
+        InOrder order = inOrder(sut.orderRepository);
+        order.verify(sut.orderRepository).updateOrder(any());
+        order.verify(sut.orderRepository).flush();
+    }
+
+    @Test
+    public void handleRequest_whenBufferedUpdateDroppedByFlush_puts409InOutputStream() throws IOException {
+        bufferedUpdate(OrderWriteResult.failure(new UnableToUpdateException("Order missing or version mismatch")));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream(BUFFERED_UPDATE.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("\"statusCode\":409"));
+        assertTrue(os.toString().contains("version mismatch"));
+    }
+
+    @Test
+    public void handleRequest_whenBufferedUpdateLeftBufferedByFlush_puts503InOutputStream() throws IOException {
+        bufferedUpdate(OrderWriteResult.failure(new IllegalStateException("throttled")));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        sut.handleRequest(new ByteArrayInputStream(BUFFERED_UPDATE.getBytes()), os, TestContext.builder().build());
+        assertTrue(os.toString().contains("\"statusCode\":503"));
+        assertTrue(os.toString().contains("\"Retry-After\":\"1\""));
+    }
+
+    private void bufferedUpdate(OrderWriteResult flushed) {
+        sut.orderRepository = mock(OrderRepository.class);
+        when(sut.orderRepository.updateOrder(any())).thenReturn(Order.builder().orderId("a").customerId("customer")
+                .preTaxAmount(Money.valueOf(1)).postTaxAmount(Money.valueOf(2)).version(2L).build());
+        when(sut.orderRepository.isUpdatePending("a")).thenReturn(true);
+        when(sut.orderRepository.flush()).thenReturn(Collections.singletonMap("a", flushed));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.limit;
+
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Permit;
+import com.amazonaws.limit.AdaptiveConcurrencyLimiter.Priority;
+import com.amazonaws.metrics.EmbeddedMetrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter(10, 2, 20, 100, null);
+
+    @Test
+    public void tryAcquire_whenLimitInUse_rejectsAndCountsIt() {
+        List<Permit> permits = acquire(Priority.CRITICAL, 10);
+        assertNull(sut.tryAcquire(Priority.CRITICAL));
+        assertEquals(1, sut.getRejected());
+
+        permits.get(0).release();
+        permits.get(0).release(); // a second release is ignored
+        assertEquals(9, sut.getInFlight());
+        assertNotNull(sut.tryAcquire(Priority.CRITICAL));
+    }
+
+    @Test
+    public void tryAcquire_whenBulkShareInUse_stillAdmitsReads() {
+        acquire(Priority.BULK, 5);
+        assertNull(sut.tryAcquire(Priority.BULK));
+        assertNotNull(sut.tryAcquire(Priority.NORMAL));
+        assertNotNull(sut.tryAcquire(Priority.CRITICAL));
+    }
+
+    @Test
+    public void onSample_whenCallSlowOrThrottled_cutsLimitOncePerTargetInterval() {
+        sut.onSample(SLOW, false);
+        assertEquals(9, sut.getLimit());
+        sut.onSample(FAST, true); // same burst, no further cut
+        assertEquals(9, sut.getLimit());
+    }
+
+    @Test
+    public void onSample_whenLimitNeverDropsBelowMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 20, 1, null);
+        limiter.onSample(SLOW, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void onSample_whenFastCallsUnderLoad_growsLimitByOnePerLimitSamples() {
+        acquire(Priority.CRITICAL, 5);
+        for (int i = 0; i < 9; i++) {
+            sut.onSample(FAST, false);
+        }
+        assertEquals(10, sut.getLimit());
+        sut.onSample(FAST, false);
+        assertEquals(11, sut.getLimit());
+    }
+
+    @Test
+    public void onSample_whenIdle_keepsLimit() {
+        for (int i = 0; i < 100; i++) {
+            sut.onSample(FAST, false);
+        }
+        assertEquals(10, sut.getLimit());
+    }
+
+    @Test
+    public void constructor_whenLimitsOutOfOrder_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(10, 20, 30, 100, null));
+    }
+
+    @Test
+    public void embeddedMetrics_writesCloudWatchEmfLine() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("ConcurrencyLimit", 10);
+        values.put("Rejected", 3L);
+        new EmbeddedMetrics("OrderService", new PrintStream(out, true)).publish(values);
+        String line = out.toString().trim();
+        assertTrue(line.contains("\"Namespace\":\"OrderService\""));
+        assertTrue(line.contains("\"Metrics\":[{\"Name\":\"ConcurrencyLimit\"},{\"Name\":\"Rejected\"}]"));
+        assertTrue(line.endsWith(",\"ConcurrencyLimit\":10,\"Rejected\":3}"));
+    }
+
+    private List<Permit> acquire(final Priority priority, final int count) {
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(sut.tryAcquire(priority));
+        }
+        return permits;
+    }
+}
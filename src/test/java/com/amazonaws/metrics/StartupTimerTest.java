@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupTimerTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final StartupTimer sut = new StartupTimer(new PrintStream(out, true), false);
+
+    @Test
+    public void firstInvocation_whenClosed_logsPhasesInOrderTheyEnded() {
+        try (StartupTimer.Phase dagger = sut.start("dagger")) {
+            sut.start("jackson").close();
+        }
+        sut.startFirstInvocation("GetOrderHandler").close();
+
+        String line = out.toString().trim();
+        assertTrue(line.matches("\\{\"coldStart\":\\{\"handler\":\"GetOrderHandler\",\"jacksonMillis\":\\d+,"
+                + "\"daggerMillis\":\\d+,\"firstInvocationMillis\":\\d+}}"), line);
+    }
+
+    @Test
+    public void firstInvocation_afterTheFirst_recordsNothing() {
+        sut.startFirstInvocation("GetOrderHandler").close();
+        out.reset();
+
+        sut.start("dagger").close();
+        sut.startFirstInvocation("GetOrderHandler").close();
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void phase_whenRepeated_keepsTheFirstRun() {
+        sut.start("dagger").close();
+        StartupTimer.Phase again = sut.start("dagger");
+        sleep(20);
+        again.close();
+        sut.startFirstInvocation("GetOrderHandler").close();
+
+        Matcher dagger = Pattern.compile("\"daggerMillis\":(\\d+)").matcher(out.toString());
+        assertTrue(dagger.find());
+        assertTrue(Long.parseLong(dagger.group(1)) < 20, dagger.group());
+        assertFalse(dagger.find());
+    }
+
+    @Test
+    public void phase_withClassCounts_reportsClassesLoaded() {
+        StartupTimer counting = new StartupTimer(new PrintStream(out, true), true);
+        counting.start("dagger").close();
+        counting.startFirstInvocation("GetOrderHandler").close();
+
+        String line = out.toString();
+        assertTrue(line.contains("\"jvmMillis\":"), line);
+        assertTrue(line.contains("\"daggerClasses\":"), line);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
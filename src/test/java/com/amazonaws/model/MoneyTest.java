@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.model;
+
+import com.amazonaws.model.request.UpdateOrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneyTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void parse_whenPlainNumbers_roundTripsLikeBigDecimal() {
+        String[] numbers = {"0", "10", "-10", "12.50", "0.05", "-0.5", "0.000", "123456789.123456789",
+                "9223372036854775807", "-9223372036854775808", "-922337203.6854775808"};
+        for (String number : numbers) {
+            Money money = Money.parse(number);
+            assertEquals(new BigDecimal(number), money.toBigDecimal(), number);
+            assertEquals(new BigDecimal(number).toPlainString(), money.toString(), number);
+        }
+    }
+
+    @Test
+    public void parse_whenExponent_keepsValue() {
+        assertEquals("1200", Money.parse("1.2E+3").toString());
+        assertEquals("0.012", Money.parse("1.2e-2").toString());
+        assertEquals("5", Money.parse("+5").toString());
+    }
+
+    @Test
+    public void parse_whenNotANumber_throwsNumberFormatException() {
+        for (String text : new String[] {"", "-", ".", "1.2.3", "1e", "1e+", "12a", "a"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+    }
+
+    @Test
+    public void parse_whenOutOfRange_throwsNumberFormatException() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("9223372036854775808"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e-30"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e30"));
+    }
+
+    @Test
+    public void add_whenScalesDiffer_usesLargerScale() {
+        assertEquals(Money.parse("11.05"), Money.parse("10").add(Money.parse("1.05")));
+        assertEquals(Money.parse("-0.5"), Money.parse("1").subtract(Money.parse("1.5")));
+        assertThrows(ArithmeticException.class, () -> Money.valueOf(Long.MAX_VALUE).add(Money.valueOf(1)));
+    }
+
+    @Test
+    public void equals_whenScaleDiffers_isFalseButComparesEqual() {
+        assertNotEquals(Money.parse("1.5"), Money.parse("1.50"));
+        assertEquals(0, Money.parse("1.5").compareTo(Money.parse("1.50")));
+        assertEquals(-1, Money.parse("1.49").compareTo(Money.parse("1.5")));
+    }
+
+    @Test
+    public void json_whenNumber_roundTripsExactly() throws Exception {
+        String json = "{\"orderId\":\"o\",\"customerId\":\"c\",\"preTaxAmount\":12.50,"
+                + "\"postTaxAmount\":14,\"version\":1}";
+        Order order = objectMapper.readValue(json, Order.class);
+        assertEquals(Money.of(1250, 2), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(14), order.getPostTaxAmount());
+        assertEquals(json, objectMapper.writeValueAsString(order));
+    }
+
+    @Test
+    public void json_whenTree_isReadToo() throws Exception {
+        Order order = objectMapper.treeToValue(
+                objectMapper.readTree("{\"preTaxAmount\":\"0.10\",\"postTaxAmount\":3}"), Order.class);
+        assertEquals(Money.of(10, 2), order.getPreTaxAmount());
+        assertEquals(Money.valueOf(3), order.getPostTaxAmount());
+    }
+
+    @Test
+    public void json_whenNotANumber_throwsInvalidFormatException() {
+        assertThrows(InvalidFormatException.class,
+                () -> objectMapper.readValue("{\"preTaxAmount\":\"ten\"}", UpdateOrderRequest.class));
+    }
+}
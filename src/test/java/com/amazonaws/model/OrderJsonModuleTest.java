@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.model;
+
+import com.amazonaws.model.request.CreateOrderRequest;
+import com.amazonaws.model.request.UpdateOrderRequest;
+import com.amazonaws.model.response.ErrorMessage;
+import com.amazonaws.model.response.GatewayResponse;
+import com.amazonaws.model.response.GetOrdersResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OrderJsonModuleTest {
+    private static final String ORDER_JSON = "{\"orderId\":\"o\",\"customerId\":\"c\",\"preTaxAmount\":12.50,"
+            + "\"postTaxAmount\":14,\"version\":3}";
+
+    private final ObjectMapper beans = new ObjectMapper();
+    private final ObjectMapper sut = new ObjectMapper().registerModule(new OrderJsonModule());
+
+    @Test
+    public void serialize_writesSameJsonAsBeanSerializers() throws Exception {
+        Order order = Order.builder().orderId("o").customerId("c")
+                .preTaxAmount(Money.parse("12.50")).postTaxAmount(Money.valueOf(14)).version(3L).build();
+        Order empty = new Order();
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("ETag", null);
+        Object[] values = {
+            order,
+            empty,
+            new GetOrdersResponse("o", Arrays.asList(order, empty)),
+            new GetOrdersResponse(null, null),
+            new ErrorMessage("Order o does not exist", 404),
+            new ErrorMessage(null, 500),
+            new GatewayResponse<>(beans.writeValueAsString(order), headers, 200),
+            new GatewayResponse<>(null, Collections.emptyMap(), 304, true),
+            new GatewayResponse<>(new ErrorMessage("nested", 400), headers, 400),
+        };
+        for (Object value : values) {
+            assertEquals(beans.writeValueAsString(value), sut.writeValueAsString(value));
+        }
+    }
+
+    @Test
+    public void deserialize_order_roundTrips() throws Exception {
+        Order order = sut.readValue(ORDER_JSON, Order.class);
+        assertEquals("o", order.getOrderId());
+        assertEquals(Money.of(1250, 2), order.getPreTaxAmount());
+        assertEquals(3L, order.getVersion());
+        assertEquals(ORDER_JSON, sut.writeValueAsString(order));
+    }
+
+    @Test
+    public void deserialize_fromTree_readsScalarsLikeBeanDeserializers() throws Exception {
+        String json = "{\"customerId\":7,\"preTaxAmount\":\"10\",\"postTaxAmount\":11.0}";
+        CreateOrderRequest expected = beans.readValue(json, CreateOrderRequest.class);
+        CreateOrderRequest request = sut.treeToValue(sut.readTree(json), CreateOrderRequest.class);
+        assertEquals(expected.getCustomerId(), request.getCustomerId());
+        assertEquals(expected.getPreTaxAmount(), request.getPreTaxAmount());
+        assertEquals(expected.getPostTaxAmount(), request.getPostTaxAmount());
+    }
+
+    @Test
+    public void deserialize_whenNulls_leavesPropertiesNull() throws Exception {
+        UpdateOrderRequest request = sut.readValue(
+                "{\"orderId\":null,\"preTaxAmount\":null,\"version\":null}", UpdateOrderRequest.class);
+        assertNull(request.getOrderId());
+        assertNull(request.getPreTaxAmount());
+        assertNull(request.getVersion());
+    }
+
+    @Test
+    public void deserialize_whenUnknownProperty_throwsUnrecognizedPropertyException() {
+        assertThrows(UnrecognizedPropertyException.class,
+                () -> sut.readValue("{\"customerId\":\"c\",\"discount\":1}", CreateOrderRequest.class));
+    }
+
+    @Test
+    public void deserialize_whenUnknownPropertiesAllowed_skipsThem() throws Exception {
+        ObjectMapper lenient = new ObjectMapper().registerModule(new OrderJsonModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        Order order = lenient.readValue("{\"extra\":{\"a\":[1,2]},\"orderId\":\"o\"}", Order.class);
+        assertEquals("o", order.getOrderId());
+    }
+
+    @Test
+    public void deserialize_whenNotAnObject_throwsMismatchedInputException() {
+        assertThrows(MismatchedInputException.class, () -> sut.readValue("[1]", Order.class));
+        assertThrows(MismatchedInputException.class,
+                () -> sut.readValue("{\"customerId\":{}}", CreateOrderRequest.class));
+    }
+
+    @Test
+    public void deserialize_whenAmountNotANumber_throwsInvalidFormatException() {
+        assertThrows(InvalidFormatException.class,
+                () -> sut.readValue("{\"preTaxAmount\":\"ten\"}", UpdateOrderRequest.class));
+        assertThrows(InvalidFormatException.class,
+                () -> sut.readValue("{\"preTaxAmount\":\"ten\"}", CreateOrderRequest.class));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.runtime;
+
+import com.amazonaws.handler.GetOrderHandler;
+import com.amazonaws.handler.StreamingResponseHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LambdaRuntimeTest {
+
+    @Test
+    public void createHandler_withMethodSuffix_returnsHandler() {
+        assertTrue(LambdaRuntime.createHandler("com.amazonaws.handler.GetOrderHandler::handleRequest")
+                instanceof GetOrderHandler);
+    }
+
+    @Test
+    public void createHandler_whenUnknown_throwsIllegalStateException() {
+        assertThrows(IllegalStateException.class,
+                () -> LambdaRuntime.createHandler("com.amazonaws.handler.HealthCheckHandler"));
+    }
+
+    @Test
+    public void createHandler_whenNotSet_throwsIllegalStateException() {
+        assertThrows(IllegalStateException.class, () -> LambdaRuntime.createHandler(null));
+    }
+
+    @Test
+    public void run_postsHandlerResponseForRequestId() throws Exception {
+        BlockingQueue<String> posted = new LinkedBlockingQueue<>();
+        CountDownLatch served = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/2018-06-01/runtime/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/next")) {
+                if (served.getCount() == 0) {
+                    return; // hold the runtime's next poll until the server stops
+                }
+                served.countDown();
+                byte[] event = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", "request-1");
+                exchange.sendResponseHeaders(200, event.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(event);
+                }
+            } else {
+                posted.add(path + " " + new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        LambdaRuntime runtime = new LambdaRuntime("127.0.0.1:" + server.getAddress().getPort(),
+                Collections.singletonMap("_HANDLER", "com.amazonaws.handler.GetOrderHandler"));
+        Thread loop = new Thread(() -> {
+            try {
+                runtime.run();
+            } catch (IOException e) {
+                // the server stopped
+            }
+        });
+        loop.setDaemon(true);
+        loop.start();
+
+        String response = posted.poll(10, TimeUnit.SECONDS);
+        server.stop(0);
+        assertTrue(response.startsWith("/2018-06-01/runtime/invocation/request-1/response "), response);
+        assertTrue(response.contains("\"statusCode\":400"), response);
+        assertEquals(0, posted.size());
+    }
+
+    @Test
+    public void run_whenHandlerStreams_postsChunksBeforeHandlerReturns() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        CountDownLatch firstChunk = new CountDownLatch(1);
+        CountDownLatch served = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/2018-06-01/runtime/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/next")) {
+                if (served.getCount() == 0) {
+                    return; // hold the runtime's next poll until the server stops
+                }
+                served.countDown();
+                exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", "request-1");
+                exchange.sendResponseHeaders(200, 2);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write("{}".getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                received.add(exchange.getRequestHeaders().getFirst("Lambda-Runtime-Function-Response-Mode")
+                        + " " + exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+                InputStream body = exchange.getRequestBody();
+                byte[] line = new byte[6];
+                int read = 0;
+                while (read < line.length)
+                    read += body.read(line, read, line.length - read);
+                received.add(new String(line, StandardCharsets.UTF_8));
+                firstChunk.countDown();
+                received.add(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        StreamingResponseHandler handler = (input, output, context) -> {
+            output.write("first\n".getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            try {
+                // only returns once the server got the first line, so it cannot have been buffered
+                assertTrue(firstChunk.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            output.write("last\n".getBytes(StandardCharsets.UTF_8));
+        };
+        LambdaRuntime runtime = new LambdaRuntime("127.0.0.1:" + server.getAddress().getPort(),
+                Collections.emptyMap());
+        Thread loop = new Thread(() -> {
+            try {
+                runtime.run(handler);
+            } catch (IOException e) {
+                // the server stopped
+            }
+        });
+        loop.setDaemon(true);
+        loop.start();
+
+        assertEquals("streaming chunked", received.poll(10, TimeUnit.SECONDS));
+        assertEquals("first\n", received.poll(10, TimeUnit.SECONDS));
+        assertEquals("last\n", received.poll(10, TimeUnit.SECONDS));
+        server.stop(0);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.amazonaws.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TracingTest {
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Span> exported = new ArrayList<>();
+    private final Tracer sut = new Tracer(1, exported::add);
+
+    @AfterEach
+    public void clearCurrentSpan() {
+        Tracing.setCurrent(null);
+    }
+
+    @Test
+    public void startTrace_whenDisabled_returnsNoopAndLeavesNoCurrentSpan() {
+        Span trace = Tracer.disabled().startTrace("handler");
+        assertSame(Span.NOOP, trace);
+        assertNull(Tracing.current());
+        assertSame(Span.NOOP, Tracing.span("OrderDao.getOrder"));
+        trace.close();
+    }
+
+    @Test
+    public void span_nestsUnderCurrentSpanAndExportsTreeOnRootClose() {
+        try (Span root = sut.startTrace("handler")) {
+            try (Span dao = Tracing.span("OrderDao.getOrder")) {
+                Tracing.span("GetItem").annotate("status_code", "200").close();
+                assertSame(dao, Tracing.current());
+            }
+            assertSame(root, Tracing.current());
+        }
+
+        assertNull(Tracing.current());
+        assertEquals(1, exported.size());
+        Span root = exported.get(0);
+        assertEquals("handler", root.getName());
+        Span dao = root.getChildren().get(0);
+        assertEquals("OrderDao.getOrder", dao.getName());
+        Span call = dao.getChildren().get(0);
+        assertEquals("200", call.getAnnotations().get("status_code"));
+        assertEquals(root.getTraceId(), call.getTraceId());
+        assertTrue(call.getEndEpochNanos() <= root.getEndEpochNanos());
+    }
+
+    @Test
+    public void adoptTraceparent_whenSampledUpstream_continuesCallersTrace() throws Exception {
+        try (Span root = sut.startTrace("handler")) {
+            Tracing.adoptTraceparent(event("TraceParent", TRACEPARENT));
+        }
+        Span root = exported.get(0);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", root.getTraceId());
+        assertEquals("00f067aa0ba902b7", root.getRemoteParentId());
+    }
+
+    @Test
+    public void adoptTraceparent_whenNotSampledUpstream_dropsTrace() throws Exception {
+        try (Span root = sut.startTrace("handler")) {
+            Tracing.adoptTraceparent(event("traceparent", TRACEPARENT.replaceAll("01$", "00")));
+        }
+        assertTrue(exported.isEmpty());
+    }
+
+    @Test
+    public void adoptTraceparent_whenMalformed_keepsLocalTraceId() throws Exception {
+        try (Span root = sut.startTrace("handler")) {
+            Tracing.adoptTraceparent(event("traceparent", "01-not-a-trace-parent"));
+        }
+        Span root = exported.get(0);
+        assertEquals(32, root.getTraceId().length());
+        assertNull(root.getRemoteParentId());
+    }
+
+    @Test
+    public void startTrace_whenExporterFails_doesNotThrow() {
+        Tracer failing = new Tracer(1, root -> {
+            throw new IllegalStateException("disk full");
+        });
+        failing.startTrace("handler").close();
+        assertNull(Tracing.current());
+    }
+
+    @Test
+    public void xRayExporter_writesSegmentWithSubsegments() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tracer tracer = new Tracer(1, new XRaySegmentExporter(objectMapper, new PrintStream(out, true)));
+        try (Span root = tracer.startTrace("GetOrderHandler")) {
+            Tracing.adoptTraceparent(event("traceparent", TRACEPARENT));
+            Tracing.span("OrderDao.getOrder").close();
+        }
+
+        JsonNode segment = objectMapper.readTree(out.toString(StandardCharsets.UTF_8.name()));
+        assertEquals("GetOrderHandler", segment.get("name").asText());
+        assertEquals("1-4bf92f35-77b34da6a3ce929d0e0e4736", segment.get("trace_id").asText());
+        assertEquals("00f067aa0ba902b7", segment.get("parent_id").asText());
+        assertEquals("OrderDao.getOrder", segment.get("subsegments").get(0).get("name").asText());
+    }
+
+    @Test
+    public void otlpExporter_appendsOneLinePerTrace(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("traces.jsonl");
+        Tracer tracer = new Tracer(1, new OtlpFileExporter(objectMapper, file, "orders"));
+        try (Span root = tracer.startTrace("GetOrderHandler")) {
+            Tracing.span("OrderDao.getOrder").close();
+        }
+        tracer.startTrace("GetOrdersHandler").close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"OrderDao.getOrder\""));
+        assertTrue(lines.get(1).contains("\"GetOrdersHandler\""));
+    }
+
+    private JsonNode event(final String header, final String value) throws Exception {
+        return objectMapper.readTree("{\"headers\":{\"" + header + "\":\"" + value + "\"}}");
+    }
+}